@@ -0,0 +1,219 @@
+package com.promptgenie.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.config.ProvidersConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.entity.Document;
+import com.promptgenie.entity.DocumentChunk;
+import com.promptgenie.mapper.DocumentChunkMapper;
+import com.promptgenie.mapper.DocumentMapper;
+import com.promptgenie.mapper.PlaygroundHistoryMapper;
+import com.promptgenie.service.EmbeddingService;
+import com.promptgenie.service.KnowledgeService;
+import com.promptgenie.service.LLMTracingService;
+import com.promptgenie.service.PlaygroundService;
+import com.promptgenie.service.cache.GenerationCache;
+import com.promptgenie.service.retrieval.ChunkReranker;
+import com.promptgenie.service.retrieval.HybridRetrievalService;
+import com.promptgenie.service.retrieval.LexicalIndexService;
+import com.promptgenie.service.retrieval.VectorIndexService;
+import com.promptgenie.service.strategy.GenerationStrategy;
+import com.promptgenie.service.strategy.OpenAICompatibleStrategy;
+import com.promptgenie.service.strategy.ProviderConcurrencyLimiter;
+import com.promptgenie.service.task.GenerationTaskService;
+import com.promptgenie.service.template.PromptTemplateCache;
+import com.promptgenie.service.tokenizer.TokenizerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Wires the services under benchmark by hand, the way Spring would, but with mappers mocked out and
+ * providers pointed at a {@link MockProviderServer}. Keeps benchmark setup free of a Spring context
+ * and a database so the numbers only cover the code paths being measured.
+ */
+public final class BenchmarkServices {
+
+    public static final String MODEL = "mock-model";
+
+    private BenchmarkServices() {
+    }
+
+    public static GenieConfig genieConfig(Path dataDir) {
+        GenieConfig config = new GenieConfig();
+        // Every call must reach the strategy; cache hits would hide the hot path
+        config.getResponseCache().setEnabled(false);
+        config.getEmbedding().setIndexDir(dataDir.resolve("vector-index").toString());
+        config.getRetrieval().setLexicalIndexDir(dataDir.resolve("lexical-index").toString());
+        return config;
+    }
+
+    /**
+     * {@code providers} OpenAI-compatible providers with ten models each; {@link #MODEL} is served by
+     * the last one, so lookups walk the whole map.
+     */
+    public static ProvidersConfig providers(String baseUrl, int providers) {
+        Map<String, ProvidersConfig.OpenAiConfig> openai = new LinkedHashMap<>();
+        for (int p = 0; p < providers; p++) {
+            ProvidersConfig.OpenAiConfig provider = new ProvidersConfig.OpenAiConfig();
+            provider.setBaseUrl(baseUrl);
+            provider.setApiKey("sk-bench");
+            provider.setModelType("text");
+            provider.setMaxConcurrency(256);
+            List<String> models = new ArrayList<>();
+            for (int m = 0; m < 10; m++) {
+                models.add("provider" + p + "-model" + m);
+            }
+            if (p == providers - 1) models.add(MODEL);
+            provider.setModels(models);
+            openai.put("provider" + p, provider);
+        }
+        ProvidersConfig config = new ProvidersConfig();
+        config.setOpenai(openai);
+        return config;
+    }
+
+    public static OpenAICompatibleStrategy openAiStrategy(ProvidersConfig providers, GenieConfig config) {
+        return new OpenAICompatibleStrategy(providers, config, new ObjectMapper(), new ProviderConcurrencyLimiter());
+    }
+
+    /** Meters are recorded as in production, into a registry nobody scrapes. */
+    public static GenieMetrics metrics() {
+        return new GenieMetrics(new SimpleMeterRegistry());
+    }
+
+    public static TokenizerService tokenizer(GenieConfig config) {
+        TokenizerService tokenizer = new TokenizerService();
+        ReflectionTestUtils.setField(tokenizer, "genieConfig", config);
+        tokenizer.init();
+        return tokenizer;
+    }
+
+    public static PlaygroundService playground(GenieConfig config, List<GenerationStrategy> strategies, KnowledgeService knowledgeService) {
+        PlaygroundService playground = new PlaygroundService();
+        ReflectionTestUtils.setField(playground, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(playground, "historyMapper", mock(PlaygroundHistoryMapper.class));
+        ReflectionTestUtils.setField(playground, "knowledgeService", knowledgeService);
+        ReflectionTestUtils.setField(playground, "strategies", strategies);
+        ReflectionTestUtils.setField(playground, "templateCache", new PromptTemplateCache());
+        ReflectionTestUtils.setField(playground, "generationCache", new GenerationCache(config));
+        ReflectionTestUtils.setField(playground, "tokenizerService", tokenizer(config));
+        ReflectionTestUtils.setField(playground, "generationTaskService", mock(GenerationTaskService.class));
+        ReflectionTestUtils.setField(playground, "metrics", metrics());
+        ReflectionTestUtils.setField(playground, "tracingService", new LLMTracingService(config));
+        return playground;
+    }
+
+    /** Knowledge base retrieval stack over local embeddings, with indexes under the config's data dir. */
+    public static final class Knowledge implements AutoCloseable {
+        public final KnowledgeService knowledgeService;
+        public final EmbeddingService embeddingService;
+        public final VectorIndexService vectorIndex;
+        public final LexicalIndexService lexicalIndex;
+        public final HybridRetrievalService retrieval;
+
+        public Knowledge(GenieConfig config) throws InterruptedException {
+            DocumentMapper documentMapper = mock(DocumentMapper.class);
+            DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+
+            embeddingService = new EmbeddingService();
+            ReflectionTestUtils.setField(embeddingService, "genieConfig", config);
+            ReflectionTestUtils.setField(embeddingService, "embeddingClientProvider", mock(ObjectProvider.class));
+
+            vectorIndex = new VectorIndexService();
+            ReflectionTestUtils.setField(vectorIndex, "embeddingService", embeddingService);
+            ReflectionTestUtils.setField(vectorIndex, "documentMapper", documentMapper);
+            ReflectionTestUtils.setField(vectorIndex, "chunkMapper", chunkMapper);
+            ReflectionTestUtils.setField(vectorIndex, "genieConfig", config);
+
+            lexicalIndex = new LexicalIndexService();
+            ReflectionTestUtils.setField(lexicalIndex, "documentMapper", documentMapper);
+            ReflectionTestUtils.setField(lexicalIndex, "chunkMapper", chunkMapper);
+            ReflectionTestUtils.setField(lexicalIndex, "genieConfig", config);
+            lexicalIndex.init();
+            while (!lexicalIndex.isReady()) {
+                Thread.sleep(10);
+            }
+
+            retrieval = new HybridRetrievalService();
+            ReflectionTestUtils.setField(retrieval, "lexicalIndexService", lexicalIndex);
+            ReflectionTestUtils.setField(retrieval, "vectorIndexService", vectorIndex);
+            ReflectionTestUtils.setField(retrieval, "reranker", new ChunkReranker());
+            ReflectionTestUtils.setField(retrieval, "genieConfig", config);
+            ReflectionTestUtils.setField(retrieval, "metrics", metrics());
+            retrieval.init();
+
+            knowledgeService = new KnowledgeService();
+            ReflectionTestUtils.setField(knowledgeService, "genieConfig", config);
+            ReflectionTestUtils.setField(knowledgeService, "tokenizerService", tokenizer(config));
+            ReflectionTestUtils.setField(knowledgeService, "vectorIndexService", vectorIndex);
+            ReflectionTestUtils.setField(knowledgeService, "lexicalIndexService", lexicalIndex);
+            ReflectionTestUtils.setField(knowledgeService, "retrievalService", retrieval);
+        }
+
+        /**
+         * Fills knowledge base {@code kbId} with {@code chunks} synthetic chunks of about
+         * {@code wordsPerChunk} words drawn from {@code vocabulary} (Zipf-like, so some terms are
+         * common and others rare), {@code chunksPerDocument} per document.
+         */
+        public void populate(long kbId, int chunks, int wordsPerChunk, int chunksPerDocument, List<String> vocabulary, long seed) {
+            Random random = new Random(seed);
+            long documentId = kbId * 1_000_000;
+            for (int start = 0; start < chunks; start += chunksPerDocument) {
+                Document document = new Document();
+                document.setId(++documentId);
+                document.setKbId(kbId);
+                document.setFilename("doc-" + documentId + ".md");
+                document.setIngestStatus(Document.STATUS_READY);
+                List<DocumentChunk> batch = new ArrayList<>();
+                List<String> texts = new ArrayList<>();
+                int offset = 0;
+                for (int i = 0; i < Math.min(chunksPerDocument, chunks - start); i++) {
+                    String text = sentence(random, vocabulary, wordsPerChunk);
+                    DocumentChunk chunk = new DocumentChunk();
+                    chunk.setDocumentId(documentId);
+                    chunk.setKbId(kbId);
+                    chunk.setChunkIndex(i);
+                    chunk.setContent(text);
+                    chunk.setStartOffset(offset);
+                    chunk.setEndOffset(offset + text.length());
+                    offset += text.length() + 1;
+                    batch.add(chunk);
+                    texts.add(text);
+                }
+                vectorIndex.addChunks(kbId, document, batch, embeddingService.embedAll(texts));
+                lexicalIndex.addChunks(kbId, document, batch);
+            }
+            vectorIndex.flush(kbId);
+            lexicalIndex.flush(kbId);
+        }
+
+        public static String sentence(Random random, List<String> vocabulary, int words) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                // Squaring a uniform draw skews towards the head of the vocabulary
+                double u = random.nextDouble();
+                String word = vocabulary.get((int) (u * u * vocabulary.size()));
+                if (text.length() > 0) text.append(' ');
+                text.append(word);
+            }
+            return text.append('.').toString();
+        }
+
+        @Override
+        public void close() {
+            retrieval.shutdown();
+            lexicalIndex.shutdown();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.promptgenie.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for an OpenAI-compatible provider so benchmarks measure our side of the call, not
+ * the network. Answers {@code POST /v1/chat/completions} with a fixed completion of
+ * {@code completionWords} words, as one JSON body or, when the request asks for {@code "stream":true},
+ * as one SSE frame per word followed by a usage frame and {@code [DONE]}. {@code latencyMillis}
+ * simulates provider think time.
+ */
+public class MockProviderServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "mock-provider");
+        t.setDaemon(true);
+        return t;
+    });
+    private final byte[] completionBody;
+    private final String[] words;
+    private final long latencyMillis;
+
+    public MockProviderServer(int completionWords, long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.words = new String[completionWords];
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < completionWords; i++) {
+            words[i] = (i == 0 ? "" : " ") + "word" + (i % 100);
+            content.append(words[i]);
+        }
+        this.completionBody = ("{\"id\":\"chatcmpl-bench\",\"object\":\"chat.completion\",\"model\":\"mock-model\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":" + completionWords + ",\"total_tokens\":" + (42 + completionWords) + "}}")
+                .getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Base URL to put in {@code genie.providers.openai.<name>.base-url}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = in.readAllBytes();
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean stream = new String(request, StandardCharsets.UTF_8).contains("\"stream\":true");
+        if (!stream) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, completionBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(completionBody);
+            }
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String word : words) {
+                out.write(("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + word + "\"}}]}\n\n").getBytes(StandardCharsets.UTF_8));
+            }
+            out.write(("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":" + words.length + "}}\n\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
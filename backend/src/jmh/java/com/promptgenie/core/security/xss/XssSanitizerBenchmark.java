@@ -0,0 +1,55 @@
+package com.promptgenie.core.security.xss;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link XssSanitizer#sanitize} on the inputs it sees in practice: plain prompt text (the common
+ * case), markdown-ish formatted text and hostile HTML, at a short and a long size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XssSanitizerBenchmark {
+
+    @Param({"plain", "formatted", "hostile"})
+    String kind;
+
+    @Param({"200", "20000"})
+    int chars;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        String unit = switch (kind) {
+            case "plain" -> "Write a product description for {{product}} aimed at {{audience}}. Keep it under 100 words. ";
+            case "formatted" -> "<p>Use <b>bold</b> for <i>key terms</i> and <a href=\"/docs\">link</a> the docs.</p><ul><li>one</li></ul>";
+            default -> "<img src=x onerror=alert(1)><script>steal()</script><a href=\"javascript:evil()\">x</a><div style=\"color:red\" onclick=\"y()\">z</div>";
+        };
+        StringBuilder text = new StringBuilder();
+        while (text.length() < chars) {
+            text.append(unit);
+        }
+        input = text.substring(0, chars);
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return XssSanitizer.sanitize(input);
+    }
+}
@@ -0,0 +1,157 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.bench.BenchmarkServices;
+import com.promptgenie.bench.MockProviderServer;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.prompt.entity.PromptChain;
+import com.promptgenie.service.PlaygroundService;
+import com.promptgenie.service.strategy.GenerationStrategy;
+import com.promptgenie.service.template.PromptTemplateCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChainService#executeChainGraph} on synthetic DAGs of {@code nodes} nodes. LLM nodes go
+ * through the real {@link PlaygroundService} and OpenAI-compatible strategy to a
+ * {@link MockProviderServer} answering after {@code providerLatencyMs}, so with zero latency the
+ * result is pure orchestration overhead and with some latency it shows how well independent
+ * branches overlap.
+ * <ul>
+ *   <li>{@code linear}: prompt, then one LLM node after another, then output</li>
+ *   <li>{@code fanout}: prompt feeding every LLM node in parallel, all feeding output</li>
+ *   <li>{@code layered}: layers four wide, each node depending on two nodes of the layer before</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChainGraphBenchmark {
+
+    private static final int LAYER_WIDTH = 4;
+
+    @Param({"linear", "fanout", "layered"})
+    String shape;
+
+    @Param({"10", "50"})
+    int nodes;
+
+    @Param({"0", "5"})
+    int providerLatencyMs;
+
+    private MockProviderServer server;
+    private ChainExecutor chainExecutor;
+    private ChainService chainService;
+    private PromptChain chain;
+    private final Map<String, Object> variables = Map.of("topic", "quarterly results");
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new MockProviderServer(32, providerLatencyMs);
+        GenieConfig config = BenchmarkServices.genieConfig(Files.createTempDirectory("bench-chain"));
+        List<GenerationStrategy> strategies = List.of(BenchmarkServices.openAiStrategy(BenchmarkServices.providers(server.baseUrl(), 1), config));
+        PlaygroundService playground = BenchmarkServices.playground(config, strategies, null);
+
+        chainExecutor = new ChainExecutor(config);
+        chainService = new ChainService();
+        ReflectionTestUtils.setField(chainService, "playgroundService", playground);
+        ReflectionTestUtils.setField(chainService, "chainExecutor", chainExecutor);
+        ReflectionTestUtils.setField(chainService, "templateCache", new PromptTemplateCache());
+        ReflectionTestUtils.setField(chainService, "planCache", new ChainPlanCache());
+        ReflectionTestUtils.setField(chainService, "nodeMemo", new ChainNodeMemo(config));
+        ReflectionTestUtils.setField(chainService, "metrics", BenchmarkServices.metrics());
+        // Shared with the playground so generation spans nest under node spans as in production
+        ReflectionTestUtils.setField(chainService, "tracingService", ReflectionTestUtils.getField(playground, "tracingService"));
+
+        chain = new PromptChain();
+        List<Map<String, Object>> graphNodes = new ArrayList<>();
+        List<Map<String, Object>> graphEdges = new ArrayList<>();
+        graphNodes.add(node("prompt", "promptNode", Map.of("label", "Prompt", "content", "Write a short note about {{topic}}.")));
+        List<String> previous = List.of("prompt");
+        List<String> all = new ArrayList<>();
+        int llmNodes = Math.max(1, nodes - 2);
+        for (int i = 0; i < llmNodes; i++) {
+            String id = "llm" + i;
+            graphNodes.add(node(id, "llmNode", Map.of("label", id, "modelName", BenchmarkServices.MODEL, "temperature", 0.7)));
+            all.add(id);
+            switch (shape) {
+                case "linear" -> {
+                    graphEdges.add(edge(previous.get(0), id));
+                    previous = List.of(id);
+                }
+                case "fanout" -> graphEdges.add(edge("prompt", id));
+                default -> {
+                    int layer = i / LAYER_WIDTH;
+                    int column = i % LAYER_WIDTH;
+                    if (layer == 0) {
+                        graphEdges.add(edge("prompt", id));
+                    } else {
+                        int base = (layer - 1) * LAYER_WIDTH;
+                        graphEdges.add(edge("llm" + (base + column), id));
+                        graphEdges.add(edge("llm" + (base + (column + 1) % LAYER_WIDTH), id));
+                    }
+                }
+            }
+        }
+        graphNodes.add(node("output", "outputNode", Map.of("label", "Output")));
+        List<String> sinks = switch (shape) {
+            case "linear" -> previous;
+            case "fanout" -> all;
+            default -> all.subList(((llmNodes - 1) / LAYER_WIDTH) * LAYER_WIDTH, llmNodes);
+        };
+        for (String sink : sinks) {
+            graphEdges.add(edge(sink, "output"));
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        chain.setReactFlowNodes(objectMapper.writeValueAsString(graphNodes));
+        chain.setReactFlowEdges(objectMapper.writeValueAsString(graphEdges));
+    }
+
+    @TearDown
+    public void tearDown() {
+        chainExecutor.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public Object executeChainGraph() {
+        return chainService.executeChainGraph(chain, variables);
+    }
+
+    private static Map<String, Object> node(String id, String type, Map<String, Object> data) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("type", type);
+        node.put("data", data);
+        return node;
+    }
+
+    private static Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("id", source + "-" + target);
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
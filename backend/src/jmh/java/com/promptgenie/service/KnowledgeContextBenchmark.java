@@ -0,0 +1,112 @@
+package com.promptgenie.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.bench.BenchmarkServices;
+import com.promptgenie.core.config.GenieConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KnowledgeService#getKnowledgeContext} over a synthetic knowledge base of {@code chunks}
+ * chunks, per retrieval mode. Chunk text and queries are drawn from the vocabulary of the bundled
+ * retrieval corpus ({@code src/test/resources/retrieval/benchmark-corpus.json}) so both the Chinese
+ * and the English analysis paths are exercised. Embeddings are the local hashed n-gram ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KnowledgeContextBenchmark {
+
+    private static final long KB_ID = 1L;
+
+    @Param({"1000", "10000"})
+    int chunks;
+
+    @Param({"hybrid", "vector", "lexical"})
+    String mode;
+
+    @Param({"4000"})
+    int tokenBudget;
+
+    private BenchmarkServices.Knowledge knowledge;
+    private List<String> queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        GenieConfig config = BenchmarkServices.genieConfig(Files.createTempDirectory("bench-kb"));
+        config.getRetrieval().setMode(mode);
+        knowledge = new BenchmarkServices.Knowledge(config);
+
+        List<String> vocabulary = new ArrayList<>();
+        queries = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream("/retrieval/benchmark-corpus.json")) {
+            JsonNode corpus = new ObjectMapper().readTree(in);
+            Set<String> words = new LinkedHashSet<>();
+            for (JsonNode document : corpus.get("documents")) {
+                for (JsonNode chunk : document.get("chunks")) {
+                    words.addAll(words(chunk.asText()));
+                }
+            }
+            vocabulary.addAll(words);
+            corpus.get("queries").forEach(q -> queries.add(q.get("query").asText()));
+        }
+        knowledge.populate(KB_ID, chunks, 80, 20, vocabulary, 42);
+        // Longer, prompt-like queries as well: the playground passes the whole rendered prompt
+        Random random = new Random(7);
+        for (int i = 0; i < 8; i++) {
+            queries.add(BenchmarkServices.Knowledge.sentence(random, vocabulary, 60));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        knowledge.close();
+    }
+
+    @Benchmark
+    public String getKnowledgeContext() {
+        String query = queries.get(next++ % queries.size());
+        return knowledge.knowledgeService.getKnowledgeContext(KB_ID, 1L, query, tokenBudget);
+    }
+
+    /** Latin words as they are, CJK runs cut into two-character words. */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String token : text.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (Character.UnicodeScript.of(token.codePointAt(0)) == Character.UnicodeScript.HAN) {
+                for (int i = 0; i + 1 < token.length(); i += 2) {
+                    words.add(token.substring(i, i + 2));
+                }
+            } else {
+                words.add(token.toLowerCase());
+            }
+        }
+        return words;
+    }
+}
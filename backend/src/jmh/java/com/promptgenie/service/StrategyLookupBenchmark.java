@@ -0,0 +1,68 @@
+package com.promptgenie.service;
+
+import com.promptgenie.bench.BenchmarkServices;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.service.strategy.GenerationStrategy;
+import com.promptgenie.service.strategy.ImageGenerationStrategy;
+import com.promptgenie.service.strategy.ProviderConcurrencyLimiter;
+import com.promptgenie.service.strategy.TextGenerationStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strategy resolution done before every generation: the registered strategies in their Spring order
+ * (OpenAI-compatible first), resolving a model of the last configured provider, a DashScope text
+ * model that falls through every provider, and an image model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyLookupBenchmark {
+
+    @Param({"1", "20"})
+    int providers;
+
+    private PlaygroundService playground;
+
+    @Setup
+    public void setUp() throws Exception {
+        GenieConfig config = BenchmarkServices.genieConfig(Files.createTempDirectory("bench-strategy"));
+        ProviderConcurrencyLimiter limiter = new ProviderConcurrencyLimiter();
+        List<GenerationStrategy> strategies = List.of(
+                BenchmarkServices.openAiStrategy(BenchmarkServices.providers("http://127.0.0.1:9/v1/", providers), config),
+                new TextGenerationStrategy(config, limiter),
+                new ImageGenerationStrategy(config, limiter));
+        playground = BenchmarkServices.playground(config, strategies, null);
+    }
+
+    @Benchmark
+    public GenerationStrategy openAiCompatibleModel() {
+        return playground.resolveStrategy("text", BenchmarkServices.MODEL);
+    }
+
+    @Benchmark
+    public GenerationStrategy dashScopeTextModel() {
+        return playground.resolveStrategy("text", "qwen-turbo");
+    }
+
+    @Benchmark
+    public GenerationStrategy imageModel() {
+        return playground.resolveStrategy("image", "wanx-v1");
+    }
+}
@@ -0,0 +1,97 @@
+package com.promptgenie.service.strategy;
+
+import com.promptgenie.bench.BenchmarkServices;
+import com.promptgenie.bench.MockProviderServer;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.config.ProvidersConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OpenAICompatibleStrategy} against a local {@link MockProviderServer}: request JSON building,
+ * response JSON parsing, and full blocking and streaming round trips (which add HTTP, the
+ * concurrency limiter and SSE parsing). The prompt is roughly {@code promptChars} characters and the
+ * completion {@code completionWords} words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenAICompatibleStrategyBenchmark {
+
+    @Param({"16", "512"})
+    int completionWords;
+
+    @Param({"2000"})
+    int promptChars;
+
+    private MockProviderServer server;
+    private OpenAICompatibleStrategy strategy;
+    private ProvidersConfig.OpenAiConfig provider;
+    private String prompt;
+    private String responseBody;
+    private final Map<String, Object> parameters = Map.of("temperature", 0.7, "max_tokens", 1024);
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new MockProviderServer(completionWords, 0);
+        GenieConfig config = BenchmarkServices.genieConfig(Files.createTempDirectory("bench-openai"));
+        ProvidersConfig providers = BenchmarkServices.providers(server.baseUrl(), 1);
+        provider = providers.getOpenai().values().iterator().next();
+        strategy = BenchmarkServices.openAiStrategy(providers, config);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < promptChars) {
+            text.append("Summarise the following meeting notes in three bullet points, \"quoted\" and\ttabbed. ");
+        }
+        prompt = text.toString();
+        // Fetched once so parseBody sees exactly what the server sends
+        responseBody = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(server.baseUrl() + "chat/completions"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public HttpRequest buildRequest() throws Exception {
+        return strategy.buildRequest(provider, prompt, BenchmarkServices.MODEL, parameters, false);
+    }
+
+    @Benchmark
+    public GenerationOutput parseResponse() {
+        return strategy.parseBody(responseBody);
+    }
+
+    @Benchmark
+    public GenerationOutput generate() throws Exception {
+        return strategy.generate(prompt, BenchmarkServices.MODEL, parameters);
+    }
+
+    @Benchmark
+    public GenerationOutput generateStream(Blackhole blackhole) throws Exception {
+        return strategy.generateStream(prompt, BenchmarkServices.MODEL, parameters, blackhole::consume);
+    }
+}
@@ -0,0 +1,83 @@
+package com.promptgenie.service.template;
+
+import com.promptgenie.prompt.entity.Prompt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Variable substitution as done for every playground, batch, evaluation and chain call: compiling a
+ * template from scratch (ad-hoc text), rendering a saved prompt through {@link PromptTemplateCache}
+ * (the batch/evaluation/chain path), and rendering an already compiled template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptTemplateBenchmark {
+
+    @Param({"4", "32"})
+    int variables;
+
+    @Param({"500", "8000"})
+    int templateChars;
+
+    private String source;
+    private Map<String, Object> values;
+    private PromptTemplate compiled;
+    private PromptTemplateCache cache;
+    private Prompt prompt;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        values = new HashMap<>();
+        int filler = Math.max(1, templateChars / variables);
+        for (int i = 0; i < variables; i++) {
+            text.append("Section ").append(i).append(": ");
+            while (text.length() < (i + 1) * filler) {
+                text.append("lorem ipsum dolor sit amet ");
+            }
+            text.append("{{var").append(i).append("}}\n");
+            values.put("var" + i, "value number " + i + " with $ and \\ characters");
+        }
+        source = text.toString();
+        compiled = PromptTemplate.compile(source);
+        cache = new PromptTemplateCache();
+        prompt = new Prompt();
+        prompt.setId(1L);
+        prompt.setContent(source);
+        prompt.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        cache.forPrompt(prompt);
+    }
+
+    @Benchmark
+    public String compileAndRender() {
+        return PromptTemplate.compile(source).render(values);
+    }
+
+    @Benchmark
+    public String cachedRender() {
+        return cache.forPrompt(prompt).render(values);
+    }
+
+    @Benchmark
+    public String renderCompiled() {
+        return compiled.render(values);
+    }
+}
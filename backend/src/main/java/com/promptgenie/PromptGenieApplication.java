@@ -3,11 +3,13 @@ package com.promptgenie;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.cache.annotation.EnableCaching;
 import org.mybatis.spring.annotation.MapperScan;
 
 @SpringBootApplication(scanBasePackages = {"com.promptgenie"})
 @EnableAsync
+@EnableScheduling
 @EnableCaching
 @MapperScan({"com.promptgenie.mapper", "com.promptgenie.auth.mapper", "com.promptgenie.prompt.mapper", "com.promptgenie.workspace.mapper", "com.promptgenie.evaluation.mapper"})
 public class PromptGenieApplication {
@@ -10,7 +10,9 @@ import com.promptgenie.service.AgentExecutorService;
 import com.promptgenie.service.AgentService;
 import com.promptgenie.service.ToolService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.Map;
@@ -148,6 +150,16 @@ public class AgentController {
         }
     }
     
+    // 查询执行状态（暂停、完成或失败后仍保留一段时间）
+    @GetMapping("/runs/{stateId}")
+    public AgentState getRun(@PathVariable String stateId) {
+        AgentState state = agentExecutorService.getRun(stateId);
+        if (state == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Agent run not found or expired");
+        }
+        return state;
+    }
+    
     // 创建智能体配置
     @PostMapping("/{id}/config")
     public AgentConfig createConfig(@PathVariable Long id, @RequestBody Map<String, Object> configData) {
@@ -57,11 +57,28 @@ public class BatchController {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
         }
         
+        Integer requestedParallelism = request.get("parallelism") != null ? Integer.valueOf(request.get("parallelism").toString()) : null;
+        int parallelism = quotaService.resolveBatchParallelism(userId, requestedParallelism);
+        boolean ordered = Boolean.parseBoolean(String.valueOf(request.getOrDefault("ordered", false)));
+        
         // Timeout 1 hour for batch
         SseEmitter emitter = new SseEmitter(3600000L);
         
-        batchService.processBatch(promptId, rows, emitter);
+        String batchId = batchService.registerBatch(userId);
+        batchService.processBatch(batchId, promptId, rows, emitter, parallelism, ordered);
         
         return emitter;
     }
+
+    @PostMapping("/{batchId}/cancel")
+    public Map<String, Object> cancelBatch(@PathVariable String batchId) {
+        Long userId = userContextService.getCurrentUserId();
+        if (userId == null) {
+             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found");
+        }
+        if (!batchService.cancelBatch(batchId, userId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Batch not found or already finished");
+        }
+        return Map.of("batchId", batchId, "cancelled", true);
+    }
 }
@@ -4,6 +4,8 @@ import com.promptgenie.entity.Document;
 import com.promptgenie.entity.KnowledgeBase;
 import com.promptgenie.auth.entity.User;
 import com.promptgenie.service.KnowledgeService;
+import com.promptgenie.service.retrieval.HybridRetrievalService;
+import com.promptgenie.service.retrieval.RetrievalResult;
 import com.promptgenie.auth.service.UserService;
 import com.promptgenie.workspace.service.WorkspaceService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,8 +83,11 @@ public class KnowledgeController {
     @PostMapping("/{id}/documents")
     public ResponseEntity<?> uploadDocument(@PathVariable Long id, @RequestParam("file") MultipartFile file) {
         try {
+            // Parsing, chunking and embedding continue in the background; poll the status endpoint
             Document doc = knowledgeService.uploadDocument(id, file);
-            return ResponseEntity.ok(doc);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(doc);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
         } catch (IOException e) {
             return ResponseEntity.badRequest().body("Failed to upload file: " + e.getMessage());
         }
@@ -93,11 +98,55 @@ public class KnowledgeController {
         return knowledgeService.getDocuments(id);
     }
 
+    @GetMapping("/{id}/search")
+    public List<RetrievalResult> search(@PathVariable Long id,
+                                        @RequestParam("q") String query,
+                                        @RequestParam(defaultValue = "5") int k,
+                                        @RequestParam(required = false) String mode,
+                                        @RequestParam(defaultValue = "true") boolean rerank) {
+        HybridRetrievalService.Mode retrievalMode;
+        try {
+            retrievalMode = HybridRetrievalService.Mode.from(mode);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "mode must be hybrid, lexical or vector");
+        }
+        // Hits carry chunk text, so only readers of the knowledge base may search it
+        requireReadableKb(id);
+        return knowledgeService.search(id, query, Math.min(Math.max(k, 1), 50), retrievalMode, rerank);
+    }
+
+    @GetMapping("/documents/{docId}/status")
+    public Map<String, Object> getIngestStatus(@PathVariable Long docId) {
+        Document document = knowledgeService.getDocument(docId);
+        if (document == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        requireReadableKb(document.getKbId());
+        Map<String, Object> status = knowledgeService.getIngestStatus(docId);
+        if (status == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return status;
+    }
+
     @DeleteMapping("/documents/{docId}")
     public void deleteDocument(@PathVariable Long docId) {
         knowledgeService.deleteDocument(docId);
     }
 
+    /**
+     * The knowledge base if the caller owns it or may view its workspace.
+     */
+    private KnowledgeBase requireReadableKb(Long id) {
+        Long userId = getCurrentUserId();
+        if (userId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found");
+        }
+        KnowledgeBase kb = knowledgeService.getKnowledgeBase(id);
+        if (kb == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        if (!userId.equals(kb.getUserId())
+                && (kb.getWorkspaceId() == null || !workspaceService.hasAccess(userId, kb.getWorkspaceId(), "viewer"))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You don't have access to this knowledge base");
+        }
+        return kb;
+    }
+
     private Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getName() != null && !"anonymousUser".equals(auth.getName())) {
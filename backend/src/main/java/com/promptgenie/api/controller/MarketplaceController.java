@@ -56,6 +56,7 @@ public class MarketplaceController {
         prompt.setIsPremium(isPremium != null ? isPremium : false);
         
         promptService.updateById(prompt);
+        promptService.catalogChanged(id);
     }
     
     @GetMapping("/my-premium")
@@ -2,14 +2,21 @@ package com.promptgenie.api.controller;
 
 import com.promptgenie.core.config.GenieConfig;
 import com.promptgenie.core.config.ProvidersConfig;
+import com.promptgenie.entity.GenerationTask;
 import com.promptgenie.entity.PlaygroundHistory;
 import com.promptgenie.auth.entity.User;
 import com.promptgenie.service.PlaygroundService;
+import com.promptgenie.service.cache.GenerationCache;
+import com.promptgenie.service.task.GenerationTaskService;
 import com.promptgenie.auth.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -33,6 +40,12 @@ public class PlaygroundController {
     @Autowired
     private ProvidersConfig providersConfig;
 
+    @Autowired
+    private GenerationCache generationCache;
+
+    @Autowired
+    private GenerationTaskService generationTaskService;
+
     @GetMapping("/models")
     public Map<String, List<Map<String, String>>> getModels() {
         Map<String, Map<String, String>> models = new LinkedHashMap<>();
@@ -111,10 +124,67 @@ public class PlaygroundController {
         Map<String, Object> parameters = (Map<String, Object>) request.get("parameters");
         
         Long userId = getCurrentUserId();
+        if (playgroundService.isAsyncTask(modelType, modelName)) {
+            // Video and other provider-side tasks: answer with the task id, completion comes via
+            // /tasks/{id}/events or the optional webhook
+            String webhookUrl = (String) request.get("webhookUrl");
+            GenerationTask task;
+            try {
+                task = playgroundService.startTask(prompt, variables, modelType, modelName, parameters, userId, webhookUrl);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            return Map.of("result", playgroundService.taskMessage(task), "taskId", String.valueOf(task.getId()), "status", task.getStatus());
+        }
         String result = playgroundService.runPrompt(prompt, variables, modelType, modelName, parameters, userId);
         return Map.of("result", result);
     }
 
+    @GetMapping("/tasks/{taskId}")
+    public GenerationTask getTask(@PathVariable Long taskId) {
+        return findOwnTask(taskId);
+    }
+
+    @GetMapping(value = "/tasks/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTask(@PathVariable Long taskId) {
+        return generationTaskService.subscribe(findOwnTask(taskId));
+    }
+
+    private GenerationTask findOwnTask(Long taskId) {
+        GenerationTask task = generationTaskService.getTask(taskId);
+        if (task == null || (task.getUserId() != null && !task.getUserId().equals(getCurrentUserId()))) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
+        }
+        return task;
+    }
+
+    @PostMapping("/estimate")
+    public Map<String, Object> estimatePrompt(@RequestBody Map<String, Object> request) {
+        String prompt = (String) request.get("prompt");
+        Map<String, Object> variables = (Map<String, Object>) request.get("variables");
+        String modelType = (String) request.getOrDefault("modelType", "text");
+        String modelName = (String) request.getOrDefault("modelName", "");
+        Map<String, Object> parameters = (Map<String, Object>) request.get("parameters");
+
+        Long userId = getCurrentUserId();
+        return playgroundService.estimatePrompt(prompt, variables, modelType, modelName, parameters, userId);
+    }
+
+    @PostMapping(value = "/run/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter runPromptStream(@RequestBody Map<String, Object> request) {
+        String prompt = (String) request.get("prompt");
+        Map<String, Object> variables = (Map<String, Object>) request.get("variables");
+        String modelType = (String) request.getOrDefault("modelType", "text");
+        String modelName = (String) request.getOrDefault("modelName", "");
+        Map<String, Object> parameters = (Map<String, Object>) request.get("parameters");
+
+        // Resolve the user on the request thread; the security context is not propagated to @Async
+        Long userId = getCurrentUserId();
+        SseEmitter emitter = new SseEmitter(600000L);
+        playgroundService.streamPrompt(prompt, variables, modelType, modelName, parameters, userId, emitter);
+        return emitter;
+    }
+
     @GetMapping("/history")
     public List<PlaygroundHistory> getHistory() {
         Long userId = getCurrentUserId();
@@ -129,6 +199,12 @@ public class PlaygroundController {
         return playgroundService.getUsageStats(userId);
     }
 
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats() {
+        if (getCurrentUserId() == null) return Map.of();
+        return generationCache.snapshot();
+    }
+
     private Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getName() != null && !"anonymousUser".equals(auth.getName())) {
@@ -0,0 +1,57 @@
+package com.promptgenie.api.controller;
+
+import com.promptgenie.service.AdminGuard;
+import com.promptgenie.service.LLMTracingService;
+import com.promptgenie.service.UserContextService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read access to the in-memory trace store for admins. Traces span users, so this is not exposed
+ * to regular accounts.
+ */
+@RestController
+@RequestMapping("/admin/traces")
+@CrossOrigin(origins = "*")
+public class TraceController {
+
+    @Autowired
+    private LLMTracingService tracingService;
+
+    @Autowired
+    private UserContextService userContextService;
+
+    @Autowired
+    private AdminGuard adminGuard;
+
+    @GetMapping
+    public List<LLMTracingService.Trace> recent(@RequestParam(defaultValue = "20") int limit) {
+        requireAdmin();
+        return tracingService.recentTraces(Math.max(1, Math.min(limit, 200)));
+    }
+
+    @GetMapping("/{traceId}")
+    public LLMTracingService.Trace get(@PathVariable String traceId) {
+        requireAdmin();
+        LLMTracingService.Trace trace = tracingService.getTrace(traceId);
+        if (trace == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Trace not found or no longer retained");
+        return trace;
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        requireAdmin();
+        return tracingService.snapshot();
+    }
+
+    private void requireAdmin() {
+        if (!adminGuard.isAdmin(userContextService.getCurrentUser())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin only");
+        }
+    }
+}
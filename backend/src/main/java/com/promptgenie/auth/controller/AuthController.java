@@ -5,6 +5,7 @@ import com.promptgenie.dto.RegisterRequest;
 import com.promptgenie.auth.entity.User;
 import com.promptgenie.core.security.JwtUtil;
 import com.promptgenie.service.CaptchaService;
+import com.promptgenie.service.UserContextService;
 import com.promptgenie.auth.service.UserService;
 import com.promptgenie.core.exception.UserAlreadyExistsException;
 import jakarta.validation.Valid;
@@ -47,6 +48,9 @@ public class AuthController {
     @Autowired
     private CaptchaService captchaService;
 
+    @Autowired
+    private UserContextService userContextService;
+
 
 
     @GetMapping("/captcha")
@@ -120,11 +124,8 @@ public class AuthController {
     @GetMapping("/me")
     public User getCurrentUser() {
         try {
-            // Get the current user from the security context
-            org.springframework.security.core.userdetails.UserDetails userDetails = (org.springframework.security.core.userdetails.UserDetails) 
-                org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-            String email = userDetails.getUsername();
-            User user = userService.findByEmail(email);
+            // Resolved once per request by the JWT filter
+            User user = userContextService.getCurrentUser();
             if (user == null) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
             }
@@ -3,6 +3,8 @@ package com.promptgenie.auth.service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.promptgenie.auth.entity.User;
 import com.promptgenie.auth.mapper.UserMapper;
+import com.promptgenie.core.security.AuthenticatedPrincipalCache;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
@@ -10,6 +12,24 @@ import java.util.UUID;
 
 @Service
 public class UserService extends ServiceImpl<UserMapper, User> {
+
+    @Autowired
+    private AuthenticatedPrincipalCache principalCache;
+
+    @Override
+    public boolean updateById(User user) {
+        boolean updated = super.updateById(user);
+        // Cached tokens carry a snapshot of the user; drop them so plan/role/key changes apply at once
+        if (updated) principalCache.evictUser(user.getId());
+        return updated;
+    }
+
+    @Override
+    public boolean removeById(java.io.Serializable id) {
+        boolean removed = super.removeById(id);
+        if (removed) principalCache.evictUser(Long.valueOf(String.valueOf(id)));
+        return removed;
+    }
     
     public User findByEmail(String email) {
         return baseMapper.selectByEmail(email);
@@ -4,6 +4,7 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
@@ -14,12 +15,28 @@ public class GenieConfig {
     private DashScopeConfig dashscope;
     private PricingConfig pricing;
     private QuotaConfig quota;
+    private EmbeddingConfig embedding = new EmbeddingConfig();
+    private ChainExecutionConfig chain = new ChainExecutionConfig();
+    private ResponseCacheConfig responseCache = new ResponseCacheConfig();
+    private EvaluationConfig evaluation = new EvaluationConfig();
+    private TokenizerConfig tokenizer = new TokenizerConfig();
+    private TaskConfig tasks = new TaskConfig();
+    private CatalogConfig catalog = new CatalogConfig();
+    private SearchConfig search = new SearchConfig();
+    private CounterConfig counters = new CounterConfig();
+    private PrincipalCacheConfig principalCache = new PrincipalCacheConfig();
+    private IngestConfig ingest = new IngestConfig();
+    private RetrievalConfig retrieval = new RetrievalConfig();
+    private TracingConfig tracing = new TracingConfig();
+    private AgentRunConfig agentRuns = new AgentRunConfig();
 
     @Data
     public static class DashScopeConfig {
         private String videoSubmitUrl;
         private String taskStatusUrl;
         private Map<String, Map<String, String>> models;
+        private Integer maxConcurrency; // in-flight SDK calls, default 16
+        private Integer maxQueue; // calls waiting for a slot, default 256
     }
 
     @Data
@@ -45,6 +62,7 @@ public class GenieConfig {
     public static class QuotaLimits {
         private Integer dailyPrompts; // e.g. 50
         private Integer maxBatchRows; // e.g. 10 vs 1000
+        private Integer maxBatchParallelism; // rows in flight per batch, e.g. 2 vs 16
         private Integer maxChainSteps; // e.g. 3 vs 20
         private Integer maxEvaluationRows; // e.g. 10 vs 500
         
@@ -52,4 +70,147 @@ public class GenieConfig {
         private Integer maxKbDocs; // e.g. 3 vs 50
         private Integer maxKbContextChars; // e.g. 2000 vs 50000
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class EmbeddingConfig {
+        private String provider = "local"; // local (hashed n-grams) or openai (Spring AI EmbeddingClient)
+        private Integer dimension = 384; // only used by the local provider
+        private Integer topK = 5;
+        private String indexDir = "data/vector-index";
+    }
+
+    @Data
+    public static class ChainExecutionConfig {
+        private Integer maxThreads = 32; // global cap on concurrently executing chain nodes
+        private Integer queueCapacity = 1000; // nodes waiting for a thread before submissions are rejected
+        private Integer maxConcurrencyPerChain = 8; // nodes of a single execution running at once
+        private Long nodeTimeoutSeconds = 120L;
+        private Integer nodeMaxRetries = 2; // retries of transient provider errors for nodes without an error retry node
+        private Long nodeRetryBaseDelayMs = 500L; // doubled after every attempt
+        private Long nodeRetryMaxDelayMs = 30000L;
+        private Boolean memoEnabled = true; // reuse node results when a node and its inputs are unchanged
+        private Integer memoMaxEntries = 10000;
+        private Long memoTtlSeconds = 3600L;
+    }
+
+    @Data
+    public static class ResponseCacheConfig {
+        private Boolean enabled = true; // applies to temperature 0 or parameters.cache=true
+        private Integer maxEntries = 5000;
+        private Long ttlSeconds = 86400L;
+        private Boolean diskSpill = false; // write LRU-evicted entries to spillDir instead of dropping them
+        private String spillDir = "data/generation-cache";
+    }
+
+    @Data
+    public static class EvaluationConfig {
+        private Integer chunkSize = 100; // dataset rows read ahead per job before the reader blocks
+        private Integer workerThreads = 8; // rows evaluated at once across all jobs
+        private Integer perJobParallelism = 4;
+        private Integer resultBatchSize = 50; // results per JDBC batch insert (and progress update)
+        private Map<String, Double> modelRateLimits; // requests per second by model name
+        private Double defaultModelRateLimit; // null = unlimited
+    }
+
+    @Data
+    public static class TokenizerConfig {
+        private String vocabPath; // tiktoken rank file, e.g. classpath:tokenizer/cl100k_base.tiktoken; estimated counts without it
+        private Integer defaultContextWindow = 8192;
+        private Integer reservedOutputTokens = 1024; // kept free for the answer when max_tokens is not set
+        private Map<String, Integer> contextWindows = new HashMap<>(Map.of(
+                "qwen-turbo", 8192,
+                "qwen-plus", 32768,
+                "qwen-max", 8192,
+                "gpt-3.5-turbo", 16385,
+                "gpt-4", 8192,
+                "gpt-4-turbo", 128000,
+                "gpt-4o", 128000,
+                "deepseek-chat", 65536));
+    }
+
+    @Data
+    public static class TaskConfig {
+        private Long pollIntervalMs = 10000L; // one poll of all running provider tasks per interval
+        private Integer pollBatchSize = 200; // running tasks checked per poll, oldest first
+        private Integer statusTimeoutSeconds = 30;
+        private Integer maxWaitMinutes = 30; // running tasks older than this are marked TIMEOUT
+    }
+
+    @Data
+    public static class CatalogConfig {
+        private Integer defaultPageSize = 20;
+        private Integer maxPageSize = 100;
+        private Integer localMaxEntries = 5000; // pages and facet lists kept in the in-process tier
+        private Long localTtlSeconds = 30L;
+        private Boolean redisEnabled = false; // shared second tier plus cross-instance invalidation
+        private Long redisTtlSeconds = 300L;
+    }
+
+    @Data
+    public static class SearchConfig {
+        private String indexDir = "data/prompt-index";
+        private Integer maxResults = 1000; // deepest hit reachable through paging
+        private Boolean fuzzy = true; // typo tolerance for Latin-script terms of 4+ characters
+    }
+
+    @Data
+    public static class CounterConfig {
+        private Long flushIntervalMs = 5000L; // pending likes/usage/forks deltas are written to prompts this often
+        private Long walSyncIntervalMs = 200L; // at most this much of not-yet-flushed deltas is lost on a crash
+        private String walDir = "data/counter-wal";
+        private Integer batchSize = 500; // prompts per UPDATE statement
+        private Integer appliedRetentionDays = 7;
+    }
+
+    @Data
+    public static class PrincipalCacheConfig {
+        private Integer maxEntries = 10000;
+        private Integer ttlSeconds = 60; // upper bound on how long plan/role changes of other nodes take to show
+    }
+
+    @Data
+    public static class IngestConfig {
+        private Integer workers = 2; // documents parsed, chunked and embedded at once
+        private Integer queueCapacity = 32; // uploads waiting for a worker before new ones are refused
+        private String spoolDir = "data/ingest-spool"; // uploads are streamed here, then parsed from disk
+        private Integer chunkMaxTokens = 400;
+        private Integer chunkOverlapTokens = 60;
+        private Integer embedBatchSize = 32; // chunks per embedding call and per chunk insert batch
+    }
+
+    @Data
+    public static class RetrievalConfig {
+        private String mode = "hybrid"; // hybrid, lexical or vector
+        private String lexicalIndexDir = "data/kb-lexical-index";
+        private Integer candidates = 50; // hits taken from each retriever before fusion
+        private Integer rrfK = 60; // reciprocal-rank fusion constant; larger flattens the rank curve
+        private Boolean rerank = true;
+        private Integer rerankTopN = 20; // fused candidates re-scored by the local reranker
+        private Integer threads = 4; // lexical searches run here while the caller runs the vector search
+    }
+
+    @Data
+    public static class TracingConfig {
+        private Boolean enabled = true;
+        private Double headSampleRate = 1.0; // share of traces kept, decided when the trace starts
+        private Boolean keepErrors = true; // tail policy: traces with an error span are kept even if not head-sampled
+        private Long slowThresholdMs = 10000L; // tail policy: so are traces at least this long (0 disables)
+        private Integer capacity = 2000; // finished traces kept in the ring buffer
+        private Integer maxActiveTraces = 1000; // traces still running; new ones beyond this are not recorded
+        private Integer maxSpansPerTrace = 256;
+        private Integer maxEventsPerSpan = 32;
+        private Long maxTraceAgeMs = 600000L; // traces whose spans were never ended are closed after this
+        private String exportFile; // OTLP JSON lines; export is off when empty
+        private Integer exportQueueCapacity = 1000; // finished traces waiting for the exporter; more are dropped
+        private Long exportMaxFileBytes = 104857600L; // the file is rotated to <file>.1 at this size
+    }
+
+    @Data
+    public static class AgentRunConfig {
+        private Integer hotMaxEntries = 10000; // run snapshots kept in memory in front of agent_runs
+        private Integer hotTtlMinutes = 30; // idle snapshots leave the hot tier after this, the row stays
+        private Long pausedTtlHours = 168L; // runs waiting for approval can be resumed this long
+        private Long finishedTtlHours = 24L; // completed, failed and abandoned running runs
+        private Long sweepIntervalMs = 3600000L;
+    }
+}
@@ -20,5 +20,7 @@ public class ProvidersConfig {
         private String apiKey;
         private List<String> models;
         private String modelType; // text, image, etc.
+        private Integer maxConcurrency; // in-flight requests, default 16
+        private Integer maxQueue; // requests waiting for a slot, default 256
     }
 }
\ No newline at end of file
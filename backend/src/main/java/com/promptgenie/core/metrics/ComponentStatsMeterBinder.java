@@ -0,0 +1,169 @@
+package com.promptgenie.core.metrics;
+
+import com.promptgenie.core.security.AuthenticatedPrincipalCache;
+import com.promptgenie.evaluation.service.EvaluationScheduler;
+import com.promptgenie.prompt.service.ChainExecutor;
+import com.promptgenie.prompt.service.ChainNodeMemo;
+import com.promptgenie.prompt.service.ChainPlanCache;
+import com.promptgenie.prompt.service.PromptCounterService;
+import com.promptgenie.prompt.service.PublicCatalogCache;
+import com.promptgenie.service.LLMTracingService;
+import com.promptgenie.service.agent.AgentGraphCache;
+import com.promptgenie.service.agent.AgentRunStore;
+import com.promptgenie.service.cache.GenerationCache;
+import com.promptgenie.service.ingest.DocumentIngestionService;
+import com.promptgenie.service.strategy.ProviderConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the {@code snapshot()} maps of the pools and caches as gauges, one meter per component
+ * with a {@code stat} tag per numeric entry (e.g. {@code genie.chain.executor{stat="queueDepth"}}).
+ * A scrape reads every stat of a component, so each snapshot is taken at most once per second.
+ * Provider bulkheads are created on first use and are picked up by a periodic refresh.
+ */
+@Slf4j
+@Component
+public class ComponentStatsMeterBinder implements MeterBinder {
+
+    private static final long SNAPSHOT_TTL_NANOS = 1_000_000_000L;
+
+    @Autowired
+    private ChainExecutor chainExecutor;
+
+    @Autowired
+    private ChainPlanCache chainPlanCache;
+
+    @Autowired
+    private ChainNodeMemo chainNodeMemo;
+
+    @Autowired
+    private EvaluationScheduler evaluationScheduler;
+
+    @Autowired
+    private GenerationCache generationCache;
+
+    @Autowired
+    private DocumentIngestionService documentIngestionService;
+
+    @Autowired
+    private PublicCatalogCache publicCatalogCache;
+
+    @Autowired
+    private PromptCounterService promptCounterService;
+
+    @Autowired
+    private AuthenticatedPrincipalCache principalCache;
+
+    @Autowired
+    private ProviderConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private LLMTracingService tracingService;
+
+    @Autowired
+    private AgentGraphCache agentGraphCache;
+
+    @Autowired
+    private AgentRunStore agentRunStore;
+
+    private final Set<String> boundProviders = ConcurrentHashMap.newKeySet();
+    private volatile MeterRegistry registry;
+    private volatile CachedSnapshot providerStats;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        bind(registry, "genie.chain.executor", chainExecutor::snapshot);
+        bind(registry, "genie.chain.plan.cache", chainPlanCache::snapshot);
+        bind(registry, "genie.chain.node.memo", chainNodeMemo::snapshot);
+        bind(registry, "genie.evaluation.scheduler", evaluationScheduler::snapshot);
+        bind(registry, "genie.generation.cache", generationCache::snapshot);
+        bind(registry, "genie.kb.ingest", documentIngestionService::snapshot);
+        bind(registry, "genie.catalog.cache", publicCatalogCache::snapshot);
+        bind(registry, "genie.prompt.counters", promptCounterService::snapshot);
+        bind(registry, "genie.auth.principal.cache", principalCache::snapshot);
+        bind(registry, "genie.tracing", tracingService::snapshot);
+        bind(registry, "genie.agent.graph.cache", agentGraphCache::snapshot);
+        bind(registry, "genie.agent.runs", agentRunStore::snapshot);
+        providerStats = new CachedSnapshot(concurrencyLimiter::snapshot);
+        refreshProviders();
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void refreshProviders() {
+        MeterRegistry registry = this.registry;
+        if (registry == null) return;
+        for (String provider : concurrencyLimiter.snapshot().keySet()) {
+            if (!boundProviders.add(provider)) continue;
+            for (String stat : new String[]{"inFlight", "queued", "maxInFlight", "maxQueue"}) {
+                Gauge.builder("genie.provider.bulkhead", providerStats, s -> providerStat(s, provider, stat))
+                        .description("Provider bulkhead occupancy and limits")
+                        .tag("provider", provider)
+                        .tag("stat", stat)
+                        .register(registry);
+            }
+        }
+    }
+
+    private void bind(MeterRegistry registry, String name, Supplier<Map<String, Object>> snapshot) {
+        CachedSnapshot cached = new CachedSnapshot(snapshot::get);
+        for (Map.Entry<String, ?> entry : cached.get().entrySet()) {
+            if (!(entry.getValue() instanceof Number)) continue;
+            String stat = entry.getKey();
+            // Nothing else references the snapshot holder, so the gauge must not hold it weakly
+            Gauge.builder(name, cached, s -> s.value(stat))
+                    .tag("stat", stat)
+                    .strongReference(true)
+                    .register(registry);
+        }
+    }
+
+    private static double providerStat(CachedSnapshot snapshot, String provider, String stat) {
+        Object stats = snapshot.get().get(provider);
+        if (stats instanceof Map<?, ?> map && map.get(stat) instanceof Number number) {
+            return number.doubleValue();
+        }
+        return Double.NaN;
+    }
+
+    private static final class CachedSnapshot {
+        private final Supplier<Map<String, ?>> source;
+        private Map<String, ?> value = Map.of();
+        private long takenAt;
+        private boolean taken;
+
+        CachedSnapshot(Supplier<Map<String, ?>> source) {
+            this.source = source;
+        }
+
+        synchronized Map<String, ?> get() {
+            long now = System.nanoTime();
+            if (!taken || now - takenAt > SNAPSHOT_TTL_NANOS) {
+                try {
+                    value = source.get();
+                } catch (Exception e) {
+                    log.warn("Failed to read component stats: {}", e.getMessage());
+                }
+                takenAt = now;
+                taken = true;
+            }
+            return value;
+        }
+
+        double value(String stat) {
+            Object value = get().get(stat);
+            return value instanceof Number number ? number.doubleValue() : Double.NaN;
+        }
+    }
+}
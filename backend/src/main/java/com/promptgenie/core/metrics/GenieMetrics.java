@@ -0,0 +1,197 @@
+package com.promptgenie.core.metrics;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.config.ProvidersConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the generation, retrieval and chain hot paths. Every meter name starts with
+ * {@code genie.}, which {@code management.metrics.distribution} in application.yml matches to
+ * publish p50/p95/p99 and Prometheus histogram buckets for all of them.
+ * <p>
+ * Tag values are limited to configured providers, configured models and fixed status words so the
+ * number of series stays bounded whatever callers send. Strategies accept any model name with a
+ * supported prefix, so model names outside the configured and built-in lists are tagged {@link #OTHER}.
+ */
+@Component
+public class GenieMetrics {
+
+    public static final String GENERATION = "genie.generation";
+    public static final String GENERATION_TOKENS = "genie.generation.tokens";
+    public static final String GENERATION_COST = "genie.generation.cost";
+    public static final String RETRIEVAL = "genie.kb.retrieval";
+    public static final String RETRIEVAL_HITS = "genie.kb.retrieval.hits";
+    public static final String CHAIN_NODE = "genie.chain.node";
+    public static final String BATCH_ROW = "genie.batch.row";
+    public static final String EVALUATION_ROW = "genie.evaluation.row";
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String CACHE_HIT = "cache_hit";
+    public static final String TIMEOUT = "timeout";
+    public static final String CANCELLED = "cancelled";
+    // Stands in for missing tag values and for models no strategy supports, whose names come straight from requests
+    public static final String UNKNOWN = "unknown";
+    // Supported models that are neither configured nor built in
+    public static final String OTHER = "other";
+
+    // DashScope models offered when genie.dashscope.models is not configured
+    private static final Set<String> BUILT_IN_MODELS = Set.of(
+            "qwen-turbo", "qwen-plus", "qwen-max",
+            "wanx-v1", "wanx-sketch-to-image-v1",
+            "wan2.6-t2v", "wanx2.1-t2v-turbo", "wanx2.1-t2v-plus");
+
+    private final MeterRegistry registry;
+    private final Set<String> knownModels;
+
+    public GenieMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.knownModels = BUILT_IN_MODELS;
+    }
+
+    @Autowired
+    public GenieMetrics(MeterRegistry registry, GenieConfig genieConfig, ProvidersConfig providersConfig) {
+        this.registry = registry;
+        this.knownModels = knownModels(genieConfig, providersConfig);
+    }
+
+    /** One provider call (or cache hit) from submission to the parsed response. */
+    public void recordGeneration(String provider, String model, String status, long nanos) {
+        Timer.builder(GENERATION)
+                .description("Latency of model generations")
+                .tag("provider", value(provider))
+                .tag("model", model(model))
+                .tag("status", value(status))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Billed usage of a successful generation. */
+    public void recordUsage(String provider, String model, int inputTokens, int outputTokens, double cost) {
+        tokens(provider, model, "input").record(inputTokens);
+        tokens(provider, model, "output").record(outputTokens);
+        Counter.builder(GENERATION_COST)
+                .description("Estimated generation cost")
+                .baseUnit("cny")
+                .tag("provider", value(provider))
+                .tag("model", model(model))
+                .register(registry)
+                .increment(cost);
+    }
+
+    public void recordRetrieval(String mode, boolean rerank, long nanos, int hits) {
+        Timer.builder(RETRIEVAL)
+                .description("Latency of knowledge base retrieval")
+                .tag("mode", value(mode))
+                .tag("rerank", String.valueOf(rerank))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder(RETRIEVAL_HITS)
+                .description("Chunks returned per knowledge base retrieval")
+                .tag("mode", value(mode))
+                .register(registry)
+                .record(hits);
+    }
+
+    public void recordChainNode(String type, String status, long nanos) {
+        Timer.builder(CHAIN_NODE)
+                .description("Execution time of chain nodes")
+                .tag("type", value(type))
+                .tag("status", value(status))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatchRow(String status, long nanos) {
+        Timer.builder(BATCH_ROW)
+                .description("Time from submitting a batch row to its result")
+                .tag("status", value(status))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEvaluationRow(String status, long millis) {
+        Timer.builder(EVALUATION_ROW)
+                .description("Time to run one evaluation row against all models")
+                .tag("status", value(status))
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    private static String value(String tag) {
+        return tag != null && !tag.isEmpty() ? tag : UNKNOWN;
+    }
+
+    private String model(String modelName) {
+        if (modelName == null || modelName.isEmpty() || UNKNOWN.equals(modelName)) {
+            return UNKNOWN;
+        }
+        String name = modelName.toLowerCase();
+        return knownModels.contains(name) ? name : OTHER;
+    }
+
+    /** Models listed for the playground, priced, sized or rate limited in configuration, plus the built-in ones. */
+    private static Set<String> knownModels(GenieConfig genieConfig, ProvidersConfig providersConfig) {
+        Set<String> models = new HashSet<>(BUILT_IN_MODELS);
+        if (genieConfig.getDashscope() != null && genieConfig.getDashscope().getModels() != null) {
+            for (Map<String, String> byType : genieConfig.getDashscope().getModels().values()) {
+                if (byType != null) {
+                    addAll(models, byType.keySet());
+                }
+            }
+        }
+        GenieConfig.PricingConfig pricing = genieConfig.getPricing();
+        if (pricing != null) {
+            if (pricing.getText() != null) addAll(models, pricing.getText().keySet());
+            if (pricing.getImage() != null) addAll(models, pricing.getImage().keySet());
+            if (pricing.getVideo() != null) addAll(models, pricing.getVideo().keySet());
+        }
+        if (genieConfig.getTokenizer().getContextWindows() != null) {
+            addAll(models, genieConfig.getTokenizer().getContextWindows().keySet());
+        }
+        if (genieConfig.getEvaluation().getModelRateLimits() != null) {
+            addAll(models, genieConfig.getEvaluation().getModelRateLimits().keySet());
+        }
+        if (providersConfig.getOpenai() != null) {
+            for (ProvidersConfig.OpenAiConfig config : providersConfig.getOpenai().values()) {
+                if (config != null && config.getModels() != null) {
+                    addAll(models, config.getModels());
+                }
+            }
+        }
+        return Set.copyOf(models);
+    }
+
+    private static void addAll(Set<String> models, Collection<String> names) {
+        for (String name : names) {
+            if (name != null && !name.isEmpty()) {
+                models.add(name.toLowerCase());
+            }
+        }
+    }
+
+    private DistributionSummary tokens(String provider, String model, String direction) {
+        return DistributionSummary.builder(GENERATION_TOKENS)
+                .description("Tokens per generation")
+                .baseUnit("tokens")
+                .tag("provider", value(provider))
+                .tag("model", model(model))
+                .tag("direction", value(direction))
+                .register(registry);
+    }
+}
@@ -0,0 +1,107 @@
+package com.promptgenie.core.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.promptgenie.auth.entity.User;
+import com.promptgenie.core.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bearer tokens that already passed signature and expiry checks, with the user they resolved to.
+ * A hit skips JWT parsing (one HMAC) and the user lookup. Entries are keyed by the SHA-256 of the
+ * token, never the token itself, and live until the token expires or
+ * {@code genie.principal-cache.ttl-seconds}, whichever comes first.
+ */
+@Component
+public class AuthenticatedPrincipalCache {
+
+    /** A verified token: its user as loaded at verification time and the token's expiry. */
+    public record VerifiedPrincipal(User user, long expiresAtMillis) {
+    }
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Cache<String, VerifiedPrincipal> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        GenieConfig.PrincipalCacheConfig config = genieConfig.getPrincipalCache() != null
+                ? genieConfig.getPrincipalCache() : new GenieConfig.PrincipalCacheConfig();
+        long ttlNanos = TimeUnit.SECONDS.toNanos(config.getTtlSeconds());
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxEntries())
+                .expireAfter(new Expiry<String, VerifiedPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedPrincipal value, long currentTime) {
+                        long untilExpiry = TimeUnit.MILLISECONDS.toNanos(value.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(ttlNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedPrincipal value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedPrincipal value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public VerifiedPrincipal get(String token) {
+        VerifiedPrincipal principal = cache.getIfPresent(hash(token));
+        // Expiry is also checked here since eviction of an expired entry may lag behind
+        if (principal != null && principal.expiresAtMillis() > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return principal;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String token, User user, long expiresAtMillis) {
+        cache.put(hash(token), new VerifiedPrincipal(user, expiresAtMillis));
+    }
+
+    /**
+     * Drops every cached token of {@code userId}, so the next request reloads the user.
+     */
+    public void evictUser(Long userId) {
+        cache.asMap().values().removeIf(p -> Objects.equals(p.user().getId(), userId));
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", cache.estimatedSize());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.promptgenie.core.security;
+
+import com.promptgenie.auth.entity.User;
+import org.springframework.beans.BeanUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * The authenticated {@link User} of the current request, resolved once by
+ * {@link JwtAuthenticationFilter} and read by {@code UserContextService}. Each request gets its own
+ * copy, so callers may modify it without affecting the cached principal or other requests.
+ */
+public final class CurrentUser {
+
+    private static final String ATTRIBUTE = CurrentUser.class.getName();
+
+    private CurrentUser() {
+    }
+
+    /** The request's user, or null outside a request or when nothing was resolved. */
+    public static User get() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null ? (User) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) : null;
+    }
+
+    /** Stores a copy of {@code user} for the rest of the request; returns that copy. */
+    public static User set(User user) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null || user == null) {
+            return user;
+        }
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        attributes.setAttribute(ATTRIBUTE, copy, RequestAttributes.SCOPE_REQUEST);
+        return copy;
+    }
+}
@@ -1,5 +1,8 @@
 package com.promptgenie.core.security;
 
+import com.promptgenie.auth.entity.User;
+import com.promptgenie.auth.service.UserService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,12 +11,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -22,41 +25,59 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private com.promptgenie.auth.service.UserDetailsServiceImpl userDetailsService;
+    private UserService userService;
+
+    @Autowired
+    private AuthenticatedPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
         final String authHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
-
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
-                // Log error or ignore
-            }
-        }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            try {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-                if (jwtUtil.validateToken(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    usernamePasswordAuthenticationToken
-                            .setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(usernamePasswordAuthenticationToken);
-                }
-            } catch (UsernameNotFoundException e) {
-                // User not found, continue without authentication
-                System.err.println("User not found: " + e.getMessage());
+        if (authHeader != null && authHeader.startsWith("Bearer ") && SecurityContextHolder.getContext().getAuthentication() == null) {
+            User user = resolve(authHeader.substring(7));
+            if (user != null) {
+                // The request works on its own copy; the filter and UserContextService share it
+                User current = CurrentUser.set(user);
+                UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+                        current.getEmail(),
+                        current.getPasswordHash() != null ? current.getPasswordHash() : "",
+                        new ArrayList<>() // Empty authorities for now
+                );
+                UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities());
+                usernamePasswordAuthenticationToken
+                        .setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(usernamePasswordAuthenticationToken);
             }
         }
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * The user {@code jwt} authenticates, verifying it and loading the user only on a cache miss.
+     * Returns null for invalid or expired tokens and unknown users.
+     */
+    private User resolve(String jwt) {
+        AuthenticatedPrincipalCache.VerifiedPrincipal cached = principalCache.get(jwt);
+        if (cached != null) {
+            return cached.user();
+        }
+        Claims claims;
+        try {
+            claims = jwtUtil.parseVerified(jwt);
+        } catch (Exception e) {
+            // Invalid or expired token, continue without authentication
+            return null;
+        }
+        User user = userService.findByEmail(claims.getSubject());
+        if (user == null) {
+            System.err.println("User not found: " + claims.getSubject());
+            return null;
+        }
+        principalCache.put(jwt, user, claims.getExpiration().getTime());
+        return user;
+    }
+}
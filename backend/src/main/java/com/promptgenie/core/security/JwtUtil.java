@@ -1,6 +1,7 @@
 package com.promptgenie.core.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -26,6 +27,10 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}") // 24 hours
     private long jwtExpiration;
 
+    // Built once on first use; decoding the secret and building a parser per call showed up in every request
+    private volatile Key signingKey;
+    private volatile JwtParser parser;
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -39,19 +44,24 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Verifies the signature and expiry of {@code token} and returns its claims, parsing it once.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public Claims parseVerified(String token) {
+        return extractAllClaims(token);
+    }
+
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token).getBody();
+            return parser().parseClaimsJws(token).getBody();
         } catch (Exception e) {
             System.err.println("JWT parsing error: " + e.getMessage());
             throw e;
         }
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         // Add roles or other info to claims if needed
@@ -69,11 +79,29 @@ public class JwtUtil {
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date()));
+    }
+
+    private JwtParser parser() {
+        JwtParser current = parser;
+        if (current == null) {
+            current = Jwts.parserBuilder().setSigningKey(getSigningKey()).build();
+            parser = current;
+        }
+        return current;
     }
 
     private Key getSigningKey() {
+        Key current = signingKey;
+        if (current == null) {
+            current = decodeSigningKey();
+            signingKey = current;
+        }
+        return current;
+    }
+
+    private Key decodeSigningKey() {
         if (secret == null || secret.isBlank()) {
             throw new IllegalStateException("JWT secret is not configured (jwt.secret / JWT_SECRET)");
         }
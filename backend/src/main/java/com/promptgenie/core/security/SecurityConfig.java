@@ -1,6 +1,7 @@
 package com.promptgenie.core.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -30,6 +31,9 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     @Autowired
     private com.promptgenie.auth.service.UserDetailsServiceImpl userDetailsService;
 
@@ -42,10 +46,16 @@ public class SecurityConfig {
                         .requestMatchers("/auth/**").permitAll() // Allow auth endpoints
                         .requestMatchers("/prompts/public").permitAll() // Allow public prompts
                         .requestMatchers("/prompts/public/catalog").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/prompts/search").permitAll() // scope=mine checks the user itself
                         .requestMatchers("/prompts/tags").permitAll() // Allow public tags
                         .requestMatchers(HttpMethod.GET, "/prompts/*/comments").permitAll() // Allow read-only comments
                         .requestMatchers("/events").permitAll()
                         .requestMatchers("/error").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        // Metrics carry per-model cost, token and latency series: scraped without a user
+                        // token, but only through the internal management port
+                        .requestMatchers(request -> managementPort > 0 && request.getLocalPort() == managementPort
+                                && "/actuator/prometheus".equals(request.getRequestURI())).permitAll()
                         .anyRequest().authenticated() // Protect other endpoints
                 )
                 .sessionManagement(session -> session
@@ -87,6 +97,7 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setExposedHeaders(Arrays.asList("X-Next-Cursor"));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
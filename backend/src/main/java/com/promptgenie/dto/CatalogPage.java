@@ -0,0 +1,20 @@
+package com.promptgenie.dto;
+
+import com.promptgenie.prompt.entity.Prompt;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the public catalog. Pages are shared through the catalog cache, so callers copy
+ * items before changing them (see {@code PromptService.getPublicCatalogPage}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogPage {
+    private List<Prompt> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,18 @@
+package com.promptgenie.dto;
+
+import com.promptgenie.prompt.entity.Prompt;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromptSearchHit {
+    private Prompt prompt;
+    private float score;
+    // Field name (title, content, tags) -> HTML-escaped snippet with matches wrapped in <em>
+    private Map<String, String> highlights;
+}
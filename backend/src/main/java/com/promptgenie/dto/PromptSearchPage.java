@@ -0,0 +1,17 @@
+package com.promptgenie.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromptSearchPage {
+    private List<PromptSearchHit> hits;
+    private long total;
+    private int page;
+    private int size;
+}
@@ -0,0 +1,50 @@
+package com.promptgenie.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Latest snapshot of an agent run. The id is the run's {@code AgentState} id; {@code snapshot}
+ * holds the whole state as JSON, the other columns only what is needed to query runs without
+ * decoding it.
+ */
+@Data
+@TableName("agent_runs")
+public class AgentRun {
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_PAUSED = "PAUSED";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @TableId(type = IdType.INPUT)
+    private String id;
+
+    @TableField("agent_id")
+    private Long agentId;
+
+    @TableField("user_id")
+    private Long userId;
+
+    @TableField("status")
+    private String status;
+
+    @TableField("current_node_id")
+    private String currentNodeId;
+
+    @TableField("snapshot")
+    private String snapshot;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+
+    @TableField("expires_at")
+    private LocalDateTime expiresAt;
+}
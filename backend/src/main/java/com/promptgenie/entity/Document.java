@@ -0,0 +1,53 @@
+package com.promptgenie.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("documents")
+public class Document {
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_READY = "READY";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @TableId(type = IdType.ASSIGN_ID)
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    @TableField("kb_id")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long kbId;
+
+    private String filename;
+
+    @TableField("file_type")
+    private String fileType;
+
+    // Only documents uploaded before the chunk table hold their text here; never selected by default
+    @JsonIgnore
+    @TableField(select = false)
+    private String content;
+
+    @TableField("file_size")
+    private Long fileSize;
+
+    @TableField("ingest_status")
+    private String ingestStatus;
+
+    @TableField("chunk_count")
+    private Integer chunkCount;
+
+    @TableField("error_message")
+    private String errorMessage;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
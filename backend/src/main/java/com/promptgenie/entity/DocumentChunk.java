@@ -0,0 +1,40 @@
+package com.promptgenie.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.Data;
+
+/**
+ * One retrieval unit of a knowledge base document. Offsets are character positions in the
+ * document's extracted text; consecutive chunks overlap.
+ */
+@Data
+@TableName("document_chunks")
+public class DocumentChunk {
+    @TableId(type = IdType.ASSIGN_ID)
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    @TableField("document_id")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long documentId;
+
+    @TableField("kb_id")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long kbId;
+
+    @TableField("chunk_index")
+    private Integer chunkIndex;
+
+    private String content;
+
+    @TableField("start_offset")
+    private Integer startOffset;
+
+    @TableField("end_offset")
+    private Integer endOffset;
+
+    @TableField("token_count")
+    private Integer tokenCount;
+}
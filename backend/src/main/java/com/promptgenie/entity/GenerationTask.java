@@ -0,0 +1,69 @@
+package com.promptgenie.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("generation_tasks")
+public class GenerationTask {
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_TIMEOUT = "TIMEOUT";
+
+    @TableId(type = IdType.ASSIGN_ID)
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    @TableField("user_id")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long userId;
+
+    @TableField("provider_task_id")
+    private String providerTaskId;
+
+    @TableField("model_type")
+    private String modelType;
+
+    @TableField("model_name")
+    private String modelName;
+
+    @TableField("prompt")
+    private String prompt;
+
+    @TableField("variables")
+    private String variables;
+
+    @TableField("parameters")
+    private String parameters;
+
+    @TableField("status")
+    private String status;
+
+    @TableField("result_url")
+    private String resultUrl;
+
+    @TableField("error_message")
+    private String errorMessage;
+
+    @JsonIgnore
+    @TableField("webhook_url")
+    private String webhookUrl;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+
+    @TableField("completed_at")
+    private LocalDateTime completedAt;
+
+    public boolean isFinished() {
+        return !STATUS_RUNNING.equals(status);
+    }
+}
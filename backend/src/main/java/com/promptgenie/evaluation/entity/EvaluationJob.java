@@ -37,6 +37,22 @@ public class EvaluationJob {
     @TableField(value = "evaluation_dimensions", typeHandler = JacksonTypeHandler.class)
     private List<String> evaluationDimensions;
 
+    // Progress, updated while the job runs
+    @TableField("total_rows")
+    private Integer totalRows;
+
+    @TableField("processed_rows")
+    private Integer processedRows;
+
+    @TableField("failed_rows")
+    private Integer failedRows;
+
+    @TableField("latency_p50_ms")
+    private Long latencyP50Ms;
+
+    @TableField("latency_p95_ms")
+    private Long latencyP95Ms;
+
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
 
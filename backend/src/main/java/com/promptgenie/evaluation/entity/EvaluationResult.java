@@ -30,6 +30,9 @@ public class EvaluationResult {
 
     private Long latency; // Total execution time in ms
 
+    @TableField(exist = false)
+    private boolean failed; // At least one model call failed; counted in the job's failed_rows
+
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
 }
@@ -0,0 +1,99 @@
+package com.promptgenie.evaluation.service;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.read.listener.ReadListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams evaluation datasets (first row = header) row by row instead of materializing them with
+ * {@code doReadSync()}. Rows are handed over in fixed-size chunks on the reading thread, so a sink
+ * that blocks while its workers are busy throttles the parser and heap stays flat for any file size.
+ */
+public final class DatasetStreamReader {
+
+    @FunctionalInterface
+    public interface ChunkSink {
+        void accept(Map<Integer, String> header, List<Map<Integer, String>> rows) throws InterruptedException;
+    }
+
+    private DatasetStreamReader() {
+    }
+
+    /**
+     * Number of data rows (header excluded), counted without keeping any row.
+     */
+    public static int countDataRows(String path) {
+        int[] rows = {0};
+        EasyExcel.read(path, new ReadListener<Map<Integer, String>>() {
+            @Override
+            public void invoke(Map<Integer, String> data, AnalysisContext context) {
+                rows[0]++;
+            }
+
+            @Override
+            public void doAfterAllAnalysed(AnalysisContext context) {
+            }
+        }).headRowNumber(0).sheet().doRead();
+        return Math.max(0, rows[0] - 1);
+    }
+
+    /**
+     * Feeds all data rows to {@code sink} in chunks of {@code chunkSize}; the last chunk may be smaller.
+     * Returns the number of data rows read.
+     */
+    public static int stream(String path, int chunkSize, ChunkSink sink) {
+        ChunkingListener listener = new ChunkingListener(Math.max(1, chunkSize), sink);
+        EasyExcel.read(path, listener).headRowNumber(0).sheet().doRead();
+        return listener.rowCount;
+    }
+
+    private static final class ChunkingListener implements ReadListener<Map<Integer, String>> {
+        private final int chunkSize;
+        private final ChunkSink sink;
+        private Map<Integer, String> header;
+        private List<Map<Integer, String>> chunk;
+        private int rowCount;
+
+        ChunkingListener(int chunkSize, ChunkSink sink) {
+            this.chunkSize = chunkSize;
+            this.sink = sink;
+            this.chunk = new ArrayList<>(chunkSize);
+        }
+
+        @Override
+        public void invoke(Map<Integer, String> data, AnalysisContext context) {
+            if (header == null) {
+                header = data;
+                return;
+            }
+            chunk.add(data);
+            rowCount++;
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void doAfterAllAnalysed(AnalysisContext context) {
+            if (!chunk.isEmpty()) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            List<Map<Integer, String>> full = chunk;
+            // The sink may keep the rows until they are processed, so hand over a fresh list
+            chunk = new ArrayList<>(chunkSize);
+            try {
+                sink.accept(header, full);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Dataset streaming interrupted", e);
+            }
+        }
+    }
+}
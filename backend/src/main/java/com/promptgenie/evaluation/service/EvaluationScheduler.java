@@ -0,0 +1,168 @@
+package com.promptgenie.evaluation.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs evaluation rows for all jobs on one shared worker pool.
+ * At most {@code workerThreads} rows run globally and at most {@code perJobParallelism} per job;
+ * free slots are handed to jobs round-robin so a large job cannot starve a small one started later.
+ * Each job queues at most {@code chunkSize} rows; {@link JobLane#submit} blocks beyond that, which
+ * throttles the dataset reader feeding the job.
+ */
+@Slf4j
+@Component
+public class EvaluationScheduler {
+
+    private final int globalParallelism;
+    private final int perJobParallelism;
+    private final int laneCapacity;
+    private final ExecutorService workers;
+
+    // Lanes with queued rows, in round-robin order; guarded by "this"
+    private final ArrayDeque<JobLane> ready = new ArrayDeque<>();
+    private final Map<Long, JobLane> lanes = new LinkedHashMap<>();
+    private int running;
+
+    public EvaluationScheduler(GenieConfig genieConfig) {
+        GenieConfig.EvaluationConfig config = genieConfig.getEvaluation() != null ? genieConfig.getEvaluation() : new GenieConfig.EvaluationConfig();
+        this.globalParallelism = positive(config.getWorkerThreads(), 8);
+        this.perJobParallelism = Math.min(globalParallelism, positive(config.getPerJobParallelism(), 4));
+        this.laneCapacity = positive(config.getChunkSize(), 100);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(globalParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "evaluation-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized JobLane openJob(Long jobId) {
+        JobLane lane = new JobLane(jobId);
+        lanes.put(jobId, lane);
+        return lane;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("globalParallelism", globalParallelism);
+        stats.put("perJobParallelism", perJobParallelism);
+        stats.put("runningRows", running);
+        stats.put("activeJobs", lanes.size());
+        int queued = 0;
+        for (JobLane lane : lanes.values()) {
+            queued += lane.pending.size();
+        }
+        stats.put("queuedRows", queued);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // Caller holds the monitor
+    private void dispatch() {
+        while (running < globalParallelism && !ready.isEmpty()) {
+            JobLane lane = ready.poll();
+            Runnable task = lane.pending.poll();
+            lane.running++;
+            running++;
+            // Back of the line, so every job with work gets a turn
+            if (!lane.pending.isEmpty() && lane.running < perJobParallelism) {
+                ready.add(lane);
+            }
+            notifyAll();
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Evaluation row failed for job {}", lane.jobId, t);
+                } finally {
+                    finished(lane);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(JobLane lane) {
+        lane.running--;
+        running--;
+        if (!lane.pending.isEmpty() && lane.running < perJobParallelism && !ready.contains(lane)) {
+            ready.add(lane);
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    private static int positive(Integer value, int fallback) {
+        return value != null && value > 0 ? value : fallback;
+    }
+
+    /**
+     * The rows of one job. Not thread-safe for concurrent producers: one reader thread feeds a lane.
+     */
+    public class JobLane implements AutoCloseable {
+        private final Long jobId;
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private int running;
+        private boolean closed;
+
+        private JobLane(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        /**
+         * Queues a row, blocking while this job already has a full queue.
+         *
+         * @throws CancellationException if the lane is, or while waiting gets, closed
+         */
+        public void submit(Runnable row) throws InterruptedException {
+            synchronized (EvaluationScheduler.this) {
+                while (!closed && pending.size() >= laneCapacity) {
+                    EvaluationScheduler.this.wait();
+                }
+                if (closed) {
+                    throw new CancellationException("Evaluation job " + jobId + " was closed");
+                }
+                pending.add(row);
+                if (running < perJobParallelism && !ready.contains(this)) {
+                    ready.add(this);
+                }
+                dispatch();
+            }
+        }
+
+        /** Blocks until every submitted row has finished. */
+        public void awaitIdle() throws InterruptedException {
+            synchronized (EvaluationScheduler.this) {
+                while (!pending.isEmpty() || running > 0) {
+                    EvaluationScheduler.this.wait();
+                }
+            }
+        }
+
+        /** Drops rows that have not started yet and detaches the job. */
+        @Override
+        public void close() {
+            synchronized (EvaluationScheduler.this) {
+                closed = true;
+                pending.clear();
+                ready.remove(this);
+                lanes.remove(jobId);
+                EvaluationScheduler.this.notifyAll();
+            }
+        }
+    }
+}
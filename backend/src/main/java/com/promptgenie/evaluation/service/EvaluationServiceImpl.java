@@ -1,8 +1,11 @@
 package com.promptgenie.evaluation.service;
 
-import com.alibaba.excel.EasyExcel;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
 import com.promptgenie.evaluation.entity.EvaluationJob;
 import com.promptgenie.evaluation.entity.EvaluationResult;
 import com.promptgenie.prompt.entity.Prompt;
@@ -12,7 +15,11 @@ import com.promptgenie.evaluation.service.EvaluationService;
 import com.promptgenie.service.PlaygroundService;
 import com.promptgenie.prompt.service.PromptService;
 import com.promptgenie.service.QuotaService;
+import com.promptgenie.service.template.PromptTemplate;
+import com.promptgenie.service.template.PromptTemplateCache;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -21,7 +28,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+@Slf4j
 @Service
 public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, EvaluationJob> implements EvaluationService {
 
@@ -37,8 +47,29 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
     @Autowired
     private QuotaService quotaService;
 
+    @Autowired
+    private PromptTemplateCache templateCache;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private GenieMetrics metrics;
+
     private final String UPLOAD_DIR = "uploads/datasets/";
 
+    @Autowired
+    private EvaluationScheduler evaluationScheduler;
+
+    @Autowired
+    private ModelRateLimiter modelRateLimiter;
+
+    @Autowired
+    @Lazy
+    private EvaluationService self;
+
+    private final Map<Long, JobRun> activeRuns = new ConcurrentHashMap<>();
+
     @Override
     public EvaluationJob createEvaluationJob(Long userId, String name, Long promptId, MultipartFile datasetFile, List<Map<String, Object>> modelConfigs, List<String> evaluationDimensions) {
         File directory = new File(UPLOAD_DIR);
@@ -55,12 +86,12 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
             throw new RuntimeException("Failed to store dataset file", e);
         }
 
-        // Check Quota
-        List<Map<Integer, String>> allRows = EasyExcel.read(dest.getAbsolutePath()).headRowNumber(0).sheet().doReadSync();
-        if (allRows == null || allRows.size() <= 1) {
+        // Check Quota (rows are counted while streaming, nothing is kept in memory)
+        int rowCount = DatasetStreamReader.countDataRows(dest.getAbsolutePath());
+        if (rowCount == 0) {
             throw new RuntimeException("Dataset is empty or invalid");
         }
-        quotaService.checkEvaluationQuota(userId, allRows.size() - 1);
+        quotaService.checkEvaluationQuota(userId, rowCount);
 
         EvaluationJob job = new EvaluationJob();
         job.setUserId(userId);
@@ -70,11 +101,14 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
         job.setStatus("PENDING");
         job.setModelConfigs(modelConfigs);
         job.setEvaluationDimensions(evaluationDimensions);
+        job.setTotalRows(rowCount);
+        job.setProcessedRows(0);
+        job.setFailedRows(0);
         
         save(job);
         
-        // Trigger async execution
-        runEvaluation(job.getId());
+        // Trigger async execution (through the proxy so @Async applies)
+        self.runEvaluation(job.getId());
         
         return job;
     }
@@ -88,7 +122,13 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
 
     @Override
     public EvaluationJob getJobDetails(Long jobId) {
-        return getById(jobId);
+        EvaluationJob job = getById(jobId);
+        JobRun run = activeRuns.get(jobId);
+        if (job != null && run != null) {
+            // Live counters are ahead of the last persisted progress
+            run.applyTo(job);
+        }
+        return job;
     }
 
     @Override
@@ -100,100 +140,150 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
         job.setStatus("RUNNING");
         updateById(job);
 
-        try {
+        JobRun run = new JobRun(job.getId(), job.getTotalRows());
+        activeRuns.put(job.getId(), run);
+        try (EvaluationScheduler.JobLane lane = evaluationScheduler.openJob(job.getId())) {
             Prompt prompt = promptService.getById(job.getPromptId());
             if (prompt == null) throw new RuntimeException("Prompt not found");
+            PromptTemplate template = templateCache.forPrompt(prompt);
 
-            // Read Excel: assume first row is header
-            List<Map<Integer, String>> allRows = EasyExcel.read(job.getDatasetPath()).headRowNumber(0).sheet().doReadSync();
-            
-            if (allRows == null || allRows.isEmpty()) {
-                job.setStatus("COMPLETED");
-                updateById(job);
-                return;
-            }
-            
-            Map<Integer, String> headerMap = allRows.get(0);
-            List<Map<Integer, String>> dataRows = allRows.subList(1, allRows.size());
-            
-            // Process each row in parallel
-            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            // Stream the dataset (first row is header); the lane blocks the reader while this job's
+            // queue is full, and the scheduler shares worker slots fairly with other running jobs
+            int rowCount = DatasetStreamReader.stream(job.getDatasetPath(), evaluationConfig().getChunkSize(), (headerMap, rows) -> {
+                for (Map<Integer, String> row : rows) {
+                    lane.submit(() -> runRow(run, job, template, headerMap, row));
+                }
+            });
+            lane.awaitIdle();
+            run.total = rowCount;
+            flushResults(run);
 
-            for (Map<Integer, String> row : dataRows) {
-                futures.add(CompletableFuture.runAsync(() -> {
-                    processRow(job, prompt, headerMap, row);
-                }));
-            }
-            
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-            
+            run.applyTo(job);
             job.setStatus("COMPLETED");
             updateById(job);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Evaluation job {} failed", job.getId(), e);
+            flushResults(run);
+            run.applyTo(job);
             job.setStatus("FAILED");
             updateById(job);
+        } finally {
+            activeRuns.remove(job.getId());
         }
     }
-    
-    private void processRow(EvaluationJob job, Prompt prompt, Map<Integer, String> headerMap, Map<Integer, String> row) {
+
+    private void runRow(JobRun run, EvaluationJob job, PromptTemplate template, Map<Integer, String> headerMap, Map<Integer, String> row) {
+        long startTime = System.currentTimeMillis();
+        EvaluationResult result = null;
         try {
-            // Construct input variables map
-            Map<String, Object> variables = new HashMap<>();
-            String expectedOutput = null; // Store expected/reference output if provided in dataset
-            
-            for (Map.Entry<Integer, String> entry : headerMap.entrySet()) {
-                Integer colIndex = entry.getKey();
-                String varName = entry.getValue(); // e.g., "topic"
-                String value = row.get(colIndex);
-                if (varName != null && value != null) {
-                    variables.put(varName.trim(), value);
-                    if ("expected".equalsIgnoreCase(varName.trim()) || "reference".equalsIgnoreCase(varName.trim())) {
-                        expectedOutput = value;
-                    }
+            result = processRow(job, template, headerMap, row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Evaluation row of job {} failed", job.getId(), e);
+        }
+        if (run.record(System.currentTimeMillis() - startTime, result) >= evaluationConfig().getResultBatchSize()) {
+            flushResults(run);
+        }
+    }
+
+    /**
+     * Writes buffered results in one JDBC batch and persists the job's progress columns.
+     */
+    private void flushResults(JobRun run) {
+        synchronized (run.flushLock) {
+            List<EvaluationResult> batch = run.drain();
+            try {
+                if (!batch.isEmpty()) {
+                    Db.saveBatch(batch, evaluationConfig().getResultBatchSize());
                 }
+                UpdateWrapper<EvaluationJob> progress = new UpdateWrapper<>();
+                progress.eq("id", run.jobId)
+                        .set("processed_rows", run.processed.get())
+                        .set("failed_rows", run.failed.get())
+                        .set("latency_p50_ms", run.percentile(0.50))
+                        .set("latency_p95_ms", run.percentile(0.95));
+                update(progress);
+            } catch (Exception e) {
+                log.warn("Failed to flush evaluation results for job {}: {}", run.jobId, e.getMessage());
             }
+        }
+    }
 
-            EvaluationResult result = new EvaluationResult();
-            result.setJobId(job.getId());
-            result.setInputData(variables);
-            
-            Map<String, Object> modelOutputs = new HashMap<>();
-            Map<String, Object> scores = new HashMap<>();
-            
-            long startTime = System.currentTimeMillis();
+    private GenieConfig.EvaluationConfig evaluationConfig() {
+        GenieConfig.EvaluationConfig config = genieConfig.getEvaluation() != null ? genieConfig.getEvaluation() : new GenieConfig.EvaluationConfig();
+        if (config.getChunkSize() == null || config.getChunkSize() <= 0) config.setChunkSize(100);
+        if (config.getResultBatchSize() == null || config.getResultBatchSize() <= 0) config.setResultBatchSize(50);
+        return config;
+    }
 
-            // Run for each model config
-            if (job.getModelConfigs() != null) {
-                for (Map<String, Object> config : job.getModelConfigs()) {
-                    String modelName = (String) config.get("model"); // e.g., "qwen-turbo"
-                    if (modelName == null) continue;
-                    
-                    try {
-                        // PlaygroundService signature: runPrompt(content, variables, modelType, modelName, params)
-                        String output = playgroundService.runPrompt(prompt.getContent(), variables, "text", modelName, null);
-                        modelOutputs.put(modelName, output);
-                        
-                        // Calculate actual scores based on dimensions
-                        Map<String, Object> modelScores = calculateScores(job.getEvaluationDimensions(), output, expectedOutput);
-                        scores.put(modelName, modelScores);
-                        
-                    } catch (Exception e) {
-                        modelOutputs.put(modelName, "Error: " + e.getMessage());
+    private EvaluationResult processRow(EvaluationJob job, PromptTemplate template, Map<Integer, String> headerMap, Map<Integer, String> row) throws InterruptedException {
+        // Construct input variables map
+        Map<String, Object> variables = new HashMap<>();
+        String expectedOutput = null; // Store expected/reference output if provided in dataset
+        
+        for (Map.Entry<Integer, String> entry : headerMap.entrySet()) {
+            Integer colIndex = entry.getKey();
+            String varName = entry.getValue(); // e.g., "topic"
+            String value = row.get(colIndex);
+            if (varName != null && value != null) {
+                variables.put(varName.trim(), value);
+                if ("expected".equalsIgnoreCase(varName.trim()) || "reference".equalsIgnoreCase(varName.trim())) {
+                    expectedOutput = value;
+                }
+            }
+        }
+
+        EvaluationResult result = new EvaluationResult();
+        result.setJobId(job.getId());
+        result.setInputData(variables);
+        
+        Map<String, Object> modelOutputs = new HashMap<>();
+        Map<String, Object> scores = new HashMap<>();
+        
+        long startTime = System.currentTimeMillis();
+        boolean failed = false;
+
+        // Run for each model config; all models are queried concurrently
+        if (job.getModelConfigs() != null) {
+            Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+            for (Map<String, Object> config : job.getModelConfigs()) {
+                String modelName = (String) config.get("model"); // e.g., "qwen-turbo"
+                if (modelName == null) continue;
+                modelRateLimiter.acquire(modelName);
+                pending.put(modelName, playgroundService.runPromptAsync(template, variables, "text", modelName, null, null));
+            }
+
+            for (Map.Entry<String, CompletableFuture<String>> entry : pending.entrySet()) {
+                String modelName = entry.getKey();
+                try {
+                    String output = entry.getValue().join();
+                    modelOutputs.put(modelName, output);
+                    if (output != null && output.startsWith(PlaygroundService.ERROR_PREFIX)) {
+                        // Provider failures come back as text; scoring them would be meaningless
+                        failed = true;
+                        continue;
                     }
+                    
+                    // Calculate actual scores based on dimensions
+                    Map<String, Object> modelScores = calculateScores(job.getEvaluationDimensions(), output, expectedOutput);
+                    scores.put(modelName, modelScores);
+                    
+                } catch (Exception e) {
+                    modelOutputs.put(modelName, "Error: " + e.getMessage());
+                    failed = true;
                 }
             }
-            
-            result.setModelOutputs(modelOutputs);
-            result.setScores(scores);
-            result.setLatency(System.currentTimeMillis() - startTime);
-            
-            resultMapper.insert(result);
-            
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        
+        result.setModelOutputs(modelOutputs);
+        result.setScores(scores);
+        result.setLatency(System.currentTimeMillis() - startTime);
+        result.setFailed(failed);
+        metrics.recordEvaluationRow(failed ? GenieMetrics.ERROR : GenieMetrics.SUCCESS, result.getLatency());
+        
+        return result;
     }
 
     private Map<String, Object> calculateScores(List<String> dimensions, String output, String expected) {
@@ -277,6 +367,7 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
             
             // Call GPT-4 or other high-quality model
             String model = "gpt-4";
+            modelRateLimiter.acquire(model);
             String judgeResponse = playgroundService.runPrompt(judgePrompt.toString(), Map.of(), "text", model, Map.of("temperature", 0.0));
             
             // Parse score from response
@@ -295,4 +386,64 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationJobMapper, Eval
         query.eq("job_id", jobId);
         return resultMapper.selectList(query);
     }
+
+    /**
+     * In-memory state of a running job: progress counters, a ring of recent row latencies for
+     * p50/p95, and the results waiting for the next batch insert.
+     */
+    private static final class JobRun {
+        private static final int LATENCY_SAMPLES = 2048;
+
+        final Long jobId;
+        final Object flushLock = new Object();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        volatile Integer total;
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private long latencyCount;
+        private List<EvaluationResult> buffer = new ArrayList<>();
+
+        JobRun(Long jobId, Integer total) {
+            this.jobId = jobId;
+            this.total = total;
+        }
+
+        /**
+         * Records a finished row; a null result (the row threw) or one with a failed model call counts
+         * as failed. Returns the number of buffered results.
+         */
+        synchronized int record(long latencyMs, EvaluationResult result) {
+            latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = latencyMs;
+            processed.incrementAndGet();
+            if (result == null || result.isFailed()) {
+                failed.incrementAndGet();
+            }
+            if (result != null) {
+                buffer.add(result);
+            }
+            return buffer.size();
+        }
+
+        synchronized List<EvaluationResult> drain() {
+            List<EvaluationResult> drained = buffer;
+            buffer = new ArrayList<>();
+            return drained;
+        }
+
+        synchronized Long percentile(double p) {
+            int n = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+            if (n == 0) return null;
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            return sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+        }
+
+        void applyTo(EvaluationJob job) {
+            if (total != null) job.setTotalRows(total);
+            job.setProcessedRows(processed.get());
+            job.setFailedRows(failed.get());
+            job.setLatencyP50Ms(percentile(0.50));
+            job.setLatencyP95Ms(percentile(0.95));
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.promptgenie.evaluation.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests-per-second limit per model for evaluation traffic, so a large job stays under the
+ * provider's rate limit instead of collecting 429s. Rates come from
+ * {@code genie.evaluation.model-rate-limits} with {@code default-model-rate-limit} as fallback;
+ * models without a rate are not limited. Allows a burst of one second's worth of requests.
+ */
+@Component
+public class ModelRateLimiter {
+
+    private final GenieConfig.EvaluationConfig config;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public ModelRateLimiter(GenieConfig genieConfig) {
+        this.config = genieConfig.getEvaluation() != null ? genieConfig.getEvaluation() : new GenieConfig.EvaluationConfig();
+    }
+
+    /** Blocks until a request to {@code model} may be sent. */
+    public void acquire(String model) throws InterruptedException {
+        Bucket bucket = buckets.computeIfAbsent(model, this::newBucket);
+        if (bucket == Bucket.UNLIMITED) return;
+        long waitNanos = bucket.reserve(System.nanoTime());
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private Bucket newBucket(String model) {
+        Double rate = config.getModelRateLimits() != null ? config.getModelRateLimits().get(model) : null;
+        if (rate == null) rate = config.getDefaultModelRateLimit();
+        if (rate == null || rate <= 0) return Bucket.UNLIMITED;
+        return new Bucket(rate);
+    }
+
+    /** Generic cell rate algorithm: tracks the theoretical arrival time of the next request. */
+    private static final class Bucket {
+        static final Bucket UNLIMITED = new Bucket(0);
+
+        private final long intervalNanos;
+        private final long burstNanos;
+        private long theoreticalArrival;
+
+        Bucket(double ratePerSecond) {
+            this.intervalNanos = ratePerSecond > 0 ? (long) (1_000_000_000L / ratePerSecond) : 0;
+            this.burstNanos = Math.max(0, (long) Math.ceil(ratePerSecond) - 1) * intervalNanos;
+            this.theoreticalArrival = System.nanoTime();
+        }
+
+        synchronized long reserve(long now) {
+            long tat = Math.max(theoreticalArrival, now);
+            long wait = Math.max(0, tat - burstNanos - now);
+            theoreticalArrival = tat + intervalNanos;
+            return wait;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.promptgenie.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.promptgenie.entity.AgentRun;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface AgentRunMapper extends BaseMapper<AgentRun> {
+}
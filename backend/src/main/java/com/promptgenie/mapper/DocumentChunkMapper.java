@@ -0,0 +1,27 @@
+package com.promptgenie.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.promptgenie.entity.DocumentChunk;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface DocumentChunkMapper extends BaseMapper<DocumentChunk> {
+
+    /**
+     * One keyset page of a knowledge base's chunks in document order, for index rebuilds.
+     */
+    @Select("SELECT * FROM document_chunks WHERE kb_id = #{kbId} AND (document_id, chunk_index) > (#{afterDocumentId}, #{afterChunkIndex}) " +
+            "ORDER BY document_id, chunk_index LIMIT #{limit}")
+    List<DocumentChunk> selectPageByKbId(@Param("kbId") Long kbId,
+                                         @Param("afterDocumentId") Long afterDocumentId,
+                                         @Param("afterChunkIndex") Integer afterChunkIndex,
+                                         @Param("limit") int limit);
+
+    @Delete("DELETE FROM document_chunks WHERE document_id = #{documentId}")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
@@ -0,0 +1,9 @@
+package com.promptgenie.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.promptgenie.entity.Document;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface DocumentMapper extends BaseMapper<Document> {
+}
@@ -83,6 +83,7 @@ public class AdminPromptController {
 
         prompt.setStatus(toStatus);
         promptService.updateById(prompt);
+        promptService.catalogChanged(prompt.getId());
 
         PromptModerationLog log = new PromptModerationLog();
         log.setPromptId(prompt.getId());
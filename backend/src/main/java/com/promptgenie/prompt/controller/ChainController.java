@@ -5,6 +5,7 @@ import com.promptgenie.service.QuotaService;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 import com.promptgenie.prompt.entity.PromptChain;
+import com.promptgenie.prompt.service.ChainExecutor;
 import com.promptgenie.prompt.service.ChainService;
 import com.promptgenie.workspace.service.WorkspaceService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +29,9 @@ public class ChainController {
     @Autowired
     private WorkspaceService workspaceService;
 
+    @Autowired
+    private ChainExecutor chainExecutor;
+
     @GetMapping
     public List<PromptChain> getChains() {
         Long userId = userContextService.getCurrentUserId();
@@ -65,6 +69,14 @@ public class ChainController {
         chainService.moveChainToWorkspace(id, targetWorkspaceId);
     }
 
+    @GetMapping("/executor/stats")
+    public Map<String, Object> getExecutorStats() {
+        if (userContextService.getCurrentUserId() == null) {
+             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found");
+        }
+        return chainExecutor.snapshot();
+    }
+
     @GetMapping("/{id}")
     public PromptChain getChain(@PathVariable Long id) {
         Long userId = userContextService.getCurrentUserId();
@@ -99,7 +111,11 @@ public class ChainController {
         }
 
         chain.setUserId(userId);
-        return chainService.createChain(chain);
+        try {
+            return chainService.createChain(chain);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @PutMapping("/{id}")
@@ -125,7 +141,11 @@ public class ChainController {
         }
 
         chain.setId(id);
-        return chainService.updateChain(chain);
+        try {
+            return chainService.updateChain(chain);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -144,7 +164,8 @@ public class ChainController {
     }
 
     @PostMapping("/{id}/run")
-    public List<Map<String, Object>> runChain(@PathVariable Long id, @RequestBody Map<String, Object> variables) {
+    public List<Map<String, Object>> runChain(@PathVariable Long id, @RequestBody Map<String, Object> variables,
+                                              @RequestParam(defaultValue = "true") boolean reuse) {
         Long userId = userContextService.getCurrentUserId();
         if (userId == null) {
              throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found");
@@ -158,7 +179,7 @@ public class ChainController {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not your chain");
         }
 
-        return chainService.executeChain(id, variables);
+        return chainService.executeChain(id, variables, reuse);
     }
 
     @PostMapping("/{id}/publish")
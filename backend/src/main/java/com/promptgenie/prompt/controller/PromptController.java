@@ -2,7 +2,10 @@ package com.promptgenie.prompt.controller;
 
 import com.promptgenie.prompt.entity.Prompt;
 import com.promptgenie.prompt.entity.PromptVersion;
+import com.promptgenie.dto.CatalogPage;
 import com.promptgenie.dto.PromptRequest;
+import com.promptgenie.dto.PromptSearchPage;
+import com.promptgenie.prompt.service.PromptSearchService;
 import com.promptgenie.prompt.service.PromptService;
 import com.promptgenie.service.UserContextService;
 import com.promptgenie.service.QuotaService;
@@ -10,6 +13,7 @@ import com.promptgenie.workspace.service.WorkspaceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 import jakarta.validation.Valid;
 
@@ -130,26 +134,70 @@ public class PromptController {
         return promptService.getAllTags(userId);
     }
 
+    /**
+     * Ranked full-text search over the public catalog ({@code scope=public}) or the caller's own
+     * prompts ({@code scope=mine}). Hits carry highlighted snippets of the matched fields.
+     */
+    @GetMapping("/search")
+    public PromptSearchPage search(
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "public") String scope,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String scene,
+            @RequestParam(required = false) String assetType,
+            @RequestParam(required = false) String tag,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false, defaultValue = "20") int size) {
+        Long userId = userContextService.getCurrentUserId();
+        Long owner = null;
+        if ("mine".equalsIgnoreCase(scope)) {
+            if (userId == null) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found");
+            }
+            owner = userId;
+        }
+        if (page < 0 || size < 1 || size > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page");
+        }
+        try {
+            return promptService.search(q, new PromptSearchService.SearchFilter(owner, category, scene, assetType, tag), page, size);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * One page of the public catalog. The body stays a plain list; the cursor of the next page is
+     * returned in the {@code X-Next-Cursor} header and is absent on the last page.
+     */
     @GetMapping("/public")
-    public List<Prompt> getPublicPrompts(
+    public ResponseEntity<List<Prompt>> getPublicPrompts(
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String scene,
             @RequestParam(required = false) String assetType,
-            @RequestParam(required = false, defaultValue = "new") String sort) {
+            @RequestParam(required = false, defaultValue = "new") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         Long userId = userContextService.getCurrentUserId(); // Optional for public prompts
-        return promptService.getPublicPrompts(search, category, scene, assetType, sort, userId);
+        CatalogPage page;
+        try {
+            page = promptService.getPublicCatalogPage(search, category, scene, assetType, sort, cursor, limit, userId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 
     @GetMapping("/public/catalog")
-    public Map<String, Object> getPublicCatalog(
+    public Map<String, List<String>> getPublicCatalog(
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String scene) {
-        return Map.of(
-                "categories", promptService.getPublicCategories(),
-                "scenes", promptService.getPublicScenes(category),
-                "assetTypes", promptService.getPublicAssetTypes(category, scene)
-        );
+        return promptService.getPublicFacets(category, scene);
     }
 
     @GetMapping("/user/{userId}/public")
@@ -229,9 +277,13 @@ public class PromptController {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
         }
 
+        boolean wasPublic = Boolean.TRUE.equals(prompt.getIsPublic());
         prompt.setStatus("SUBMITTED");
         prompt.setIsPublic(false);
         promptService.updateById(prompt);
+        if (wasPublic) {
+            promptService.catalogChanged(id);
+        }
     }
     
     @GetMapping("/{id}")
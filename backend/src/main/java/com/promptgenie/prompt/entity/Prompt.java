@@ -2,6 +2,7 @@ package com.promptgenie.prompt.entity;
 
 import com.baomidou.mybatisplus.annotation.*;
 import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
@@ -37,10 +38,11 @@ public class Prompt {
     @TableField("is_public")
     private Boolean isPublic = false;
 
-    @TableField("likes_count")
+    // Counters are only changed through PromptCounterService; updateById never writes them back
+    @TableField(value = "likes_count", updateStrategy = FieldStrategy.NEVER)
     private Integer likesCount = 0;
 
-    @TableField("usage_count")
+    @TableField(value = "usage_count", updateStrategy = FieldStrategy.NEVER)
     private Integer usageCount = 0;
 
     private String category;
@@ -61,7 +63,7 @@ public class Prompt {
     @TableField("published_at")
     private LocalDateTime publishedAt;
 
-    @TableField("forks_count")
+    @TableField(value = "forks_count", updateStrategy = FieldStrategy.NEVER)
     private Integer forksCount = 0;
 
     @TableField("price_type")
@@ -76,6 +78,11 @@ public class Prompt {
     @TableField(exist = false)
     private Boolean isLiked = false;
 
+    // Trending score of a catalog row, selected only to build the next page cursor
+    @JsonIgnore
+    @TableField(exist = false)
+    private Double sortScore;
+
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
     
@@ -0,0 +1,41 @@
+package com.promptgenie.prompt.mapper;
+
+import com.promptgenie.prompt.service.PromptCounterService;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface PromptCounterMapper {
+
+    /**
+     * Claims a WAL segment; returns 0 if it was applied before.
+     */
+    @Insert("INSERT INTO counter_flushes (segment_id) VALUES (#{segmentId}) ON CONFLICT DO NOTHING")
+    int insertApplied(@Param("segmentId") String segmentId);
+
+    /**
+     * Adds the deltas to the stored counters in one statement. Likes never drop below zero.
+     */
+    @Update("<script>" +
+            "UPDATE prompts p SET " +
+            "likes_count = GREATEST(0, COALESCE(p.likes_count, 0) + d.likes), " +
+            "usage_count = COALESCE(p.usage_count, 0) + d.usage, " +
+            "forks_count = COALESCE(p.forks_count, 0) + d.forks " +
+            "FROM (VALUES " +
+            "<foreach collection='deltas' item='d' separator=','>" +
+            "(CAST(#{d.promptId} AS BIGINT), CAST(#{d.likes} AS INT), CAST(#{d.usage} AS INT), CAST(#{d.forks} AS INT))" +
+            "</foreach>" +
+            ") AS d(id, likes, usage, forks) " +
+            "WHERE p.id = d.id" +
+            "</script>")
+    int applyDeltas(@Param("deltas") List<PromptCounterService.CounterDelta> deltas);
+
+    @Delete("DELETE FROM counter_flushes WHERE applied_at < #{before}")
+    int deleteAppliedBefore(@Param("before") LocalDateTime before);
+}
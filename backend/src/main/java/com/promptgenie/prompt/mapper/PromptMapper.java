@@ -2,6 +2,7 @@ package com.promptgenie.prompt.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.promptgenie.prompt.entity.Prompt;
+import com.promptgenie.prompt.service.CatalogCursor;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -16,6 +17,9 @@ public interface PromptMapper extends BaseMapper<Prompt> {
     @Select("SELECT * FROM prompts WHERE user_id = #{userId} ORDER BY created_at DESC")
     List<Prompt> selectByUserIdOrderByCreatedAtDesc(@Param("userId") Long userId);
     
+    /**
+     * Unranked substring search, used only while {@code PromptSearchService} is building its index.
+     */
     @Select("<script>" +
             "SELECT p.* FROM prompts p " +
             "WHERE p.user_id = #{userId} " +
@@ -74,6 +78,63 @@ public interface PromptMapper extends BaseMapper<Prompt> {
                                             @Param("assetType") String assetType,
                                             @Param("sort") String sort);
 
+    /**
+     * Time-independent form of the trending score: the age penalty of
+     * {@link #selectPublicPromptsAdvanced} shifts every row by the same NOW(), so adding the
+     * publish time instead yields the same order while staying stable across paged requests.
+     */
+    String TRENDING_SCORE = "CAST(0.5 * LN(1 + COALESCE(p.forks_count, 0)) + 0.3 * LN(1 + COALESCE(p.likes_count, 0)) + 0.2 * LN(1 + COALESCE(p.usage_count, 0)) " +
+            "+ 0.1 * EXTRACT(EPOCH FROM COALESCE(p.published_at, p.created_at)) / 86400.0 AS DOUBLE PRECISION)";
+
+    String FEATURED_KEY = "(CASE WHEN p.is_featured THEN 1 ELSE 0 END), (-COALESCE(p.featured_rank, 2147483647)), (COALESCE(p.published_at, p.created_at)), p.id";
+
+    String NEW_KEY = "(COALESCE(p.published_at, p.created_at)), p.id";
+
+    /**
+     * One keyset page of the public catalog. Every sort order is a descending key ending in the id,
+     * so the page after a row is simply "key &lt; that row's key"; no OFFSET scan.
+     */
+    @Select("<script>" +
+            "SELECT p.*" +
+            "<if test='sort == \"trending\"'>, " + TRENDING_SCORE + " AS sort_score</if> " +
+            "FROM prompts p " +
+            "WHERE p.is_public = true AND p.status = 'PUBLISHED' " +
+            "<if test='search != null and search != \"\"'>" +
+            "AND (LOWER(p.title) LIKE LOWER(CONCAT('%', #{search}, '%')) OR LOWER(p.content) LIKE LOWER(CONCAT('%', #{search}, '%'))) " +
+            "</if>" +
+            "<if test='category != null and category != \"\"'>" +
+            "AND p.category = #{category} " +
+            "</if>" +
+            "<if test='scene != null and scene != \"\"'>" +
+            "AND p.scene = #{scene} " +
+            "</if>" +
+            "<if test='assetType != null and assetType != \"\"'>" +
+            "AND p.asset_type = #{assetType} " +
+            "</if>" +
+            "<choose>" +
+            "<when test='sort == \"featured\"'>" +
+            "<if test='cursor != null'>AND (" + FEATURED_KEY + ") &lt; (#{cursor.featured}, #{cursor.negatedRank}, #{cursor.time}, #{cursor.id}) </if>" +
+            "ORDER BY (CASE WHEN p.is_featured THEN 1 ELSE 0 END) DESC, (-COALESCE(p.featured_rank, 2147483647)) DESC, (COALESCE(p.published_at, p.created_at)) DESC, p.id DESC " +
+            "</when>" +
+            "<when test='sort == \"trending\"'>" +
+            "<if test='cursor != null'>AND (" + TRENDING_SCORE + ", p.id) &lt; (#{cursor.score}, #{cursor.id}) </if>" +
+            "ORDER BY sort_score DESC, p.id DESC " +
+            "</when>" +
+            "<otherwise>" +
+            "<if test='cursor != null'>AND (" + NEW_KEY + ") &lt; (#{cursor.time}, #{cursor.id}) </if>" +
+            "ORDER BY (COALESCE(p.published_at, p.created_at)) DESC, p.id DESC " +
+            "</otherwise>" +
+            "</choose>" +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<Prompt> selectPublicPage(@Param("search") String search,
+                                  @Param("category") String category,
+                                  @Param("scene") String scene,
+                                  @Param("assetType") String assetType,
+                                  @Param("sort") String sort,
+                                  @Param("cursor") CatalogCursor cursor,
+                                  @Param("limit") int limit);
+
     @Select("SELECT DISTINCT category FROM prompts WHERE is_public = true AND status = 'PUBLISHED' AND category IS NOT NULL AND category <> '' ORDER BY category")
     List<String> selectDistinctPublicCategories();
 
@@ -0,0 +1,99 @@
+package com.promptgenie.prompt.service;
+
+import com.promptgenie.prompt.entity.Prompt;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor of the public catalog: the sort key of the last row of a page, which
+ * {@code PromptMapper.selectPublicPage} continues strictly after. Only the fields of the cursor's
+ * sort order are set; a cursor is rejected when replayed against a different sort.
+ * <p>
+ * Searches are ranked by {@link PromptSearchService} rather than by a column, so their
+ * {@code relevance} cursors carry the offset of the next hit instead of a sort key.
+ */
+@Getter
+public class CatalogCursor {
+
+    private static final String SEPARATOR = "~";
+
+    private final String sort;
+    private final Integer featured;
+    private final Integer negatedRank;
+    private final LocalDateTime time;
+    private final Double score;
+    private final Long id;
+    private final Integer offset;
+
+    private CatalogCursor(String sort, Integer featured, Integer negatedRank, LocalDateTime time, Double score, Long id, Integer offset) {
+        this.sort = sort;
+        this.featured = featured;
+        this.negatedRank = negatedRank;
+        this.time = time;
+        this.score = score;
+        this.id = id;
+        this.offset = offset;
+    }
+
+    /** Cursor positioned after {@code last}, a row of a page fetched with {@code sort}. */
+    public static CatalogCursor after(String sort, Prompt last) {
+        LocalDateTime time = last.getPublishedAt() != null ? last.getPublishedAt() : last.getCreatedAt();
+        return switch (sort) {
+            case "featured" -> new CatalogCursor(sort, Boolean.TRUE.equals(last.getIsFeatured()) ? 1 : 0,
+                    -(last.getFeaturedRank() != null ? last.getFeaturedRank() : Integer.MAX_VALUE), time, null, last.getId(), null);
+            case "trending" -> new CatalogCursor(sort, null, null, null, last.getSortScore(), last.getId(), null);
+            default -> new CatalogCursor(sort, null, null, time, null, last.getId(), null);
+        };
+    }
+
+    /** Relevance cursor continuing at hit number {@code offset} of a search. */
+    public static CatalogCursor atOffset(int offset) {
+        return new CatalogCursor("relevance", null, null, null, null, null, offset);
+    }
+
+    public String encode() {
+        String raw = String.join(SEPARATOR, sort, str(featured), str(negatedRank), str(time), str(score), str(id), str(offset));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order
+     */
+    public static CatalogCursor decode(String encoded, String expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, -1);
+            if (parts.length != 7 || !parts[0].equals(expectedSort)) {
+                throw new IllegalArgumentException("Cursor does not match sort " + expectedSort);
+            }
+            CatalogCursor cursor = new CatalogCursor(parts[0],
+                    parts[1].isEmpty() ? null : Integer.valueOf(parts[1]),
+                    parts[2].isEmpty() ? null : Integer.valueOf(parts[2]),
+                    parts[3].isEmpty() ? null : LocalDateTime.parse(parts[3]),
+                    parts[4].isEmpty() ? null : Double.valueOf(parts[4]),
+                    parts[5].isEmpty() ? null : Long.valueOf(parts[5]),
+                    parts[6].isEmpty() ? null : Integer.valueOf(parts[6]));
+            boolean complete = switch (expectedSort) {
+                case "featured" -> cursor.featured != null && cursor.negatedRank != null && cursor.time != null && cursor.id != null;
+                case "trending" -> cursor.score != null && cursor.id != null;
+                case "relevance" -> cursor.offset != null && cursor.offset >= 0;
+                default -> cursor.time != null && cursor.id != null;
+            };
+            if (!complete) {
+                throw new IllegalArgumentException("Incomplete cursor");
+            }
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static String str(Object value) {
+        return value != null ? value.toString() : "";
+    }
+}
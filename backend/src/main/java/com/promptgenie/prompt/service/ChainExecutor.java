@@ -0,0 +1,318 @@
+package com.promptgenie.prompt.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Dedicated scheduler for chain graph nodes.
+ * A bounded thread pool with a bounded queue replaces the unbounded cached pool, each execution
+ * ({@link ChainRun}) is further limited to a fixed number of running nodes, every node gets a
+ * timeout, and cancelling a run interrupts its in-flight nodes (which aborts their provider calls).
+ */
+@Slf4j
+@Component
+public class ChainExecutor {
+
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final GenieConfig.ChainExecutionConfig config;
+    private final ThreadPoolExecutor pool;
+
+    private final LongAdder submittedNodes = new LongAdder();
+    private final LongAdder completedNodes = new LongAdder();
+    private final LongAdder failedNodes = new LongAdder();
+    private final LongAdder timedOutNodes = new LongAdder();
+    private final LongAdder rejectedNodes = new LongAdder();
+    private final LongAdder retriedNodes = new LongAdder();
+    private final AtomicInteger activeRuns = new AtomicInteger();
+    private final long[] latencySamples = new long[LATENCY_SAMPLES];
+    private final AtomicLong latencyCursor = new AtomicLong();
+
+    public ChainExecutor(GenieConfig genieConfig) {
+        this.config = genieConfig.getChain() != null ? genieConfig.getChain() : new GenieConfig.ChainExecutionConfig();
+        int threads = positive(config.getMaxThreads(), 32);
+        this.pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(positive(config.getQueueCapacity(), 1000)),
+                namedThreads(), new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    public ChainRun newRun() {
+        return new ChainRun(positive(config.getMaxConcurrencyPerChain(), 8));
+    }
+
+    /** Retry policy for transient failures of nodes that no error retry node guards. */
+    public ChainPlan.RetryPolicy defaultRetryPolicy() {
+        int maxRetries = config.getNodeMaxRetries() != null ? Math.max(0, config.getNodeMaxRetries()) : 2;
+        long baseDelay = config.getNodeRetryBaseDelayMs() != null ? Math.max(0L, config.getNodeRetryBaseDelayMs()) : 500L;
+        return new ChainPlan.RetryPolicy(maxRetries, baseDelay);
+    }
+
+    public long maxRetryDelayMillis() {
+        return config.getNodeRetryMaxDelayMs() != null && config.getNodeRetryMaxDelayMs() > 0 ? config.getNodeRetryMaxDelayMs() : 30000L;
+    }
+
+    public void recordRetry() {
+        retriedNodes.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeThreads", pool.getActiveCount());
+        stats.put("maxThreads", pool.getMaximumPoolSize());
+        stats.put("queueDepth", pool.getQueue().size());
+        stats.put("activeRuns", activeRuns.get());
+        stats.put("submittedNodes", submittedNodes.sum());
+        stats.put("completedNodes", completedNodes.sum());
+        stats.put("failedNodes", failedNodes.sum());
+        stats.put("timedOutNodes", timedOutNodes.sum());
+        stats.put("rejectedNodes", rejectedNodes.sum());
+        stats.put("retriedNodes", retriedNodes.sum());
+
+        int filled = (int) Math.min(latencyCursor.get(), LATENCY_SAMPLES);
+        long[] samples;
+        synchronized (latencySamples) {
+            samples = Arrays.copyOf(latencySamples, filled);
+        }
+        Arrays.sort(samples);
+        stats.put("nodeLatencyP50Ms", percentile(samples, 0.50));
+        stats.put("nodeLatencyP95Ms", percentile(samples, 0.95));
+        stats.put("nodeLatencyMaxMs", samples.length == 0 ? 0 : samples[samples.length - 1]);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void recordLatency(long millis) {
+        synchronized (latencySamples) {
+            latencySamples[(int) (latencyCursor.getAndIncrement() % LATENCY_SAMPLES)] = millis;
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private long nodeTimeoutSeconds() {
+        return config.getNodeTimeoutSeconds() != null && config.getNodeTimeoutSeconds() > 0 ? config.getNodeTimeoutSeconds() : 120L;
+    }
+
+    private static int positive(Integer value, int fallback) {
+        return value != null && value > 0 ? value : fallback;
+    }
+
+    private static ThreadFactory namedThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "chain-node-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One chain execution. Nodes beyond the per-run limit wait in the run's own queue without
+     * occupying a pool thread. Call {@link #close()} when the execution ends.
+     */
+    public class ChainRun implements AutoCloseable {
+        private final int maxConcurrency;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+        private int running;
+        private volatile boolean cancelled;
+
+        private ChainRun(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            activeRuns.incrementAndGet();
+        }
+
+        /**
+         * Schedules a node. The future fails with {@link TimeoutException} once the node timeout
+         * elapses, and the worker thread is interrupted on timeout or cancellation.
+         */
+        public <T> CompletableFuture<T> submit(String nodeId, Callable<T> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            if (cancelled) {
+                result.cancel(false);
+                return result;
+            }
+            submittedNodes.increment();
+            inFlight.add(result);
+            result.whenComplete((value, error) -> inFlight.remove(result));
+
+            long timeout = nodeTimeoutSeconds();
+
+            Runnable dispatch = () -> {
+                if (result.isDone()) {
+                    releaseSlot();
+                    return;
+                }
+                // Exactly one of the worker body or the cancellation hook gives the slot back
+                AtomicBoolean claimed = new AtomicBoolean();
+                FutureTask<Void> worker = new FutureTask<>(() -> {
+                    if (!claimed.compareAndSet(false, true)) return;
+                    long start = System.nanoTime();
+                    try {
+                        T value = task.call();
+                        completedNodes.increment();
+                        result.complete(value);
+                    } catch (Throwable t) {
+                        failedNodes.increment();
+                        result.completeExceptionally(t);
+                    } finally {
+                        recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        releaseSlot();
+                    }
+                }, null) {
+                    @Override
+                    protected void done() {
+                        if (isCancelled() && claimed.compareAndSet(false, true)) {
+                            releaseSlot();
+                        }
+                    }
+                };
+                try {
+                    pool.execute(worker);
+                } catch (Exception rejected) {
+                    rejectedNodes.increment();
+                    log.warn("Chain node {} rejected: executor saturated", nodeId);
+                    result.completeExceptionally(rejected);
+                    worker.cancel(false);
+                    return;
+                }
+                result.orTimeout(timeout, TimeUnit.SECONDS).whenComplete((value, error) -> {
+                    if (error instanceof TimeoutException) {
+                        timedOutNodes.increment();
+                    }
+                    if (error instanceof TimeoutException || result.isCancelled()) {
+                        worker.cancel(true);
+                    }
+                });
+            };
+            schedule(dispatch);
+            return result;
+        }
+
+        /**
+         * Schedules a node whose work is already non-blocking, such as one item of a map node. It
+         * takes one of the run's slots but no pool thread until {@code call}'s future completes; the
+         * node timeout and run cancellation apply as for {@link #submit} and cancel that future.
+         */
+        public <T> CompletableFuture<T> submitAsync(String nodeId, Supplier<CompletableFuture<T>> call) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            if (cancelled) {
+                result.cancel(false);
+                return result;
+            }
+            submittedNodes.increment();
+            inFlight.add(result);
+            result.whenComplete((value, error) -> inFlight.remove(result));
+
+            long timeout = nodeTimeoutSeconds();
+
+            Runnable dispatch = () -> {
+                if (result.isDone()) {
+                    releaseSlot();
+                    return;
+                }
+                long start = System.nanoTime();
+                CompletableFuture<T> started;
+                try {
+                    started = call.get();
+                } catch (Throwable t) {
+                    started = CompletableFuture.failedFuture(t);
+                }
+                CompletableFuture<T> pending = started;
+                // orTimeout completes result itself, so this runs exactly once whatever finishes it
+                result.orTimeout(timeout, TimeUnit.SECONDS).whenComplete((value, error) -> {
+                    if (error instanceof TimeoutException) {
+                        timedOutNodes.increment();
+                    } else if (error == null) {
+                        completedNodes.increment();
+                    } else if (!result.isCancelled()) {
+                        failedNodes.increment();
+                    }
+                    pending.cancel(true);
+                    recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    releaseSlot();
+                });
+                pending.whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            };
+            schedule(dispatch);
+            return result;
+        }
+
+        /** Cancels every node of this run that has not finished yet. */
+        public void cancel() {
+            cancelled = true;
+            for (CompletableFuture<?> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void schedule(Runnable dispatch) {
+            synchronized (this) {
+                if (running >= maxConcurrency) {
+                    waiting.add(dispatch);
+                    return;
+                }
+                running++;
+            }
+            dispatch.run();
+        }
+
+        private void releaseSlot() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    running--;
+                }
+            }
+            if (next != null) {
+                next.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            activeRuns.decrementAndGet();
+        }
+    }
+}
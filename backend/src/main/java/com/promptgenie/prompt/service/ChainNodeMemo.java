@@ -0,0 +1,99 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.service.PlaygroundService;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of chain graph nodes, reused when a chain is re-run with the same node unchanged.
+ * The key is a SHA-256 of the chain id, the node's {@link ChainPlan.Node#definition()} and its
+ * resolved inputs as canonical JSON. Editing a node changes its key, and through its output the
+ * inputs (and keys) of every node downstream, so only the edited node and its descendants run
+ * again. Entries are scoped to a chain, expire after {@code memo-ttl-seconds}, and the least
+ * recently used ones are dropped beyond {@code memo-max-entries}.
+ */
+@Component
+public class ChainNodeMemo {
+
+    private final GenieConfig.ChainExecutionConfig config;
+    private final Cache<String, Object> results;
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    public ChainNodeMemo(GenieConfig genieConfig) {
+        this.config = genieConfig.getChain() != null ? genieConfig.getChain() : new GenieConfig.ChainExecutionConfig();
+        this.results = Caffeine.newBuilder()
+                .maximumSize(config.getMemoMaxEntries() != null && config.getMemoMaxEntries() > 0 ? config.getMemoMaxEntries() : 10000)
+                .expireAfterWrite(config.getMemoTtlSeconds() != null && config.getMemoTtlSeconds() > 0 ? config.getMemoTtlSeconds() : 3600L, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return !Boolean.FALSE.equals(config.getMemoEnabled());
+    }
+
+    /** The memo key of a node run, or {@code null} when the inputs cannot be serialized. */
+    public String key(Long chainId, ChainPlan.Node node, Map<String, Object> inputs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(chainId).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(node.definition().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(canonicalMapper.writeValueAsBytes(inputs));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** The memoized result, or {@code null} on a miss. */
+    public Object get(String key) {
+        Object result = results.getIfPresent(key);
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Stores a node result. Error results (tool failures, guardrail rejections, provider errors)
+     * are retried on re-run instead.
+     */
+    public void put(String key, Object result) {
+        if (result == null || (result instanceof Map<?, ?> map && map.containsKey("error"))
+                || (result instanceof String text && text.startsWith(PlaygroundService.ERROR_PREFIX))) return;
+        results.put(key, result);
+        stores.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", results.estimatedSize());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("stores", stores.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,393 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.promptgenie.service.template.PromptTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Execution plan of a React Flow chain graph, compiled once from the saved nodes/edges JSON.
+ * Nodes are stored in topological order and each one carries the plan indexes of its
+ * predecessors, so running the graph needs no JSON parsing and no edge scans. Prompt and
+ * condition templates are compiled up front. Compiling rejects graphs with missing or duplicate
+ * node ids, edges pointing at unknown nodes, and cycles. Instances are immutable and safe to
+ * share between runs.
+ * <p>
+ * Edges keep their {@code sourceHandle}, which selects a branch of the source node: {@code true}
+ * / {@code false} of a condition node, {@code continue} / {@code break} of a loop node and
+ * {@code success} / {@code failure} of an error retry node. The only cycles allowed are loop
+ * regions: the nodes reached through a loop node's {@code continue} handle that lead back to
+ * it. Their edges back into the loop node are left out of the topological order, and the body
+ * may only take input from its loop node or from other body nodes. Loops cannot be nested.
+ * The direct predecessors of an error retry node get that node's retry policy.
+ */
+public final class ChainPlan {
+
+    public static final String HANDLE_TRUE = "true";
+    public static final String HANDLE_FALSE = "false";
+    public static final String HANDLE_CONTINUE = "continue";
+    public static final String HANDLE_BREAK = "break";
+    public static final String HANDLE_SUCCESS = "success";
+    public static final String HANDLE_FAILURE = "failure";
+
+    private static final TypeReference<List<Map<String, Object>>> LIST_OF_MAPS = new TypeReference<>() {};
+    private static final int MAX_RETRIES = 10;
+
+    /**
+     * One node of the plan. {@code index} is the node's position in {@link #nodes()};
+     * {@code predecessors} are indexes of the nodes it depends on, in edge order, and
+     * {@code predecessorHandles} the source handle of each of those edges ({@code null} when the
+     * edge is unconditional). {@code definition} is the node's type and data as canonical JSON
+     * (map keys sorted), so it changes exactly when the node's behaviour does; layout fields such
+     * as position are left out. {@code loopOwner} is the index of the loop node whose body this
+     * node belongs to, or -1; {@code loop} is set on loop nodes only, and {@code retry} only on
+     * nodes guarded by an error retry node.
+     */
+    public record Node(int index, String id, String type, Map<String, Object> data, int[] predecessors,
+                       String[] predecessorHandles, String outputKey, String definition, PromptTemplate template,
+                       PromptTemplate condition, int loopOwner, Loop loop, RetryPolicy retry) {
+
+        public Object label() {
+            return data.get("label");
+        }
+
+        public boolean isInLoopBody() {
+            return loopOwner >= 0;
+        }
+    }
+
+    /**
+     * Body of a loop node: {@code body} in topological order, and {@code feedback}, the body
+     * nodes with an edge back to the loop node, whose results feed the next iteration.
+     */
+    public record Loop(int[] body, int[] feedback) {
+    }
+
+    /** Retries of transient failures, {@code baseDelayMillis} doubling after each attempt. */
+    public record RetryPolicy(int maxRetries, long baseDelayMillis) {
+
+        public long delayMillis(int attempt, long maxDelayMillis) {
+            long delay = baseDelayMillis << Math.min(Math.max(attempt - 1, 0), 20);
+            return Math.min(delay, maxDelayMillis);
+        }
+    }
+
+    private record Edge(int from, int to, String handle) {
+    }
+
+    private final String nodesJson;
+    private final String edgesJson;
+    private final List<Node> nodes;
+    private final int[] outputNodes;
+
+    private ChainPlan(String nodesJson, String edgesJson, List<Node> nodes, int[] outputNodes) {
+        this.nodesJson = nodesJson;
+        this.edgesJson = edgesJson;
+        this.nodes = nodes;
+        this.outputNodes = outputNodes;
+    }
+
+    /**
+     * Parses and validates a graph.
+     *
+     * @throws IllegalArgumentException when the JSON is malformed, a numeric node setting is not a
+     *                                  number, or the graph has a cycle that is not a loop region
+     */
+    public static ChainPlan compile(String nodesJson, String edgesJson, ObjectMapper objectMapper) {
+        if (nodesJson == null || edgesJson == null) {
+            throw new IllegalArgumentException("No graph data found in chain");
+        }
+        List<Map<String, Object>> rawNodes;
+        List<Map<String, Object>> rawEdges;
+        try {
+            rawNodes = objectMapper.readValue(nodesJson, LIST_OF_MAPS);
+            rawEdges = objectMapper.readValue(edgesJson, LIST_OF_MAPS);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid chain graph JSON: " + e.getMessage(), e);
+        }
+        if (rawNodes == null) rawNodes = List.of();
+        if (rawEdges == null) rawEdges = List.of();
+
+        int n = rawNodes.size();
+        Map<String, Integer> declared = new HashMap<>();
+        String[] ids = new String[n];
+        String[] types = new String[n];
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> node = rawNodes.get(i);
+            String id = node != null ? text(node.get("id")) : null;
+            if (id == null || id.isEmpty()) {
+                throw new IllegalArgumentException("Chain graph node #" + i + " has no id");
+            }
+            if (declared.put(id, i) != null) {
+                throw new IllegalArgumentException("Duplicate chain graph node id: " + id);
+            }
+            ids[i] = id;
+            types[i] = text(node.get("type"));
+        }
+
+        Set<Edge> edges = new LinkedHashSet<>();
+        for (Map<String, Object> edge : rawEdges) {
+            if (edge == null) continue;
+            String source = text(edge.get("source"));
+            String target = text(edge.get("target"));
+            Integer from = source != null ? declared.get(source) : null;
+            Integer to = target != null ? declared.get(target) : null;
+            if (from == null || to == null) {
+                throw new IllegalArgumentException("Chain graph edge " + source + " -> " + target
+                        + " references an unknown node");
+            }
+            String handle = text(edge.get("sourceHandle"));
+            edges.add(new Edge(from, to, handle != null && !handle.isEmpty() ? handle : null));
+        }
+        List<List<Edge>> outgoing = new ArrayList<>(n);
+        List<List<Edge>> incoming = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            outgoing.add(new ArrayList<>());
+            incoming.add(new ArrayList<>());
+        }
+        for (Edge edge : edges) {
+            outgoing.get(edge.from()).add(edge);
+            incoming.get(edge.to()).add(edge);
+        }
+
+        // Loop regions: reachable through "continue" and leading back to the loop node
+        int[] owner = new int[n];
+        Arrays.fill(owner, -1);
+        Set<Edge> backEdges = new LinkedHashSet<>();
+        for (int loop = 0; loop < n; loop++) {
+            if (!"loopNode".equals(types[loop])) continue;
+            boolean[] forward = new boolean[n];
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (Edge edge : outgoing.get(loop)) {
+                if (HANDLE_CONTINUE.equals(edge.handle()) && edge.to() != loop && !forward[edge.to()]) {
+                    forward[edge.to()] = true;
+                    queue.add(edge.to());
+                }
+            }
+            while (!queue.isEmpty()) {
+                for (Edge edge : outgoing.get(queue.poll())) {
+                    if (edge.to() != loop && !forward[edge.to()]) {
+                        forward[edge.to()] = true;
+                        queue.add(edge.to());
+                    }
+                }
+            }
+            boolean[] backward = new boolean[n];
+            queue.add(loop);
+            while (!queue.isEmpty()) {
+                for (Edge edge : incoming.get(queue.poll())) {
+                    if (edge.from() != loop && !backward[edge.from()]) {
+                        backward[edge.from()] = true;
+                        queue.add(edge.from());
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (!forward[i] || !backward[i]) continue;
+                if ("loopNode".equals(types[i])) {
+                    throw new IllegalArgumentException("Nested loops are not supported: " + ids[i] + " is inside " + ids[loop]);
+                }
+                if (owner[i] >= 0) {
+                    throw new IllegalArgumentException("Chain graph node " + ids[i] + " belongs to loops "
+                            + ids[owner[i]] + " and " + ids[loop]);
+                }
+                owner[i] = loop;
+            }
+            for (Edge edge : outgoing.get(loop)) {
+                if (HANDLE_CONTINUE.equals(edge.handle()) && owner[edge.to()] != loop) {
+                    throw new IllegalArgumentException("Loop " + ids[loop] + " continues to " + ids[edge.to()]
+                            + ", which does not lead back to the loop");
+                }
+            }
+            for (Edge edge : incoming.get(loop)) {
+                if (owner[edge.from()] == loop) backEdges.add(edge);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (owner[i] < 0) continue;
+            for (Edge edge : incoming.get(i)) {
+                if (edge.from() != owner[i] && owner[edge.from()] != owner[i]) {
+                    throw new IllegalArgumentException("Loop body node " + ids[i] + " takes input from "
+                            + ids[edge.from()] + ", outside its loop " + ids[owner[i]]);
+                }
+            }
+        }
+
+        // Kahn's algorithm over the remaining edges; ready nodes are taken in declaration order so plans are stable
+        int[] pending = new int[n];
+        for (Edge edge : edges) {
+            if (!backEdges.contains(edge)) pending[edge.to()]++;
+        }
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            if (pending[i] == 0) ready.add(i);
+        }
+        int[] order = new int[n];
+        int[] position = new int[n];
+        int sorted = 0;
+        while (!ready.isEmpty()) {
+            int current = ready.poll();
+            position[current] = sorted;
+            order[sorted++] = current;
+            for (Edge edge : outgoing.get(current)) {
+                if (!backEdges.contains(edge) && --pending[edge.to()] == 0) ready.add(edge.to());
+            }
+        }
+        if (sorted < n) {
+            List<String> cyclic = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (pending[i] > 0) cyclic.add(ids[i]);
+            }
+            throw new IllegalArgumentException("Chain graph contains a cycle through nodes " + cyclic
+                    + "; only a loop node's continue branch may lead back to it");
+        }
+
+        // The direct inputs of an error retry node are retried under its policy
+        RetryPolicy[] retries = new RetryPolicy[n];
+        for (int i = 0; i < n; i++) {
+            if (!"errorRetryNode".equals(types[i])) continue;
+            Map<String, Object> data = data(rawNodes.get(i));
+            int maxRetries = Math.max(0, Math.min(MAX_RETRIES, intValue(data.get("maxRetries"), 3)));
+            long baseDelayMillis = Math.max(0, intValue(data.get("retryDelay"), 1)) * 1000L;
+            for (Edge edge : incoming.get(i)) {
+                RetryPolicy current = retries[edge.from()];
+                if (current == null || current.maxRetries() < maxRetries) {
+                    retries[edge.from()] = new RetryPolicy(maxRetries, baseDelayMillis);
+                }
+            }
+        }
+
+        ObjectWriter canonical = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        List<Node> planNodes = new ArrayList<>(n);
+        List<Integer> outputs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int declaredIndex = order[i];
+            String id = ids[declaredIndex];
+            String type = types[declaredIndex];
+            Map<String, Object> data = data(rawNodes.get(declaredIndex));
+            // Rejected here rather than failing the node mid-run
+            requireNumbers(id, data, "maxIterations", "maxItems", "maxRetries", "retryDelay", "temperature",
+                    "maxOutputLength");
+
+            List<Edge> inputs = incoming.get(declaredIndex).stream().filter(e -> !backEdges.contains(e)).toList();
+            int[] preds = inputs.stream().mapToInt(e -> position[e.from()]).toArray();
+            String[] handles = inputs.stream().map(Edge::handle).toArray(String[]::new);
+
+            PromptTemplate template = null;
+            if ("promptNode".equals(type)) {
+                template = PromptTemplate.compile(text(data.get("content")));
+            } else if ("mapNode".equals(type)) {
+                String content = text(data.get("content"));
+                template = PromptTemplate.compile(content != null && !content.isEmpty() ? content : "{{item}}");
+            }
+            String conditionText = text(data.get("condition"));
+            PromptTemplate condition = ("conditionNode".equals(type) || "loopNode".equals(type))
+                    && conditionText != null && !conditionText.isEmpty()
+                    ? PromptTemplate.compile(conditionText) : null;
+            String definition;
+            try {
+                definition = canonical.writeValueAsString(Map.of("type", Objects.toString(type, ""), "data", data));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Invalid data in chain graph node " + id, e);
+            }
+
+            Loop loop = null;
+            if ("loopNode".equals(type)) {
+                int[] body = new int[n];
+                int size = 0;
+                for (int j = 0; j < n; j++) {
+                    if (owner[order[j]] == declaredIndex) body[size++] = j;
+                }
+                int[] feedback = backEdges.stream()
+                        .filter(e -> e.to() == declaredIndex)
+                        .mapToInt(e -> position[e.from()])
+                        .distinct()
+                        .sorted()
+                        .toArray();
+                loop = new Loop(Arrays.copyOf(body, size), feedback);
+            }
+            int loopOwner = owner[declaredIndex] >= 0 ? position[owner[declaredIndex]] : -1;
+
+            planNodes.add(new Node(i, id, type, data, preds, handles, type + "_" + id, definition, template,
+                    condition, loopOwner, loop, retries[declaredIndex]));
+            if ("outputNode".equals(type)) outputs.add(i);
+        }
+        return new ChainPlan(nodesJson, edgesJson, Collections.unmodifiableList(planNodes),
+                outputs.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /** Whether this plan was compiled from exactly this graph JSON. */
+    public boolean isCompiledFrom(String nodesJson, String edgesJson) {
+        return this.nodesJson.equals(nodesJson) && this.edgesJson.equals(edgesJson);
+    }
+
+    /** Nodes in topological order: every node comes after all of its predecessors. */
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    public Node node(int index) {
+        return nodes.get(index);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /** Plan indexes of the {@code outputNode}s, in topological order. */
+    public int[] outputNodes() {
+        return outputNodes.clone();
+    }
+
+    private static Map<String, Object> data(Map<String, Object> raw) {
+        return raw.get("data") instanceof Map
+                ? Collections.unmodifiableMap((Map<String, Object>) raw.get("data"))
+                : Map.of();
+    }
+
+    private static void requireNumbers(String id, Map<String, Object> data, String... fields) {
+        for (String field : fields) {
+            Object value = data.get(field);
+            if (value != null && !value.toString().isBlank() && !Double.isFinite(doubleValue(value, Double.NaN))) {
+                throw new IllegalArgumentException("Chain graph node " + id + ": " + field + " must be a number, got " + value);
+            }
+        }
+    }
+
+    /** Node setting as an int; absent, blank or non-numeric values give {@code fallback}. */
+    static int intValue(Object value, int fallback) {
+        if (value == null) return fallback;
+        try {
+            return (int) Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /** Node setting as a double; absent, blank or non-numeric values give {@code fallback}. */
+    static double doubleValue(Object value, double fallback) {
+        if (value == null) return fallback;
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
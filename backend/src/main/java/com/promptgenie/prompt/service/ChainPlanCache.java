@@ -0,0 +1,106 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.prompt.entity.PromptChain;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled {@link ChainPlan}s, so a chain's graph is parsed and validated once per version
+ * instead of on every execution. Saved chains are keyed by id and version stamp
+ * ({@code updatedAt}); unsaved chains (previews, benchmarks) are keyed by their graph JSON.
+ * Graphs that fail to compile are not cached.
+ */
+@Component
+public class ChainPlanCache {
+
+    private static final int MAX_CHAINS = 1024;
+    private static final int MAX_ADHOC = 128;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Long, VersionedPlan> byChain = lru(MAX_CHAINS);
+    private final Map<GraphSource, ChainPlan> byContent = lru(MAX_ADHOC);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong compiles = new AtomicLong();
+
+    public ChainPlan forChain(PromptChain chain) {
+        if (chain.getId() == null) {
+            return forGraph(chain.getReactFlowNodes(), chain.getReactFlowEdges());
+        }
+        Object version = chain.getUpdatedAt();
+        synchronized (byChain) {
+            VersionedPlan cached = byChain.get(chain.getId());
+            // The content check covers callers that changed the entity without bumping updatedAt
+            if (cached != null && Objects.equals(cached.version(), version)
+                    && cached.plan().isCompiledFrom(chain.getReactFlowNodes(), chain.getReactFlowEdges())) {
+                hits.incrementAndGet();
+                return cached.plan();
+            }
+        }
+        ChainPlan plan = compile(chain.getReactFlowNodes(), chain.getReactFlowEdges());
+        synchronized (byChain) {
+            byChain.put(chain.getId(), new VersionedPlan(version, plan));
+        }
+        return plan;
+    }
+
+    public ChainPlan forGraph(String nodesJson, String edgesJson) {
+        GraphSource key = new GraphSource(nodesJson, edgesJson);
+        synchronized (byContent) {
+            ChainPlan cached = byContent.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        ChainPlan plan = compile(nodesJson, edgesJson);
+        synchronized (byContent) {
+            byContent.put(key, plan);
+        }
+        return plan;
+    }
+
+    public void evict(Long chainId) {
+        synchronized (byChain) {
+            byChain.remove(chainId);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (byChain) {
+            stats.put("entries", byChain.size());
+        }
+        synchronized (byContent) {
+            stats.put("adhocEntries", byContent.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("compiles", compiles.get());
+        return stats;
+    }
+
+    private ChainPlan compile(String nodesJson, String edgesJson) {
+        ChainPlan plan = ChainPlan.compile(nodesJson, edgesJson, objectMapper);
+        compiles.incrementAndGet();
+        return plan;
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private record VersionedPlan(Object version, ChainPlan plan) {
+    }
+
+    private record GraphSource(String nodesJson, String edgesJson) {
+    }
+}
@@ -4,11 +4,16 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.metrics.GenieMetrics;
 import com.promptgenie.prompt.entity.ChainStep;
 import com.promptgenie.prompt.entity.Prompt;
 import com.promptgenie.prompt.entity.PromptChain;
 import com.promptgenie.prompt.mapper.ChainStepMapper;
 import com.promptgenie.prompt.mapper.PromptChainMapper;
+import com.promptgenie.service.LLMTracingService;
+import com.promptgenie.service.PlaygroundService;
+import com.promptgenie.service.template.PromptTemplate;
+import com.promptgenie.service.template.PromptTemplateCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,14 +21,30 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
 
+    // Result of a node on an untaken branch
+    private static final Object SKIPPED = new Object();
+    // What a loop body sees from its loop node while the loop is iterating
+    private static final Object LOOP_ITERATION = new Object();
+    private static final int MAX_LOOP_ITERATIONS = 100;
+    private static final int DEFAULT_MAP_ITEMS = 50;
+    private static final int MAX_MAP_ITEMS = 500;
+    private static final Pattern TRANSIENT_PROVIDER_ERROR = Pattern.compile(
+            "Provider returned error: (408|429|5\\d\\d)\\b|timed out|timeout|saturated|connection (refused|reset)|ConnectException",
+            Pattern.CASE_INSENSITIVE);
+
     @Autowired
     private ChainStepMapper stepMapper;
 
@@ -33,8 +54,25 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
     @Autowired
     private com.promptgenie.service.PlaygroundService playgroundService;
     
+    @Autowired
+    private ChainExecutor chainExecutor;
+
+    @Autowired
+    private PromptTemplateCache templateCache;
+
+    @Autowired
+    private ChainPlanCache planCache;
+
+    @Autowired
+    private ChainNodeMemo nodeMemo;
+
+    @Autowired
+    private GenieMetrics metrics;
+
+    @Autowired
+    private LLMTracingService tracingService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
 
     public PromptChain getChainWithSteps(Long chainId) {
         PromptChain chain = getById(chainId);
@@ -62,6 +100,8 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
                 stepMapper.insert(step);
             }
         }
+        // Validate the graph on save; an invalid graph rolls the transaction back
+        precompilePlan(getById(chain.getId()));
         return chain;
     }
 
@@ -83,7 +123,16 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
                 stepMapper.insert(step);
             }
         }
-        return getChainWithSteps(chain.getId());
+        PromptChain saved = getChainWithSteps(chain.getId());
+        planCache.evict(chain.getId());
+        precompilePlan(saved);
+        return saved;
+    }
+
+    private void precompilePlan(PromptChain chain) {
+        if (chain != null && chain.getReactFlowNodes() != null && chain.getReactFlowEdges() != null) {
+            planCache.forChain(chain);
+        }
     }
 
     public List<PromptChain> getUserChains(Long userId) {
@@ -102,12 +151,33 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
     }
 
     public List<Map<String, Object>> executeChain(Long chainId, Map<String, Object> initialVariables) {
+        return executeChain(chainId, initialVariables, true);
+    }
+
+    /**
+     * Runs a chain. With {@code reuseResults}, graph nodes whose definition and inputs are unchanged
+     * since an earlier run return that run's result instead of executing again.
+     */
+    public List<Map<String, Object>> executeChain(Long chainId, Map<String, Object> initialVariables, boolean reuseResults) {
         PromptChain chain = getChainWithSteps(chainId);
         if (chain == null) throw new RuntimeException("Chain not found");
 
+        // Root span of the run; steps and their generations nest under it
+        LLMTracingService.TraceSpan span = tracingService.startSpan("chain.execute", Map.of("genie.chain.id", chainId));
+        try (LLMTracingService.Scope ignored = tracingService.activate(span)) {
+            return executeChainSteps(chain, initialVariables, reuseResults);
+        } catch (RuntimeException e) {
+            tracingService.recordError(span, e.getMessage(), e);
+            throw e;
+        } finally {
+            tracingService.endSpan(span);
+        }
+    }
+
+    private List<Map<String, Object>> executeChainSteps(PromptChain chain, Map<String, Object> initialVariables, boolean reuseResults) {
         // If this chain has React Flow graph data, use graph execution
         if (chain.getReactFlowNodes() != null && !chain.getReactFlowNodes().equals("[]")) {
-             Object graphResult = executeChainGraph(chain, initialVariables);
+             Object graphResult = executeChainGraph(chain, initialVariables, reuseResults);
              // Wrap single result or list result into standardized list format
              if (graphResult instanceof List) {
                  return (List<Map<String, Object>>) graphResult;
@@ -131,9 +201,9 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         for (Map.Entry<Integer, List<ChainStep>> entry : stepsByOrder.entrySet()) {
             List<ChainStep> parallelSteps = entry.getValue();
             
-            // Execute parallel steps
+            // Execute parallel steps; provider calls are non-blocking so no pool thread is held per step
             List<CompletableFuture<Map<String, Object>>> futures = parallelSteps.stream()
-                .map(step -> CompletableFuture.supplyAsync(() -> executeLinearStep(step, currentVariables)))
+                .map(step -> executeLinearStep(step, currentVariables))
                 .collect(Collectors.toList());
 
             // Wait for all to complete
@@ -155,7 +225,7 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         return results;
     }
 
-    private Map<String, Object> executeLinearStep(ChainStep step, Map<String, Object> currentVariables) {
+    private CompletableFuture<Map<String, Object>> executeLinearStep(ChainStep step, Map<String, Object> currentVariables) {
         Prompt prompt = step.getPrompt();
         if (prompt == null) {
             throw new RuntimeException("Prompt not found for step " + step.getStepOrder());
@@ -200,118 +270,544 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
             }
         }
 
-        String output = playgroundService.runPrompt(prompt.getContent(), stepVariables, modelType, modelName, params);
-        
-        Map<String, Object> stepResult = new HashMap<>();
-        stepResult.put("step", step.getStepOrder());
-        stepResult.put("promptTitle", prompt.getTitle());
-        stepResult.put("output", output);
-        stepResult.put("_targetVariable", step.getTargetVariable());
-        return stepResult;
+        return playgroundService.runPromptAsync(templateCache.forPrompt(prompt), stepVariables, modelType, modelName, params, null)
+                .thenApply(output -> {
+                    Map<String, Object> stepResult = new HashMap<>();
+                    stepResult.put("step", step.getStepOrder());
+                    stepResult.put("promptTitle", prompt.getTitle());
+                    stepResult.put("output", output);
+                    stepResult.put("_targetVariable", step.getTargetVariable());
+                    return stepResult;
+                });
     }
 
     public Object executeChainGraph(PromptChain chain, Map<String, Object> initialVariables) {
+        return executeChainGraph(chain, initialVariables, false);
+    }
+
+    /**
+     * Runs the chain's graph. Branches not taken by a condition, loop or error retry node are
+     * skipped, loop bodies run once per iteration, and transient provider errors are retried
+     * with exponential backoff. Each output node's result carries {@code reused} (its own value
+     * came from the node memo), {@code reusedNodes} (ids of all nodes of this run served from the
+     * memo) and {@code skippedNodes} (ids of the nodes on untaken branches); outputs on untaken
+     * branches are left out. Only saved chains are memoized.
+     */
+    public Object executeChainGraph(PromptChain chain, Map<String, Object> initialVariables, boolean reuseResults) {
         if (chain.getReactFlowNodes() == null || chain.getReactFlowEdges() == null) {
             throw new RuntimeException("No graph data found in chain");
         }
+        // Parsed, sorted and validated once per chain version
+        ChainPlan plan = planCache.forChain(chain);
+        Long memoScope = reuseResults && chain.getId() != null && nodeMemo.isEnabled() ? chain.getId() : null;
 
+        ChainExecutor.ChainRun run = chainExecutor.newRun();
+        // Nodes run on executor threads, so their spans name this one as parent explicitly
+        LLMTracingService.TraceSpan graphSpan = tracingService.startSpan("chain.graph",
+                chain.getId() != null ? Map.of("genie.chain.id", chain.getId()) : Map.of());
         try {
-            List<Map<String, Object>> nodes = objectMapper.readValue(chain.getReactFlowNodes(), new TypeReference<List<Map<String, Object>>>(){});
-            List<Map<String, Object>> edges = objectMapper.readValue(chain.getReactFlowEdges(), new TypeReference<List<Map<String, Object>>>(){});
-            
-            // Build Graph
-            Map<String, Map<String, Object>> nodeMap = new HashMap<>();
-            for (Map<String, Object> node : nodes) {
-                nodeMap.put((String) node.get("id"), node);
+            // Futures are indexed by plan position; predecessors always come first in the plan
+            CompletableFuture<Object>[] nodeFutures = new CompletableFuture[plan.size()];
+            for (ChainPlan.Node node : plan.nodes()) {
+                nodeFutures[node.index()] = new CompletableFuture<>();
             }
+            GraphRun graph = new GraphRun(run, graphSpan, plan, nodeFutures, initialVariables, memoScope,
+                    ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
             
-            Map<String, CompletableFuture<Object>> nodeFutures = new ConcurrentHashMap<>();
-            
-            // Initialize all futures
-            for (Map<String, Object> node : nodes) {
-                nodeFutures.put((String) node.get("id"), new CompletableFuture<>());
-            }
-            
-            // Trigger execution
-            for (Map<String, Object> node : nodes) {
-                triggerNodeExecution(node, nodes, edges, nodeFutures, nodeMap, initialVariables);
+            // Trigger execution; loop bodies are run by their loop node
+            for (ChainPlan.Node node : plan.nodes()) {
+                if (!node.isInLoopBody()) {
+                    triggerNodeExecution(graph, node);
+                }
             }
             
-            // Find output nodes and wait for them
+            // Wait for output nodes
             List<Map<String, Object>> finalResults = new ArrayList<>();
             List<CompletableFuture<Void>> outputFutures = new ArrayList<>();
             
-            for (Map<String, Object> node : nodes) {
-                if ("outputNode".equals(node.get("type"))) {
-                    CompletableFuture<Void> f = nodeFutures.get(node.get("id")).thenAccept(result -> {
-                        Map<String, Object> res = new HashMap<>();
-                        res.put("nodeId", node.get("id"));
-                        res.put("label", ((Map)node.get("data")).get("label"));
-                        res.put("output", result);
-                        synchronized (finalResults) {
-                            finalResults.add(res);
-                        }
-                    });
-                    outputFutures.add(f);
-                }
+            for (int index : plan.outputNodes()) {
+                ChainPlan.Node node = plan.node(index);
+                CompletableFuture<Void> f = nodeFutures[index].thenAccept(result -> {
+                    if (result == SKIPPED) return;
+                    Map<String, Object> res = new HashMap<>();
+                    res.put("nodeId", node.id());
+                    res.put("label", node.label());
+                    res.put("output", result);
+                    res.put("reused", graph.reusedNodes().contains(node.id()));
+                    synchronized (finalResults) {
+                        finalResults.add(res);
+                    }
+                });
+                outputFutures.add(f);
             }
             
             CompletableFuture.allOf(outputFutures.toArray(new CompletableFuture[0])).join();
+            List<String> reusedIds = idsInPlanOrder(plan, graph.reusedNodes());
+            List<String> skippedIds = idsInPlanOrder(plan, graph.skippedNodes());
+            for (Map<String, Object> res : finalResults) {
+                res.put("reusedNodes", reusedIds);
+                res.put("skippedNodes", skippedIds);
+            }
             return finalResults;
 
         } catch (Exception e) {
+            // Stop sibling branches instead of letting them keep calling providers
+            run.cancel();
+            tracingService.recordError(graphSpan, e.getMessage(), e);
             throw new RuntimeException("DAG Execution Failed", e);
+        } finally {
+            run.close();
+            tracingService.endSpan(graphSpan);
         }
     }
 
-    private void triggerNodeExecution(Map<String, Object> node, List<Map<String, Object>> nodes, List<Map<String, Object>> edges, 
-                                      Map<String, CompletableFuture<Object>> nodeFutures, Map<String, Map<String, Object>> nodeMap,
-                                      Map<String, Object> globalContext) {
-        String nodeId = (String) node.get("id");
-        
-        // Find dependencies
-        List<String> dependencyIds = edges.stream()
-                .filter(e -> e.get("target").equals(nodeId))
-                .map(e -> (String) e.get("source"))
-                .collect(Collectors.toList());
-        
-        CompletableFuture[] depFutures = dependencyIds.stream()
-                .map(nodeFutures::get)
-                .toArray(CompletableFuture[]::new);
+    private void triggerNodeExecution(GraphRun graph, ChainPlan.Node node) {
+        int[] predecessors = node.predecessors();
+        CompletableFuture[] depFutures = new CompletableFuture[predecessors.length];
+        for (int i = 0; i < predecessors.length; i++) {
+            depFutures[i] = graph.futures()[predecessors[i]];
+        }
                 
-        CompletableFuture.allOf(depFutures).thenRunAsync(() -> {
+        CompletableFuture<Object> nodeFuture = graph.futures()[node.index()];
+        if (node.loop() != null) {
+            // Body nodes end with their last iteration's result; the rest never ran
+            nodeFuture.whenComplete((output, error) -> settleLoopBody(graph, node, error));
+        }
+        CompletableFuture.allOf(depFutures).whenComplete((ignored, depError) -> {
+            boolean retryNode = "errorRetryNode".equals(node.type());
+            if (depError != null && !retryNode) {
+                nodeFuture.completeExceptionally(depError);
+                return;
+            }
+            // An error retry node turns a failed input into its failure branch
+            Throwable failure = retryNode ? firstFailure(graph, node) : null;
+            if (failure != null) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("retry_failed", true);
+                result.put("error", String.valueOf(failure.getMessage()));
+                nodeFuture.complete(result);
+                return;
+            }
+
+            Map<String, Object> inputs;
+            String memoKey;
+            Object memoized;
+            try {
+                inputs = gatherInputs(graph.plan(), node, graph.globalContext(), dep -> graph.futures()[dep].join());
+                if (inputs == null) {
+                    // Every input is on an untaken branch
+                    graph.skippedNodes().add(node.id());
+                    nodeFuture.complete(SKIPPED);
+                    return;
+                }
+                // Unchanged node with unchanged inputs: reuse the earlier result without taking a slot
+                memoKey = graph.memoScope() != null && isMemoizable(node) ? nodeMemo.key(graph.memoScope(), node, inputs) : null;
+                memoized = memoKey != null ? nodeMemo.get(memoKey) : null;
+            } catch (RuntimeException e) {
+                nodeFuture.completeExceptionally(e);
+                return;
+            }
+            if (memoized != null) {
+                graph.reusedNodes().add(node.id());
+                metrics.recordChainNode(node.type(), GenieMetrics.CACHE_HIT, 0L);
+                nodeFuture.complete(memoized);
+                return;
+            }
+
             try {
-                // Gather inputs
-                Map<String, Object> inputs = new HashMap<>(globalContext);
-                for (String depId : dependencyIds) {
-                    Object result = nodeFutures.get(depId).join();
-                    if (result instanceof Map) {
-                        inputs.putAll((Map) result);
-                    } else if (result instanceof String) {
-                         // Default key for previous node output
-                        inputs.put("prev_output", result); 
-                        inputs.put(nodeMap.get(depId).get("type") + "_" + depId, result);
+                runNode(graph, node, inputs, graph.span()).whenComplete((output, error) -> {
+                    if (error != null) {
+                        nodeFuture.completeExceptionally(error);
+                    } else {
+                        if (memoKey != null) {
+                            nodeMemo.put(memoKey, output);
+                        }
+                        nodeFuture.complete(output);
                     }
+                });
+            } catch (Throwable e) {
+                // Nothing else would ever complete this node, and the run waits on every node
+                nodeFuture.completeExceptionally(e);
+            }
+        });
+    }
+
+    private CompletableFuture<Object> runNode(GraphRun graph, ChainPlan.Node node, Map<String, Object> inputs,
+                                              LLMTracingService.TraceSpan parentSpan) {
+        if (node.loop() != null) {
+            return runLoop(graph, node, inputs);
+        }
+        if ("mapNode".equals(node.type())) {
+            return runMap(graph, node, inputs, parentSpan);
+        }
+        return orProviderError(node, retrying(graph, node, 1,
+                () -> graph.run().submit(node.id(), () -> executeTraced(node, inputs, parentSpan))));
+    }
+
+    private Object executeTraced(ChainPlan.Node node, Map<String, Object> inputs, LLMTracingService.TraceSpan parentSpan) {
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("genie.node.id", node.id());
+        tags.put("genie.node.type", node.type());
+        if (node.isInLoopBody() && inputs.get("iteration") != null) {
+            tags.put("genie.loop.iteration", inputs.get("iteration"));
+        }
+        LLMTracingService.TraceSpan nodeSpan = tracingService.startSpan("chain.node", tags, parentSpan);
+        long startNanos = System.nanoTime();
+        String status = GenieMetrics.ERROR;
+        try (LLMTracingService.Scope scope = tracingService.activate(nodeSpan)) {
+            Object output = executeNodeLogic(node, inputs);
+            status = GenieMetrics.SUCCESS;
+            return output;
+        } catch (RuntimeException e) {
+            tracingService.recordError(nodeSpan, e.getMessage(), e);
+            throw e;
+        } finally {
+            metrics.recordChainNode(node.type(), status, System.nanoTime() - startNanos);
+            tracingService.endSpan(nodeSpan);
+        }
+    }
+
+    /**
+     * Runs {@code call}, and again with exponential backoff while it fails transiently. Nodes
+     * guarded by an error retry node use its policy, all others the executor's default.
+     */
+    private <T> CompletableFuture<T> retrying(GraphRun graph, ChainPlan.Node node, int attempt,
+                                              Supplier<CompletableFuture<T>> call) {
+        ChainPlan.RetryPolicy policy = node.retry() != null ? node.retry() : chainExecutor.defaultRetryPolicy();
+        CompletableFuture<T> attemptFuture;
+        try {
+            attemptFuture = call.get();
+        } catch (RuntimeException e) {
+            attemptFuture = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptFuture.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            if (error != null && attempt <= policy.maxRetries() && isTransient(cause) && !graph.run().isCancelled()) {
+                long delay = policy.delayMillis(attempt, chainExecutor.maxRetryDelayMillis());
+                chainExecutor.recordRetry();
+                tracingService.addEvent(graph.span(), "chain.node.retry", Map.of(
+                        "genie.node.id", node.id(), "attempt", attempt, "delayMs", delay, "error", String.valueOf(cause.getMessage())));
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() ->
+                        retrying(graph, node, attempt + 1, call).whenComplete((retried, retryError) -> {
+                            if (retryError != null) {
+                                result.completeExceptionally(unwrap(retryError));
+                            } else {
+                                result.complete(retried);
+                            }
+                        }));
+            } else if (error != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<Object> orProviderError(ChainPlan.Node node, CompletableFuture<T> future) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            if (cause instanceof ProviderCallFailed && node.retry() == null) {
+                // Without an error retry node the provider error stays the node's output, as before retries
+                result.complete(cause.getMessage());
+            } else if (error != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a loop node: while fewer than {@code maxIterations} iterations ran and its condition
+     * holds, the body runs once in topological order, and the results of the nodes feeding back
+     * into the loop node are merged into the variables of the next iteration. Body nodes see
+     * {@code iteration} counting from 1; the loop's own output carries the number of iterations.
+     */
+    private CompletableFuture<Object> runLoop(GraphRun graph, ChainPlan.Node loopNode, Map<String, Object> inputs) {
+        int maxIterations = ChainPlan.intValue(loopNode.data().get("maxIterations"), 10);
+        maxIterations = Math.max(0, Math.min(MAX_LOOP_ITERATIONS, maxIterations));
+
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("genie.node.id", loopNode.id());
+        tags.put("genie.node.type", loopNode.type());
+        LLMTracingService.TraceSpan loopSpan = tracingService.startSpan("chain.node", tags, graph.span());
+        long startNanos = System.nanoTime();
+        return iterate(graph, loopNode, new HashMap<>(inputs), maxIterations, 0, new HashMap<>(), loopSpan)
+                .whenComplete((output, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        tracingService.recordError(loopSpan, cause.getMessage(), cause);
+                    }
+                    metrics.recordChainNode(loopNode.type(), error == null ? GenieMetrics.SUCCESS : GenieMetrics.ERROR,
+                            System.nanoTime() - startNanos);
+                    tracingService.endSpan(loopSpan);
+                });
+    }
+
+    private CompletableFuture<Object> iterate(GraphRun graph, ChainPlan.Node loopNode, Map<String, Object> context,
+                                              int maxIterations, int iteration, Map<Integer, Object> lastResults,
+                                              LLMTracingService.TraceSpan loopSpan) {
+        ChainPlan.Loop loop = loopNode.loop();
+        context.put("iteration", iteration);
+        boolean shouldContinue = iteration < maxIterations
+                && (loopNode.condition() == null || evaluateCondition(loopNode.condition(), context));
+        if (!shouldContinue || graph.run().isCancelled()) {
+            // Body nodes keep the result of the last iteration they ran in
+            for (Map.Entry<Integer, Object> entry : lastResults.entrySet()) {
+                graph.futures()[entry.getKey()].complete(entry.getValue());
+            }
+            Map<String, Object> loopResult = new HashMap<>(context);
+            loopResult.put("iteration", iteration);
+            loopResult.put("should_continue", false);
+            return CompletableFuture.completedFuture(loopResult);
+        }
+
+        context.put("iteration", iteration + 1);
+        Map<Integer, Object> current = new HashMap<>();
+        CompletableFuture<Void> step = CompletableFuture.completedFuture(null);
+        for (int index : loop.body()) {
+            ChainPlan.Node bodyNode = graph.plan().node(index);
+            step = step.thenCompose(ignored -> runBodyNode(graph, loopNode, bodyNode, context, current, loopSpan));
+        }
+        return step.thenCompose(ignored -> {
+            for (Map.Entry<Integer, Object> entry : current.entrySet()) {
+                if (entry.getValue() != SKIPPED) {
+                    lastResults.put(entry.getKey(), entry.getValue());
                 }
-                
-                // Execute logic
-                Object output = executeNodeLogic(node, inputs);
-                nodeFutures.get(nodeId).complete(output);
+            }
+            for (int index : loop.feedback()) {
+                Object result = current.get(index);
+                if (result != null && result != SKIPPED) {
+                    mergeOutput(context, graph.plan().node(index), result);
+                }
+            }
+            return iterate(graph, loopNode, context, maxIterations, iteration + 1, lastResults, loopSpan);
+        });
+    }
+
+    private CompletableFuture<Void> runBodyNode(GraphRun graph, ChainPlan.Node loopNode, ChainPlan.Node bodyNode,
+                                                Map<String, Object> context, Map<Integer, Object> current,
+                                                LLMTracingService.TraceSpan loopSpan) {
+        Map<String, Object> inputs = gatherInputs(graph.plan(), bodyNode, context,
+                dep -> dep == loopNode.index() ? LOOP_ITERATION : current.getOrDefault(dep, SKIPPED));
+        if (inputs == null) {
+            current.put(bodyNode.index(), SKIPPED);
+            return CompletableFuture.completedFuture(null);
+        }
+        return runNode(graph, bodyNode, inputs, loopSpan).thenAccept(output -> current.put(bodyNode.index(), output));
+    }
+
+    private void settleLoopBody(GraphRun graph, ChainPlan.Node loopNode, Throwable error) {
+        for (int index : loopNode.loop().body()) {
+            CompletableFuture<Object> future = graph.futures()[index];
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else if (future.complete(SKIPPED)) {
+                graph.skippedNodes().add(graph.plan().node(index).id());
+            }
+        }
+    }
+
+    /**
+     * Runs a map node: its template is rendered and sent to the model once per item of the list
+     * input ({@code itemsKey}, by default {@code items}, falling back to {@code prev_output}),
+     * with {@code {{item}}} and {@code {{index}}} set. Every item is a node of the run: items share
+     * the run's concurrency limit with the other nodes and each gets the node timeout. Provider calls
+     * are non-blocking, so no executor thread is held per item.
+     */
+    private CompletableFuture<Object> runMap(GraphRun graph, ChainPlan.Node node, Map<String, Object> inputs,
+                                             LLMTracingService.TraceSpan parentSpan) {
+        Map<String, Object> data = node.data();
+        String itemsKey = (String) data.getOrDefault("itemsKey", "items");
+        List<Object> items = toItems(inputs.containsKey(itemsKey) ? inputs.get(itemsKey) : inputs.get("prev_output"));
+        int maxItems = Math.min(MAX_MAP_ITEMS, ChainPlan.intValue(data.get("maxItems"), DEFAULT_MAP_ITEMS));
+        if (items.size() > maxItems) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Map node " + node.id() + " received " + items.size() + " items, more than its limit of " + maxItems));
+        }
+        String model = (String) data.getOrDefault("modelName", "qwen-turbo");
+        Map<String, Object> params = Map.of("temperature", ChainPlan.doubleValue(data.get("temperature"), 0.7));
+
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("genie.node.id", node.id());
+        tags.put("genie.node.type", node.type());
+        tags.put("genie.map.items", items.size());
+        LLMTracingService.TraceSpan nodeSpan = tracingService.startSpan("chain.node", tags, parentSpan);
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<Object>> itemFutures = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> variables = new HashMap<>(inputs);
+            variables.put("item", items.get(i));
+            variables.put("index", i);
+            itemFutures.add(orProviderError(node, retrying(graph, node, 1, () -> graph.run().submitAsync(node.id(), () -> {
+                // Items start on whichever thread freed the slot, so name the node span as parent each time
+                try (LLMTracingService.Scope scope = tracingService.activate(nodeSpan)) {
+                    CompletableFuture<String> call = playgroundService.runPromptAsync(node.template(), variables, "text", model, params, null);
+                    CompletableFuture<String> checked = call.thenApply(this::checkProviderResult);
+                    // A timed out or cancelled item abandons its provider call
+                    checked.whenComplete((result, error) -> {
+                        if (checked.isCancelled()) {
+                            call.cancel(true);
+                        }
+                    });
+                    return checked;
+                }
+            }))));
+        }
+        return CompletableFuture.allOf(itemFutures.toArray(new CompletableFuture[0])).handle((ignored, error) -> {
+            try {
+                if (error != null) {
+                    Throwable cause = unwrap(error);
+                    tracingService.recordError(nodeSpan, cause.getMessage(), cause);
+                    metrics.recordChainNode(node.type(), GenieMetrics.ERROR, System.nanoTime() - startNanos);
+                    throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+                }
+                List<Object> results = itemFutures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+                long failed = results.stream()
+                        .filter(r -> r instanceof String text && text.startsWith(PlaygroundService.ERROR_PREFIX))
+                        .count();
+                Map<String, Object> output = new HashMap<>();
+                output.put("map_results", results);
+                output.put("count", results.size());
+                if (failed > 0) {
+                    output.put("error", failed + " of " + results.size() + " items failed");
+                }
+                output.put("prev_output", results.stream().map(String::valueOf).collect(Collectors.joining("\n\n")));
+                metrics.recordChainNode(node.type(), GenieMetrics.SUCCESS, System.nanoTime() - startNanos);
+                return output;
+            } finally {
+                tracingService.endSpan(nodeSpan);
+            }
+        });
+    }
+
+    private List<Object> toItems(Object source) {
+        if (source == null) return List.of();
+        if (source instanceof Collection<?> collection) return new ArrayList<>(collection);
+        String text = source.toString().trim();
+        if (text.startsWith("[")) {
+            try {
+                return objectMapper.readValue(text, new TypeReference<List<Object>>() {});
             } catch (Exception e) {
-                nodeFutures.get(nodeId).completeExceptionally(e);
+                // Not a JSON array, fall back to one item per line
             }
-        }, executor);
+        }
+        List<Object> items = new ArrayList<>();
+        for (String line : text.split("\\R")) {
+            if (!line.isBlank()) items.add(line.trim());
+        }
+        return items;
     }
 
-    private Object executeNodeLogic(Map<String, Object> node, Map<String, Object> inputs) {
-        String type = (String) node.get("type");
-        Map<String, Object> data = (Map<String, Object>) node.get("data");
+    /**
+     * Inputs of a node: the base variables plus the results of its predecessors on taken
+     * branches. Returns {@code null} when the node has predecessors but none of them is on a
+     * taken branch, i.e. the node must be skipped.
+     */
+    private static Map<String, Object> gatherInputs(ChainPlan plan, ChainPlan.Node node, Map<String, Object> base,
+                                                    IntFunction<Object> resultOf) {
+        Map<String, Object> inputs = new HashMap<>(base);
+        int[] predecessors = node.predecessors();
+        boolean taken = predecessors.length == 0;
+        for (int i = 0; i < predecessors.length; i++) {
+            ChainPlan.Node source = plan.node(predecessors[i]);
+            Object result = resultOf.apply(predecessors[i]);
+            if (!isBranchTaken(source, node.predecessorHandles()[i], result)) continue;
+            taken = true;
+            mergeOutput(inputs, source, result);
+        }
+        return taken ? inputs : null;
+    }
+
+    private static boolean isBranchTaken(ChainPlan.Node source, String handle, Object result) {
+        if (result == SKIPPED) return false;
+        if (handle == null) return true;
+        if ("conditionNode".equals(source.type())
+                && (ChainPlan.HANDLE_TRUE.equals(handle) || ChainPlan.HANDLE_FALSE.equals(handle))) {
+            boolean conditionResult = result instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get("condition_result"));
+            return conditionResult == ChainPlan.HANDLE_TRUE.equals(handle);
+        }
+        if ("loopNode".equals(source.type())) {
+            // Inside the body the loop is iterating; downstream of the loop node it has finished
+            boolean iterating = result == LOOP_ITERATION;
+            if (ChainPlan.HANDLE_CONTINUE.equals(handle)) return iterating;
+            if (ChainPlan.HANDLE_BREAK.equals(handle)) return !iterating;
+        }
+        if ("errorRetryNode".equals(source.type())) {
+            boolean failed = result instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get("retry_failed"));
+            if (ChainPlan.HANDLE_SUCCESS.equals(handle)) return !failed;
+            if (ChainPlan.HANDLE_FAILURE.equals(handle)) return failed;
+        }
+        return true;
+    }
+
+    private static void mergeOutput(Map<String, Object> inputs, ChainPlan.Node source, Object result) {
+        if (result instanceof Map) {
+            inputs.putAll((Map) result);
+        } else if (result instanceof String) {
+            // Default key for previous node output
+            inputs.put("prev_output", result);
+            inputs.put(source.outputKey(), result);
+        }
+    }
+
+    private static boolean isMemoizable(ChainPlan.Node node) {
+        // A loop's result depends on its body, and an error retry node's on whether its inputs failed
+        return node.loop() == null && !"errorRetryNode".equals(node.type());
+    }
+
+    private static Throwable firstFailure(GraphRun graph, ChainPlan.Node node) {
+        for (int dep : node.predecessors()) {
+            CompletableFuture<Object> future = graph.futures()[dep];
+            if (future.isCompletedExceptionally()) {
+                return unwrap(future.handle((value, error) -> error).join());
+            }
+        }
+        return null;
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof ProviderCallFailed failed) {
+            return failed.isTransient();
+        }
+        return error instanceof TimeoutException || error instanceof RejectedExecutionException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static List<String> idsInPlanOrder(ChainPlan plan, Set<String> ids) {
+        return plan.nodes().stream()
+                .map(ChainPlan.Node::id)
+                .filter(ids::contains)
+                .collect(Collectors.toList());
+    }
+
+    /** Provider errors come back from {@link PlaygroundService} as text; raise them so the node can be retried. */
+    private String checkProviderResult(String result) {
+        if (result != null && result.startsWith(PlaygroundService.ERROR_PREFIX)) {
+            throw new ProviderCallFailed(result);
+        }
+        return result;
+    }
+
+    private Object executeNodeLogic(ChainPlan.Node node, Map<String, Object> inputs) {
+        String type = node.type();
+        Map<String, Object> data = node.data();
         
         // Check if this is a risk node that requires human review
-        if (data != null && Boolean.TRUE.equals(data.get("isRiskNode"))) {
+        if (Boolean.TRUE.equals(data.get("isRiskNode"))) {
             Map<String, Object> result = new HashMap<>();
             result.put("requires_human_review", true);
-            result.put("node_id", node.get("id"));
+            result.put("node_id", node.id());
             result.put("node_type", type);
             result.put("node_label", data.get("label"));
             return result;
@@ -320,13 +816,7 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         Object result;
         
         if ("promptNode".equals(type)) {
-            String template = (String) data.get("content");
-            if (template == null) template = "";
-            for (String key : inputs.keySet()) {
-                if (inputs.get(key) != null) {
-                    template = template.replace("{{" + key + "}}", inputs.get(key).toString());
-                }
-            }
+            String template = node.template().render(inputs);
             result = Map.of("prompt_text", template);
         } 
         else if ("llmNode".equals(type)) {
@@ -335,13 +825,10 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
             if (promptText == null) promptText = "No prompt input";
             
             String model = (String) data.getOrDefault("modelName", "qwen-turbo");
-            Double temp = 0.7;
-            if (data.get("temperature") != null) {
-                temp = Double.valueOf(data.get("temperature").toString());
-            }
+            double temp = ChainPlan.doubleValue(data.get("temperature"), 0.7);
             
             // Call LLM
-            result = playgroundService.runPrompt(promptText, Map.of(), "text", model, Map.of("temperature", temp));
+            result = checkProviderResult(playgroundService.runPrompt(promptText, Map.of(), "text", model, Map.of("temperature", temp)));
         }
         else if ("outputNode".equals(type)) {
             // Just return what it received
@@ -350,35 +837,21 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
             else result = inputs;
         }
         else if ("conditionNode".equals(type)) {
-            String condition = (String) data.get("condition");
-            if (condition == null || condition.isEmpty()) {
+            if (node.condition() == null) {
                 result = Map.of("condition_result", true);
             } else {
                 // Simple condition evaluation
-                boolean conditionResult = evaluateCondition(condition, inputs);
+                boolean conditionResult = evaluateCondition(node.condition(), inputs);
                 result = Map.of("condition_result", conditionResult);
             }
         }
-        else if ("loopNode".equals(type)) {
-            String condition = (String) data.get("condition");
-            Integer maxIterations = data.get("maxIterations") != null ? Integer.parseInt(data.get("maxIterations").toString()) : 10;
-            
-            Integer iteration = inputs.containsKey("iteration") ? (Integer) inputs.get("iteration") : 0;
-            iteration++;
-            
-            boolean shouldContinue = iteration < maxIterations;
-            if (condition != null && !condition.isEmpty()) {
-                shouldContinue = shouldContinue && evaluateCondition(condition, inputs);
-            }
-            
-            Map<String, Object> loopResult = new HashMap<>();
-            loopResult.put("iteration", iteration);
-            loopResult.put("should_continue", shouldContinue);
-            result = loopResult;
-        }
         else if ("errorRetryNode".equals(type)) {
-            // Error retry logic will be handled in the triggerNodeExecution method
-            result = Map.of("retry_count", 0);
+            // Reached only when its inputs succeeded; failures go to the failure branch in triggerNodeExecution
+            Map<String, Object> passthrough = new HashMap<>();
+            passthrough.put("retry_failed", false);
+            if (inputs.containsKey("prev_output")) passthrough.put("prev_output", inputs.get("prev_output"));
+            if (inputs.containsKey("prompt_text")) passthrough.put("prompt_text", inputs.get("prompt_text"));
+            result = passthrough;
         }
         else if ("agentNode".equals(type)) {
             String agentType = (String) data.getOrDefault("agentType", "General");
@@ -401,7 +874,7 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
             
             // Call LLM with agent prompt
             String model = "qwen-turbo"; // Use appropriate model for agent
-            result = playgroundService.runPrompt(promptBuilder.toString(), Map.of(), "text", model, Map.of("temperature", 0.7));
+            result = checkProviderResult(playgroundService.runPrompt(promptBuilder.toString(), Map.of(), "text", model, Map.of("temperature", 0.7)));
         }
         else if ("toolNode".equals(type)) {
             String toolType = (String) data.getOrDefault("toolType", "Google Search");
@@ -416,7 +889,7 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         }
         
         // Apply guardrails if enabled
-        if (data != null && Boolean.TRUE.equals(data.get("hasGuardrails"))) {
+        if (Boolean.TRUE.equals(data.get("hasGuardrails"))) {
             result = applyGuardrails(result, data);
         }
         
@@ -437,7 +910,7 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         }
         
         // Check output length
-        Integer maxOutputLength = data.get("maxOutputLength") != null ? Integer.parseInt(data.get("maxOutputLength").toString()) : 1000;
+        int maxOutputLength = ChainPlan.intValue(data.get("maxOutputLength"), 1000);
         if (result.toString().length() > maxOutputLength) {
             return Map.of("error", "Output exceeds maximum length of " + maxOutputLength + " characters");
         }
@@ -515,17 +988,12 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         return Map.of("error", "Unknown tool type: " + toolType);
     }
     
-    private boolean evaluateCondition(String condition, Map<String, Object> inputs) {
+    private boolean evaluateCondition(PromptTemplate condition, Map<String, Object> inputs) {
         // Simple condition evaluation for demo purposes
         // In a real system, use a proper expression evaluator
         try {
             // Replace variables in condition
-            String evaluatedCondition = condition;
-            for (String key : inputs.keySet()) {
-                if (inputs.get(key) != null) {
-                    evaluatedCondition = evaluatedCondition.replace("{{" + key + "}}", inputs.get(key).toString());
-                }
-            }
+            String evaluatedCondition = condition.render(inputs);
             
             // Simple boolean evaluation
             if (evaluatedCondition.contains(">")) {
@@ -549,4 +1017,23 @@ public class ChainService extends ServiceImpl<PromptChainMapper, PromptChain> {
         }
         return false;
     }
+
+    private record GraphRun(ChainExecutor.ChainRun run, LLMTracingService.TraceSpan span, ChainPlan plan,
+                            CompletableFuture<Object>[] futures, Map<String, Object> globalContext, Long memoScope,
+                            Set<String> reusedNodes, Set<String> skippedNodes) {
+    }
+
+    /** A provider error that {@link PlaygroundService} returned as text, raised so the node can be retried. */
+    private static final class ProviderCallFailed extends RuntimeException {
+        private final boolean transientError;
+
+        ProviderCallFailed(String message) {
+            super(message);
+            this.transientError = TRANSIENT_PROVIDER_ERROR.matcher(message).find();
+        }
+
+        boolean isTransient() {
+            return transientError;
+        }
+    }
 }
@@ -0,0 +1,8 @@
+package com.promptgenie.prompt.service;
+
+/**
+ * Published when a prompt is created, edited or deleted, whether or not it is public.
+ * {@link PromptSearchService} re-indexes the prompt once the change commits.
+ */
+public record PromptChangedEvent(Long promptId) {
+}
@@ -0,0 +1,430 @@
+package com.promptgenie.prompt.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.prompt.entity.Prompt;
+import com.promptgenie.prompt.mapper.PromptCounterMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind likes/usage/forks counters. Increments only touch striped in-memory adders and
+ * queue a WAL record; every {@code genie.counters.flush-interval-ms} the accumulated deltas are
+ * added to {@code prompts} with a single {@code UPDATE ... SET usage_count = usage_count + d.usage}
+ * statement per batch, so hot prompts no longer serialize on a row lock per call.
+ * <p>
+ * Deltas are grouped in epochs, each with its own WAL segment file. A flush seals the current epoch
+ * and applies it in one transaction together with a {@code counter_flushes} row for its segment;
+ * the segment file is deleted afterwards. Segments left behind by a crash are replayed on startup,
+ * and the {@code counter_flushes} row makes the replay skip segments whose transaction had already
+ * committed. A crash loses at most the last {@code genie.counters.wal-sync-interval-ms} of increments.
+ */
+@Slf4j
+@Service
+public class PromptCounterService {
+
+    public enum Counter {
+        LIKES("L"), USAGE("U"), FORKS("F");
+
+        private final String code;
+
+        Counter(String code) {
+            this.code = code;
+        }
+
+        static Counter ofCode(String code) {
+            for (Counter counter : values()) {
+                if (counter.code.equals(code)) return counter;
+            }
+            throw new IllegalArgumentException("Unknown counter " + code);
+        }
+    }
+
+    /** Net change of one prompt's counters within a flush. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CounterDelta {
+        private Long promptId;
+        private int likes;
+        private int usage;
+        private int forks;
+    }
+
+    private static final String WAL_SUFFIX = ".wal";
+
+    @Autowired
+    private PromptCounterMapper counterMapper;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    @Lazy
+    private PromptCounterService self;
+
+    // Increments hold the read lock, so sealing (write lock) never races an add into the old epoch
+    private final ReentrantReadWriteLock epochLock = new ReentrantReadWriteLock();
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong segmentSeq = new AtomicLong();
+    private volatile Epoch current;
+    // Sealed epochs awaiting a successful flush, oldest first; only touched by the flush thread
+    private final Deque<Epoch> sealed = new ArrayDeque<>();
+    private final Map<Long, Deltas> sealedTotals = new ConcurrentHashMap<>();
+    private Path walDir;
+    private LocalDateTime lastPrune = LocalDateTime.MIN;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedPrompts = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong replayedSegments = new AtomicLong();
+
+    private static final class Deltas {
+        final LongAdder likes = new LongAdder();
+        final LongAdder usage = new LongAdder();
+        final LongAdder forks = new LongAdder();
+
+        void add(Counter counter, long delta) {
+            switch (counter) {
+                case LIKES -> likes.add(delta);
+                case USAGE -> usage.add(delta);
+                case FORKS -> forks.add(delta);
+            }
+        }
+
+        boolean isZero() {
+            return likes.sum() == 0 && usage.sum() == 0 && forks.sum() == 0;
+        }
+    }
+
+    private static final class Epoch {
+        final String segmentId;
+        final Path file;
+        final FileChannel channel;
+        final Map<Long, Deltas> deltas = new ConcurrentHashMap<>();
+        final Queue<String> unwritten = new ConcurrentLinkedQueue<>();
+
+        Epoch(String segmentId, Path file, FileChannel channel) {
+            this.segmentId = segmentId;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        /** Appends queued records to the segment and forces them to disk. */
+        synchronized void sync() throws IOException {
+            if (channel == null || unwritten.isEmpty()) return;
+            StringBuilder records = new StringBuilder();
+            String record;
+            while ((record = unwritten.poll()) != null) {
+                records.append(record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+
+        synchronized void close() throws IOException {
+            sync();
+            if (channel != null) channel.close();
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        walDir = Paths.get(config().getWalDir());
+        Files.createDirectories(walDir);
+        // Segments of a previous run are queued ahead of anything new; the first flush replays them
+        List<Path> leftovers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(walDir, "*" + WAL_SUFFIX)) {
+            files.forEach(leftovers::add);
+        }
+        leftovers.sort(null);
+        for (Path file : leftovers) {
+            Epoch epoch = readSegment(file);
+            sealed.add(epoch);
+            mergeInto(sealedTotals, epoch.deltas);
+        }
+        if (!leftovers.isEmpty()) {
+            log.info("Replaying {} counter WAL segment(s) from {}", leftovers.size(), walDir);
+        }
+        current = openEpoch();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+            current.close();
+            if (current.deltas.isEmpty()) {
+                Files.deleteIfExists(current.file);
+            }
+        } catch (Exception e) {
+            log.warn("Counter shutdown flush failed, WAL segments will be replayed on restart: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds {@code delta} to a counter of {@code promptId}. Inside a transaction the delta only
+     * counts once it commits.
+     */
+    public void add(Long promptId, Counter counter, int delta) {
+        if (promptId == null || delta == 0) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(promptId, counter, delta);
+                }
+            });
+        } else {
+            record(promptId, counter, delta);
+        }
+    }
+
+    /**
+     * Adds the not yet flushed deltas of {@code prompt} to its counters, so a prompt read right
+     * after a like or use already shows it.
+     */
+    public void applyPending(Prompt prompt) {
+        if (prompt == null || prompt.getId() == null) return;
+        long likes = 0, usage = 0, forks = 0;
+        for (Deltas deltas : new Deltas[]{sealedTotals.get(prompt.getId()), current.deltas.get(prompt.getId())}) {
+            if (deltas == null) continue;
+            likes += deltas.likes.sum();
+            usage += deltas.usage.sum();
+            forks += deltas.forks.sum();
+        }
+        if (likes != 0) prompt.setLikesCount((int) Math.max(0, orZero(prompt.getLikesCount()) + likes));
+        if (usage != 0) prompt.setUsageCount((int) (orZero(prompt.getUsageCount()) + usage));
+        if (forks != 0) prompt.setForksCount((int) (orZero(prompt.getForksCount()) + forks));
+    }
+
+    @Scheduled(fixedDelayString = "${genie.counters.wal-sync-interval-ms:200}")
+    public void syncWal() {
+        try {
+            current.sync();
+        } catch (IOException e) {
+            log.error("Failed to write counter WAL: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Seals the current epoch and applies every sealed epoch in order. A failed epoch stays queued,
+     * with its segment file, and is retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${genie.counters.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (!current.deltas.isEmpty()) {
+            seal();
+        }
+        boolean applied = false;
+        while (!sealed.isEmpty()) {
+            Epoch epoch = sealed.peek();
+            List<CounterDelta> rows = toRows(epoch.deltas);
+            try {
+                if (!rows.isEmpty()) {
+                    if (self.applySegment(epoch.segmentId, rows)) {
+                        applied = true;
+                        flushedPrompts.addAndGet(rows.size());
+                    } else {
+                        replayedSegments.incrementAndGet();
+                    }
+                }
+                Files.deleteIfExists(epoch.file);
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                log.error("Counter flush of segment {} failed, retrying later: {}", epoch.segmentId, e.getMessage());
+                return;
+            }
+            sealed.poll();
+            subtractFrom(sealedTotals, epoch.deltas);
+            flushes.incrementAndGet();
+        }
+        if (applied) {
+            pruneApplied();
+        }
+    }
+
+    /**
+     * Applies one segment's deltas. Returns false if the segment had already been applied.
+     */
+    @Transactional
+    public boolean applySegment(String segmentId, List<CounterDelta> rows) {
+        if (counterMapper.insertApplied(segmentId) == 0) {
+            return false;
+        }
+        int batchSize = Math.max(1, config().getBatchSize());
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            counterMapper.applyDeltas(rows.subList(i, Math.min(rows.size(), i + batchSize)));
+        }
+        // Trending order depends on likes and forks; one narrow invalidation per flush instead of one per
+        // like. Usage-only flushes publish nothing: that part of the score catches up within the cache TTL
+        if (rows.stream().anyMatch(row -> row.getLikes() != 0 || row.getForks() != 0)) {
+            eventPublisher.publishEvent(PublicCatalogChangedEvent.rankingChanged());
+        }
+        return true;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingPrompts", current.deltas.size() + sealedTotals.size());
+        stats.put("sealedSegments", sealed.size());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedPrompts", flushedPrompts.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("replayedSegments", replayedSegments.get());
+        return stats;
+    }
+
+    private void record(Long promptId, Counter counter, int delta) {
+        epochLock.readLock().lock();
+        try {
+            Epoch epoch = current;
+            epoch.deltas.computeIfAbsent(promptId, id -> new Deltas()).add(counter, delta);
+            epoch.unwritten.add(promptId + " " + counter.code + " " + delta + "\n");
+        } finally {
+            epochLock.readLock().unlock();
+        }
+    }
+
+    private void seal() {
+        Epoch next;
+        try {
+            next = openEpoch();
+        } catch (IOException e) {
+            log.error("Failed to open counter WAL segment, flush postponed: {}", e.getMessage());
+            return;
+        }
+        Epoch old;
+        epochLock.writeLock().lock();
+        try {
+            old = current;
+            // Totals first: a concurrent pending read may count the epoch twice for a moment, never zero times
+            mergeInto(sealedTotals, old.deltas);
+            current = next;
+        } finally {
+            epochLock.writeLock().unlock();
+        }
+        try {
+            old.close();
+        } catch (IOException e) {
+            // The deltas are still applied from memory; only crash recovery of this epoch is affected
+            log.error("Failed to close counter WAL segment {}: {}", old.segmentId, e.getMessage());
+        }
+        sealed.add(old);
+    }
+
+    private Epoch openEpoch() throws IOException {
+        String segmentId = String.format("%s-%d-%06d", nodeId, System.currentTimeMillis(), segmentSeq.incrementAndGet());
+        Path file = walDir.resolve(segmentId + WAL_SUFFIX);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new Epoch(segmentId, file, channel);
+    }
+
+    private Epoch readSegment(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        Epoch epoch = new Epoch(name.substring(0, name.length() - WAL_SUFFIX.length()), file, null);
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.split(" ");
+            try {
+                epoch.deltas.computeIfAbsent(Long.valueOf(parts[0]), id -> new Deltas())
+                        .add(Counter.ofCode(parts[1]), Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                // A torn last record from a crash mid-write
+                log.warn("Skipping malformed counter WAL record in {}: {}", name, line);
+            }
+        }
+        return epoch;
+    }
+
+    private void pruneApplied() {
+        LocalDateTime now = LocalDateTime.now();
+        if (lastPrune.isAfter(now.minusHours(1))) return;
+        lastPrune = now;
+        try {
+            counterMapper.deleteAppliedBefore(now.minusDays(config().getAppliedRetentionDays()));
+        } catch (Exception e) {
+            log.warn("Failed to prune applied counter segments: {}", e.getMessage());
+        }
+    }
+
+    private static List<CounterDelta> toRows(Map<Long, Deltas> deltas) {
+        List<CounterDelta> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((promptId, d) -> {
+            if (!d.isZero()) {
+                rows.add(new CounterDelta(promptId, (int) d.likes.sum(), (int) d.usage.sum(), (int) d.forks.sum()));
+            }
+        });
+        // A stable lock order keeps concurrent flushes from different nodes from deadlocking
+        rows.sort((a, b) -> Long.compare(a.getPromptId(), b.getPromptId()));
+        return rows;
+    }
+
+    private static void mergeInto(Map<Long, Deltas> totals, Map<Long, Deltas> deltas) {
+        deltas.forEach((promptId, d) -> {
+            Deltas total = totals.computeIfAbsent(promptId, id -> new Deltas());
+            total.likes.add(d.likes.sum());
+            total.usage.add(d.usage.sum());
+            total.forks.add(d.forks.sum());
+        });
+    }
+
+    private static void subtractFrom(Map<Long, Deltas> totals, Map<Long, Deltas> deltas) {
+        deltas.forEach((promptId, d) -> {
+            Deltas total = totals.get(promptId);
+            if (total == null) return;
+            total.likes.add(-d.likes.sum());
+            total.usage.add(-d.usage.sum());
+            total.forks.add(-d.forks.sum());
+            if (total.isZero()) totals.remove(promptId, total);
+        });
+    }
+
+    private static long orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private GenieConfig.CounterConfig config() {
+        return genieConfig.getCounters() != null ? genieConfig.getCounters() : new GenieConfig.CounterConfig();
+    }
+}
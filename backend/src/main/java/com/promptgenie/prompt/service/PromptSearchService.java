@@ -0,0 +1,461 @@
+package com.promptgenie.prompt.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.prompt.entity.Prompt;
+import com.promptgenie.prompt.entity.Tag;
+import com.promptgenie.prompt.mapper.PromptMapper;
+import com.promptgenie.prompt.mapper.TagMapper;
+import com.promptgenie.service.search.CjkTextAnalyzer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text index over prompts (title, content, tags, category, scene) in an embedded Lucene index at
+ * {@code genie.search.index-dir}. Ranking is Lucene's BM25; each query term is matched across fields
+ * with per-field boosts, Latin terms also match within one or two edits and the last term also as a
+ * prefix, and CJK text is searched through {@link CjkTextAnalyzer} bigrams.
+ * <p>
+ * The index follows the database through {@link PromptChangedEvent} and
+ * {@link PublicCatalogChangedEvent}: after commit the prompt id is queued and a single indexing
+ * thread re-reads the row and updates its document, so writers never wait on Lucene. The index is
+ * rebuilt in the background when it is missing, from an older schema, or out of step with the
+ * table; until then {@link #isReady()} is false and callers use their SQL fallback.
+ * <p>
+ * Every instance keeps its own index. With {@code genie.catalog.redis-enabled} the ids of changed
+ * prompts are also broadcast over Redis, so an edit committed on one instance is re-indexed on all
+ * of them. Ids whose indexing fails are queued again and retried after a short delay.
+ */
+@Slf4j
+@Service
+public class PromptSearchService {
+
+    private static final String SCHEMA_VERSION = "1";
+    private static final int REBUILD_BATCH = 500;
+    private static final long RETRY_DELAY_SECONDS = 5;
+    private static final String CHANGE_CHANNEL = "prompt-index:changed";
+
+    private static final String F_ID = "id";
+    private static final String F_USER = "user_id";
+    private static final String F_VISIBILITY = "visibility";
+    private static final String F_TITLE = "title";
+    private static final String F_CONTENT = "content";
+    private static final String F_TAGS = "tags";
+    private static final String F_TAG = "tag";
+    private static final String F_FACETS = "facets";
+    private static final String F_CATEGORY = "category";
+    private static final String F_SCENE = "scene";
+    private static final String F_ASSET_TYPE = "asset_type";
+
+    private static final Map<String, Float> FIELD_BOOSTS = Map.of(F_TITLE, 3.0f, F_TAGS, 2.0f, F_FACETS, 1.5f, F_CONTENT, 1.0f);
+    private static final String[] FUZZY_FIELDS = {F_TITLE, F_TAGS, F_CONTENT};
+    private static final String[] HIGHLIGHT_FIELDS = {F_TITLE, F_CONTENT, F_TAGS};
+
+    private static final FieldType TEXT_WITH_OFFSETS = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        // Offsets in the postings let the highlighter skip re-analysing stored text
+        TEXT_WITH_OFFSETS.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_WITH_OFFSETS.freeze();
+    }
+
+    @Autowired
+    private PromptMapper promptMapper;
+
+    @Autowired
+    private TagMapper tagMapper;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisProvider;
+
+    private final CjkTextAnalyzer analyzer = new CjkTextAnalyzer();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ScheduledExecutorService indexer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "prompt-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean ready;
+    private StringRedisTemplate redis;
+    private RedisMessageListenerContainer listenerContainer;
+
+    /** Restricts a search: {@code userId} null means the public catalog, otherwise that user's prompts. */
+    public record SearchFilter(Long userId, String category, String scene, String assetType, String tag) {
+        public static SearchFilter publicCatalog(String category, String scene, String assetType) {
+            return new SearchFilter(null, category, scene, assetType, null);
+        }
+    }
+
+    public record Hit(Long promptId, float score, Map<String, String> highlights) {
+    }
+
+    public record Result(List<Hit> hits, long total) {
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Path dir = Paths.get(config().getIndexDir());
+            Files.createDirectories(dir);
+            directory = FSDirectory.open(dir);
+            IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
+            writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(directory, writerConfig);
+            searcherManager = new SearcherManager(writer, new SearcherFactory());
+        } catch (IOException e) {
+            log.error("Failed to open prompt search index, full-text search disabled: {}", e.getMessage());
+            return;
+        }
+        subscribeToOtherInstances();
+        indexer.execute(() -> {
+            try {
+                String schema = null;
+                if (writer.getLiveCommitData() != null) {
+                    for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+                        if ("schema".equals(entry.getKey())) schema = entry.getValue();
+                    }
+                }
+                long rows = promptMapper.selectCount(null);
+                int docs = writer.getDocStats().numDocs;
+                if (SCHEMA_VERSION.equals(schema) && rows == docs) {
+                    ready = true;
+                    log.info("Prompt search index is current with {} documents", docs);
+                } else {
+                    log.info("Rebuilding prompt search index (schema {}, {} documents for {} prompts)", schema, docs, rows);
+                    rebuild();
+                }
+            } catch (Exception e) {
+                log.error("Prompt search index check failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdown();
+        try {
+            if (listenerContainer != null) listenerContainer.destroy();
+            indexer.awaitTermination(10, TimeUnit.SECONDS);
+            if (searcherManager != null) searcherManager.close();
+            if (writer != null) writer.close();
+            if (directory != null) directory.close();
+        } catch (Exception e) {
+            log.warn("Failed to close prompt search index: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromptChanged(PromptChangedEvent event) {
+        enqueue(event.promptId());
+        broadcast(event.promptId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(PublicCatalogChangedEvent event) {
+        // Publish/unpublish flips the visibility filter
+        enqueue(event.promptId());
+        broadcast(event.promptId());
+    }
+
+    /**
+     * Ranked hits {@code offset} to {@code offset + limit} for {@code query}, with highlighted snippets.
+     * Results beyond {@code genie.search.max-results} are not reachable.
+     */
+    public Result search(String query, SearchFilter filter, int offset, int limit) throws IOException {
+        Query textQuery = buildTextQuery(query);
+        int maxResults = config().getMaxResults();
+        if (textQuery == null || searcherManager == null || offset >= maxResults) {
+            return new Result(List.of(), 0);
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder().add(textQuery, BooleanClause.Occur.MUST);
+        if (filter.userId() != null) {
+            builder.add(new TermQuery(new Term(F_USER, String.valueOf(filter.userId()))), BooleanClause.Occur.FILTER);
+        } else {
+            builder.add(new TermQuery(new Term(F_VISIBILITY, "public")), BooleanClause.Occur.FILTER);
+        }
+        addExactFilter(builder, F_CATEGORY, filter.category());
+        addExactFilter(builder, F_SCENE, filter.scene());
+        addExactFilter(builder, F_ASSET_TYPE, filter.assetType());
+        addExactFilter(builder, F_TAG, filter.tag());
+        Query fullQuery = builder.build();
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            int end = Math.min(offset + limit, maxResults);
+            TopDocs top = searcher.search(fullQuery, end);
+            long total = Math.min(top.totalHits.value, maxResults);
+            if (top.scoreDocs.length <= offset) {
+                return new Result(List.of(), total);
+            }
+            ScoreDoc[] pageDocs = Arrays.copyOfRange(top.scoreDocs, offset, top.scoreDocs.length);
+            Map<String, String[]> snippets = highlighter(searcher).highlightFields(
+                    HIGHLIGHT_FIELDS, fullQuery, new TopDocs(top.totalHits, pageDocs), new int[]{1, 2, 1});
+
+            List<Hit> hits = new ArrayList<>(pageDocs.length);
+            for (int i = 0; i < pageDocs.length; i++) {
+                Document doc = searcher.storedFields().document(pageDocs[i].doc, Set.of(F_ID));
+                Map<String, String> highlights = new LinkedHashMap<>();
+                for (String field : HIGHLIGHT_FIELDS) {
+                    String snippet = snippets.get(field)[i];
+                    // Fields without a match come back as their leading text; only report real matches
+                    if (snippet != null && snippet.contains("<em>")) {
+                        highlights.put(field, snippet);
+                    }
+                }
+                hits.add(new Hit(Long.valueOf(doc.get(F_ID)), pageDocs[i].score, highlights));
+            }
+            return new Result(hits, total);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Drops and re-creates every document from the prompts table. Runs on the indexing thread.
+     */
+    public void requestRebuild() {
+        indexer.execute(this::rebuild);
+    }
+
+    Query buildTextQuery(String query) {
+        if (query == null || query.isBlank()) return null;
+        List<String> terms = analyzer.terms(query);
+        if (terms.isEmpty()) return null;
+        boolean fuzzy = !Boolean.FALSE.equals(config().getFuzzy());
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            boolean latin = CjkTextAnalyzer.isLatinTerm(term);
+            List<Query> alternatives = new ArrayList<>();
+            FIELD_BOOSTS.forEach((field, boost) -> alternatives.add(new BoostQuery(new TermQuery(new Term(field, term)), boost)));
+            if (latin && fuzzy && term.length() >= 4) {
+                int edits = term.length() >= 8 ? 2 : 1;
+                for (String field : FUZZY_FIELDS) {
+                    alternatives.add(new BoostQuery(new FuzzyQuery(new Term(field, term), edits, 1), FIELD_BOOSTS.get(field) * 0.5f));
+                }
+            }
+            if (latin && i == terms.size() - 1 && term.length() >= 2) {
+                // Search-as-you-type: the last word may be incomplete
+                for (String field : FUZZY_FIELDS) {
+                    alternatives.add(new BoostQuery(new PrefixQuery(new Term(field, term)), FIELD_BOOSTS.get(field) * 0.7f));
+                }
+            }
+            builder.add(new DisjunctionMaxQuery(alternatives, 0.1f), BooleanClause.Occur.SHOULD);
+        }
+        builder.setMinimumNumberShouldMatch(terms.size() <= 2 ? 1 : (terms.size() + 1) / 2);
+        return builder.build();
+    }
+
+    private void enqueue(Long promptId) {
+        if (promptId == null || writer == null) return;
+        if (pending.add(promptId)) {
+            indexer.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        if (pending.isEmpty()) return;
+        List<Long> batch = List.copyOf(pending);
+        try {
+            for (Long promptId : batch) {
+                pending.remove(promptId);
+                Prompt prompt = promptMapper.selectById(promptId);
+                if (prompt == null) {
+                    writer.deleteDocuments(new Term(F_ID, String.valueOf(promptId)));
+                } else {
+                    writer.updateDocument(new Term(F_ID, String.valueOf(promptId)), toDocument(prompt, tagMapper.selectByPromptId(promptId)));
+                }
+            }
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (Exception e) {
+            // Nothing of this batch is known to be committed; enqueue() will not re-trigger for ids
+            // already pending, so schedule the retry here
+            log.error("Failed to update prompt search index, retrying {} prompts in {}s: {}", batch.size(), RETRY_DELAY_SECONDS, e.getMessage());
+            pending.addAll(batch);
+            indexer.schedule(this::drain, RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void subscribeToOtherInstances() {
+        if (!Boolean.TRUE.equals(catalogConfig().getRedisEnabled())) return;
+        redis = redisProvider.getIfAvailable();
+        if (redis == null) return;
+        try {
+            listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(redis.getConnectionFactory());
+            listenerContainer.addMessageListener((message, pattern) -> {
+                String body = new String(message.getBody(), StandardCharsets.UTF_8);
+                int separator = body.lastIndexOf(':');
+                // Own broadcasts were indexed when the local event fired
+                if (separator > 0 && !nodeId.equals(body.substring(0, separator))) {
+                    enqueue(Long.valueOf(body.substring(separator + 1)));
+                }
+            }, new ChannelTopic(CHANGE_CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        } catch (Exception e) {
+            log.warn("Prompt index change feed unavailable, other instances' edits reach this index only on rebuild: {}", e.getMessage());
+            redis = null;
+        }
+    }
+
+    private void broadcast(Long promptId) {
+        if (promptId == null || redis == null) return;
+        try {
+            redis.convertAndSend(CHANGE_CHANNEL, nodeId + ":" + promptId);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast prompt index change: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        ready = false;
+        try {
+            writer.deleteAll();
+            long lastId = Long.MIN_VALUE;
+            int indexed = 0;
+            while (true) {
+                QueryWrapper<Prompt> query = new QueryWrapper<>();
+                query.gt("id", lastId).orderByAsc("id").last("LIMIT " + REBUILD_BATCH);
+                List<Prompt> batch = promptMapper.selectList(query);
+                if (batch.isEmpty()) break;
+                Map<Long, List<Tag>> tags = tagMapper.selectByPromptIds(batch.stream().map(Prompt::getId).collect(Collectors.toList()))
+                        .stream().collect(Collectors.groupingBy(Tag::getPromptId));
+                for (Prompt prompt : batch) {
+                    writer.addDocument(toDocument(prompt, tags.getOrDefault(prompt.getId(), List.of())));
+                }
+                indexed += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            Map<String, String> commitData = new HashMap<>();
+            commitData.put("schema", SCHEMA_VERSION);
+            writer.setLiveCommitData(commitData.entrySet());
+            writer.commit();
+            searcherManager.maybeRefresh();
+            ready = true;
+            log.info("Prompt search index rebuilt with {} documents", indexed);
+        } catch (Exception e) {
+            log.error("Prompt search index rebuild failed, search falls back to SQL: {}", e.getMessage());
+        }
+    }
+
+    private Document toDocument(Prompt prompt, List<Tag> tags) {
+        Document doc = new Document();
+        doc.add(new StringField(F_ID, String.valueOf(prompt.getId()), Field.Store.YES));
+        if (prompt.getUserId() != null) {
+            doc.add(new StringField(F_USER, String.valueOf(prompt.getUserId()), Field.Store.NO));
+        }
+        if (Boolean.TRUE.equals(prompt.getIsPublic()) && "PUBLISHED".equals(prompt.getStatus())) {
+            doc.add(new StringField(F_VISIBILITY, "public", Field.Store.NO));
+        }
+        doc.add(new Field(F_TITLE, nullToEmpty(prompt.getTitle()), TEXT_WITH_OFFSETS));
+        doc.add(new Field(F_CONTENT, nullToEmpty(prompt.getContent()), TEXT_WITH_OFFSETS));
+        List<String> tagNames = tags != null ? tags.stream().map(Tag::getName).filter(n -> n != null && !n.isBlank()).toList() : List.of();
+        doc.add(new Field(F_TAGS, String.join(" ", tagNames), TEXT_WITH_OFFSETS));
+        for (String tag : tagNames) {
+            doc.add(new StringField(F_TAG, tag, Field.Store.NO));
+        }
+        doc.add(new TextField(F_FACETS, nullToEmpty(prompt.getCategory()) + " " + nullToEmpty(prompt.getScene()), Field.Store.NO));
+        addExactField(doc, F_CATEGORY, prompt.getCategory());
+        addExactField(doc, F_SCENE, prompt.getScene());
+        addExactField(doc, F_ASSET_TYPE, prompt.getAssetType());
+        return doc;
+    }
+
+    private UnifiedHighlighter highlighter(IndexSearcher searcher) {
+        return UnifiedHighlighter.builder(searcher, analyzer)
+                .withHandleMultiTermQuery(true)
+                .withFormatter(new DefaultPassageFormatter("<em>", "</em>", " ... ", true))
+                .build();
+    }
+
+    private static void addExactField(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new StringField(field, value, Field.Store.NO));
+        }
+    }
+
+    private static void addExactFilter(BooleanQuery.Builder builder, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            builder.add(new TermQuery(new Term(field, value)), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private GenieConfig.CatalogConfig catalogConfig() {
+        return genieConfig.getCatalog() != null ? genieConfig.getCatalog() : new GenieConfig.CatalogConfig();
+    }
+
+    private GenieConfig.SearchConfig config() {
+        return genieConfig.getSearch() != null ? genieConfig.getSearch() : new GenieConfig.SearchConfig();
+    }
+}
@@ -1,6 +1,11 @@
 package com.promptgenie.prompt.service;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.dto.CatalogPage;
+import com.promptgenie.dto.PromptSearchHit;
+import com.promptgenie.dto.PromptSearchPage;
 import com.promptgenie.prompt.entity.Prompt;
 import com.promptgenie.prompt.entity.Tag;
 import com.promptgenie.prompt.entity.PromptVersion;
@@ -9,27 +14,27 @@ import com.promptgenie.prompt.mapper.PromptMapper;
 import com.promptgenie.prompt.mapper.TagMapper;
 import com.promptgenie.prompt.mapper.PromptVersionMapper;
 import com.promptgenie.prompt.mapper.PromptLikeMapper;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 
-import org.springframework.context.annotation.Lazy;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.CacheEvict;
-
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
 
-    @Autowired
-    @Lazy
-    private PromptService self;
-
     @Autowired
     private TagMapper tagMapper;
 
@@ -38,6 +43,23 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
 
     @Autowired
     private PromptLikeMapper likeMapper;
+
+    @Autowired
+    private PublicCatalogCache catalogCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private PromptSearchService searchService;
+
+    @Autowired
+    private PromptCounterService counterService;
+
+    private static final int LIST_SEARCH_LIMIT = 200;
     
     public List<Prompt> getAll(Long userId) {
         List<Prompt> prompts = baseMapper.selectByUserIdOrderByCreatedAtDesc(userId);
@@ -46,11 +68,66 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
     }
 
     public List<Prompt> searchPrompts(Long userId, String search, String tag) {
+        if (search != null && !search.isBlank() && searchService.isReady()) {
+            PromptSearchService.SearchFilter filter = new PromptSearchService.SearchFilter(userId, null, null, null,
+                    tag != null && !tag.isBlank() ? tag : null);
+            return searchPage(search, filter, 0, LIST_SEARCH_LIMIT).getHits().stream()
+                    .map(PromptSearchHit::getPrompt).collect(Collectors.toList());
+        }
+        // The index is still being built; fall back to the unranked scan
         List<Prompt> prompts = baseMapper.selectByUserIdAndFilters(userId, search, tag);
         loadTagsForPrompts(prompts);
         return prompts;
     }
+
+    /**
+     * Ranked, highlighted full-text hits with their prompts and tags loaded.
+     *
+     * @param page zero-based
+     * @throws IllegalStateException while the search index is being built
+     */
+    public PromptSearchPage search(String query, PromptSearchService.SearchFilter filter, int page, int size) {
+        if (!searchService.isReady()) {
+            throw new IllegalStateException("Search index is being built");
+        }
+        PromptSearchPage result = searchPage(query, filter, page * size, size);
+        result.setPage(page);
+        return result;
+    }
+
+    private PromptSearchPage searchPage(String query, PromptSearchService.SearchFilter filter, int offset, int size) {
+        PromptSearchService.Result result;
+        try {
+            result = searchService.search(query, filter, offset, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (result.hits().isEmpty()) {
+            return new PromptSearchPage(new ArrayList<>(), result.total(), 0, size);
+        }
+        List<Long> ids = result.hits().stream().map(PromptSearchService.Hit::promptId).collect(Collectors.toList());
+        Map<Long, Prompt> prompts = listByIds(ids).stream().collect(Collectors.toMap(Prompt::getId, Function.identity()));
+        loadTagsForPrompts(new ArrayList<>(prompts.values()));
+
+        List<PromptSearchHit> hits = new ArrayList<>();
+        for (PromptSearchService.Hit hit : result.hits()) {
+            Prompt prompt = prompts.get(hit.promptId());
+            // The index catches up after commit (and on other instances only with Redis): skip hits
+            // deleted, unpublished or made private since, rather than serving them from a stale document
+            if (prompt != null && isVisible(prompt, filter)) {
+                hits.add(new PromptSearchHit(prompt, hit.score(), hit.highlights()));
+            }
+        }
+        return new PromptSearchPage(hits, result.total(), 0, size);
+    }
     
+    private static boolean isVisible(Prompt prompt, PromptSearchService.SearchFilter filter) {
+        if (filter.userId() != null) {
+            return filter.userId().equals(prompt.getUserId());
+        }
+        return Boolean.TRUE.equals(prompt.getIsPublic()) && "PUBLISHED".equals(prompt.getStatus());
+    }
+
     private void loadTagsForPrompts(List<Prompt> prompts) {
         if (prompts == null || prompts.isEmpty()) {
             return;
@@ -76,12 +153,12 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
         Prompt prompt = super.getById(id);
         if (prompt != null) {
             loadTags(prompt);
+            counterService.applyPending(prompt);
         }
         return prompt;
     }
 
     @Transactional
-    // @CacheEvict(value = "public_prompts", allEntries = true)
     public Prompt createPrompt(Prompt prompt) {
         if (prompt.getStatus() == null || prompt.getStatus().isBlank()) {
             if (Boolean.TRUE.equals(prompt.getIsPublic())) {
@@ -97,19 +174,55 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
         if (result && prompt.getTags() != null) {
             saveTags(prompt);
         }
+        if (result) {
+            promptChanged(prompt.getId());
+        }
+        if (result && "PUBLISHED".equals(prompt.getStatus())) {
+            catalogChanged(prompt.getId());
+        }
         return prompt;
     }
 
     @Transactional
-    // @CacheEvict(value = "public_prompts", allEntries = true)
     public Prompt updatePrompt(Prompt prompt) {
         boolean result = updateById(prompt);
         if (result && prompt.getTags() != null) {
             tagMapper.deleteByPromptId(prompt.getId());
             saveTags(prompt);
         }
+        if (result) {
+            promptChanged(prompt.getId());
+            catalogChanged(prompt.getId());
+        }
         return prompt;
     }
+
+    @Override
+    public boolean removeById(java.io.Serializable id) {
+        boolean removed = super.removeById(id);
+        if (removed) {
+            Long promptId = Long.valueOf(String.valueOf(id));
+            promptChanged(promptId);
+            catalogChanged(promptId);
+        }
+        return removed;
+    }
+
+    /**
+     * Tells the public catalog cache that {@code promptId} changed in a way it may show (publish
+     * state, content, counters). Cached pages are dropped once the surrounding transaction commits.
+     */
+    public void catalogChanged(Long promptId) {
+        eventPublisher.publishEvent(new PublicCatalogChangedEvent(promptId));
+    }
+
+    /**
+     * Queues {@code promptId} for re-indexing by {@link PromptSearchService} once the surrounding
+     * transaction commits.
+     */
+    public void promptChanged(Long promptId) {
+        eventPublisher.publishEvent(new PromptChangedEvent(promptId));
+    }
     
     private void loadTags(Prompt prompt) {
         prompt.setTags(tagMapper.selectByPromptId(prompt.getId()));
@@ -127,69 +240,84 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
         return tagMapper.selectDistinctTagsByUserId(userId);
     }
 
-    // @Cacheable(value = "public_prompts", key = "(#search?:'')+'|'+(#category?:'')+'|'+(#scene?:'')+'|'+(#assetType?:'')+'|'+(#sort?:'')")
-    public List<Prompt> getCachedPublicPrompts(String search, String category, String scene, String assetType, String sort) {
-        QueryWrapper<Prompt> query = new QueryWrapper<>();
-        query.eq("is_public", true);
-        query.eq("status", "PUBLISHED");
-
-        if (search != null && !search.isBlank()) {
-            query.and(q -> q.like("title", search).or().like("content", search));
-        }
-        if (category != null && !category.isBlank()) {
-            query.eq("category", category);
-        }
-        if (scene != null && !scene.isBlank()) {
-            query.eq("scene", scene);
-        }
-        if (assetType != null && !assetType.isBlank()) {
-            query.eq("asset_type", assetType);
+    /**
+     * One keyset page of the public catalog. Pages come from {@link PublicCatalogCache} and are shared,
+     * so the per-user {@code isLiked} flag is set on copies, never on the cached prompts. With a
+     * {@code search} the page is ranked by {@link PromptSearchService} instead of {@code sort}.
+     *
+     * @param cursor {@code nextCursor} of the previous page, or null for the first page
+     * @throws IllegalArgumentException if the cursor is invalid for {@code sort} (or for a search)
+     */
+    public CatalogPage getPublicCatalogPage(String search, String category, String scene, String assetType, String sort,
+                                            String cursor, Integer limit, Long currentUserId) {
+        GenieConfig.CatalogConfig config = genieConfig.getCatalog() != null ? genieConfig.getCatalog() : new GenieConfig.CatalogConfig();
+        String sortVal = "featured".equalsIgnoreCase(sort) ? "featured" : "trending".equalsIgnoreCase(sort) ? "trending" : "new";
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : config.getDefaultPageSize(), config.getMaxPageSize()));
+        String normalizedSearch = search != null && !search.isBlank() ? search.trim() : null;
+        if (normalizedSearch != null && searchService.isReady()) {
+            // Searches are ranked by relevance; the index answers in milliseconds, so these pages skip the cache
+            CatalogCursor at = cursor != null && !cursor.isBlank() ? CatalogCursor.decode(cursor, "relevance") : CatalogCursor.atOffset(0);
+            PromptSearchPage hits = searchPage(normalizedSearch, PromptSearchService.SearchFilter.publicCatalog(category, scene, assetType),
+                    at.getOffset(), pageSize);
+            List<Prompt> items = hits.getHits().stream().map(PromptSearchHit::getPrompt).collect(Collectors.toList());
+            int next = at.getOffset() + pageSize;
+            String nextCursor = next < hits.getTotal() ? CatalogCursor.atOffset(next).encode() : null;
+            return withLikes(new CatalogPage(items, nextCursor), currentUserId);
         }
+        CatalogCursor after = cursor != null && !cursor.isBlank() ? CatalogCursor.decode(cursor, sortVal) : null;
 
-        String sortVal = (sort != null && !sort.isBlank()) ? sort : "new";
-        if ("featured".equalsIgnoreCase(sortVal)) {
-            query.orderByDesc("is_featured");
-            query.orderByAsc("featured_rank");
-            query.orderByDesc("published_at");
-            query.orderByDesc("created_at");
-        } else if ("trending".equalsIgnoreCase(sortVal)) {
-            query.orderByDesc("forks_count");
-            query.orderByDesc("likes_count");
-            query.orderByDesc("usage_count");
-            query.orderByDesc("published_at");
-            query.orderByDesc("created_at");
-        } else {
-            query.orderByDesc("published_at");
-            query.orderByDesc("created_at");
+        String key = String.join("|", "page", sortVal, nullToEmpty(category), nullToEmpty(scene), nullToEmpty(assetType),
+                nullToEmpty(normalizedSearch), after != null ? cursor : "", String.valueOf(pageSize));
+        CatalogPage page = catalogCache.get(key, new TypeReference<CatalogPage>() {},
+                () -> loadPublicPage(normalizedSearch, category, scene, assetType, sortVal, after, pageSize));
+        return withLikes(page, currentUserId);
+    }
+
+    private CatalogPage withLikes(CatalogPage page, Long currentUserId) {
+        if (currentUserId == null || page.getItems().isEmpty()) {
+            return page;
         }
+        List<Long> promptIds = page.getItems().stream().map(Prompt::getId).collect(Collectors.toList());
+        Set<Long> likedSet = new HashSet<>(likeMapper.selectLikedPromptIds(currentUserId, promptIds));
+        List<Prompt> items = page.getItems().stream().map(p -> {
+            Prompt copy = new Prompt();
+            BeanUtils.copyProperties(p, copy);
+            copy.setIsLiked(likedSet.contains(p.getId()));
+            return copy;
+        }).collect(Collectors.toList());
+        return new CatalogPage(items, page.getNextCursor());
+    }
 
-        List<Prompt> prompts = list(query);
-        loadTagsForPrompts(prompts);
-        return prompts;
+    private CatalogPage loadPublicPage(String search, String category, String scene, String assetType, String sort,
+                                       CatalogCursor after, int pageSize) {
+        // One extra row tells whether another page exists
+        List<Prompt> rows = baseMapper.selectPublicPage(search, category, scene, assetType, sort, after, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            nextCursor = CatalogCursor.after(sort, rows.get(pageSize - 1)).encode();
+        }
+        loadTagsForPrompts(rows);
+        return new CatalogPage(rows, nextCursor);
     }
 
+    /**
+     * First catalog page as a plain list, for callers that only need the top of the catalog.
+     */
     public List<Prompt> getPublicPrompts(String search, String category, String scene, String assetType, String sort, Long currentUserId) {
-        // Call cached method via self-proxy
-        List<Prompt> prompts = self.getCachedPublicPrompts(search, category, scene, assetType, sort);
-        
-        // Deep copy prompts if we are going to modify them (setIsLiked)
-        // Or just map them to DTOs. 
-        // For simplicity, we assume we can modify the list if it's deserialized from cache (it's a new instance).
-        // But if Caffeine/In-memory cache is used, it's the SAME reference.
-        // Redis serializer creates new objects.
-        // To be safe, we shouldn't modify cached objects. 
-        // But Prompt has "isLiked" @TableField(exist=false). 
-        // Let's rely on Redis serialization for now.
-        
-        if (currentUserId != null && !prompts.isEmpty()) {
-            List<Long> promptIds = prompts.stream().map(Prompt::getId).collect(Collectors.toList());
-            List<Long> likedPromptIds = likeMapper.selectLikedPromptIds(currentUserId, promptIds);
-            
-            java.util.Set<Long> likedSet = new java.util.HashSet<>(likedPromptIds);
-            
-            prompts.forEach(p -> p.setIsLiked(likedSet.contains(p.getId())));
-        }
-        return prompts;
+        return getPublicCatalogPage(search, category, scene, assetType, sort, null, null, currentUserId).getItems();
+    }
+
+    public Map<String, List<String>> getPublicFacets(String category, String scene) {
+        String key = String.join("|", "facets", nullToEmpty(category), nullToEmpty(scene));
+        return catalogCache.get(key, new TypeReference<Map<String, List<String>>>() {}, () -> Map.of(
+                "categories", getPublicCategories(),
+                "scenes", getPublicScenes(category),
+                "assetTypes", getPublicAssetTypes(category, scene)));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
     }
     
     public List<Prompt> getPublicPromptsByUser(Long userId) {
@@ -212,49 +340,38 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
 
     @Transactional
     public boolean toggleLike(Long promptId, Long userId) {
-        Prompt prompt = getById(promptId);
-        if (prompt == null) throw new RuntimeException("Prompt not found");
+        if (baseMapper.selectById(promptId) == null) throw new RuntimeException("Prompt not found");
 
         QueryWrapper<PromptLike> query = new QueryWrapper<>();
         query.eq("prompt_id", promptId).eq("user_id", userId);
         PromptLike existing = likeMapper.selectOne(query);
 
-        boolean isLiked;
         if (existing != null) {
-            // Unlike
-            likeMapper.deleteById(existing.getId());
-            prompt.setLikesCount(Math.max(0, prompt.getLikesCount() - 1));
-            isLiked = false;
-        } else {
-            // Like
-            PromptLike like = new PromptLike();
-            like.setPromptId(promptId);
-            like.setUserId(userId);
+            // Unlike; only the request that actually removed the row counts it
+            if (likeMapper.deleteById(existing.getId()) > 0) {
+                counterService.add(promptId, PromptCounterService.Counter.LIKES, -1);
+            }
+            return false;
+        }
+        PromptLike like = new PromptLike();
+        like.setPromptId(promptId);
+        like.setUserId(userId);
+        try {
             likeMapper.insert(like);
-            prompt.setLikesCount(prompt.getLikesCount() + 1);
-            isLiked = true;
+            counterService.add(promptId, PromptCounterService.Counter.LIKES, 1);
+        } catch (DuplicateKeyException e) {
+            // A concurrent like of the same user won; the prompt is liked either way
         }
-        updateById(prompt);
-        return isLiked;
+        return true;
     }
 
-    @Transactional
     public void incrementUsage(Long promptId) {
-        Prompt prompt = getById(promptId);
-        if (prompt != null) {
-            prompt.setUsageCount(prompt.getUsageCount() + 1);
-            updateById(prompt);
-        }
+        counterService.add(promptId, PromptCounterService.Counter.USAGE, 1);
     }
 
-    @Transactional
     public void incrementForks(Long promptId) {
-        Prompt prompt = getById(promptId);
-        if (prompt != null) {
-            prompt.setForksCount((prompt.getForksCount() != null ? prompt.getForksCount() : 0) + 1);
-            prompt.setUsageCount(prompt.getUsageCount() + 1);
-            updateById(prompt);
-        }
+        counterService.add(promptId, PromptCounterService.Counter.FORKS, 1);
+        counterService.add(promptId, PromptCounterService.Counter.USAGE, 1);
     }
 
     @Transactional
@@ -410,6 +527,7 @@ public class PromptService extends ServiceImpl<PromptMapper, Prompt> {
                 tagMapper.insert(newTag);
             }
         }
+        promptChanged(copy.getId());
         
         return copy;
     }
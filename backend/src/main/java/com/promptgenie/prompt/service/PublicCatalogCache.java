@@ -0,0 +1,229 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.promptgenie.core.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache of public catalog pages and facet lists: an in-process Caffeine tier and, with
+ * {@code genie.catalog.redis-enabled}, a Redis tier shared by all instances.
+ * <p>
+ * Invalidation is generational. Every key carries the current generation; a
+ * {@link PublicCatalogChangedEvent} bumps it once the change has committed, which orphans all
+ * existing entries (they age out) and also any page loaded concurrently from pre-commit data. With
+ * Redis the generation is a shared counter and bumps are broadcast so every instance moves on at once.
+ * Counter-only changes are narrower: they drop just the trending pages of the current generation, on
+ * every instance and in Redis, and keep the generation.
+ */
+@Slf4j
+@Component
+public class PublicCatalogCache {
+
+    private static final String GENERATION_KEY = "catalog:generation";
+    private static final String INVALIDATION_CHANNEL = "catalog:invalidate";
+    private static final String KEY_PREFIX = "catalog:";
+    private static final String DROP_MESSAGE = "drop:";
+    private static final String TRENDING_PAGES = "page|trending|";
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisProvider;
+
+    private Cache<String, Object> local;
+    private StringRedisTemplate redis;
+    private RedisMessageListenerContainer listenerContainer;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        GenieConfig.CatalogConfig config = config();
+        local = Caffeine.newBuilder()
+                .maximumSize(config.getLocalMaxEntries())
+                .expireAfterWrite(Duration.ofSeconds(config.getLocalTtlSeconds()))
+                .build();
+        if (!Boolean.TRUE.equals(config.getRedisEnabled())) {
+            return;
+        }
+        redis = redisProvider.getIfAvailable();
+        if (redis == null) {
+            log.warn("Catalog Redis tier enabled but no Redis connection is configured, using the local tier only");
+            return;
+        }
+        try {
+            String shared = redis.opsForValue().get(GENERATION_KEY);
+            if (shared != null) generation.set(Long.parseLong(shared));
+            listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(redis.getConnectionFactory());
+            listenerContainer.addMessageListener((message, pattern) -> {
+                String body = new String(message.getBody(), StandardCharsets.UTF_8);
+                if (body.startsWith(DROP_MESSAGE)) {
+                    dropLocal(body.substring(DROP_MESSAGE.length()));
+                } else {
+                    onGeneration(Long.parseLong(body));
+                }
+            }, new ChannelTopic(INVALIDATION_CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+            log.info("Catalog cache using Redis tier at generation {}", generation.get());
+        } catch (Exception e) {
+            log.warn("Catalog Redis tier unavailable, using the local tier only: {}", e.getMessage());
+            redis = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * Cached value for {@code key}, loading it at most once per instance and generation.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, TypeReference<T> type, Supplier<T> loader) {
+        String fullKey = KEY_PREFIX + generation.get() + ":" + key;
+        Object cached = local.getIfPresent(fullKey);
+        if (cached != null) {
+            localHits.incrementAndGet();
+            return (T) cached;
+        }
+        // Caffeine runs one loader per key; concurrent misses wait for it instead of all hitting the database
+        return (T) local.get(fullKey, k -> loadShared(k, type, loader));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(PublicCatalogChangedEvent event) {
+        if (event.rankingOnly()) {
+            invalidateTrending();
+        } else {
+            invalidate();
+        }
+    }
+
+    public void invalidate() {
+        invalidations.incrementAndGet();
+        if (redis != null) {
+            try {
+                Long next = redis.opsForValue().increment(GENERATION_KEY);
+                if (next != null) {
+                    onGeneration(next);
+                    redis.convertAndSend(INVALIDATION_CHANNEL, String.valueOf(next));
+                    return;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to publish catalog invalidation: {}", e.getMessage());
+            }
+        }
+        generation.incrementAndGet();
+        local.invalidateAll();
+    }
+
+    /**
+     * Drops the trending pages only; other sorts and the facet lists do not depend on the counters.
+     */
+    public void invalidateTrending() {
+        invalidations.incrementAndGet();
+        dropLocal(TRENDING_PAGES);
+        if (redis == null) return;
+        try {
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + generation.get() + ":" + TRENDING_PAGES + "*").count(500).build();
+            List<String> keys = new ArrayList<>();
+            try (Cursor<String> cursor = redis.scan(options)) {
+                cursor.forEachRemaining(keys::add);
+            }
+            if (!keys.isEmpty()) {
+                redis.delete(keys);
+            }
+            redis.convertAndSend(INVALIDATION_CHANNEL, DROP_MESSAGE + TRENDING_PAGES);
+        } catch (Exception e) {
+            log.warn("Failed to drop trending catalog pages: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", generation.get());
+        stats.put("localEntries", local.estimatedSize());
+        stats.put("localHits", localHits.get());
+        stats.put("redisEnabled", redis != null);
+        stats.put("redisHits", redisHits.get());
+        stats.put("loads", loads.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private <T> T loadShared(String fullKey, TypeReference<T> type, Supplier<T> loader) {
+        if (redis != null) {
+            try {
+                String json = redis.opsForValue().get(fullKey);
+                if (json != null) {
+                    redisHits.incrementAndGet();
+                    return objectMapper.readValue(json, type);
+                }
+            } catch (Exception e) {
+                log.warn("Catalog Redis read failed: {}", e.getMessage());
+            }
+        }
+        loads.incrementAndGet();
+        T value = loader.get();
+        if (redis != null && value != null) {
+            try {
+                redis.opsForValue().set(fullKey, objectMapper.writeValueAsString(value), Duration.ofSeconds(config().getRedisTtlSeconds()));
+            } catch (Exception e) {
+                log.warn("Catalog Redis write failed: {}", e.getMessage());
+            }
+        }
+        return value;
+    }
+
+    private void dropLocal(String keyPrefix) {
+        String prefix = KEY_PREFIX + generation.get() + ":" + keyPrefix;
+        local.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private void onGeneration(long next) {
+        // Generations only move forward; stale or duplicate broadcasts are ignored
+        if (generation.getAndAccumulate(next, Math::max) < next) {
+            local.invalidateAll();
+        }
+    }
+
+    private GenieConfig.CatalogConfig config() {
+        return genieConfig.getCatalog() != null ? genieConfig.getCatalog() : new GenieConfig.CatalogConfig();
+    }
+}
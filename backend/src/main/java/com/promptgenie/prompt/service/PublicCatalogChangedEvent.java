@@ -0,0 +1,18 @@
+package com.promptgenie.prompt.service;
+
+/**
+ * Published when a change may alter what the public catalog shows: publishing, unpublishing, edits,
+ * likes, forks and deletion. {@link PublicCatalogCache} drops cached pages once the change commits.
+ * A {@code rankingOnly} event says only like/fork counters moved, which reorders trending pages but
+ * leaves every other page and facet list valid.
+ */
+public record PublicCatalogChangedEvent(Long promptId, boolean rankingOnly) {
+
+    public PublicCatalogChangedEvent(Long promptId) {
+        this(promptId, false);
+    }
+
+    public static PublicCatalogChangedEvent rankingChanged() {
+        return new PublicCatalogChangedEvent(null, true);
+    }
+}
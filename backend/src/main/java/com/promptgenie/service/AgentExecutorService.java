@@ -1,15 +1,16 @@
 package com.promptgenie.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.promptgenie.core.enums.AgentNodeType;
 import com.promptgenie.core.exception.PendingApprovalException;
 import com.promptgenie.dto.AgentState;
 import com.promptgenie.entity.Agent;
-import com.promptgenie.entity.AgentConfig;
 import com.promptgenie.entity.Tool;
 import com.promptgenie.mapper.AgentMapper;
 import com.promptgenie.mapper.AgentToolMapper;
+import com.promptgenie.service.agent.AgentGraph;
+import com.promptgenie.service.agent.AgentGraphCache;
+import com.promptgenie.service.agent.AgentRunStore;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -19,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+@Slf4j
 @Service
 public class AgentExecutorService {
     
@@ -38,7 +40,10 @@ public class AgentExecutorService {
     private AgentConfigService agentConfigService;
     
     @Autowired
-    private ObjectMapper objectMapper;
+    private AgentGraphCache agentGraphCache;
+    
+    @Autowired
+    private AgentRunStore agentRunStore;
     
     public AgentState runAgent(Long agentId, Long userId, Map<String, Object> variables) {
         // 获取智能体信息
@@ -61,98 +66,119 @@ public class AgentExecutorService {
         state.setUpdatedAt(System.currentTimeMillis());
         
         // 执行状态机
-        return executeStateMachine(state, agent);
+        agentRunStore.save(state);
+        return executeStateMachine(state, agent, false);
     }
     
     public AgentState resumeAgent(String stateId, Map<String, Object> approvalData) {
-        // 这里应该从数据库或Redis中获取保存的状态
-        // 简化实现，假设状态可以直接通过ID获取
-        AgentState state = new AgentState();
-        // 加载状态...
+        // 从运行存储中取出暂停的状态；并发的重复恢复只有一个能成功
+        AgentState state = agentRunStore.claimPaused(stateId);
+        if (state == null) {
+            throw new RuntimeException("Agent run not found, expired or not waiting for approval");
+        }
         
-        // 更新状态
-        state.setStatus("RUNNING");
-        state.setVariables(approvalData);
+        // 审批数据并入变量，原有输入保留
+        if (approvalData != null) {
+            state.getVariables().putAll(approvalData);
+            state.getIntermediateResults().put("approvalData", approvalData);
+        }
         state.setUpdatedAt(System.currentTimeMillis());
         
         // 继续执行状态机
         Agent agent = agentMapper.selectById(state.getAgentId());
-        return executeStateMachine(state, agent);
+        if (agent == null) {
+            throw new RuntimeException("Agent not found");
+        }
+        return executeStateMachine(state, agent, true);
     }
     
-    private AgentState executeStateMachine(AgentState state, Agent agent) {
+    /** 运行的最新快照，不存在或已过期时返回 null。 */
+    public AgentState getRun(String stateId) {
+        return agentRunStore.load(stateId);
+    }
+    
+    private AgentState executeStateMachine(AgentState state, Agent agent, boolean approved) {
         try {
+            // 配置在运行开始时编译一次（有缓存），之后每一步都是内存查找
+            AgentGraph graph = agentGraphCache.get(agentConfigService.getLatestConfig(agent.getId()));
+            
+            // 审核通过后恢复：审核节点已完成，从它的下一个节点继续
+            if (approved) {
+                advance(state, state.getCurrentNodeId(), graph);
+                agentRunStore.save(state);
+            }
+            
             // 循环执行直到完成或需要人工审核
             while ("RUNNING".equals(state.getStatus())) {
                 // 根据当前节点类型执行不同的逻辑
                 String currentNodeId = state.getCurrentNodeId();
                 
                 // 从配置中获取节点类型
-                AgentNodeType nodeType = getNodeType(currentNodeId, agent);
+                AgentNodeType nodeType = getNodeType(currentNodeId, graph);
                 
                 switch (nodeType) {
                     case LLM_NODE:
-                        executeLLMNode(state, agent, currentNodeId);
+                        executeLLMNode(state, agent, graph, currentNodeId);
                         break;
                     case TOOL_NODE:
-                        executeToolNode(state, agent, currentNodeId);
+                        executeToolNode(state, agent, graph, currentNodeId);
                         break;
                     case HUMAN_APPROVAL_NODE:
-                        executeHumanApprovalNode(state, agent, currentNodeId);
+                        executeHumanApprovalNode(state, agent, graph, currentNodeId);
                         break;
                     case CONDITION_NODE:
-                        executeConditionNode(state, agent, currentNodeId);
+                        executeConditionNode(state, agent, graph, currentNodeId);
                         break;
                     case LOOP_NODE:
-                        executeLoopNode(state, agent, currentNodeId);
+                        executeLoopNode(state, agent, graph, currentNodeId);
                         break;
                     case ERROR_RETRY_NODE:
-                        executeErrorRetryNode(state, agent, currentNodeId);
+                        executeErrorRetryNode(state, agent, graph, currentNodeId);
                         break;
                     default:
                         throw new RuntimeException("Unknown node type: " + nodeType);
                 }
                 
-                // 更新当前节点
-                state.setCurrentNodeId(getNextNodeId(currentNodeId, state, agent));
-                state.setUpdatedAt(System.currentTimeMillis());
-                
-                // 检查是否完成
-                if ("end".equals(state.getCurrentNodeId())) {
-                    state.setStatus("COMPLETED");
-                }
+                // 更新当前节点，并保存快照：之后中断或暂停都从这里继续
+                advance(state, currentNodeId, graph);
+                agentRunStore.save(state);
             }
             
             return state;
         } catch (PendingApprovalException e) {
-            // 遇到人工审核节点，抛出异常
+            // 遇到人工审核节点，保存暂停的状态后抛出异常
+            state.setUpdatedAt(System.currentTimeMillis());
+            agentRunStore.save(state);
             throw e;
         } catch (Exception e) {
             // 其他错误
             state.setStatus("FAILED");
             state.setErrorMessage(e.getMessage());
+            state.setUpdatedAt(System.currentTimeMillis());
+            try {
+                agentRunStore.save(state);
+            } catch (Exception saveError) {
+                log.warn("Failed to save failed agent run {}: {}", state.getId(), saveError.getMessage());
+            }
             return state;
         }
     }
     
-    private AgentNodeType getNodeType(String nodeId, Agent agent) {
-        try {
-            // 从智能体配置中获取节点类型
-            AgentConfig config = agentConfigService.getLatestConfig(agent.getId());
-            if (config != null) {
-                JsonNode configJson = objectMapper.readTree(config.getConfigJson());
-                JsonNode nodes = configJson.get("nodes");
-                if (nodes != null && nodes.isArray()) {
-                    for (JsonNode node : nodes) {
-                        if (node.get("id").asText().equals(nodeId)) {
-                            String type = node.get("type").asText();
-                            return AgentNodeType.fromValue(type);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 如果配置解析失败，使用默认逻辑
+    private void advance(AgentState state, String currentNodeId, AgentGraph graph) {
+        state.setCurrentNodeId(getNextNodeId(currentNodeId, state, graph));
+        state.setUpdatedAt(System.currentTimeMillis());
+        
+        // 检查是否完成
+        if ("end".equals(state.getCurrentNodeId())) {
+            state.setStatus("COMPLETED");
+        }
+    }
+    
+    private AgentNodeType getNodeType(String nodeId, AgentGraph graph) {
+        // 从编译后的智能体配置中获取节点类型
+        AgentNodeType configured = graph.nodeType(nodeId);
+        if (configured != null) {
+            return configured;
         }
         
         // 默认逻辑
@@ -173,40 +199,11 @@ public class AgentExecutorService {
         }
     }
     
-    private String getNextNodeId(String currentNodeId, AgentState state, Agent agent) {
-        try {
-            // 从智能体配置中获取下一个节点
-            AgentConfig config = agentConfigService.getLatestConfig(agent.getId());
-            if (config != null) {
-                JsonNode configJson = objectMapper.readTree(config.getConfigJson());
-                JsonNode edges = configJson.get("edges");
-                if (edges != null && edges.isArray()) {
-                    for (JsonNode edge : edges) {
-                        if (edge.get("source").asText().equals(currentNodeId)) {
-                            // 对于条件节点，根据条件结果决定下一个节点
-                            if ("condition".equals(currentNodeId)) {
-                                boolean conditionResult = (boolean) state.getIntermediateResults().getOrDefault("conditionResult", true);
-                                String condition = edge.get("condition").asText();
-                                if (("true".equals(condition) && conditionResult) || ("false".equals(condition) && !conditionResult)) {
-                                    return edge.get("target").asText();
-                                }
-                            } else if ("loop".equals(currentNodeId)) {
-                                // 对于循环节点，根据循环条件决定是否继续循环
-                                boolean continueLoop = (boolean) state.getIntermediateResults().getOrDefault("continueLoop", false);
-                                String condition = edge.get("condition").asText();
-                                if (("continue".equals(condition) && continueLoop) || ("break".equals(condition) && !continueLoop)) {
-                                    return edge.get("target").asText();
-                                }
-                            } else {
-                                // 其他节点直接返回目标节点
-                                return edge.get("target").asText();
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 如果配置解析失败，使用默认逻辑
+    private String getNextNodeId(String currentNodeId, AgentState state, AgentGraph graph) {
+        // 从编译后的智能体配置中获取下一个节点（条件/循环节点按其结果选择出边）
+        String next = graph.nextNodeId(currentNodeId, state.getIntermediateResults());
+        if (next != null) {
+            return next;
         }
         
         // 默认逻辑
@@ -231,10 +228,10 @@ public class AgentExecutorService {
         }
     }
     
-    private void executeLLMNode(AgentState state, Agent agent, String nodeId) {
+    private void executeLLMNode(AgentState state, Agent agent, AgentGraph graph, String nodeId) {
         try {
             // 从配置中获取节点配置
-            Map<String, Object> nodeConfig = getNodeConfig(nodeId, agent);
+            Map<String, Object> nodeConfig = graph.nodeData(nodeId);
             
             // 构建提示词
             String systemPrompt = agent.getSystemPrompt();
@@ -271,10 +268,10 @@ public class AgentExecutorService {
         }
     }
     
-    private void executeToolNode(AgentState state, Agent agent, String nodeId) {
+    private void executeToolNode(AgentState state, Agent agent, AgentGraph graph, String nodeId) {
         try {
             // 从配置中获取节点配置
-            Map<String, Object> nodeConfig = getNodeConfig(nodeId, agent);
+            Map<String, Object> nodeConfig = graph.nodeData(nodeId);
             
             // 获取工具ID
             Long toolId = Long.valueOf(nodeConfig.get("toolId").toString());
@@ -290,9 +287,9 @@ public class AgentExecutorService {
         }
     }
     
-    private void executeHumanApprovalNode(AgentState state, Agent agent, String nodeId) {
+    private void executeHumanApprovalNode(AgentState state, Agent agent, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, agent);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
         
         // 设置状态为暂停
         state.setStatus("PAUSED");
@@ -304,9 +301,9 @@ public class AgentExecutorService {
         throw new PendingApprovalException(nodeConfig.getOrDefault("approvalMessage", "Human approval required").toString(), state);
     }
     
-    private void executeConditionNode(AgentState state, Agent agent, String nodeId) {
+    private void executeConditionNode(AgentState state, Agent agent, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, agent);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
         
         // 获取条件表达式
         String conditionExpression = nodeConfig.getOrDefault("condition", "toolResult != null && toolResult.toString().contains('success')").toString();
@@ -317,9 +314,9 @@ public class AgentExecutorService {
         state.getIntermediateResults().put("conditionResult", conditionResult);
     }
     
-    private void executeLoopNode(AgentState state, Agent agent, String nodeId) {
+    private void executeLoopNode(AgentState state, Agent agent, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, agent);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
         
         // 获取循环条件
         String loopCondition = nodeConfig.getOrDefault("loopCondition", "loopCount < 3").toString();
@@ -334,9 +331,9 @@ public class AgentExecutorService {
         state.getIntermediateResults().put("continueLoop", continueLoop);
     }
     
-    private void executeErrorRetryNode(AgentState state, Agent agent, String nodeId) {
+    private void executeErrorRetryNode(AgentState state, Agent agent, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, agent);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
         
         // 获取最大重试次数
         int maxRetries = Integer.parseInt(nodeConfig.getOrDefault("maxRetries", "3").toString());
@@ -352,32 +349,6 @@ public class AgentExecutorService {
         }
     }
     
-    private Map<String, Object> getNodeConfig(String nodeId, Agent agent) {
-        Map<String, Object> config = new HashMap<>();
-        try {
-            AgentConfig agentConfig = agentConfigService.getLatestConfig(agent.getId());
-            if (agentConfig != null) {
-                JsonNode configJson = objectMapper.readTree(agentConfig.getConfigJson());
-                JsonNode nodes = configJson.get("nodes");
-                if (nodes != null && nodes.isArray()) {
-                    for (JsonNode node : nodes) {
-                        if (node.get("id").asText().equals(nodeId)) {
-                            JsonNode data = node.get("data");
-                            if (data != null) {
-                                // 将 JsonNode 转换为 Map
-                                config = objectMapper.treeToValue(data, Map.class);
-                            }
-                            break;
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 如果配置解析失败，返回空配置
-        }
-        return config;
-    }
-    
     private boolean evaluateCondition(String expression, AgentState state) {
         try {
             // 简化的条件表达式评估
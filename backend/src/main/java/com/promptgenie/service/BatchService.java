@@ -1,27 +1,82 @@
 package com.promptgenie.service;
 
+import com.promptgenie.core.metrics.GenieMetrics;
 import com.promptgenie.prompt.entity.Prompt;
 import com.promptgenie.prompt.service.PromptService;
+import com.promptgenie.service.template.PromptTemplate;
+import com.promptgenie.service.template.PromptTemplateCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class BatchService {
 
     @Autowired
     private PlaygroundService playgroundService;
-    
+
     @Autowired
     private PromptService promptService;
 
+    @Autowired
+    private PromptTemplateCache templateCache;
+
+    @Autowired
+    private GenieMetrics metrics;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    private final Map<String, BatchHandle> runningBatches = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a batch so it can be cancelled; the returned id is sent to the client in the "started" event.
+     */
+    public String registerBatch(Long userId) {
+        String batchId = UUID.randomUUID().toString();
+        runningBatches.put(batchId, new BatchHandle(userId));
+        return batchId;
+    }
+
+    public boolean cancelBatch(String batchId, Long userId) {
+        BatchHandle handle = runningBatches.get(batchId);
+        if (handle == null || handle.userId == null || !handle.userId.equals(userId)) {
+            return false;
+        }
+        handle.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Runs the rows with at most {@code parallelism} of them in flight, and at most the plan's
+     * {@code maxBatchParallelism} over all running batches of the same user (tracked by
+     * {@link QuotaService}). A row's slot is only freed once its result has been written to the client, so a slow SSE
+     * consumer throttles the batch instead of piling results up in memory. With {@code ordered}
+     * results are emitted strictly by row index; otherwise as soon as each row finishes.
+     * This thread is the only one writing to the emitter.
+     */
     @Async
-    public void processBatch(Long promptId, List<Map<String, Object>> rows, SseEmitter emitter) {
+    public void processBatch(String batchId, Long promptId, List<Map<String, Object>> rows, SseEmitter emitter, int parallelism, boolean ordered) {
+        BatchHandle handle = runningBatches.computeIfAbsent(batchId, id -> new BatchHandle(null));
+        Map<Integer, CompletableFuture<String>> running = new HashMap<>();
+        emitter.onCompletion(() -> handle.cancelled = true);
+        emitter.onTimeout(() -> handle.cancelled = true);
+        emitter.onError(e -> handle.cancelled = true);
+
         try {
             Prompt prompt = promptService.getById(promptId);
             if (prompt == null) {
@@ -30,30 +85,80 @@ public class BatchService {
                 return;
             }
 
-            String template = prompt.getContent();
+            PromptTemplate template = templateCache.forPrompt(prompt);
             int total = rows.size();
+            int window = Math.max(1, parallelism);
 
-            for (int i = 0; i < total; i++) {
-                Map<String, Object> row = rows.get(i);
-                try {
-                    // Run the prompt
-                    String result = playgroundService.runPrompt(template, row);
-                    
-                    // Send result back
-                    // We send the original row data + the result + row index
-                    row.put("_result", result);
-                    row.put("_rowIndex", i);
-                    
-                    emitter.send(SseEmitter.event().name("result").data(row));
-                    
-                } catch (Exception e) {
-                    emitter.send(SseEmitter.event().name("error").data("Error processing row " + i + ": " + e.getMessage()));
+            Map<String, Object> started = new HashMap<>();
+            started.put("batchId", batchId);
+            started.put("total", total);
+            started.put("parallelism", window);
+            started.put("ordered", ordered);
+            emitter.send(SseEmitter.event().name("started").data(started));
+
+            BlockingQueue<RowOutcome> completed = new LinkedBlockingQueue<>();
+            TreeMap<Integer, RowOutcome> pending = new TreeMap<>();
+            int nextToSubmit = 0;
+            int nextToSend = 0;
+            int inFlight = 0;
+            int sent = 0;
+            Long userId = handle.userId;
+            int userLimit = userId != null ? quotaService.maxBatchParallelism(userId) : window;
+
+            while (sent < total && !handle.cancelled) {
+                while (nextToSubmit < total && inFlight < window) {
+                    // The user's other batches may hold every slot; retry after the next poll
+                    if (userId != null && !quotaService.tryAcquireBatchRow(userId, userLimit)) break;
+                    int rowIndex = nextToSubmit++;
+                    inFlight++;
+                    long submittedAt = System.nanoTime();
+                    CompletableFuture<String> future;
+                    try {
+                        future = playgroundService.runPromptAsync(template, rows.get(rowIndex), "text", "qwen-turbo", null, null);
+                    } catch (RuntimeException e) {
+                        // e.g. the row's variables fail to render: an error for this row only
+                        future = CompletableFuture.failedFuture(e);
+                    }
+                    running.put(rowIndex, future);
+                    future.whenComplete((result, error) -> {
+                        if (userId != null) {
+                            quotaService.releaseBatchRow(userId);
+                        }
+                        metrics.recordBatchRow(rowStatus(result, error), System.nanoTime() - submittedAt);
+                        completed.add(new RowOutcome(rowIndex, result, error));
+                    });
+                }
+
+                RowOutcome outcome = completed.poll(500, TimeUnit.MILLISECONDS);
+                if (outcome == null) continue;
+                running.remove(outcome.rowIndex());
+
+                if (!ordered) {
+                    sendRow(emitter, rows, outcome);
+                    inFlight--;
+                    sent++;
+                    continue;
+                }
+
+                pending.put(outcome.rowIndex(), outcome);
+                while (!pending.isEmpty() && pending.firstKey() == nextToSend) {
+                    sendRow(emitter, rows, pending.pollFirstEntry().getValue());
+                    nextToSend++;
+                    inFlight--;
+                    sent++;
                 }
             }
 
-            emitter.send(SseEmitter.event().name("complete").data("Batch processing finished"));
+            if (handle.cancelled) {
+                emitter.send(SseEmitter.event().name("cancelled").data(Map.of("processed", sent, "total", total)));
+            } else {
+                emitter.send(SseEmitter.event().name("complete").data("Batch processing finished"));
+            }
             emitter.complete();
 
+        } catch (IOException e) {
+            // Client disconnected; stop scheduling new rows
+            handle.cancelled = true;
         } catch (Exception e) {
             try {
                 emitter.send(SseEmitter.event().name("error").data("Fatal error: " + e.getMessage()));
@@ -61,6 +166,46 @@ public class BatchService {
             } catch (Exception ex) {
                 // ignore
             }
+        } finally {
+            // Rows still running on cancel, disconnect or failure are abandoned, not left to bill
+            running.values().forEach(future -> future.cancel(true));
+            runningBatches.remove(batchId);
+        }
+    }
+
+    /** Provider failures come back as text, so a row only counts as a success if its answer is not one. */
+    private static String rowStatus(String result, Throwable error) {
+        if (error instanceof CancellationException) {
+            return GenieMetrics.CANCELLED;
+        }
+        if (error != null || (result != null && result.startsWith(PlaygroundService.ERROR_PREFIX))) {
+            return GenieMetrics.ERROR;
+        }
+        return GenieMetrics.SUCCESS;
+    }
+
+    private void sendRow(SseEmitter emitter, List<Map<String, Object>> rows, RowOutcome outcome) throws IOException {
+        int i = outcome.rowIndex();
+        if (outcome.error() != null) {
+            emitter.send(SseEmitter.event().name("error").data("Error processing row " + i + ": " + outcome.error().getMessage()));
+            return;
+        }
+        // We send the original row data + the result + row index
+        Map<String, Object> row = rows.get(i);
+        row.put("_result", outcome.result());
+        row.put("_rowIndex", i);
+        emitter.send(SseEmitter.event().name("result").data(row));
+    }
+
+    private record RowOutcome(int rowIndex, String result, Throwable error) {
+    }
+
+    private static final class BatchHandle {
+        private final Long userId;
+        private volatile boolean cancelled;
+
+        BatchHandle(Long userId) {
+            this.userId = userId;
         }
     }
 }
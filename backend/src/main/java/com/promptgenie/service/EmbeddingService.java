@@ -1,26 +1,167 @@
 package com.promptgenie.service;
 
-import com.promptgenie.entity.Document;
+import com.promptgenie.core.config.GenieConfig;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 @Service
 public class EmbeddingService {
-    
-    public void generateEmbedding(Document document) {
-        // 这里应该实现生成嵌入向量的逻辑
-        // 简化实现，暂时不做任何操作
-        System.out.println("Generating embedding for document: " + document.getFilename());
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private ObjectProvider<EmbeddingClient> embeddingClientProvider;
+
+    /**
+     * 生成 L2 归一化的 float32 向量，点积即余弦相似度。
+     * provider=openai 时走 Spring AI EmbeddingClient，否则使用本地哈希 n-gram 向量（无需外部调用）。
+     */
+    public float[] embed(String text) {
+        return embedAll(List.of(text == null ? "" : text)).get(0);
+    }
+
+    public List<float[]> embedAll(List<String> texts) {
+        EmbeddingClient client = useRemote() ? embeddingClientProvider.getIfAvailable() : null;
+        if (client != null) {
+            List<List<Double>> remote = client.embed(texts);
+            List<float[]> vectors = new ArrayList<>(remote.size());
+            for (List<Double> values : remote) {
+                float[] vector = new float[values.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = values.get(i).floatValue();
+                }
+                vectors.add(normalize(vector));
+            }
+            return vectors;
+        }
+
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(hashEmbedding(text == null ? "" : text, dimension()));
+        }
+        return vectors;
     }
-    
+
+    /**
+     * Identifies the embedding space; indexes built under a different model must be rebuilt.
+     */
+    public String modelId() {
+        return useRemote() && embeddingClientProvider.getIfAvailable() != null ? "openai" : "local-" + dimension();
+    }
+
     public double[] getEmbedding(String text) {
-        // 这里应该实现获取文本嵌入向量的逻辑
-        // 简化实现，返回一个空数组
-        return new double[0];
+        float[] vector = embed(text);
+        double[] result = new double[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i];
+        }
+        return result;
     }
-    
+
     public double calculateSimilarity(double[] embedding1, double[] embedding2) {
-        // 这里应该实现计算两个嵌入向量相似度的逻辑
-        // 简化实现，返回0
-        return 0.0;
+        if (embedding1 == null || embedding2 == null || embedding1.length != embedding2.length || embedding1.length == 0) {
+            return 0.0;
+        }
+        double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
+        for (int i = 0; i < embedding1.length; i++) {
+            dot += embedding1[i] * embedding2[i];
+            norm1 += embedding1[i] * embedding1[i];
+            norm2 += embedding2[i] * embedding2[i];
+        }
+        return norm1 == 0 || norm2 == 0 ? 0.0 : dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+
+    private boolean useRemote() {
+        GenieConfig.EmbeddingConfig config = genieConfig.getEmbedding();
+        return config != null && "openai".equalsIgnoreCase(config.getProvider());
+    }
+
+    private int dimension() {
+        GenieConfig.EmbeddingConfig config = genieConfig.getEmbedding();
+        return config != null && config.getDimension() != null ? config.getDimension() : 384;
+    }
+
+    /**
+     * 特征哈希：拉丁文本取单词和词内 3-gram，中日韩文本取单字和双字；带符号哈希到固定维度后归一化。
+     */
+    static float[] hashEmbedding(String text, int dimension) {
+        float[] vector = new float[dimension];
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        int prevCjk = -1;
+        for (int i = 0; i < lower.length(); ) {
+            int cp = lower.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                flushWord(word, vector);
+                addFeature("c:" + new String(Character.toChars(cp)), 1.0f, vector);
+                if (prevCjk >= 0) {
+                    addFeature("b:" + new String(Character.toChars(prevCjk)) + new String(Character.toChars(cp)), 1.0f, vector);
+                }
+                prevCjk = cp;
+            } else if (Character.isLetterOrDigit(cp)) {
+                word.appendCodePoint(cp);
+                prevCjk = -1;
+            } else {
+                flushWord(word, vector);
+                prevCjk = -1;
+            }
+        }
+        flushWord(word, vector);
+        return normalize(vector);
+    }
+
+    private static void flushWord(StringBuilder word, float[] vector) {
+        if (word.length() == 0) return;
+        String w = word.toString();
+        addFeature("w:" + w, 1.0f, vector);
+        String padded = "<" + w + ">";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            addFeature("g:" + padded.substring(i, i + 3), 0.5f, vector);
+        }
+        word.setLength(0);
+    }
+
+    private static void addFeature(String feature, float weight, float[] vector) {
+        int h = mix(feature.hashCode());
+        int index = Math.floorMod(h, vector.length);
+        vector[index] += (h & 0x40000000) != 0 ? weight : -weight;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0.0) return vector;
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inv;
+        }
+        return vector;
     }
 }
@@ -1,18 +1,23 @@
 package com.promptgenie.service;
 
+import com.promptgenie.core.config.GenieConfig;
 import com.promptgenie.entity.Document;
 import com.promptgenie.entity.KnowledgeBase;
 import com.promptgenie.mapper.DocumentMapper;
 import com.promptgenie.mapper.KnowledgeBaseMapper;
+import com.promptgenie.service.ingest.DocumentIngestionService;
+import com.promptgenie.service.retrieval.HybridRetrievalService;
+import com.promptgenie.service.retrieval.LexicalIndexService;
+import com.promptgenie.service.retrieval.RetrievalResult;
+import com.promptgenie.service.retrieval.VectorIndexService;
+import com.promptgenie.service.tokenizer.TokenizerService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Arrays;
+import java.util.Map;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
@@ -25,7 +30,22 @@ public class KnowledgeService {
     private DocumentMapper documentMapper;
     
     @Autowired
-    private EmbeddingService embeddingService;
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private LexicalIndexService lexicalIndexService;
+
+    @Autowired
+    private HybridRetrievalService retrievalService;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private TokenizerService tokenizerService;
+
+    @Autowired
+    private DocumentIngestionService ingestionService;
     
     public KnowledgeBase createKnowledgeBase(Long userId, String name, String description) {
         KnowledgeBase kb = new KnowledgeBase();
@@ -47,133 +67,91 @@ public class KnowledgeService {
     public void deleteKnowledgeBase(Long id) {
         // 删除知识库
         knowledgeBaseMapper.deleteById(id);
-        // 删除相关文档
-        documentMapper.deleteById(id);
+        // 删除相关文档（分块随文档级联删除）
+        QueryWrapper<Document> query = new QueryWrapper<>();
+        query.eq("kb_id", id);
+        documentMapper.delete(query);
+        vectorIndexService.dropKnowledgeBase(id);
+        lexicalIndexService.dropKnowledgeBase(id);
     }
     
+    /**
+     * 登记文档并交给导入流水线异步解析、分块和生成向量，立即返回 PENDING 状态的文档；
+     * 进度通过 {@link #getIngestStatus} 查询。
+     *
+     * @throws IllegalStateException 导入队列已满
+     */
     public Document uploadDocument(Long kbId, MultipartFile file) throws IOException {
-        Document document = new Document();
-        document.setKbId(kbId);
-        document.setFilename(file.getOriginalFilename());
-        document.setFileType(file.getContentType());
-        
-        // 解析和切分文档
-        String content = parseAndChunkDocument(file);
-        document.setContent(content);
-        document.setFileSize(file.getSize());
-        documentMapper.insert(document);
-        
-        // 生成嵌入向量
-        embeddingService.generateEmbedding(document);
-        
-        return document;
+        return ingestionService.submit(kbId, file);
     }
-    
-    private String parseAndChunkDocument(MultipartFile file) throws IOException {
-        String filename = file.getOriginalFilename();
-        String contentType = file.getContentType();
-        
-        // 读取文件内容
-        byte[] bytes = file.getBytes();
-        String content = new String(bytes);
-        
-        // 根据文件类型进行解析
-        if (filename != null) {
-            if (filename.endsWith(".pdf")) {
-                // PDF 解析逻辑（简化实现）
-                content = "[PDF Document] " + content.substring(0, Math.min(1000, content.length()));
-            } else if (filename.endsWith(".docx") || filename.endsWith(".doc")) {
-                // Word 解析逻辑（简化实现）
-                content = "[Word Document] " + content.substring(0, Math.min(1000, content.length()));
-            } else if (filename.endsWith(".txt")) {
-                // 文本文件直接使用
-            } else if (contentType != null && contentType.startsWith("text")) {
-                // 其他文本类型
-            }
-        }
-        
-        // 自动分块（简化实现，实际应根据语义进行分块）
-        StringBuilder chunkedContent = new StringBuilder();
-        int chunkSize = 1000; // 每个块的大小
-        int start = 0;
-        while (start < content.length()) {
-            int end = Math.min(start + chunkSize, content.length());
-            chunkedContent.append("[Chunk " + (start / chunkSize + 1) + "]\n");
-            chunkedContent.append(content.substring(start, end));
-            chunkedContent.append("\n\n");
-            start = end;
-        }
-        
-        return chunkedContent.toString();
+
+    public Document getDocument(Long docId) {
+        return documentMapper.selectById(docId);
+    }
+
+    public Map<String, Object> getIngestStatus(Long docId) {
+        return ingestionService.status(docId);
     }
     
     public List<Document> getDocuments(Long kbId) {
-        return documentMapper.selectList(null);
+        QueryWrapper<Document> query = new QueryWrapper<>();
+        query.eq("kb_id", kbId).orderByDesc("created_at");
+        return documentMapper.selectList(query);
     }
     
     public void deleteDocument(Long docId) {
+        Document document = documentMapper.selectById(docId);
         documentMapper.deleteById(docId);
+        if (document != null) {
+            vectorIndexService.removeDocument(document.getKbId(), docId);
+            lexicalIndexService.removeDocument(document.getKbId(), docId);
+        }
     }
     
-    public String getKnowledgeContext(Long kbId, Long userId, String query) {
-        // 实现混合检索：向量检索 + 全文检索
-        List<Document> documents = documentMapper.selectList(null);
-        List<Document> relevantDocuments = new ArrayList<>();
-        
-        // 全文检索（简化实现）
-        for (Document doc : documents) {
-            if (doc.getContent().toLowerCase().contains(query.toLowerCase())) {
-                relevantDocuments.add(doc);
-            }
-        }
-        
-        // 向量检索（简化实现，实际应使用真实的向量相似度计算）
-        if (relevantDocuments.isEmpty()) {
-            // 如果全文检索没有结果，使用向量检索
-            for (Document doc : documents) {
-                // 计算相似度（简化实现）
-                double similarity = calculateSimilarity(doc.getContent(), query);
-                if (similarity > 0.5) { // 相似度阈值
-                    relevantDocuments.add(doc);
-                }
-            }
-        }
+    /**
+     * 在该知识库内混合检索（BM25 + 向量，RRF 融合后重排），最多返回 k 个分块。
+     */
+    public List<RetrievalResult> search(Long kbId, String query, int k, HybridRetrievalService.Mode mode, boolean rerank) {
+        return retrievalService.retrieve(kbId, query, k, mode, rerank);
+    }
+
+    /**
+     * 在 tokenBudget 内组装知识库上下文：按检索得分从高到低贪心装入分块，放不下的跳过，
+     * 让后面更短的分块补位；最多装入 topK 个。预算连标题都放不下时返回空串。
+     */
+    public String getKnowledgeContext(Long kbId, Long userId, String query, int tokenBudget) {
+        // 混合检索：仅在该知识库的 BM25 与 HNSW 索引中取候选分块（多取一倍用于补位）
+        int topK = genieConfig.getEmbedding() != null && genieConfig.getEmbedding().getTopK() != null
+                ? genieConfig.getEmbedding().getTopK() : 5;
+        List<RetrievalResult> hits = retrievalService.retrieve(kbId, query, topK * 2);
         
         // 构建上下文
         StringBuilder context = new StringBuilder();
         context.append("[Knowledge Base Context]\n");
         context.append("Query: " + query + "\n\n");
+        int remaining = tokenBudget - tokenizerService.countTokens(context.toString());
+        if (remaining <= 0) {
+            return "";
+        }
         
-        if (relevantDocuments.isEmpty()) {
+        int packed = 0;
+        for (RetrievalResult hit : hits) {
+            if (packed >= topK) break;
+            String entry = "Document: " + hit.filename() + " (chunk " + (hit.chunkIndex() + 1) + ")\n"
+                    + "Content: " + hit.text() + "\n\n";
+            int tokens = tokenizerService.countTokens(entry);
+            if (tokens > remaining) continue;
+            context.append(entry);
+            remaining -= tokens;
+            packed++;
+        }
+        if (packed == 0) {
             context.append("No relevant documents found.\n");
-        } else {
-            for (Document doc : relevantDocuments) {
-                context.append("Document: " + doc.getFilename() + "\n");
-                context.append("Content: " + doc.getContent() + "\n\n");
-            }
         }
         
         return context.toString();
     }
     
-    private double calculateSimilarity(String text1, String text2) {
-        // 简化的相似度计算实现
-        // 实际应使用真实的向量嵌入和余弦相似度计算
-        String[] words1 = text1.toLowerCase().split("\\s+");
-        String[] words2 = text2.toLowerCase().split("\\s+");
-        
-        Set<String> set1 = new HashSet<>(Arrays.asList(words1));
-        Set<String> set2 = new HashSet<>(Arrays.asList(words2));
-        
-        Set<String> intersection = new HashSet<>(set1);
-        intersection.retainAll(set2);
-        
-        Set<String> union = new HashSet<>(set1);
-        union.addAll(set2);
-        
-        return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
-    }
-    
     public void moveKbToWorkspace(Long kbId, Long workspaceId) {
         KnowledgeBase kb = knowledgeBaseMapper.selectById(kbId);
         if (kb != null) {
@@ -1,27 +1,106 @@
 package com.promptgenie.service;
 
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.service.trace.OtlpJsonTraceExporter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * LLM 调用链追踪，内存占用有上限：
+ * <ul>
+ *   <li>进行中的 trace 按 traceId 索引，各自持有自己的 span，数量和每个 trace 的 span 数都有上限；</li>
+ *   <li>trace 在最后一个打开的 span 结束时完成，此时应用采样策略：开始时按比例做头部采样，
+ *       未被头部采样的 trace 如果出错或耗时超过阈值（尾部采样）仍会保留；</li>
+ *   <li>保留的 trace 写入固定容量的环形缓冲区，最旧的被覆盖；</li>
+ *   <li>可选地由后台线程以 OTLP JSON 格式追加写入本地文件。</li>
+ * </ul>
+ * 通过 {@link #startSpan} 创建的 span 会自动挂到当前线程的活动 span（{@link #activate}）下。
+ */
+@Slf4j
 @Service
 public class LLMTracingService {
-    
-    private final Map<String, TraceSpan> traceSpans = new ConcurrentHashMap<>();
-    private final Map<String, TraceContext> traceContexts = new ConcurrentHashMap<>();
-    private final Map<String, TraceMetrics> traceMetrics = new ConcurrentHashMap<>();
-    
+
+    private final GenieConfig genieConfig;
+
+    @Value("${spring.application.name:prompt-genie-backend}")
+    private String serviceName = "prompt-genie-backend";
+
+    // 进行中的 trace
+    private final Map<String, LiveTrace> activeTraces = new ConcurrentHashMap<>();
+    // 进行中和已保留的 span，按 spanId 索引
+    private final Map<String, TraceSpan> spanIndex = new ConcurrentHashMap<>();
+    // 已保留的 trace：环形缓冲区 + traceId 索引
+    private final Map<String, Trace> retained = new ConcurrentHashMap<>();
+    private final Trace[] ring;
+    private int ringNext;
+
+    private final ThreadLocal<TraceSpan> currentSpan = new ThreadLocal<>();
+
+    private final AtomicLong completedTraces = new AtomicLong();
+    private final AtomicLong sampledOutTraces = new AtomicLong();
+    private final AtomicLong droppedTraces = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+
+    private OtlpJsonTraceExporter exporter;
+
+    public LLMTracingService(GenieConfig genieConfig) {
+        this.genieConfig = genieConfig;
+        this.ring = new Trace[Math.max(1, config().getCapacity())];
+    }
+
+    @PostConstruct
+    public void init() {
+        String exportFile = config().getExportFile();
+        if (exportFile != null && !exportFile.isBlank()) {
+            exporter = new OtlpJsonTraceExporter(Paths.get(exportFile), serviceName,
+                    config().getExportQueueCapacity(), config().getExportMaxFileBytes());
+            exporter.start();
+            log.info("Exporting sampled traces to {}", exportFile);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (exporter != null) {
+            exporter.close();
+        }
+    }
+
     // 开始追踪
     public TraceContext startTrace(String traceId, String operationName, Map<String, Object> tags) {
         TraceContext context = new TraceContext(
             traceId,
             operationName,
-            tags,
+            copyTags(tags),
             System.currentTimeMillis(),
             null
         );
-        traceContexts.put(traceId, context);
+        GenieConfig.TracingConfig config = config();
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return context;
+        }
+        // 头部采样：未选中且没有尾部策略可能保留它的 trace 直接不记录
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < config.getHeadSampleRate();
+        if (!sampled && !tailSampling(config)) {
+            sampledOutTraces.incrementAndGet();
+            return context;
+        }
+        if (activeTraces.size() >= config.getMaxActiveTraces()) {
+            droppedTraces.incrementAndGet();
+            return context;
+        }
+        activeTraces.putIfAbsent(traceId, new LiveTrace(context, sampled));
         return context;
     }
     
@@ -32,34 +111,98 @@ public class LLMTracingService {
             traceId,
             parentSpanId,
             operationName,
-            tags,
+            copyTags(tags),
             System.currentTimeMillis(),
             null,
-            new ArrayList<>()
+            new CopyOnWriteArrayList<>()
         );
-        traceSpans.put(spanId, span);
+        // 所属 trace 未被记录（未采样、已满或已结束）时返回的 span 不入库，对它的操作都是空操作
+        LiveTrace live = activeTraces.get(traceId);
+        if (live != null) {
+            if (live.open(span, config().getMaxSpansPerTrace())) {
+                spanIndex.put(spanId, span);
+            } else {
+                droppedSpans.incrementAndGet();
+            }
+        }
         return span;
     }
+
+    /**
+     * 在当前线程的活动 span 下创建子 span；没有活动 span 时开启一个新 trace，并以该 span 为根。
+     */
+    public TraceSpan startSpan(String operationName, Map<String, Object> tags) {
+        return startSpan(operationName, tags, currentSpan.get());
+    }
+
+    public TraceSpan startSpan(String operationName, Map<String, Object> tags, TraceSpan parent) {
+        if (parent == null) {
+            String traceId = generateId();
+            startTrace(traceId, operationName, tags);
+            return createSpan(generateSpanId(), traceId, null, operationName, tags);
+        }
+        return createSpan(generateSpanId(), parent.getTraceId(), parent.getSpanId(), operationName, tags);
+    }
+
+    /**
+     * 把 span 设为当前线程的活动 span，直到返回的 Scope 关闭，期间 {@link #startSpan(String, Map)} 创建的 span 都是它的子 span。
+     */
+    public Scope activate(TraceSpan span) {
+        TraceSpan previous = currentSpan.get();
+        currentSpan.set(span);
+        return () -> {
+            if (previous != null) {
+                currentSpan.set(previous);
+            } else {
+                currentSpan.remove();
+            }
+        };
+    }
+
+    public TraceSpan currentSpan() {
+        return currentSpan.get();
+    }
     
     // 结束Span
     public void endSpan(String spanId) {
-        TraceSpan span = traceSpans.get(spanId);
+        TraceSpan span = spanIndex.get(spanId);
         if (span != null) {
-            span.setEndTime(System.currentTimeMillis());
-            
-            // 计算耗时
-            long duration = span.getEndTime() - span.getStartTime();
-            span.getTags().put("duration_ms", duration);
-            
-            // 更新指标
-            updateTraceMetrics(span.getTraceId(), span);
+            endSpan(span);
+        }
+    }
+
+    public void endSpan(TraceSpan span) {
+        if (span == null || span.getEndTime() != null) {
+            return;
+        }
+        span.setEndTime(System.currentTimeMillis());
+        
+        // 计算耗时
+        long duration = span.getEndTime() - span.getStartTime();
+        span.getTags().put("duration_ms", duration);
+        
+        LiveTrace live = activeTraces.get(span.getTraceId());
+        // 最后一个打开的 span 结束时 trace 完成
+        if (live != null && live.close(span)) {
+            complete(live, false);
+        }
+    }
+
+    /** 结束 trace，仍未结束的 span 按未完成处理。 */
+    public void endTrace(String traceId) {
+        LiveTrace live = activeTraces.get(traceId);
+        if (live != null) {
+            complete(live, true);
         }
     }
     
     // 记录事件
     public void addEvent(String spanId, String eventName, Map<String, Object> attributes) {
-        TraceSpan span = traceSpans.get(spanId);
-        if (span != null) {
+        addEvent(spanIndex.get(spanId), eventName, attributes);
+    }
+
+    public void addEvent(TraceSpan span, String eventName, Map<String, Object> attributes) {
+        if (span != null && span.getEvents().size() < config().getMaxEventsPerSpan()) {
             TraceEvent event = new TraceEvent(
                 eventName,
                 attributes,
@@ -71,10 +214,13 @@ public class LLMTracingService {
     
     // 记录错误
     public void recordError(String spanId, String errorMessage, Exception e) {
-        TraceSpan span = traceSpans.get(spanId);
+        recordError(spanIndex.get(spanId), errorMessage, e);
+    }
+
+    public void recordError(TraceSpan span, String errorMessage, Throwable e) {
         if (span != null) {
             Map<String, Object> errorAttributes = new HashMap<>();
-            errorAttributes.put("error.message", errorMessage);
+            errorAttributes.put("error.message", String.valueOf(errorMessage));
             errorAttributes.put("error.type", e != null ? e.getClass().getName() : "Unknown");
             errorAttributes.put("error.stack", e != null ? e.toString() : "No stack trace");
             
@@ -87,23 +233,51 @@ public class LLMTracingService {
             span.getTags().put("error", true);
         }
     }
+
+    /**
+     * 完成 trace：从进行中移除，按尾部策略决定是否保留，保留的写入环形缓冲区并排队导出。
+     */
+    private void complete(LiveTrace live, boolean incomplete) {
+        if (!activeTraces.remove(live.context.getTraceId(), live)) {
+            return;
+        }
+        completedTraces.incrementAndGet();
+        Trace trace = live.toTrace(incomplete);
+        GenieConfig.TracingConfig config = config();
+        long slowThreshold = config.getSlowThresholdMs() != null ? config.getSlowThresholdMs() : 0;
+        boolean keep = live.sampled
+                || Boolean.TRUE.equals(config.getKeepErrors()) && trace.getMetrics().getErrorCount() > 0
+                || slowThreshold > 0 && trace.getTotalDuration() >= slowThreshold;
+        if (!keep) {
+            sampledOutTraces.incrementAndGet();
+            trace.getSpans().forEach(span -> spanIndex.remove(span.getSpanId(), span));
+            return;
+        }
+        retain(trace);
+        if (exporter != null) {
+            exporter.offer(trace);
+        }
+    }
+
+    private void retain(Trace trace) {
+        synchronized (ring) {
+            Trace evicted = ring[ringNext];
+            if (evicted != null) {
+                forget(evicted);
+            }
+            ring[ringNext] = trace;
+            ringNext = (ringNext + 1) % ring.length;
+            retained.put(trace.getTraceId(), trace);
+        }
+    }
+
+    private void forget(Trace trace) {
+        retained.remove(trace.getTraceId(), trace);
+        trace.getSpans().forEach(span -> spanIndex.remove(span.getSpanId(), span));
+    }
     
     // 更新指标
-    private void updateTraceMetrics(String traceId, TraceSpan span) {
-        TraceMetrics metrics = traceMetrics.get(traceId);
-        if (metrics == null) {
-            metrics = new TraceMetrics(
-                traceId,
-                0,
-                0,
-                0,
-                0,
-                0,
-                System.currentTimeMillis()
-            );
-            traceMetrics.put(traceId, metrics);
-        }
-        
+    private static void updateTraceMetrics(TraceMetrics metrics, TraceSpan span) {
         metrics.setTotalSpans(metrics.getTotalSpans() + 1);
         
         long duration = (Long) span.getTags().getOrDefault("duration_ms", 0L);
@@ -122,37 +296,30 @@ public class LLMTracingService {
         }
     }
     
-    // 获取Trace
+    // 获取Trace：进行中的返回当前快照
     public Trace getTrace(String traceId) {
-        TraceContext context = traceContexts.get(traceId);
-        if (context == null) {
-            return null;
+        LiveTrace live = activeTraces.get(traceId);
+        if (live != null) {
+            return live.toTrace(false);
         }
-        
-        // 收集所有相关的Span
-        List<TraceSpan> spans = new ArrayList<>();
-        for (TraceSpan span : traceSpans.values()) {
-            if (span.getTraceId().equals(traceId)) {
-                spans.add(span);
+        return retained.get(traceId);
+    }
+
+    /** 最近保留的 trace，新的在前。 */
+    public List<Trace> recentTraces(int limit) {
+        List<Trace> traces = new ArrayList<>();
+        synchronized (ring) {
+            for (int i = 1; i <= ring.length && traces.size() < limit; i++) {
+                Trace trace = ring[Math.floorMod(ringNext - i, ring.length)];
+                if (trace == null) break;
+                traces.add(trace);
             }
         }
-        
-        // 构建Trace
-        Trace trace = new Trace(
-            traceId,
-            context.getOperationName(),
-            context.getTags(),
-            spans,
-            context.getStartTime(),
-            getTraceEndTime(spans),
-            traceMetrics.get(traceId)
-        );
-        
-        return trace;
+        return traces;
     }
     
     // 获取Trace结束时间
-    private Long getTraceEndTime(List<TraceSpan> spans) {
+    private static Long getTraceEndTime(List<TraceSpan> spans) {
         if (spans.isEmpty()) {
             return null;
         }
@@ -169,48 +336,150 @@ public class LLMTracingService {
     
     // 获取Span
     public TraceSpan getSpan(String spanId) {
-        return traceSpans.get(spanId);
+        return spanIndex.get(spanId);
     }
     
     // 获取Trace指标
     public TraceMetrics getTraceMetrics(String traceId) {
-        return traceMetrics.get(traceId);
+        Trace trace = getTrace(traceId);
+        return trace != null ? trace.getMetrics() : null;
     }
     
     // 清理过期的Trace数据
     public void cleanupOldTraces(long cutoffTime) {
-        // 清理过期的TraceContext
-        Iterator<Map.Entry<String, TraceContext>> contextIterator = traceContexts.entrySet().iterator();
-        while (contextIterator.hasNext()) {
-            Map.Entry<String, TraceContext> entry = contextIterator.next();
-            if (entry.getValue().getStartTime() < cutoffTime) {
-                contextIterator.remove();
+        // 仍在进行的按未完成结束
+        for (LiveTrace live : activeTraces.values()) {
+            if (live.context.getStartTime() < cutoffTime) {
+                complete(live, true);
             }
         }
-        
-        // 清理过期的TraceSpan
-        Iterator<Map.Entry<String, TraceSpan>> spanIterator = traceSpans.entrySet().iterator();
-        while (spanIterator.hasNext()) {
-            Map.Entry<String, TraceSpan> entry = spanIterator.next();
-            if (entry.getValue().getStartTime() < cutoffTime) {
-                spanIterator.remove();
+        // 清理环形缓冲区中过期的Trace
+        synchronized (ring) {
+            for (int i = 0; i < ring.length; i++) {
+                if (ring[i] != null && ring[i].getStartTime() < cutoffTime) {
+                    forget(ring[i]);
+                    ring[i] = null;
+                }
             }
+            compactRing();
         }
-        
-        // 清理过期的TraceMetrics
-        Iterator<Map.Entry<String, TraceMetrics>> metricsIterator = traceMetrics.entrySet().iterator();
-        while (metricsIterator.hasNext()) {
-            Map.Entry<String, TraceMetrics> entry = metricsIterator.next();
-            if (entry.getValue().getCreatedAt() < cutoffTime) {
-                metricsIterator.remove();
+    }
+
+    // span 一直未结束的 trace（调用方异常退出等）超时后按未完成处理
+    @Scheduled(fixedDelay = 60000)
+    public void expireStaleTraces() {
+        long cutoff = System.currentTimeMillis() - config().getMaxTraceAgeMs();
+        for (LiveTrace live : activeTraces.values()) {
+            if (live.context.getStartTime() < cutoff) {
+                complete(live, true);
             }
         }
     }
+
+    // 清理后把剩余的 trace 按时间顺序移到缓冲区开头，保持“ringNext 之前是最新的”
+    private void compactRing() {
+        List<Trace> kept = new ArrayList<>();
+        for (int i = 0; i < ring.length; i++) {
+            Trace trace = ring[(ringNext + i) % ring.length];
+            if (trace != null) kept.add(trace);
+        }
+        Arrays.fill(ring, null);
+        for (int i = 0; i < kept.size(); i++) {
+            ring[i] = kept.get(i);
+        }
+        ringNext = kept.size() % ring.length;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeTraces", activeTraces.size());
+        stats.put("retainedTraces", retained.size());
+        stats.put("indexedSpans", spanIndex.size());
+        stats.put("completedTraces", completedTraces.get());
+        stats.put("sampledOutTraces", sampledOutTraces.get());
+        stats.put("droppedTraces", droppedTraces.get());
+        stats.put("droppedSpans", droppedSpans.get());
+        stats.put("exportedTraces", exporter != null ? exporter.getExported() : 0L);
+        stats.put("exportDroppedTraces", exporter != null ? exporter.getDropped() : 0L);
+        return stats;
+    }
     
     // 生成唯一ID
     public String generateId() {
         return UUID.randomUUID().toString().replace("-", "");
     }
+
+    // 生成 span ID（16 位十六进制，与 OTLP 一致）
+    public String generateSpanId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    private static boolean tailSampling(GenieConfig.TracingConfig config) {
+        return Boolean.TRUE.equals(config.getKeepErrors())
+                || config.getSlowThresholdMs() != null && config.getSlowThresholdMs() > 0;
+    }
+
+    // span 的 tags 会被并发修改且调用方可能传入不可变 Map，这里统一复制；ConcurrentHashMap 不接受 null 值
+    private static Map<String, Object> copyTags(Map<String, Object> tags) {
+        Map<String, Object> copy = new ConcurrentHashMap<>();
+        if (tags != null) {
+            tags.forEach((key, value) -> {
+                if (key != null && value != null) copy.put(key, value);
+            });
+        }
+        return copy;
+    }
+
+    private GenieConfig.TracingConfig config() {
+        return genieConfig.getTracing() != null ? genieConfig.getTracing() : new GenieConfig.TracingConfig();
+    }
+
+    /** {@link #activate} 的作用域，关闭时恢复之前的活动 span。 */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // 进行中的 trace：自己的 span 列表、打开的 span 数和逐步累计的指标
+    private static final class LiveTrace {
+        private final TraceContext context;
+        private final boolean sampled;
+        private final List<TraceSpan> spans = new ArrayList<>();
+        private final Set<String> openSpans = new HashSet<>();
+        private final TraceMetrics metrics;
+
+        LiveTrace(TraceContext context, boolean sampled) {
+            this.context = context;
+            this.sampled = sampled;
+            this.metrics = new TraceMetrics(context.getTraceId(), 0, 0, 0, 0, 0, context.getStartTime());
+        }
+
+        synchronized boolean open(TraceSpan span, int maxSpans) {
+            if (spans.size() >= maxSpans) return false;
+            spans.add(span);
+            openSpans.add(span.getSpanId());
+            return true;
+        }
+
+        synchronized boolean close(TraceSpan span) {
+            if (!openSpans.remove(span.getSpanId())) return false;
+            updateTraceMetrics(metrics, span);
+            return openSpans.isEmpty();
+        }
+
+        synchronized Trace toTrace(boolean incomplete) {
+            List<TraceSpan> copy = new ArrayList<>(spans);
+            Map<String, Object> tags = context.getTags();
+            if (incomplete && !openSpans.isEmpty()) {
+                tags.put("incomplete", true);
+            }
+            TraceMetrics snapshot = new TraceMetrics(metrics.getTraceId(), metrics.getTotalSpans(), metrics.getTotalDuration(),
+                    metrics.getErrorCount(), metrics.getMaxDuration(), metrics.getMinDuration(), metrics.getCreatedAt());
+            return new Trace(context.getTraceId(), context.getOperationName(), tags, copy,
+                    context.getStartTime(), getTraceEndTime(copy), snapshot);
+        }
+    }
     
     // TraceContext类
     public static class TraceContext {
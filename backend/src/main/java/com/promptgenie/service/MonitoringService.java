@@ -1,5 +1,9 @@
 package com.promptgenie.service;
 
+import com.promptgenie.core.metrics.GenieMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.lang.management.ManagementFactory;
@@ -14,9 +18,16 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class MonitoringService {
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private final Map<String, Double> metrics = new HashMap<>();
     private final Map<String, Double> thresholds = new HashMap<>();
+    // 上次采集时生成调用的累计值，用于计算本周期的增量
+    private long lastCalls;
+    private long lastErrors;
+    private double lastTotalMillis;
     
     // 初始化监控
     public void init() {
@@ -63,8 +74,23 @@ public class MonitoringService {
     
     // 收集应用指标
     private void collectApplicationMetrics() {
-        // TODO: 收集API调用次数、响应时间、错误率等
-        // 这里可以从请求拦截器或日志中收集数据
+        // 模型调用的平均响应时间(ms)和错误率(%)取自 Micrometer 的 genie.generation 计时器，按采集周期计算增量
+        long calls = 0;
+        long errors = 0;
+        double totalMillis = 0;
+        for (Timer timer : meterRegistry.find(GenieMetrics.GENERATION).timers()) {
+            calls += timer.count();
+            totalMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+            if (GenieMetrics.ERROR.equals(timer.getId().getTag("status"))) {
+                errors += timer.count();
+            }
+        }
+        long periodCalls = calls - lastCalls;
+        metrics.put("response_time", periodCalls > 0 ? (totalMillis - lastTotalMillis) / periodCalls : 0.0);
+        metrics.put("error_rate", periodCalls > 0 ? (errors - lastErrors) * 100.0 / periodCalls : 0.0);
+        lastCalls = calls;
+        lastErrors = errors;
+        lastTotalMillis = totalMillis;
     }
     
     // 检查告警
@@ -1,21 +1,42 @@
 package com.promptgenie.service;
 
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.entity.GenerationTask;
 import com.promptgenie.entity.PlaygroundHistory;
 import com.promptgenie.mapper.PlaygroundHistoryMapper;
+import com.promptgenie.service.cache.GenerationCache;
+import com.promptgenie.service.strategy.AsyncTaskStrategy;
 import com.promptgenie.service.strategy.GenerationOutput;
 import com.promptgenie.service.strategy.GenerationStrategy;
+import com.promptgenie.service.template.PromptTemplate;
+import com.promptgenie.service.task.GenerationTaskService;
+import com.promptgenie.service.template.PromptTemplateCache;
+import com.promptgenie.service.tokenizer.TokenizerService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
+@Slf4j
 @Service
 public class PlaygroundService {
 
+    /** Start of the text returned in place of a result when a generation fails. */
+    public static final String ERROR_PREFIX = "Error calling AI: ";
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -28,6 +49,25 @@ public class PlaygroundService {
     @Autowired
     private List<GenerationStrategy> strategies;
 
+    @Autowired
+    private GenerationCache generationCache;
+
+    @Autowired
+    private TokenizerService tokenizerService;
+
+    @Autowired
+    private GenerationTaskService generationTaskService;
+
+    @Autowired
+    private GenieMetrics metrics;
+
+    @Autowired
+    private LLMTracingService tracingService;
+
+    private static final String KB_PREAMBLE = "You have access to the following knowledge base documents:\n\n";
+    private static final String KB_PROMPT_HEADER = "\n\nUser Query/Prompt:\n";
+    private static final String TASK_STARTED = "Generation started. Task ID: ";
+
     public String runPrompt(String promptTemplate, Map<String, Object> variables) {
         return runPrompt(promptTemplate, variables, "text", "qwen-turbo");
     }
@@ -41,8 +81,237 @@ public class PlaygroundService {
     }
 
     public String runPrompt(String promptTemplate, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId) {
-        System.out.println("runPrompt called. Type: " + modelType + ", Model: " + modelName);
-        String finalPrompt = substituteVariables(promptTemplate, variables);
+        return execute(promptTemplate, variables, modelType, modelName, parameters, userId, null);
+    }
+
+    /**
+     * Same as {@link #runPrompt(String, Map, String, String, Map, Long)} but pushes content deltas to
+     * {@code onChunk} as the provider produces them. History is written once the stream has ended.
+     */
+    public String runPromptStream(String promptTemplate, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId, Consumer<String> onChunk) {
+        return execute(promptTemplate, variables, modelType, modelName, parameters, userId, onChunk);
+    }
+
+    @Async
+    public void streamPrompt(String promptTemplate, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId, SseEmitter emitter) {
+        try {
+            String result = runPromptStream(promptTemplate, variables, modelType, modelName, parameters, userId, chunk -> {
+                try {
+                    emitter.send(SseEmitter.event().name("token").data(chunk));
+                } catch (IOException e) {
+                    // Client went away: abort the upstream stream instead of draining it
+                    throw new ClientDisconnectedException(e);
+                }
+            });
+            if (result != null && result.startsWith(ERROR_PREFIX)) {
+                emitter.send(SseEmitter.event().name("error").data(result));
+            } else {
+                emitter.send(SseEmitter.event().name("complete").data(Map.of("result", result)));
+            }
+            emitter.complete();
+        } catch (ClientDisconnectedException e) {
+            // Nobody is listening any more; execute() already treated this as a cancellation
+            emitter.complete();
+        } catch (Exception e) {
+            try {
+                emitter.send(SseEmitter.event().name("error").data("Fatal error: " + e.getMessage()));
+                emitter.completeWithError(e);
+            } catch (Exception ex) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #runPrompt(String, Map, String, String, Map, Long)}: no thread is held
+     * while the provider works. Like the blocking call, failures are reported in the returned text.
+     */
+    public CompletableFuture<String> runPromptAsync(String promptTemplate, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId) {
+        return runPromptAsync(PromptTemplate.compile(promptTemplate), variables, modelType, modelName, parameters, userId);
+    }
+
+    /**
+     * Variant for callers that render one template many times (batch rows, evaluation rows, chain steps)
+     * and compile it once up front via {@link PromptTemplateCache}.
+     */
+    public CompletableFuture<String> runPromptAsync(PromptTemplate template, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId) {
+        if (isAsyncTask(modelType, modelName)) {
+            // Completed by the task poller; history is written there
+            GenerationTask task = startTask(template, variables, modelType, modelName, parameters, userId, null);
+            return generationTaskService.await(task.getId()).thenApply(generationTaskService::resultText);
+        }
+        long startNanos = System.nanoTime();
+        LLMTracingService.TraceSpan span = startGenerationSpan(modelType, modelName);
+        String promptTemplate = template.getSource();
+        String finalPrompt;
+        try (LLMTracingService.Scope ignored = tracingService.activate(span)) {
+            finalPrompt = buildFinalPrompt(template, variables, modelName, parameters, userId);
+        } catch (RuntimeException e) {
+            tracingService.recordError(span, e.getMessage(), e);
+            tracingService.endSpan(span);
+            throw e;
+        }
+
+        String cacheKey = generationCache.isCacheable(parameters) ? generationCache.key(modelType, modelName, finalPrompt, parameters) : null;
+        GenerationOutput cached = cacheKey != null ? generationCache.get(cacheKey) : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(finish(null, cached, null, true, startNanos, span, promptTemplate, variables, modelType, modelName, parameters, userId));
+        }
+
+        GenerationStrategy strategy;
+        try {
+            strategy = resolveStrategy(modelType, modelName);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(finish(null, null, e, false, startNanos, span, promptTemplate, variables, modelType, modelName, parameters, userId));
+        }
+
+        CompletableFuture<GenerationOutput> call = strategy.generateAsync(finalPrompt, modelName, parameters);
+        CompletableFuture<String> result = call.handle((output, error) -> {
+            if (cacheKey != null && error == null) {
+                generationCache.put(cacheKey, output);
+            }
+            return finish(strategy, output, unwrap(error), false, startNanos, span, promptTemplate, variables, modelType, modelName, parameters, userId);
+        });
+        // Cancelling the returned future (an abandoned batch row) cancels the provider call as well
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private String execute(String promptTemplate, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId, Consumer<String> onChunk) {
+        if (isAsyncTask(modelType, modelName)) {
+            GenerationTask task = startTask(PromptTemplate.compile(promptTemplate), variables, modelType, modelName, parameters, userId, null);
+            String message = taskMessage(task);
+            if (onChunk != null) {
+                onChunk.accept(message);
+            }
+            return message;
+        }
+        long startNanos = System.nanoTime();
+        LLMTracingService.TraceSpan span = startGenerationSpan(modelType, modelName);
+        String finalPrompt;
+        try (LLMTracingService.Scope ignored = tracingService.activate(span)) {
+            finalPrompt = buildFinalPrompt(PromptTemplate.compile(promptTemplate), variables, modelName, parameters, userId);
+        } catch (RuntimeException e) {
+            tracingService.recordError(span, e.getMessage(), e);
+            tracingService.endSpan(span);
+            throw e;
+        }
+
+        String cacheKey = generationCache.isCacheable(parameters) ? generationCache.key(modelType, modelName, finalPrompt, parameters) : null;
+        GenerationOutput cached = cacheKey != null ? generationCache.get(cacheKey) : null;
+        if (cached != null) {
+            if (onChunk != null) {
+                onChunk.accept(cached.getContent());
+            }
+            return finish(null, cached, null, true, startNanos, span, promptTemplate, variables, modelType, modelName, parameters, userId);
+        }
+
+        GenerationStrategy strategy = null;
+        GenerationOutput output = null;
+        Exception error = null;
+        try {
+            strategy = resolveStrategy(modelType, modelName);
+            output = onChunk == null
+                    ? strategy.generate(finalPrompt, modelName, parameters)
+                    : strategy.generateStream(finalPrompt, modelName, parameters, onChunk);
+            if (cacheKey != null) {
+                generationCache.put(cacheKey, output);
+            }
+        } catch (Exception e) {
+            ClientDisconnectedException disconnect = findDisconnect(e);
+            if (disconnect != null) {
+                // A cancellation, not a failed generation: no error history and no error metric
+                recordCancelled(strategy, startNanos, span, modelName);
+                throw disconnect;
+            }
+            error = e;
+        }
+        return finish(strategy, output, error, false, startNanos, span, promptTemplate, variables, modelType, modelName, parameters, userId);
+    }
+
+    private static ClientDisconnectedException findDisconnect(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ClientDisconnectedException disconnect) {
+                return disconnect;
+            }
+        }
+        return null;
+    }
+
+    private void recordCancelled(GenerationStrategy strategy, long startNanos, LLMTracingService.TraceSpan span, String modelName) {
+        try {
+            span.getTags().put("genie.cancelled", true);
+            String provider = strategy != null ? strategy.provider(modelName) : GenieMetrics.UNKNOWN;
+            metrics.recordGeneration(provider, strategy != null ? modelName : GenieMetrics.UNKNOWN, GenieMetrics.CANCELLED,
+                    System.nanoTime() - startNanos);
+        } finally {
+            tracingService.endSpan(span);
+        }
+    }
+
+    /**
+     * True for models served through provider-side tasks (video), which are submitted and completed
+     * by {@link GenerationTaskService} instead of being awaited on a request thread.
+     */
+    public boolean isAsyncTask(String modelType, String modelName) {
+        return generationTaskService.resolveStrategy(modelType, modelName) != null;
+    }
+
+    /**
+     * Submits an async-task model run and returns the persisted task right away. Completion is pushed
+     * to task subscribers and, if given, POSTed to {@code webhookUrl}.
+     */
+    public GenerationTask startTask(String promptTemplate, Map<String, Object> variables, String modelType, String modelName,
+                                    Map<String, Object> parameters, Long userId, String webhookUrl) {
+        return startTask(PromptTemplate.compile(promptTemplate), variables, modelType, modelName, parameters, userId, webhookUrl);
+    }
+
+    private GenerationTask startTask(PromptTemplate template, Map<String, Object> variables, String modelType, String modelName,
+                                     Map<String, Object> parameters, Long userId, String webhookUrl) {
+        AsyncTaskStrategy strategy = generationTaskService.resolveStrategy(modelType, modelName);
+        String finalPrompt = buildFinalPrompt(template, variables, modelName, parameters, userId);
+        return generationTaskService.submit(strategy, finalPrompt, template.getSource(), variables, modelType, modelName, parameters, userId, webhookUrl);
+    }
+
+    /**
+     * Immediate answer for a submitted task: the task id, or the error if submission already failed.
+     */
+    public String taskMessage(GenerationTask task) {
+        return task.isFinished() ? generationTaskService.resultText(task) : TASK_STARTED + task.getId();
+    }
+
+    /**
+     * Counts the tokens of the fully assembled prompt (variables and knowledge base context included)
+     * before anything is sent, and prices it for the target model.
+     */
+    public Map<String, Object> estimatePrompt(String promptTemplate, Map<String, Object> variables, String modelType, String modelName, Map<String, Object> parameters, Long userId) {
+        String finalPrompt = buildFinalPrompt(PromptTemplate.compile(promptTemplate), variables, modelName, parameters, userId);
+        int inputTokens = tokenizerService.countTokens(finalPrompt);
+        int contextWindow = tokenizerService.contextWindow(modelName);
+        int maxOutputTokens = tokenizerService.reservedOutputTokens(parameters);
+
+        Map<String, Object> estimate = new LinkedHashMap<>();
+        estimate.put("inputTokens", inputTokens);
+        estimate.put("exactCount", tokenizerService.isExact());
+        estimate.put("contextWindow", contextWindow);
+        estimate.put("maxOutputTokens", maxOutputTokens);
+        estimate.put("fitsContext", inputTokens + maxOutputTokens <= contextWindow);
+        try {
+            GenerationStrategy strategy = resolveStrategy(modelType, modelName);
+            estimate.put("estimatedInputCost", strategy.calculateCost(modelName, inputTokens, 0, parameters));
+            estimate.put("estimatedMaxCost", strategy.calculateCost(modelName, inputTokens, maxOutputTokens, parameters));
+        } catch (Exception e) {
+            estimate.put("costError", e.getMessage());
+        }
+        return estimate;
+    }
+
+    private String buildFinalPrompt(PromptTemplate template, Map<String, Object> variables, String modelName, Map<String, Object> parameters, Long userId) {
+        String finalPrompt = template.render(variables);
         
         // Append Knowledge Base Context if kbId is present
         if (parameters != null && parameters.containsKey("kbId")) {
@@ -51,41 +320,67 @@ public class PlaygroundService {
                 if (!kbIdStr.isEmpty()) {
                     Long kbId = Long.parseLong(kbIdStr);
                     // Get userId from context if not provided
-                    if (userId == null) {
-                        userId = -1L; // Treat as anonymous/free
+                    Long kbUserId = userId != null ? userId : -1L; // Treat as anonymous/free
+                    // Whatever the model's window leaves after the prompt itself and the answer goes to KB context
+                    int tokenBudget = tokenizerService.contextWindow(modelName)
+                            - tokenizerService.reservedOutputTokens(parameters)
+                            - tokenizerService.countTokens(finalPrompt)
+                            - tokenizerService.countTokens(KB_PREAMBLE + KB_PROMPT_HEADER);
+                    String context = null;
+                    if (tokenBudget > 0) {
+                        LLMTracingService.TraceSpan span = tracingService.startSpan("kb.context", Map.of("genie.kb.id", kbId, "genie.kb.token_budget", tokenBudget));
+                        try {
+                            context = knowledgeService.getKnowledgeContext(kbId, kbUserId, finalPrompt, tokenBudget);
+                            span.getTags().put("genie.kb.context_chars", context != null ? context.length() : 0);
+                        } finally {
+                            tracingService.endSpan(span);
+                        }
                     }
-                    String context = knowledgeService.getKnowledgeContext(kbId, userId, finalPrompt);
                     if (context != null && !context.isEmpty()) {
-                        finalPrompt = "You have access to the following knowledge base documents:\n\n" + context + "\n\nUser Query/Prompt:\n" + finalPrompt;
+                        finalPrompt = KB_PREAMBLE + context + KB_PROMPT_HEADER + finalPrompt;
                     }
                 }
             } catch (Exception e) {
                 System.err.println("Failed to append KB context: " + e.getMessage());
             }
         }
-        
+        return finalPrompt;
+    }
+
+    // Package-private for the JMH benchmarks in src/jmh
+    GenerationStrategy resolveStrategy(String modelType, String modelName) {
+        return strategies.stream()
+            .filter(s -> s.supports(modelType, modelName))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unsupported model type: " + modelType + " / model: " + modelName));
+    }
+
+    private String finish(GenerationStrategy strategy, GenerationOutput output, Throwable error, boolean cacheHit, long startNanos, LLMTracingService.TraceSpan span, String promptTemplate, Map<String, Object> variables,
+                          String modelType, String modelName, Map<String, Object> parameters, Long userId) {
         String result = null;
         Integer inputTokens = 0;
         Integer outputTokens = 0;
         double cost = 0.0;
 
-        try {
-            GenerationStrategy strategy = strategies.stream()
-                .filter(s -> s.supports(modelType, modelName))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Unsupported model type: " + modelType + " / model: " + modelName));
-
-            GenerationOutput output = strategy.generate(finalPrompt, modelName, parameters);
+        if (cacheHit) {
+            // Served from the response cache: no provider call, so no tokens or cost are billed
             result = output.getContent();
-            inputTokens = output.getInputTokens();
-            outputTokens = output.getOutputTokens();
-            
-            cost = strategy.calculateCost(modelName, inputTokens, outputTokens, parameters);
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            result = "Error calling AI: " + e.getMessage();
+        } else if (error == null) {
+            try {
+                result = output.getContent();
+                inputTokens = output.getInputTokens();
+                outputTokens = output.getOutputTokens();
+                
+                cost = strategy.calculateCost(modelName, inputTokens, outputTokens, parameters);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            log.warn("Generation with {} model {} failed", modelType, modelName, error);
+            result = ERROR_PREFIX + error.getMessage();
         }
+        recordTelemetry(strategy, error, cacheHit, startNanos, span, modelType, modelName, inputTokens, outputTokens, cost);
 
         if (userId != null) {
             try {
@@ -102,7 +397,13 @@ public class PlaygroundService {
                 history.setCost(cost);
                 
                 if (variables != null) history.setVariables(objectMapper.writeValueAsString(variables));
-                if (parameters != null) history.setParameters(objectMapper.writeValueAsString(parameters));
+                if (cacheHit) {
+                    Map<String, Object> recorded = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+                    recorded.put("_cacheHit", true);
+                    history.setParameters(objectMapper.writeValueAsString(recorded));
+                } else if (parameters != null) {
+                    history.setParameters(objectMapper.writeValueAsString(parameters));
+                }
                 
                 historyMapper.insert(history);
             } catch (Exception e) {
@@ -113,6 +414,60 @@ public class PlaygroundService {
         return result;
     }
 
+    /**
+     * One generation span per call, a root span unless the caller (a chain node) has one active.
+     * Attribute names follow the OpenTelemetry GenAI conventions.
+     */
+    private LLMTracingService.TraceSpan startGenerationSpan(String modelType, String modelName) {
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("gen_ai.operation.name", modelType);
+        tags.put("gen_ai.request.model", modelName);
+        return tracingService.startSpan("llm.generate", tags);
+    }
+
+    /**
+     * Latency includes prompt assembly (knowledge base retrieval) so it matches what the caller waited.
+     * Models no strategy supports are tagged as unknown rather than by their requested name; GenieMetrics
+     * folds supported but unlisted names into "other".
+     */
+    private void recordTelemetry(GenerationStrategy strategy, Throwable error, boolean cacheHit, long startNanos, LLMTracingService.TraceSpan span,
+                                 String modelType, String modelName, Integer inputTokens, Integer outputTokens, double cost) {
+        try {
+            if (error != null) {
+                tracingService.recordError(span, error.getMessage(), error);
+            }
+            span.getTags().put("genie.cache_hit", cacheHit);
+            if (strategy == null && cacheHit) {
+                // Cached answers were produced by a supported model; attribute them to its provider
+                strategy = resolveStrategy(modelType, modelName);
+            }
+            String provider = strategy != null ? strategy.provider(modelName) : GenieMetrics.UNKNOWN;
+            String model = strategy != null ? modelName : GenieMetrics.UNKNOWN;
+            String status = cacheHit ? GenieMetrics.CACHE_HIT : error != null ? GenieMetrics.ERROR : GenieMetrics.SUCCESS;
+            metrics.recordGeneration(provider, model, status, System.nanoTime() - startNanos);
+            span.getTags().put("gen_ai.system", provider);
+            if (!cacheHit && error == null) {
+                int input = inputTokens != null ? inputTokens : 0;
+                int output = outputTokens != null ? outputTokens : 0;
+                metrics.recordUsage(provider, model, input, output, cost);
+                span.getTags().put("gen_ai.usage.input_tokens", input);
+                span.getTags().put("gen_ai.usage.output_tokens", output);
+                span.getTags().put("genie.cost", cost);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to record generation metrics: {}", e.getMessage());
+        } finally {
+            tracingService.endSpan(span);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
     public List<PlaygroundHistory> getHistory(Long userId) {
         QueryWrapper<PlaygroundHistory> query = new QueryWrapper<>();
         query.eq("user_id", userId).orderByDesc("created_at").last("LIMIT 50");
@@ -142,17 +497,10 @@ public class PlaygroundService {
         );
     }
 
-    private String substituteVariables(String template, Map<String, Object> variables) {
-        if (variables == null || variables.isEmpty()) {
-            return template;
+    /** Thrown from a stream's chunk consumer when the SSE client has gone away. */
+    private static final class ClientDisconnectedException extends RuntimeException {
+        ClientDisconnectedException(IOException cause) {
+            super("Client disconnected", cause);
         }
-        
-        String result = template;
-        for (Map.Entry<String, Object> entry : variables.entrySet()) {
-            String key = "\\{\\{" + entry.getKey() + "\\}\\}";
-            String value = String.valueOf(entry.getValue());
-            result = result.replaceAll(key, value);
-        }
-        return result;
     }
 }
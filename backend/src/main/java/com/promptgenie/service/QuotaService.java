@@ -6,15 +6,23 @@ import com.promptgenie.auth.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 public class QuotaService {
 
+    private static final int DEFAULT_BATCH_PARALLELISM = 2;
+
     @Autowired
     private GenieConfig genieConfig;
 
     @Autowired
     private UserService userService;
 
+    // Batch rows in flight per user; entries are dropped when they reach zero
+    private final Map<Long, Integer> batchRowsInFlight = new ConcurrentHashMap<>();
+
     public void checkBatchQuota(Long userId, int rowCount) {
         GenieConfig.QuotaLimits limits = getLimits(userId);
         Integer max = limits.getMaxBatchRows();
@@ -23,6 +31,45 @@ public class QuotaService {
         }
     }
 
+    /**
+     * Resolves how many rows of a batch may run concurrently: the caller's request, capped by the plan.
+     */
+    public int resolveBatchParallelism(Long userId, Integer requested) {
+        int max = maxBatchParallelism(userId);
+        if (requested == null || requested <= 0) {
+            return max;
+        }
+        return Math.min(requested, max);
+    }
+
+    /**
+     * The plan's limit on batch rows in flight, across all of the user's running batches.
+     */
+    public int maxBatchParallelism(Long userId) {
+        GenieConfig.QuotaLimits limits = getLimits(userId);
+        return limits.getMaxBatchParallelism() != null && limits.getMaxBatchParallelism() > 0
+                ? limits.getMaxBatchParallelism() : DEFAULT_BATCH_PARALLELISM;
+    }
+
+    /**
+     * Takes one of the user's batch row slots if fewer than {@code limit} rows are in flight over all
+     * their batches. Every successful call must be paired with {@link #releaseBatchRow}.
+     */
+    public boolean tryAcquireBatchRow(Long userId, int limit) {
+        boolean[] acquired = {false};
+        batchRowsInFlight.compute(userId, (id, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= limit) return count;
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    public void releaseBatchRow(Long userId) {
+        batchRowsInFlight.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
     public void checkChainQuota(Long userId, int stepCount) {
         GenieConfig.QuotaLimits limits = getLimits(userId);
         Integer max = limits.getMaxChainSteps();
@@ -55,6 +102,7 @@ public class QuotaService {
             // Fallback defaults if config is missing
             GenieConfig.QuotaLimits defaults = new GenieConfig.QuotaLimits();
             defaults.setMaxBatchRows(10);
+            defaults.setMaxBatchParallelism(DEFAULT_BATCH_PARALLELISM);
             defaults.setMaxChainSteps(5);
             defaults.setMaxEvaluationRows(10);
             return defaults;
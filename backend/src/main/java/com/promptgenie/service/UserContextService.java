@@ -2,6 +2,7 @@ package com.promptgenie.service;
 
 import com.promptgenie.auth.entity.User;
 import com.promptgenie.auth.service.UserService;
+import com.promptgenie.core.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,7 +22,12 @@ public class UserContextService {
     public User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getName() != null && !"anonymousUser".equals(auth.getName())) {
-            return userService.findByEmail(auth.getName());
+            // Resolved once per request by JwtAuthenticationFilter
+            User current = CurrentUser.get();
+            if (current != null && auth.getName().equals(current.getEmail())) {
+                return current;
+            }
+            return CurrentUser.set(userService.findByEmail(auth.getName()));
         }
         return null;
     }
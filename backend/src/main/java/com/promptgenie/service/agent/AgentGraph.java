@@ -0,0 +1,174 @@
+package com.promptgenie.service.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.enums.AgentNodeType;
+import com.promptgenie.entity.AgentConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An agent's {@code configJson} parsed once into an immutable graph: nodes indexed by id and
+ * outgoing edges indexed by source, both in declaration order. Lookups return {@code null} (or an
+ * empty collection) where the JSON has nothing, so the executors keep their built-in defaults for
+ * unknown nodes. A config that fails to parse compiles to an empty graph with {@link #isValid()}
+ * false, which is cached like any other so the bad JSON is not parsed again on every run.
+ */
+public final class AgentGraph {
+
+    /** Graph of an agent without any stored config. */
+    public static final AgentGraph EMPTY = new AgentGraph(null, null, null, Map.of(), Map.of(), null);
+
+    /**
+     * @param type     the raw {@code type} of the node as written in the config
+     * @param nodeType the resolved node type, {@code null} when the type is missing or unknown
+     * @param data     the node's {@code data} object, never null
+     */
+    public record Node(String id, String type, AgentNodeType nodeType, Map<String, Object> data) {
+    }
+
+    public record Edge(String source, String target, String condition) {
+    }
+
+    private final Long configId;
+    private final Integer version;
+    private final LocalDateTime updatedAt;
+    private final Map<String, Node> nodes;
+    private final Map<String, List<Edge>> outgoing;
+    private final String error;
+
+    private AgentGraph(Long configId, Integer version, LocalDateTime updatedAt,
+                       Map<String, Node> nodes, Map<String, List<Edge>> outgoing, String error) {
+        this.configId = configId;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.nodes = nodes;
+        this.outgoing = outgoing;
+        this.error = error;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static AgentGraph compile(AgentConfig config, ObjectMapper objectMapper) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        Map<String, List<Edge>> outgoing = new LinkedHashMap<>();
+        try {
+            JsonNode root = objectMapper.readTree(config.getConfigJson());
+            JsonNode nodeArray = root != null ? root.get("nodes") : null;
+            if (nodeArray != null && nodeArray.isArray()) {
+                for (JsonNode node : nodeArray) {
+                    String id = text(node, "id");
+                    if (id == null) continue;
+                    String type = text(node, "type");
+                    JsonNode data = node.get("data");
+                    Map<String, Object> values = data != null && data.isObject()
+                            ? objectMapper.treeToValue(data, LinkedHashMap.class) : Map.of();
+                    // The first node with an id wins, as with the linear scan this replaces
+                    nodes.putIfAbsent(id, new Node(id, type, resolveType(type), Collections.unmodifiableMap(values)));
+                }
+            }
+            JsonNode edgeArray = root != null ? root.get("edges") : null;
+            if (edgeArray != null && edgeArray.isArray()) {
+                for (JsonNode edge : edgeArray) {
+                    String source = text(edge, "source");
+                    String target = text(edge, "target");
+                    if (source == null || target == null) continue;
+                    outgoing.computeIfAbsent(source, k -> new ArrayList<>()).add(new Edge(source, target, text(edge, "condition")));
+                }
+            }
+        } catch (Exception e) {
+            return new AgentGraph(config.getId(), config.getVersion(), config.getUpdatedAt(), Map.of(), Map.of(),
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        outgoing.replaceAll((source, edges) -> List.copyOf(edges));
+        return new AgentGraph(config.getId(), config.getVersion(), config.getUpdatedAt(),
+                Collections.unmodifiableMap(nodes), Collections.unmodifiableMap(outgoing), null);
+    }
+
+    /** Whether this graph was compiled from {@code config} as it is now (same row, version and last update). */
+    public boolean isCompiledFrom(AgentConfig config) {
+        return config != null
+                && Objects.equals(configId, config.getId())
+                && Objects.equals(version, config.getVersion())
+                && Objects.equals(updatedAt, config.getUpdatedAt());
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public Collection<Node> nodes() {
+        return nodes.values();
+    }
+
+    public Node node(String nodeId) {
+        return nodes.get(nodeId);
+    }
+
+    public AgentNodeType nodeType(String nodeId) {
+        Node node = nodes.get(nodeId);
+        return node != null ? node.nodeType() : null;
+    }
+
+    /** The node's {@code data}, empty for unknown nodes. Read-only. */
+    public Map<String, Object> nodeData(String nodeId) {
+        Node node = nodes.get(nodeId);
+        return node != null ? node.data() : Map.of();
+    }
+
+    public List<Edge> outgoing(String nodeId) {
+        return outgoing.getOrDefault(nodeId, List.of());
+    }
+
+    /**
+     * The target of the first outgoing edge of {@code currentNodeId} that applies, or {@code null}
+     * when none does. Edges leaving the {@code condition} and {@code loop} nodes are chosen by
+     * their {@code condition} against the node's result in {@code intermediateResults}.
+     */
+    public String nextNodeId(String currentNodeId, Map<String, Object> intermediateResults) {
+        for (Edge edge : outgoing(currentNodeId)) {
+            if ("condition".equals(currentNodeId)) {
+                boolean conditionResult = (boolean) intermediateResults.getOrDefault("conditionResult", true);
+                if (("true".equals(edge.condition()) && conditionResult) || ("false".equals(edge.condition()) && !conditionResult)) {
+                    return edge.target();
+                }
+            } else if ("loop".equals(currentNodeId)) {
+                boolean continueLoop = (boolean) intermediateResults.getOrDefault("continueLoop", false);
+                if (("continue".equals(edge.condition()) && continueLoop) || ("break".equals(edge.condition()) && !continueLoop)) {
+                    return edge.target();
+                }
+            } else {
+                return edge.target();
+            }
+        }
+        return null;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    private static AgentNodeType resolveType(String type) {
+        if (type == null) return null;
+        try {
+            return AgentNodeType.fromValue(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.promptgenie.service.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.promptgenie.entity.AgentConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled {@link AgentGraph}s keyed by agent id and config version, shared by
+ * {@code AgentExecutorService} and the edge executor. {@code AgentConfigService} invalidates an
+ * agent's graphs when its config is created or edited; a cached graph is also recompiled when the
+ * config row it came from has a newer {@code updatedAt}, which covers edits made on other nodes.
+ */
+@Component
+public class AgentGraphCache {
+
+    private static final int MAX_GRAPHS = 1000;
+
+    private record Key(Long agentId, Integer version) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, AgentGraph> cache = Caffeine.newBuilder().maximumSize(MAX_GRAPHS).build();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong compiles = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AgentGraphCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /** The compiled graph of {@code config}; {@link AgentGraph#EMPTY} when there is no config. */
+    public AgentGraph get(AgentConfig config) {
+        if (config == null) {
+            return AgentGraph.EMPTY;
+        }
+        Key key = new Key(config.getAgentId(), config.getVersion());
+        AgentGraph graph = cache.getIfPresent(key);
+        if (graph != null && graph.isCompiledFrom(config)) {
+            hits.incrementAndGet();
+            return graph;
+        }
+        // Racing callers may both compile; either result is equivalent
+        compiles.incrementAndGet();
+        graph = AgentGraph.compile(config, objectMapper);
+        cache.put(key, graph);
+        return graph;
+    }
+
+    /** Drops every cached version of the agent's graph. */
+    public void invalidate(Long agentId) {
+        if (cache.asMap().keySet().removeIf(key -> Objects.equals(key.agentId(), agentId))) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", cache.estimatedSize());
+        stats.put("hits", hits.get());
+        stats.put("compiles", compiles.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
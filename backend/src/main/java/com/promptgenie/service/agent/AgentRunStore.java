@@ -0,0 +1,167 @@
+package com.promptgenie.service.agent;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.dto.AgentState;
+import com.promptgenie.entity.AgentRun;
+import com.promptgenie.mapper.AgentRunMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable agent runs: the executor saves the run's {@link AgentState} after every node, so a run
+ * paused for approval, or cut off by a restart, continues from its last finished node instead of
+ * re-running (and re-billing) earlier LLM steps. Rows in {@code agent_runs} are the source of
+ * truth, read by primary key. Recently touched snapshots are also kept in an in-memory tier, and
+ * every load decodes a fresh copy so callers never share a mutable state. Rows expire
+ * {@code paused-ttl-hours} after a pause and {@code finished-ttl-hours} after any other update,
+ * and a scheduled sweep deletes them.
+ */
+@Slf4j
+@Service
+public class AgentRunStore {
+
+    @Autowired
+    private AgentRunMapper agentRunMapper;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Cache<String, AgentRun> hot;
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong hotHits = new AtomicLong();
+    private final AtomicLong dbLoads = new AtomicLong();
+    private final AtomicLong expiredRuns = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        GenieConfig.AgentRunConfig config = config();
+        hot = Caffeine.newBuilder()
+                .maximumSize(config.getHotMaxEntries())
+                .expireAfterAccess(config.getHotTtlMinutes(), TimeUnit.MINUTES)
+                .build();
+    }
+
+    /** Writes the run's current snapshot, creating the row on the first save. */
+    public void save(AgentState state) {
+        AgentRun run = toRun(state);
+        if (agentRunMapper.updateById(run) == 0) {
+            agentRunMapper.insert(run);
+        }
+        hot.put(run.getId(), run);
+        saves.incrementAndGet();
+    }
+
+    /** The run's last saved state, or {@code null} when it does not exist or has expired. */
+    public AgentState load(String stateId) {
+        AgentRun run = hot.getIfPresent(stateId);
+        if (run != null) {
+            hotHits.incrementAndGet();
+        } else {
+            run = agentRunMapper.selectById(stateId);
+            dbLoads.incrementAndGet();
+            if (run == null) return null;
+            hot.put(stateId, run);
+        }
+        if (isExpired(run)) {
+            hot.invalidate(stateId);
+            return null;
+        }
+        return AgentStateCodec.decode(run.getSnapshot());
+    }
+
+    /**
+     * Atomically moves a paused run back to RUNNING and returns its state. Returns {@code null}
+     * when the run does not exist, has expired or is not paused, e.g. because another request
+     * resumed it first.
+     */
+    public AgentState claimPaused(String stateId) {
+        LocalDateTime now = LocalDateTime.now();
+        UpdateWrapper<AgentRun> update = new UpdateWrapper<>();
+        update.eq("id", stateId)
+                .eq("status", AgentRun.STATUS_PAUSED)
+                .gt("expires_at", now)
+                .set("status", AgentRun.STATUS_RUNNING)
+                .set("updated_at", now)
+                .set("expires_at", now.plusHours(config().getFinishedTtlHours()));
+        // Another instance may hold an older copy, so read the claimed row from the database
+        hot.invalidate(stateId);
+        if (agentRunMapper.update(null, update) == 0) {
+            return null;
+        }
+        AgentRun run = agentRunMapper.selectById(stateId);
+        dbLoads.incrementAndGet();
+        if (run == null) return null;
+        AgentState state = AgentStateCodec.decode(run.getSnapshot());
+        state.setStatus(AgentRun.STATUS_RUNNING);
+        return state;
+    }
+
+    @Scheduled(fixedDelayString = "${genie.agent-runs.sweep-interval-ms:3600000}")
+    public void sweepExpired() {
+        QueryWrapper<AgentRun> query = new QueryWrapper<>();
+        query.lt("expires_at", LocalDateTime.now());
+        try {
+            int deleted = agentRunMapper.delete(query);
+            if (deleted > 0) {
+                expiredRuns.addAndGet(deleted);
+                log.info("Deleted {} expired agent runs", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to delete expired agent runs: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hotEntries", hot.estimatedSize());
+        stats.put("saves", saves.get());
+        stats.put("hotHits", hotHits.get());
+        stats.put("dbLoads", dbLoads.get());
+        stats.put("expiredRuns", expiredRuns.get());
+        return stats;
+    }
+
+    private AgentRun toRun(AgentState state) {
+        LocalDateTime updatedAt = toDateTime(state.getUpdatedAt());
+        long ttlHours = AgentRun.STATUS_PAUSED.equals(state.getStatus())
+                ? config().getPausedTtlHours() : config().getFinishedTtlHours();
+        AgentRun run = new AgentRun();
+        run.setId(state.getId());
+        run.setAgentId(state.getAgentId());
+        run.setUserId(state.getUserId());
+        run.setStatus(state.getStatus());
+        run.setCurrentNodeId(state.getCurrentNodeId());
+        run.setSnapshot(AgentStateCodec.encode(state));
+        run.setCreatedAt(toDateTime(state.getCreatedAt()));
+        run.setUpdatedAt(updatedAt);
+        run.setExpiresAt(updatedAt.plusHours(ttlHours));
+        return run;
+    }
+
+    private static boolean isExpired(AgentRun run) {
+        return run.getExpiresAt() != null && run.getExpiresAt().isBefore(LocalDateTime.now());
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis > 0 ? epochMillis : System.currentTimeMillis()), ZoneId.systemDefault());
+    }
+
+    private GenieConfig.AgentRunConfig config() {
+        return genieConfig.getAgentRuns() != null ? genieConfig.getAgentRuns() : new GenieConfig.AgentRunConfig();
+    }
+}
@@ -0,0 +1,37 @@
+package com.promptgenie.service.agent;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.dto.AgentState;
+
+/**
+ * JSON encoding of {@link AgentState} snapshots, shared by the run store and the edge executor.
+ * Null fields are left out. Tool results that are not plain JSON values come back as maps.
+ */
+public final class AgentStateCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private AgentStateCodec() {
+    }
+
+    public static String encode(AgentState state) {
+        try {
+            return MAPPER.writeValueAsString(state);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode agent state " + state.getId(), e);
+        }
+    }
+
+    public static AgentState decode(String snapshot) {
+        try {
+            return MAPPER.readValue(snapshot, AgentState.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to decode agent state snapshot", e);
+        }
+    }
+}
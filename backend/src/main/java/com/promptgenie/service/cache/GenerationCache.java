@@ -0,0 +1,250 @@
+package com.promptgenie.service.cache;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.service.strategy.GenerationOutput;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed cache of generation results, consulted before calling a provider.
+ * The key is a SHA-256 of the normalized request (model type, model, rendered prompt, parameters).
+ * Only deterministic requests are cached: temperature 0, or {@code parameters.cache=true};
+ * {@code parameters.cache=false} always bypasses it. Entries expire after the TTL and the least
+ * recently used ones are evicted beyond {@code maxEntries}, optionally spilling to disk.
+ */
+@Slf4j
+@Component
+public class GenerationCache {
+
+    public static final String CACHE_PARAM = "cache";
+
+    private final GenieConfig.ResponseCacheConfig config;
+    private final LinkedHashMap<String, CachedGeneration> entries;
+    private final List<Map.Entry<String, CachedGeneration>> pendingSpill = new ArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public GenerationCache(GenieConfig genieConfig) {
+        this.config = genieConfig.getResponseCache() != null ? genieConfig.getResponseCache() : new GenieConfig.ResponseCacheConfig();
+        int maxEntries = config.getMaxEntries() != null && config.getMaxEntries() > 0 ? config.getMaxEntries() : 5000;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedGeneration> eldest) {
+                if (size() <= maxEntries) return false;
+                evictions.increment();
+                if (spillEnabled() && !isExpired(eldest.getValue())) {
+                    pendingSpill.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                }
+                return true;
+            }
+        };
+    }
+
+    public boolean isCacheable(Map<String, Object> parameters) {
+        if (!Boolean.TRUE.equals(config.getEnabled())) return false;
+        if (parameters == null) return false;
+        Object optIn = parameters.get(CACHE_PARAM);
+        if (optIn != null) {
+            return Boolean.parseBoolean(String.valueOf(optIn));
+        }
+        Object temperature = parameters.get("temperature");
+        if (temperature == null) return false;
+        try {
+            return new BigDecimal(String.valueOf(temperature).trim()).signum() == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public String key(String modelType, String modelName, String prompt, Map<String, Object> parameters) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append(modelType).append('\u0000').append(modelName).append('\u0000');
+        canonical.append(prompt == null ? "" : prompt.replace("\r\n", "\n").strip()).append('\u0000');
+        if (parameters != null) {
+            for (Map.Entry<String, Object> entry : new TreeMap<>(parameters).entrySet()) {
+                if (CACHE_PARAM.equals(entry.getKey()) || entry.getValue() == null) continue;
+                canonical.append(entry.getKey()).append('=').append(normalize(entry.getValue())).append('\u0000');
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public GenerationOutput get(String key) {
+        CachedGeneration cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+            if (cached != null && isExpired(cached)) {
+                entries.remove(key);
+                expirations.increment();
+                cached = null;
+            }
+        }
+        if (cached == null && spillEnabled()) {
+            cached = readSpilled(key);
+            if (cached != null) {
+                diskHits.increment();
+                store(key, cached);
+            }
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return GenerationOutput.builder()
+                .content(cached.content())
+                .inputTokens(cached.inputTokens())
+                .outputTokens(cached.outputTokens())
+                .build();
+    }
+
+    public void put(String key, GenerationOutput output) {
+        if (output == null || output.getContent() == null) return;
+        store(key, new CachedGeneration(output.getContent(), output.getInputTokens(), output.getOutputTokens(), System.currentTimeMillis()));
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("hits", hitCount);
+        stats.put("diskHits", diskHits.sum());
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+
+    private void store(String key, CachedGeneration value) {
+        List<Map.Entry<String, CachedGeneration>> spill;
+        synchronized (entries) {
+            entries.put(key, value);
+            if (pendingSpill.isEmpty()) return;
+            spill = new ArrayList<>(pendingSpill);
+            pendingSpill.clear();
+        }
+        // Disk writes happen outside the lock
+        for (Map.Entry<String, CachedGeneration> entry : spill) {
+            writeSpilled(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private boolean isExpired(CachedGeneration cached) {
+        long ttl = config.getTtlSeconds() != null ? config.getTtlSeconds() : 0L;
+        return ttl > 0 && System.currentTimeMillis() - cached.createdAt() > ttl * 1000L;
+    }
+
+    private boolean spillEnabled() {
+        return Boolean.TRUE.equals(config.getDiskSpill());
+    }
+
+    private Path spillPath(String key) {
+        String dir = config.getSpillDir() != null ? config.getSpillDir() : "data/generation-cache";
+        // Two-level fan-out keeps directories small
+        return Paths.get(dir, key.substring(0, 2), key + ".bin");
+    }
+
+    private void writeSpilled(String key, CachedGeneration value) {
+        Path path = spillPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeLong(value.createdAt());
+                out.writeInt(value.inputTokens() != null ? value.inputTokens() : 0);
+                out.writeInt(value.outputTokens() != null ? value.outputTokens() : 0);
+                byte[] content = value.content().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(content.length);
+                out.write(content);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to spill generation cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private CachedGeneration readSpilled(String key) {
+        Path path = spillPath(key);
+        if (!Files.exists(path)) return null;
+        try {
+            CachedGeneration cached;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                long createdAt = in.readLong();
+                int inputTokens = in.readInt();
+                int outputTokens = in.readInt();
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                cached = new CachedGeneration(new String(content, StandardCharsets.UTF_8), inputTokens, outputTokens, createdAt);
+            }
+            // The entry moves back into memory, or is gone for good once expired
+            Files.deleteIfExists(path);
+            if (isExpired(cached)) {
+                expirations.increment();
+                return null;
+            }
+            return cached;
+        } catch (IOException e) {
+            log.warn("Failed to read spilled generation cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String normalize(Object value) {
+        if (value instanceof Number || value instanceof String) {
+            String text = String.valueOf(value).trim();
+            try {
+                // 0, 0.0 and "0" are the same request
+                return new BigDecimal(text).stripTrailingZeros().toPlainString();
+            } catch (NumberFormatException e) {
+                return text;
+            }
+        }
+        if (value instanceof Map<?, ?> map) {
+            return new TreeMap<>(map).toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private record CachedGeneration(String content, Integer inputTokens, Integer outputTokens, long createdAt) {
+    }
+}
@@ -1,6 +1,5 @@
 package com.promptgenie.service.edge;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.promptgenie.core.enums.AgentNodeType;
 import com.promptgenie.core.exception.PendingApprovalException;
@@ -11,19 +10,37 @@ import com.promptgenie.entity.Tool;
 import com.promptgenie.service.ToolService;
 import com.promptgenie.service.PlaygroundService;
 import com.promptgenie.service.AgentConfigService;
+import com.promptgenie.service.agent.AgentGraph;
+import com.promptgenie.service.agent.AgentGraphCache;
+import com.promptgenie.service.agent.AgentRunStore;
+import com.promptgenie.service.agent.AgentStateCodec;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
 
-    private final Map<String, AgentState> stateCache = new ConcurrentHashMap<>();
+    // 本地保留的运行状态上限，超过时淘汰最久未访问的
+    private static final int MAX_LOCAL_STATES = 1000;
+    private static final long PAUSED_STATE_TTL_MS = 24 * 60 * 60 * 1000L;
+    private static final long STATE_TTL_MS = 30 * 60 * 1000L;
+
+    // 状态按编码后的快照保存，读取时解码出独立副本
+    private final Map<String, StoredState> stateCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredState> eldest) {
+            return size() > MAX_LOCAL_STATES;
+        }
+    };
     private final Map<Long, AgentConfig> configCache = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    // 未注入共享缓存时使用自己的编译缓存
+    private AgentGraphCache agentGraphCache = new AgentGraphCache(objectMapper);
 
     private ToolService toolService;
     private PlaygroundService playgroundService;
     private AgentConfigService agentConfigService;
+    private AgentRunStore agentRunStore;
 
     // 设备资源信息
     private final int availableMemoryMb;
@@ -46,6 +63,15 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         this.agentConfigService = agentConfigService;
     }
 
+    public void setAgentGraphCache(AgentGraphCache agentGraphCache) {
+        this.agentGraphCache = agentGraphCache;
+    }
+
+    /** 设置后状态保存到共享的持久运行存储，否则只保存在本机内存中。 */
+    public void setAgentRunStore(AgentRunStore agentRunStore) {
+        this.agentRunStore = agentRunStore;
+    }
+
     @Override
     public void initialize() {
         // 初始化本地存储
@@ -83,19 +109,21 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         state.setUpdatedAt(System.currentTimeMillis());
 
         // 执行状态机
-        return executeStateMachine(state, config);
+        return executeStateMachine(state, config, false);
     }
 
     @Override
     public AgentState resumeAgent(String stateId, Map<String, Object> approvalData) throws PendingApprovalException {
-        AgentState state = loadState(stateId);
+        AgentState state = claimPaused(stateId);
         if (state == null) {
-            throw new RuntimeException("State not found");
+            throw new RuntimeException("State not found or not waiting for approval");
         }
 
-        // 更新状态
-        state.setStatus("RUNNING");
-        state.setVariables(approvalData);
+        // 更新状态，审批数据并入变量
+        if (approvalData != null) {
+            state.getVariables().putAll(approvalData);
+            state.getIntermediateResults().put("approvalData", approvalData);
+        }
         state.setUpdatedAt(System.currentTimeMillis());
 
         // 加载智能体配置
@@ -105,7 +133,7 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
 
         // 继续执行状态机
-        return executeStateMachine(state, config);
+        return executeStateMachine(state, config, true);
     }
 
     @Override
@@ -116,40 +144,40 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
             return new TaskComplexity(false, 0, 0);
         }
 
-        try {
-            // 解析配置
-            JsonNode configJson = objectMapper.readTree(config.getConfigJson());
-            JsonNode nodes = configJson.get("nodes");
+        AgentGraph graph = agentGraphCache.get(config);
+        if (!graph.isValid()) {
+            // 解析失败，默认不能本地运行
+            return new TaskComplexity(false, 0, 0);
+        }
 
+        try {
             // 评估节点数量和类型
             int nodeCount = 0;
             int estimatedTimeMs = 0;
             int requiredMemoryMb = 0;
 
-            if (nodes != null && nodes.isArray()) {
-                for (JsonNode node : nodes) {
-                    nodeCount++;
-                    String type = node.get("type").asText();
-
-                    // 根据节点类型估算资源需求
-                    switch (type) {
-                        case "llmNode":
-                            estimatedTimeMs += 5000; // 5秒
-                            requiredMemoryMb += 256; // 256MB
-                            break;
-                        case "toolNode":
-                            estimatedTimeMs += 2000; // 2秒
-                            requiredMemoryMb += 128; // 128MB
-                            break;
-                        case "conditionNode":
-                        case "loopNode":
-                            estimatedTimeMs += 500; // 0.5秒
-                            requiredMemoryMb += 32; // 32MB
-                            break;
-                        default:
-                            estimatedTimeMs += 1000; // 1秒
-                            requiredMemoryMb += 64; // 64MB
-                    }
+            for (AgentGraph.Node node : graph.nodes()) {
+                nodeCount++;
+                String type = node.type() != null ? node.type() : "";
+
+                // 根据节点类型估算资源需求
+                switch (type) {
+                    case "llmNode":
+                        estimatedTimeMs += 5000; // 5秒
+                        requiredMemoryMb += 256; // 256MB
+                        break;
+                    case "toolNode":
+                        estimatedTimeMs += 2000; // 2秒
+                        requiredMemoryMb += 128; // 128MB
+                        break;
+                    case "conditionNode":
+                    case "loopNode":
+                        estimatedTimeMs += 500; // 0.5秒
+                        requiredMemoryMb += 32; // 32MB
+                        break;
+                    default:
+                        estimatedTimeMs += 1000; // 1秒
+                        requiredMemoryMb += 64; // 64MB
                 }
             }
 
@@ -190,69 +218,102 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
 
     @Override
     public void saveState(AgentState state) {
-        stateCache.put(state.getId(), state);
-        // 可以考虑持久化到本地存储
+        if (agentRunStore != null) {
+            agentRunStore.save(state);
+            return;
+        }
+        StoredState stored = new StoredState(AgentStateCodec.encode(state), state.getStatus(), state.getUpdatedAt());
+        synchronized (stateCache) {
+            stateCache.put(state.getId(), stored);
+        }
     }
 
     @Override
     public AgentState loadState(String stateId) {
-        return stateCache.get(stateId);
+        if (agentRunStore != null) {
+            return agentRunStore.load(stateId);
+        }
+        StoredState stored;
+        synchronized (stateCache) {
+            stored = stateCache.get(stateId);
+        }
+        return stored != null ? AgentStateCodec.decode(stored.snapshot()) : null;
     }
 
     @Override
     public void cleanupExpiredStates() {
         long now = System.currentTimeMillis();
-        stateCache.entrySet().removeIf(entry -> {
-            AgentState state = entry.getValue();
-            // 清理30分钟前的状态
-            return now - state.getUpdatedAt() > 30 * 60 * 1000;
-        });
+        synchronized (stateCache) {
+            // 等待审批的状态保留24小时，其余30分钟
+            stateCache.values().removeIf(stored ->
+                    now - stored.updatedAt() > ("PAUSED".equals(stored.status()) ? PAUSED_STATE_TTL_MS : STATE_TTL_MS));
+        }
     }
 
     @Override
     public void shutdown() {
-        stateCache.clear();
+        synchronized (stateCache) {
+            stateCache.clear();
+        }
         configCache.clear();
         System.out.println("EdgeAgentExecutor shutdown");
     }
 
-    private AgentState executeStateMachine(AgentState state, AgentConfig config) throws PendingApprovalException {
+    /** 取出暂停的状态并标记为运行中；重复恢复同一状态时只有一次成功。 */
+    private AgentState claimPaused(String stateId) {
+        if (agentRunStore != null) {
+            return agentRunStore.claimPaused(stateId);
+        }
+        synchronized (stateCache) {
+            AgentState state = loadState(stateId);
+            if (state == null || !"PAUSED".equals(state.getStatus())) {
+                return null;
+            }
+            state.setStatus("RUNNING");
+            saveState(state);
+            return state;
+        }
+    }
+
+    private AgentState executeStateMachine(AgentState state, AgentConfig config, boolean approved) throws PendingApprovalException {
         try {
+            AgentGraph graph = agentGraphCache.get(config);
+
+            // 审核通过后恢复：审核节点已完成，从它的下一个节点继续
+            if (approved) {
+                advance(state, state.getCurrentNodeId(), graph);
+                saveState(state);
+            }
+
             while ("RUNNING".equals(state.getStatus())) {
                 String currentNodeId = state.getCurrentNodeId();
-                AgentNodeType nodeType = getNodeType(currentNodeId, config);
+                AgentNodeType nodeType = getNodeType(currentNodeId, graph);
 
                 switch (nodeType) {
                     case LLM_NODE:
-                        executeLLMNode(state, config, currentNodeId);
+                        executeLLMNode(state, graph, currentNodeId);
                         break;
                     case TOOL_NODE:
-                        executeToolNode(state, config, currentNodeId);
+                        executeToolNode(state, graph, currentNodeId);
                         break;
                     case HUMAN_APPROVAL_NODE:
-                        executeHumanApprovalNode(state, config, currentNodeId);
+                        executeHumanApprovalNode(state, graph, currentNodeId);
                         break;
                     case CONDITION_NODE:
-                        executeConditionNode(state, config, currentNodeId);
+                        executeConditionNode(state, graph, currentNodeId);
                         break;
                     case LOOP_NODE:
-                        executeLoopNode(state, config, currentNodeId);
+                        executeLoopNode(state, graph, currentNodeId);
                         break;
                     case ERROR_RETRY_NODE:
-                        executeErrorRetryNode(state, config, currentNodeId);
+                        executeErrorRetryNode(state, graph, currentNodeId);
                         break;
                     default:
                         throw new RuntimeException("Unknown node type: " + nodeType);
                 }
 
                 // 更新当前节点
-                state.setCurrentNodeId(getNextNodeId(currentNodeId, state, config));
-                state.setUpdatedAt(System.currentTimeMillis());
-
-                // 检查是否完成
-                if ("end".equals(state.getCurrentNodeId())) {
-                    state.setStatus("COMPLETED");
-                }
+                advance(state, currentNodeId, graph);
 
                 // 保存状态
                 saveState(state);
@@ -261,31 +322,33 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
             return state;
         } catch (PendingApprovalException e) {
             // 遇到人工审核节点，抛出异常
+            state.setUpdatedAt(System.currentTimeMillis());
             saveState(state);
             throw e;
         } catch (Exception e) {
             // 其他错误
             state.setStatus("FAILED");
             state.setErrorMessage(e.getMessage());
+            state.setUpdatedAt(System.currentTimeMillis());
             saveState(state);
             return state;
         }
     }
 
-    private AgentNodeType getNodeType(String nodeId, AgentConfig config) {
-        try {
-            JsonNode configJson = objectMapper.readTree(config.getConfigJson());
-            JsonNode nodes = configJson.get("nodes");
-            if (nodes != null && nodes.isArray()) {
-                for (JsonNode node : nodes) {
-                    if (node.get("id").asText().equals(nodeId)) {
-                        String type = node.get("type").asText();
-                        return AgentNodeType.fromValue(type);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 解析失败，使用默认逻辑
+    private void advance(AgentState state, String currentNodeId, AgentGraph graph) {
+        state.setCurrentNodeId(getNextNodeId(currentNodeId, state, graph));
+        state.setUpdatedAt(System.currentTimeMillis());
+
+        // 检查是否完成
+        if ("end".equals(state.getCurrentNodeId())) {
+            state.setStatus("COMPLETED");
+        }
+    }
+
+    private AgentNodeType getNodeType(String nodeId, AgentGraph graph) {
+        AgentNodeType configured = graph.nodeType(nodeId);
+        if (configured != null) {
+            return configured;
         }
 
         // 默认逻辑
@@ -306,36 +369,10 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
     }
 
-    private String getNextNodeId(String currentNodeId, AgentState state, AgentConfig config) {
-        try {
-            JsonNode configJson = objectMapper.readTree(config.getConfigJson());
-            JsonNode edges = configJson.get("edges");
-            if (edges != null && edges.isArray()) {
-                for (JsonNode edge : edges) {
-                    if (edge.get("source").asText().equals(currentNodeId)) {
-                        // 对于条件节点，根据条件结果决定下一个节点
-                        if ("condition".equals(currentNodeId)) {
-                            boolean conditionResult = (boolean) state.getIntermediateResults().getOrDefault("conditionResult", true);
-                            String condition = edge.get("condition").asText();
-                            if (("true".equals(condition) && conditionResult) || ("false".equals(condition) && !conditionResult)) {
-                                return edge.get("target").asText();
-                            }
-                        } else if ("loop".equals(currentNodeId)) {
-                            // 对于循环节点，根据循环条件决定是否继续循环
-                            boolean continueLoop = (boolean) state.getIntermediateResults().getOrDefault("continueLoop", false);
-                            String condition = edge.get("condition").asText();
-                            if (("continue".equals(condition) && continueLoop) || ("break".equals(condition) && !continueLoop)) {
-                                return edge.get("target").asText();
-                            }
-                        } else {
-                            // 其他节点直接返回目标节点
-                            return edge.get("target").asText();
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 解析失败，使用默认逻辑
+    private String getNextNodeId(String currentNodeId, AgentState state, AgentGraph graph) {
+        String next = graph.nextNodeId(currentNodeId, state.getIntermediateResults());
+        if (next != null) {
+            return next;
         }
 
         // 默认逻辑
@@ -358,10 +395,10 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
     }
 
-    private void executeLLMNode(AgentState state, AgentConfig config, String nodeId) {
+    private void executeLLMNode(AgentState state, AgentGraph graph, String nodeId) {
         try {
             // 从配置中获取节点配置
-            Map<String, Object> nodeConfig = getNodeConfig(nodeId, config);
+            Map<String, Object> nodeConfig = graph.nodeData(nodeId);
 
             // 构建提示词
             String systemPrompt = nodeConfig.getOrDefault("systemPrompt", "You are a helpful assistant").toString();
@@ -402,10 +439,10 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
     }
 
-    private void executeToolNode(AgentState state, AgentConfig config, String nodeId) {
+    private void executeToolNode(AgentState state, AgentGraph graph, String nodeId) {
         try {
             // 从配置中获取节点配置
-            Map<String, Object> nodeConfig = getNodeConfig(nodeId, config);
+            Map<String, Object> nodeConfig = graph.nodeData(nodeId);
 
             // 获取工具ID
             Long toolId = Long.valueOf(nodeConfig.get("toolId").toString());
@@ -428,9 +465,9 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
     }
 
-    private void executeHumanApprovalNode(AgentState state, AgentConfig config, String nodeId) throws PendingApprovalException {
+    private void executeHumanApprovalNode(AgentState state, AgentGraph graph, String nodeId) throws PendingApprovalException {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, config);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
 
         // 设置状态为暂停
         state.setStatus("PAUSED");
@@ -442,9 +479,9 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         throw new PendingApprovalException(nodeConfig.getOrDefault("approvalMessage", "Human approval required").toString(), state);
     }
 
-    private void executeConditionNode(AgentState state, AgentConfig config, String nodeId) {
+    private void executeConditionNode(AgentState state, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, config);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
 
         // 获取条件表达式
         String conditionExpression = nodeConfig.getOrDefault("condition", "toolResult != null && toolResult.toString().contains('success')").toString();
@@ -455,9 +492,9 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         state.getIntermediateResults().put("conditionResult", conditionResult);
     }
 
-    private void executeLoopNode(AgentState state, AgentConfig config, String nodeId) {
+    private void executeLoopNode(AgentState state, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, config);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
 
         // 获取循环条件
         String loopCondition = nodeConfig.getOrDefault("loopCondition", "loopCount < 3").toString();
@@ -472,9 +509,9 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         state.getIntermediateResults().put("continueLoop", continueLoop);
     }
 
-    private void executeErrorRetryNode(AgentState state, AgentConfig config, String nodeId) {
+    private void executeErrorRetryNode(AgentState state, AgentGraph graph, String nodeId) {
         // 从配置中获取节点配置
-        Map<String, Object> nodeConfig = getNodeConfig(nodeId, config);
+        Map<String, Object> nodeConfig = graph.nodeData(nodeId);
 
         // 获取最大重试次数
         int maxRetries = Integer.parseInt(nodeConfig.getOrDefault("maxRetries", "3").toString());
@@ -490,28 +527,6 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
     }
 
-    private Map<String, Object> getNodeConfig(String nodeId, AgentConfig config) {
-        Map<String, Object> nodeConfig = new HashMap<>();
-        try {
-            JsonNode configJson = objectMapper.readTree(config.getConfigJson());
-            JsonNode nodes = configJson.get("nodes");
-            if (nodes != null && nodes.isArray()) {
-                for (JsonNode node : nodes) {
-                    if (node.get("id").asText().equals(nodeId)) {
-                        JsonNode data = node.get("data");
-                        if (data != null) {
-                            nodeConfig = objectMapper.treeToValue(data, Map.class);
-                        }
-                        break;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 解析失败，返回空配置
-        }
-        return nodeConfig;
-    }
-
     private boolean evaluateCondition(String expression, AgentState state) {
         try {
             // 简化的条件表达式评估
@@ -536,6 +551,9 @@ public class EdgeAgentExecutorImpl implements EdgeAgentExecutor {
         }
     }
 
+    private record StoredState(String snapshot, String status, long updatedAt) {
+    }
+
     /**
      * 边缘任务卸载异常，当任务太复杂需要上传到中心执行时抛出
      */
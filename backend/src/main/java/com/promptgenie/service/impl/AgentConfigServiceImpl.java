@@ -5,6 +5,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.promptgenie.entity.AgentConfig;
 import com.promptgenie.mapper.AgentConfigMapper;
 import com.promptgenie.service.AgentConfigService;
+import com.promptgenie.service.agent.AgentGraphCache;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -12,6 +14,9 @@ import java.time.LocalDateTime;
 @Service
 public class AgentConfigServiceImpl extends ServiceImpl<AgentConfigMapper, AgentConfig> implements AgentConfigService {
 
+    @Autowired
+    private AgentGraphCache agentGraphCache;
+
     @Override
     public AgentConfig getLatestConfig(Long agentId) {
         QueryWrapper<AgentConfig> queryWrapper = new QueryWrapper<>();
@@ -41,6 +46,8 @@ public class AgentConfigServiceImpl extends ServiceImpl<AgentConfigMapper, Agent
         config.setUpdatedAt(LocalDateTime.now());
 
         save(config);
+        // 新版本生效后旧版本的编译结果不再使用
+        agentGraphCache.invalidate(agentId);
         return config;
     }
 
@@ -57,6 +64,7 @@ public class AgentConfigServiceImpl extends ServiceImpl<AgentConfigMapper, Agent
         config.setUpdatedAt(LocalDateTime.now());
 
         updateById(config);
+        agentGraphCache.invalidate(config.getAgentId());
         return config;
     }
 }
\ No newline at end of file
@@ -0,0 +1,255 @@
+package com.promptgenie.service.ingest;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.entity.Document;
+import com.promptgenie.entity.DocumentChunk;
+import com.promptgenie.mapper.DocumentChunkMapper;
+import com.promptgenie.mapper.DocumentMapper;
+import com.promptgenie.service.EmbeddingService;
+import com.promptgenie.service.retrieval.LexicalIndexService;
+import com.promptgenie.service.retrieval.VectorIndexService;
+import com.promptgenie.service.tokenizer.TokenizerService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 知识库文档导入流水线：上传请求只把文件流式落盘到 spool 目录并登记 PENDING 文档即返回，
+ * 由有界线程池解析（PDF/DOCX/文本）、按句子和 token 分块、每 N 块批量生成向量并写入
+ * document_chunks、向量索引与 BM25 索引（每批同时更新进度），完成后置为 READY，出错置为 FAILED 并清理已写入的分块。
+ * 重启时仍有 spool 文件的未完成文档会重新排队。
+ */
+@Slf4j
+@Service
+public class DocumentIngestionService {
+
+    private static final int ERROR_MESSAGE_LIMIT = 500;
+    private static final long STALE_MINUTES = 30;
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    private DocumentChunkMapper chunkMapper;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private LexicalIndexService lexicalIndexService;
+
+    @Autowired
+    private TokenizerService tokenizerService;
+
+    @Autowired
+    private DocumentTextExtractor textExtractor;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private ThreadPoolExecutor workers;
+    private Path spoolDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        GenieConfig.IngestConfig config = config();
+        spoolDir = Paths.get(config.getSpoolDir());
+        Files.createDirectories(spoolDir);
+        AtomicInteger threadIndex = new AtomicInteger();
+        workers = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()), r -> {
+                    Thread t = new Thread(r, "doc-ingest-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        workers.execute(this::recover);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 未完成的文档保留 spool 文件，下次启动时重新导入
+        workers.shutdownNow();
+    }
+
+    /**
+     * 登记文档并排队导入，立即返回 PENDING 状态的文档。
+     *
+     * @throws IllegalStateException 导入队列已满
+     */
+    public Document submit(Long kbId, MultipartFile file) throws IOException {
+        Document document = new Document();
+        document.setKbId(kbId);
+        document.setFilename(file.getOriginalFilename());
+        document.setFileType(file.getContentType());
+        document.setFileSize(file.getSize());
+        document.setIngestStatus(Document.STATUS_PENDING);
+        document.setChunkCount(0);
+        document.setCreatedAt(LocalDateTime.now());
+        document.setUpdatedAt(LocalDateTime.now());
+        documentMapper.insert(document);
+
+        Path spooled = spoolPath(document.getId());
+        try {
+            // 直接从 multipart 临时文件转存，不经过 byte[]
+            file.transferTo(spooled);
+            workers.execute(() -> ingest(document, spooled));
+        } catch (IOException | RejectedExecutionException e) {
+            documentMapper.deleteById(document.getId());
+            Files.deleteIfExists(spooled);
+            if (e instanceof RejectedExecutionException) {
+                throw new IllegalStateException("Too many documents are being imported, please retry later");
+            }
+            throw (IOException) e;
+        }
+        return document;
+    }
+
+    public Map<String, Object> status(Long documentId) {
+        Document document = documentMapper.selectById(documentId);
+        if (document == null) return null;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("documentId", String.valueOf(document.getId()));
+        status.put("status", document.getIngestStatus() != null ? document.getIngestStatus() : Document.STATUS_READY);
+        status.put("chunkCount", document.getChunkCount());
+        status.put("errorMessage", document.getErrorMessage());
+        status.put("updatedAt", document.getUpdatedAt());
+        return status;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", workers.getActiveCount());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("completed", workers.getCompletedTaskCount());
+        return stats;
+    }
+
+    void ingest(Document document, Path spooled) {
+        GenieConfig.IngestConfig config = config();
+        AtomicInteger written = new AtomicInteger();
+        try {
+            updateStatus(document, Document.STATUS_PROCESSING, null, 0);
+            List<DocumentChunk> batch = new ArrayList<>();
+            TextChunker chunker = new TextChunker(config.getChunkMaxTokens(), config.getChunkOverlapTokens(),
+                    tokenizerService::countTokens, chunk -> {
+                DocumentChunk row = new DocumentChunk();
+                row.setDocumentId(document.getId());
+                row.setKbId(document.getKbId());
+                row.setChunkIndex(chunk.index());
+                row.setContent(chunk.text());
+                row.setStartOffset(chunk.startOffset());
+                row.setEndOffset(chunk.endOffset());
+                row.setTokenCount(chunk.tokens());
+                batch.add(row);
+                if (batch.size() >= config.getEmbedBatchSize()) {
+                    writeBatch(document, batch, written);
+                }
+            });
+            textExtractor.extract(spooled, document.getFilename(), document.getFileType(), chunker::append);
+            chunker.finish();
+            writeBatch(document, batch, written);
+            vectorIndexService.flush(document.getKbId());
+            lexicalIndexService.flush(document.getKbId());
+            updateStatus(document, Document.STATUS_READY, null, written.get());
+            log.info("Ingested document {} ({}) into {} chunks", document.getId(), document.getFilename(), written.get());
+        } catch (Exception e) {
+            log.error("Failed to ingest document {} ({}): {}", document.getId(), document.getFilename(), e.getMessage());
+            try {
+                chunkMapper.deleteByDocumentId(document.getId());
+                vectorIndexService.removeDocument(document.getKbId(), document.getId());
+                lexicalIndexService.removeDocument(document.getKbId(), document.getId());
+                String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                updateStatus(document, Document.STATUS_FAILED,
+                        message.length() > ERROR_MESSAGE_LIMIT ? message.substring(0, ERROR_MESSAGE_LIMIT) : message, 0);
+            } catch (Exception cleanup) {
+                log.error("Failed to clean up document {}: {}", document.getId(), cleanup.getMessage());
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(spooled);
+            } catch (IOException e) {
+                log.warn("Failed to delete spooled upload {}: {}", spooled, e.getMessage());
+            }
+        }
+    }
+
+    private void writeBatch(Document document, List<DocumentChunk> batch, AtomicInteger written) {
+        if (batch.isEmpty()) return;
+        List<float[]> vectors = embeddingService.embedAll(batch.stream().map(DocumentChunk::getContent).collect(Collectors.toList()));
+        Db.saveBatch(batch, batch.size());
+        vectorIndexService.addChunks(document.getKbId(), document, batch, vectors);
+        lexicalIndexService.addChunks(document.getKbId(), document, batch);
+        // 每批更新一次进度，updated_at 同时作为处理中的心跳
+        updateStatus(document, Document.STATUS_PROCESSING, null, written.addAndGet(batch.size()));
+        batch.clear();
+    }
+
+    private void updateStatus(Document document, String status, String errorMessage, int chunkCount) {
+        Document update = new Document();
+        update.setId(document.getId());
+        update.setIngestStatus(status);
+        update.setChunkCount(chunkCount);
+        update.setErrorMessage(errorMessage);
+        update.setUpdatedAt(LocalDateTime.now());
+        documentMapper.updateById(update);
+    }
+
+    /**
+     * 启动时处理上次未完成的文档：本机有 spool 文件的清掉残留分块后重新排队；
+     * 没有文件且长时间未更新的（多半属于已下线的实例）标记为失败。
+     */
+    private void recover() {
+        try {
+            QueryWrapper<Document> query = new QueryWrapper<>();
+            query.in("ingest_status", Document.STATUS_PENDING, Document.STATUS_PROCESSING);
+            for (Document document : documentMapper.selectList(query)) {
+                Path spooled = spoolPath(document.getId());
+                if (Files.exists(spooled)) {
+                    chunkMapper.deleteByDocumentId(document.getId());
+                    vectorIndexService.removeDocument(document.getKbId(), document.getId());
+                    lexicalIndexService.removeDocument(document.getKbId(), document.getId());
+                    updateStatus(document, Document.STATUS_PENDING, null, 0);
+                    workers.execute(() -> ingest(document, spooled));
+                    log.info("Re-queued interrupted ingestion of document {}", document.getId());
+                } else if (document.getUpdatedAt() == null || document.getUpdatedAt().isBefore(LocalDateTime.now().minusMinutes(STALE_MINUTES))) {
+                    chunkMapper.deleteByDocumentId(document.getId());
+                    updateStatus(document, Document.STATUS_FAILED, "Import was interrupted, please upload the file again", 0);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to recover interrupted document ingestion: {}", e.getMessage());
+        }
+    }
+
+    private Path spoolPath(Long documentId) {
+        return spoolDir.resolve("doc-" + documentId + ".upload");
+    }
+
+    private GenieConfig.IngestConfig config() {
+        return genieConfig.getIngest() != null ? genieConfig.getIngest() : new GenieConfig.IngestConfig();
+    }
+}
@@ -0,0 +1,111 @@
+package com.promptgenie.service.ingest;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * 从上传文件中抽取纯文本，按页（PDF）、段落（DOCX）或固定大小的字符块（文本）依次交给 sink，
+ * 不把整个文件读入内存。文本文件优先按 UTF-8（含 BOM）解码，不是合法 UTF-8 时按 GB18030 解码。
+ */
+@Component
+public class DocumentTextExtractor {
+
+    private static final int TEXT_BLOCK_CHARS = 16 * 1024;
+    private static final Charset GB18030 = Charset.forName("GB18030");
+
+    public void extract(Path file, String filename, String contentType, Consumer<String> sink) throws IOException {
+        String name = filename != null ? filename.toLowerCase(Locale.ROOT) : "";
+        if (name.endsWith(".pdf") || "application/pdf".equals(contentType)) {
+            extractPdf(file, sink);
+        } else if (name.endsWith(".docx")) {
+            extractDocx(file, sink);
+        } else if (name.endsWith(".doc")) {
+            throw new IOException("Legacy .doc files are not supported, please save as .docx");
+        } else {
+            extractText(file, sink);
+        }
+    }
+
+    private void extractPdf(Path file, Consumer<String> sink) throws IOException {
+        try (PDDocument pdf = Loader.loadPDF(file.toFile())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);
+            for (int page = 1; page <= pdf.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                sink.accept(stripper.getText(pdf));
+            }
+        }
+    }
+
+    private void extractDocx(Path file, Consumer<String> sink) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+             XWPFDocument docx = new XWPFDocument(in)) {
+            for (IBodyElement element : docx.getBodyElements()) {
+                if (element instanceof XWPFParagraph paragraph) {
+                    sink.accept(paragraph.getText() + "\n");
+                } else if (element instanceof XWPFTable table) {
+                    sink.accept(table.getText() + "\n");
+                }
+            }
+        }
+    }
+
+    private void extractText(Path file, Consumer<String> sink) throws IOException {
+        Charset charset = detectCharset(file);
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(in, charset.newDecoder()
+                     .onMalformedInput(CodingErrorAction.REPLACE)
+                     .onUnmappableCharacter(CodingErrorAction.REPLACE))) {
+            char[] buffer = new char[TEXT_BLOCK_CHARS];
+            boolean first = true;
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                String block = new String(buffer, 0, read);
+                if (first && block.charAt(0) == '\uFEFF') {
+                    block = block.substring(1);
+                }
+                first = false;
+                sink.accept(block);
+            }
+        }
+    }
+
+    /**
+     * 流式校验整个文件是否为合法 UTF-8；否则视为 GB18030（兼容 GBK/GB2312）。
+     */
+    private Charset detectCharset(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()
+                     .onMalformedInput(CodingErrorAction.REPORT)
+                     .onUnmappableCharacter(CodingErrorAction.REPORT))) {
+            char[] buffer = new char[TEXT_BLOCK_CHARS];
+            while (reader.read(buffer) > 0) {
+                // 只做校验
+            }
+            return StandardCharsets.UTF_8;
+        } catch (CharacterCodingException e) {
+            return GB18030;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.promptgenie.service.ingest;
+
+import java.text.BreakIterator;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 流式分块器：按句子边界（含中文句号、问号等）累积文本，单块不超过 maxTokens，
+ * 相邻块重叠约 overlapTokens 个 token（以整句为单位）。超长句子按比例硬切。
+ * 文本可分多次 append（例如逐页），跨段的半句会留到下一段拼接后再切分。
+ * 输出块的 offset 是在全部已追加文本中的字符位置。
+ */
+public class TextChunker {
+
+    public record Chunk(int index, String text, int startOffset, int endOffset, int tokens) {
+    }
+
+    private record Sentence(String text, int start, int end, int tokens) {
+    }
+
+    private static final int MAX_PENDING_CHARS = 64 * 1024;
+
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final ToIntFunction<String> tokenCounter;
+    private final Consumer<Chunk> sink;
+
+    // 尚未确认句子边界的尾部文本及其起始 offset
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingStart;
+    // 当前块内的句子
+    private final Deque<Sentence> window = new ArrayDeque<>();
+    private int windowTokens;
+    private int nextIndex;
+
+    public TextChunker(int maxTokens, int overlapTokens, ToIntFunction<String> tokenCounter, Consumer<Chunk> sink) {
+        this.maxTokens = Math.max(1, maxTokens);
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, this.maxTokens / 2));
+        this.tokenCounter = tokenCounter;
+        this.sink = sink;
+    }
+
+    public void append(String text) {
+        if (text == null || text.isEmpty()) return;
+        pending.append(text);
+        String buffered = pending.toString();
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ROOT);
+        sentences.setText(buffered);
+        int start = sentences.first();
+        int lastComplete = 0;
+        // 最后一句可能被截断，留在 pending 里等待后续文本
+        for (int end = sentences.next(); end != BreakIterator.DONE && end < buffered.length(); end = sentences.next()) {
+            addSentence(buffered.substring(start, end), pendingStart + start);
+            lastComplete = end;
+            start = end;
+        }
+        if (lastComplete > 0) {
+            pending.delete(0, lastComplete);
+            pendingStart += lastComplete;
+        } else if (pending.length() > MAX_PENDING_CHARS) {
+            // 长时间没有句子边界（如无标点的表格文本），按超长句处理，避免反复扫描
+            addSentence(pending.toString(), pendingStart);
+            pendingStart += pending.length();
+            pending.setLength(0);
+        }
+    }
+
+    /** 处理剩余文本并输出最后一块。 */
+    public void finish() {
+        if (pending.length() > 0) {
+            addSentence(pending.toString(), pendingStart);
+            pendingStart += pending.length();
+            pending.setLength(0);
+        }
+        if (!window.isEmpty()) {
+            emit();
+            window.clear();
+            windowTokens = 0;
+        }
+    }
+
+    public int chunkCount() {
+        return nextIndex;
+    }
+
+    private void addSentence(String text, int start) {
+        int tokens = tokenCounter.applyAsInt(text);
+        if (tokens > maxTokens && text.codePointCount(0, text.length()) > 1) {
+            // 超长句子：按 token 比例切成若干段，仍超长的段会继续递归切分
+            int pieceLength = Math.max(1, (int) ((long) text.length() * maxTokens / tokens));
+            int offset = 0;
+            while (offset < text.length()) {
+                int end = Math.min(text.length(), offset + pieceLength);
+                // 不在代理对中间切开
+                if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end++;
+                addSentence(text.substring(offset, end), start + offset);
+                offset = end;
+            }
+            return;
+        }
+        if (windowTokens + tokens > maxTokens && !window.isEmpty()) {
+            emit();
+            // 保留末尾若干整句作为下一块的重叠部分，但至少丢弃一句以保证推进
+            Deque<Sentence> overlap = new ArrayDeque<>();
+            int overlapSize = 0;
+            for (var it = window.descendingIterator(); it.hasNext(); ) {
+                Sentence s = it.next();
+                if (overlapSize + s.tokens() > overlapTokens || overlap.size() == window.size() - 1) break;
+                overlap.addFirst(s);
+                overlapSize += s.tokens();
+            }
+            // 重叠加上新句子仍放不下时放弃重叠
+            if (overlapSize + tokens > maxTokens) {
+                overlap.clear();
+                overlapSize = 0;
+            }
+            window.clear();
+            window.addAll(overlap);
+            windowTokens = overlapSize;
+        }
+        window.addLast(new Sentence(text, start, start + text.length(), tokens));
+        windowTokens += tokens;
+    }
+
+    private void emit() {
+        StringBuilder text = new StringBuilder();
+        for (Sentence s : window) {
+            text.append(s.text());
+        }
+        int start = window.getFirst().start();
+        int end = window.getLast().end();
+        // 去掉首尾空白并同步调整 offset
+        int lead = 0;
+        while (lead < text.length() && Character.isWhitespace(text.charAt(lead))) lead++;
+        int trail = text.length();
+        while (trail > lead && Character.isWhitespace(text.charAt(trail - 1))) trail--;
+        if (trail == lead) return;
+        sink.accept(new Chunk(nextIndex++, text.substring(lead, trail), start + lead, end - (text.length() - trail), windowTokens));
+    }
+}
@@ -0,0 +1,96 @@
+package com.promptgenie.service.retrieval;
+
+import com.promptgenie.service.search.CjkTextAnalyzer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local re-ranker for the head of a fused result list. Like a cross-encoder it scores the query and
+ * the chunk together rather than comparing two independent representations, but with cheap lexical
+ * features instead of a model: how much of the query the chunk covers (bigrams and words weigh more
+ * than single CJK characters), how tightly the matched terms cluster, and whether the query appears
+ * verbatim. Scores are in [0, 1].
+ */
+@Component
+public class ChunkReranker {
+
+    private static final double COVERAGE_WEIGHT = 0.6;
+    private static final double PROXIMITY_WEIGHT = 0.3;
+    private static final double PHRASE_WEIGHT = 0.1;
+    // Longer queries are prompts rather than questions; a verbatim match is meaningless there
+    private static final int MAX_PHRASE_LENGTH = 200;
+
+    private final CjkTextAnalyzer analyzer = new CjkTextAnalyzer();
+
+    /** Analyses {@code query} once so it can be scored against many chunks. */
+    public PreparedQuery prepare(String query) {
+        Map<String, Integer> weights = new HashMap<>();
+        int total = 0;
+        for (String term : analyzer.terms(query != null ? query : "")) {
+            int weight = term.codePointCount(0, term.length()) > 1 ? 2 : 1;
+            weights.put(term, weight);
+            total += weight;
+        }
+        String phrase = query != null && query.strip().length() <= MAX_PHRASE_LENGTH
+                ? query.strip().toLowerCase(Locale.ROOT) : "";
+        return new PreparedQuery(weights, total, phrase);
+    }
+
+    public final class PreparedQuery {
+        private final Map<String, Integer> weights;
+        private final int totalWeight;
+        private final String phrase;
+
+        private PreparedQuery(Map<String, Integer> weights, int totalWeight, String phrase) {
+            this.weights = weights;
+            this.totalWeight = totalWeight;
+            this.phrase = phrase;
+        }
+
+        public double score(String text) {
+            if (totalWeight == 0 || text == null || text.isEmpty()) return 0;
+            List<String> tokens = analyzer.termSequence(text);
+            Set<String> matched = new HashSet<>();
+            for (String token : tokens) {
+                if (weights.containsKey(token)) matched.add(token);
+            }
+            if (matched.isEmpty()) return 0;
+            int matchedWeight = 0;
+            for (String term : matched) {
+                matchedWeight += weights.get(term);
+            }
+            double coverage = (double) matchedWeight / totalWeight;
+            double proximity = Math.min(1.0, (double) matched.size() / minimumWindow(tokens, matched));
+            double phraseMatch = !phrase.isEmpty() && text.toLowerCase(Locale.ROOT).contains(phrase) ? 1 : 0;
+            return COVERAGE_WEIGHT * coverage + PROXIMITY_WEIGHT * proximity + PHRASE_WEIGHT * phraseMatch;
+        }
+    }
+
+    /** Length in tokens of the shortest run of {@code tokens} that contains every term of {@code required}. */
+    static int minimumWindow(List<String> tokens, Set<String> required) {
+        Map<String, Integer> inWindow = new HashMap<>();
+        int covered = 0;
+        int best = tokens.size();
+        int left = 0;
+        for (int right = 0; right < tokens.size(); right++) {
+            String token = tokens.get(right);
+            if (!required.contains(token)) continue;
+            if (inWindow.merge(token, 1, Integer::sum) == 1) covered++;
+            while (covered == required.size()) {
+                String head = tokens.get(left);
+                if (required.contains(head)) {
+                    best = Math.min(best, right - left + 1);
+                    if (inWindow.merge(head, -1, Integer::sum) == 0) covered--;
+                }
+                left++;
+            }
+        }
+        return Math.max(1, best);
+    }
+}
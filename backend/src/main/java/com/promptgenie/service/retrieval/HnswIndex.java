@@ -0,0 +1,369 @@
+package com.promptgenie.service.retrieval;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-process HNSW (Hierarchical Navigable Small World) index over float32 vectors.
+ * Vectors are expected to be L2-normalised; similarity is the dot product (= cosine).
+ * Removal is by tombstone; {@link #deletedRatio()} tells the owner when a compaction is worthwhile.
+ * Thread-safe: searches share a read lock, mutations take the write lock.
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[][] vectors = new float[16][];
+    private long[] labels = new long[16];
+    private int[][][] neighbors = new int[16][][];
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension) {
+        this(dimension, 16, 100);
+    }
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /** Number of live (non-deleted) vectors. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0.0 : (double) deletedCount / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(long label, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            ensureCapacity(node + 1);
+            int level = randomLevel();
+            vectors[node] = vector;
+            labels[node] = label;
+            neighbors[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                neighbors[node][l] = new int[0];
+            }
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+                int maxConn = l == 0 ? maxM0 : m;
+                int[] selected = selectNeighbors(candidates, m);
+                neighbors[node][l] = selected;
+                for (int neighbor : selected) {
+                    connect(neighbor, node, l, maxConn);
+                }
+                current = candidates.get(0).node;
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Tombstones every vector whose label matches; returns how many were removed. */
+    public int removeIf(LongPredicate predicate) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int i = 0; i < size; i++) {
+                if (!deleted.get(i) && predicate.test(labels[i])) {
+                    deleted.set(i);
+                    removed++;
+                }
+            }
+            deletedCount += removed;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(float[] query, int k) {
+        return search(query, k, Math.max(k, 64));
+    }
+
+    public List<SearchHit> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || size == deletedCount) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(query, current, l);
+            }
+            // Widen the beam while tombstones are present so k live hits survive filtering
+            int beam = Math.max(ef, k) + Math.min(deletedCount, Math.max(ef, k));
+            List<Candidate> candidates = searchLayer(query, current, beam, 0);
+            List<SearchHit> hits = new ArrayList<>(k);
+            for (Candidate c : candidates) {
+                if (deleted.get(c.node)) continue;
+                hits.add(new SearchHit(labels[c.node], c.score));
+                if (hits.size() == k) break;
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Copies the live vectors into a fresh, tombstone-free index. */
+    public HnswIndex compact() {
+        lock.readLock().lock();
+        try {
+            HnswIndex copy = new HnswIndex(dimension, m, efConstruction);
+            for (int i = 0; i < size; i++) {
+                if (!deleted.get(i)) {
+                    copy.add(labels[i], vectors[i]);
+                }
+            }
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(labels[i]);
+                out.writeBoolean(deleted.get(i));
+                for (float v : vectors[i]) {
+                    out.writeFloat(v);
+                }
+                out.writeInt(neighbors[i].length);
+                for (int[] level : neighbors[i]) {
+                    out.writeInt(level.length);
+                    for (int n : level) {
+                        out.writeInt(n);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW index file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported HNSW index version: " + version);
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        index.ensureCapacity(Math.max(count, 1));
+        index.size = count;
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int i = 0; i < count; i++) {
+            index.labels[i] = in.readLong();
+            if (in.readBoolean()) {
+                index.deleted.set(i);
+                index.deletedCount++;
+            }
+            float[] vector = new float[index.dimension];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = in.readFloat();
+            }
+            index.vectors[i] = vector;
+            int levels = in.readInt();
+            index.neighbors[i] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] links = new int[in.readInt()];
+                for (int n = 0; n < links.length; n++) {
+                    links[n] = in.readInt();
+                }
+                index.neighbors[i][l] = links;
+            }
+        }
+        return index;
+    }
+
+    static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) Math.floor(-Math.log(Math.max(r, Double.MIN_VALUE)) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= vectors.length) return;
+        int newCapacity = Math.max(capacity, vectors.length * 2);
+        vectors = Arrays.copyOf(vectors, newCapacity);
+        labels = Arrays.copyOf(labels, newCapacity);
+        neighbors = Arrays.copyOf(neighbors, newCapacity);
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = dot(query, vectors[current]);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int n : linksAt(current, level)) {
+                float score = dot(query, vectors[n]);
+                if (score > best) {
+                    best = score;
+                    current = n;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** Beam search on one layer; returns candidates ordered best-first. */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.score));
+
+        Candidate first = new Candidate(start, dot(query, vectors[start]));
+        visited.set(start);
+        frontier.add(first);
+        results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (results.size() >= ef && current.score < results.peek().score) {
+                break;
+            }
+            for (int n : linksAt(current.node, level)) {
+                if (visited.get(n)) continue;
+                visited.set(n);
+                float score = dot(query, vectors[n]);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate c = new Candidate(n, score);
+                    frontier.add(c);
+                    results.add(c);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        return ordered;
+    }
+
+    private int[] selectNeighbors(List<Candidate> candidates, int count) {
+        int n = Math.min(count, candidates.size());
+        int[] selected = new int[n];
+        for (int i = 0; i < n; i++) {
+            selected[i] = candidates.get(i).node;
+        }
+        return selected;
+    }
+
+    private void connect(int from, int to, int level, int maxConn) {
+        int[] links = linksAt(from, level);
+        if (links.length < maxConn) {
+            int[] grown = Arrays.copyOf(links, links.length + 1);
+            grown[links.length] = to;
+            neighbors[from][level] = grown;
+            return;
+        }
+        // Full: keep the maxConn closest of the existing links plus the new one
+        List<Candidate> pool = new ArrayList<>(links.length + 1);
+        for (int link : links) {
+            pool.add(new Candidate(link, dot(vectors[from], vectors[link])));
+        }
+        pool.add(new Candidate(to, dot(vectors[from], vectors[to])));
+        pool.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        neighbors[from][level] = selectNeighbors(pool, maxConn);
+    }
+
+    private int[] linksAt(int node, int level) {
+        int[][] levels = neighbors[node];
+        return level < levels.length ? levels[level] : new int[0];
+    }
+
+    private record Candidate(int node, float score) {
+    }
+
+    public record SearchHit(long label, float score) {
+    }
+}
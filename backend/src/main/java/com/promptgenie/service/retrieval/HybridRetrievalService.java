@@ -0,0 +1,222 @@
+package com.promptgenie.service.retrieval;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Knowledge base retrieval scoped to one KB. The BM25 index ({@link LexicalIndexService}) and the
+ * vector index ({@link VectorIndexService}) are queried in parallel and their rankings merged with
+ * reciprocal-rank fusion, {@code sum(1 / (rrfK + rank))}, which needs no score calibration between
+ * the two. The head of the fused list is then optionally re-scored by {@link ChunkReranker}.
+ * <p>
+ * Exact identifiers, names and rare terms are found by the lexical side, paraphrases by the vector
+ * side. Until the lexical index has been built retrieval is vector-only.
+ */
+@Slf4j
+@Service
+public class HybridRetrievalService {
+
+    public enum Mode {
+        HYBRID, LEXICAL, VECTOR;
+
+        public static Mode from(String value) {
+            return value == null || value.isBlank() ? HYBRID : Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    // Weight of the fused rank prior in the final score of re-ranked chunks
+    private static final double PRIOR_WEIGHT = 0.3;
+
+    @Autowired
+    private LexicalIndexService lexicalIndexService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private ChunkReranker reranker;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private GenieMetrics metrics;
+
+    private ExecutorService searchers;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        searchers = Executors.newFixedThreadPool(Math.max(1, config().getThreads()), r -> {
+            Thread t = new Thread(r, "kb-retrieval-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchers.shutdownNow();
+    }
+
+    /** Top {@code k} chunks of the knowledge base for {@code query} in the configured mode. */
+    public List<RetrievalResult> retrieve(Long kbId, String query, int k) {
+        return retrieve(kbId, query, k, Mode.from(config().getMode()), !Boolean.FALSE.equals(config().getRerank()));
+    }
+
+    public List<RetrievalResult> retrieve(Long kbId, String query, int k, Mode mode, boolean rerank) {
+        if (query == null || query.isBlank() || k <= 0) return List.of();
+        long startNanos = System.nanoTime();
+        int candidates = Math.max(k, config().getCandidates());
+        boolean lexical = mode != Mode.VECTOR && lexicalIndexService.isReady();
+        boolean vector = mode != Mode.LEXICAL || !lexical;
+
+        // The lexical search runs on the pool while this thread embeds the query and walks the HNSW graph
+        CompletableFuture<List<LexicalIndexService.LexicalHit>> lexicalHits = lexical
+                ? CompletableFuture.supplyAsync(() -> searchLexical(kbId, query, candidates), searchers)
+                : CompletableFuture.completedFuture(List.of());
+        List<VectorIndexService.ChunkHit> vectorHits = vector ? vectorIndexService.search(kbId, query, candidates) : List.of();
+        List<LexicalIndexService.LexicalHit> lexicalResults;
+        try {
+            lexicalResults = lexicalHits.join();
+        } catch (CompletionException e) {
+            log.warn("Lexical retrieval failed for kb {}, using vector hits only: {}", kbId, e.getCause().getMessage());
+            lexicalResults = List.of();
+            if (!vector) vectorHits = vectorIndexService.search(kbId, query, candidates);
+        }
+
+        List<Candidate> fused = fuse(lexicalResults, vectorHits, config().getRrfK());
+        if (rerank && !fused.isEmpty()) {
+            rerank(query, fused, Math.max(k, config().getRerankTopN()));
+        }
+        List<Candidate> top = fused.subList(0, Math.min(k, fused.size()));
+        attachOffsets(top);
+        List<RetrievalResult> results = top.stream().map(Candidate::toResult).collect(Collectors.toList());
+        metrics.recordRetrieval(mode.name().toLowerCase(Locale.ROOT), rerank, System.nanoTime() - startNanos, results.size());
+        return results;
+    }
+
+    /** Reciprocal-rank fusion of the two rankings, best first. */
+    static List<Candidate> fuse(List<LexicalIndexService.LexicalHit> lexicalHits,
+                                List<VectorIndexService.ChunkHit> vectorHits, int rrfK) {
+        Map<String, Candidate> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < lexicalHits.size(); i++) {
+            LexicalIndexService.LexicalHit hit = lexicalHits.get(i);
+            Candidate candidate = byKey.computeIfAbsent(LexicalIndexService.key(hit.documentId(), hit.chunkIndex()),
+                    key -> new Candidate(hit.documentId(), hit.filename(), hit.chunkIndex(), hit.text()));
+            candidate.lexicalRank = i + 1;
+            candidate.lexicalScore = hit.score();
+            candidate.startOffset = hit.startOffset();
+            candidate.endOffset = hit.endOffset();
+            candidate.fusedScore += 1.0 / (rrfK + i + 1);
+        }
+        for (int i = 0; i < vectorHits.size(); i++) {
+            VectorIndexService.ChunkHit hit = vectorHits.get(i);
+            Candidate candidate = byKey.computeIfAbsent(LexicalIndexService.key(hit.documentId(), hit.chunkIndex()),
+                    key -> new Candidate(hit.documentId(), hit.filename(), hit.chunkIndex(), hit.text()));
+            candidate.vectorRank = i + 1;
+            candidate.vectorScore = hit.score();
+            candidate.fusedScore += 1.0 / (rrfK + i + 1);
+        }
+        List<Candidate> fused = new ArrayList<>(byKey.values());
+        for (Candidate candidate : fused) {
+            candidate.score = candidate.fusedScore;
+        }
+        fused.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        return fused;
+    }
+
+    /**
+     * Re-scores the first {@code topN} candidates and re-sorts them; the tail keeps its fused order
+     * below them. The fused score, normalised to the best one, is kept as a prior so the reranker
+     * breaks ties and fixes near-misses rather than overturning both retrievers.
+     */
+    private void rerank(String query, List<Candidate> fused, int topN) {
+        ChunkReranker.PreparedQuery prepared = reranker.prepare(query);
+        List<Candidate> head = fused.subList(0, Math.min(topN, fused.size()));
+        double best = head.get(0).fusedScore;
+        for (Candidate candidate : head) {
+            candidate.rerankScore = prepared.score(candidate.text);
+            candidate.score = (1 - PRIOR_WEIGHT) * candidate.rerankScore + PRIOR_WEIGHT * candidate.fusedScore / best;
+        }
+        head.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+    }
+
+    private void attachOffsets(List<Candidate> results) {
+        List<String> missing = results.stream().filter(c -> c.lexicalRank == null)
+                .map(c -> LexicalIndexService.key(c.documentId, c.chunkIndex)).collect(Collectors.toList());
+        if (missing.isEmpty() || !lexicalIndexService.isReady()) return;
+        try {
+            Map<String, LexicalIndexService.LexicalHit> stored = lexicalIndexService.lookup(missing);
+            for (Candidate candidate : results) {
+                LexicalIndexService.LexicalHit hit = stored.get(LexicalIndexService.key(candidate.documentId, candidate.chunkIndex));
+                if (candidate.lexicalRank == null && hit != null) {
+                    candidate.startOffset = hit.startOffset();
+                    candidate.endOffset = hit.endOffset();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to look up chunk offsets: {}", e.getMessage());
+        }
+    }
+
+    private List<LexicalIndexService.LexicalHit> searchLexical(Long kbId, String query, int k) {
+        try {
+            return lexicalIndexService.search(kbId, query, k);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private GenieConfig.RetrievalConfig config() {
+        return genieConfig.getRetrieval() != null ? genieConfig.getRetrieval() : new GenieConfig.RetrievalConfig();
+    }
+
+    static final class Candidate {
+        final Long documentId;
+        final String filename;
+        final int chunkIndex;
+        final String text;
+        Integer startOffset;
+        Integer endOffset;
+        Integer lexicalRank;
+        Float lexicalScore;
+        Integer vectorRank;
+        Float vectorScore;
+        double fusedScore;
+        Double rerankScore;
+        double score;
+
+        Candidate(Long documentId, String filename, int chunkIndex, String text) {
+            this.documentId = documentId;
+            this.filename = filename;
+            this.chunkIndex = chunkIndex;
+            this.text = text;
+        }
+
+        RetrievalResult toResult() {
+            return new RetrievalResult(documentId, filename, chunkIndex, text, startOffset, endOffset,
+                    lexicalRank, lexicalScore, vectorRank, vectorScore, fusedScore, rerankScore, score);
+        }
+    }
+}
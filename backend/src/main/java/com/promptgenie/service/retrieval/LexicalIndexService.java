@@ -0,0 +1,338 @@
+package com.promptgenie.service.retrieval;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.entity.DocumentChunk;
+import com.promptgenie.mapper.DocumentChunkMapper;
+import com.promptgenie.mapper.DocumentMapper;
+import com.promptgenie.service.search.CjkTextAnalyzer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * BM25 inverted index over knowledge base chunks, the lexical half of {@link HybridRetrievalService}.
+ * One embedded Lucene index at {@code genie.retrieval.lexical-index-dir} holds every knowledge base;
+ * each chunk is a document filtered by {@code kb_id} at query time and analysed with
+ * {@link CjkTextAnalyzer}, so Chinese text matches by character bigrams. Chunk offsets are stored
+ * alongside the text.
+ * <p>
+ * The ingestion pipeline mirrors its {@link VectorIndexService} calls here ({@link #addChunks},
+ * {@link #flush}, {@link #removeDocument}). When the index is missing or from an older schema it is
+ * rebuilt in the background from the {@code document_chunks} table; until then {@link #isReady()} is
+ * false and retrieval uses the vector index alone.
+ */
+@Slf4j
+@Service
+public class LexicalIndexService {
+
+    private static final String SCHEMA_VERSION = "1";
+    private static final int REBUILD_BATCH = 500;
+    // Stays well under Lucene's clause limit when a whole prompt is used as the query
+    private static final int MAX_QUERY_TERMS = 512;
+
+    private static final String F_KEY = "key";
+    private static final String F_KB = "kb_id";
+    private static final String F_DOC = "document_id";
+    private static final String F_FILENAME = "filename";
+    private static final String F_CHUNK = "chunk_index";
+    private static final String F_START = "start_offset";
+    private static final String F_END = "end_offset";
+    private static final String F_CONTENT = "content";
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    private DocumentChunkMapper chunkMapper;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private final CjkTextAnalyzer analyzer = new CjkTextAnalyzer();
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kb-lexical-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean ready;
+
+    public record LexicalHit(Long documentId, String filename, int chunkIndex, String text,
+                             Integer startOffset, Integer endOffset, float score) {
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Path dir = Paths.get(config().getLexicalIndexDir());
+            Files.createDirectories(dir);
+            directory = FSDirectory.open(dir);
+            IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
+            writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(directory, writerConfig);
+            searcherManager = new SearcherManager(writer, new SearcherFactory());
+            if (SCHEMA_VERSION.equals(schemaVersion())) {
+                ready = true;
+                log.info("Knowledge base lexical index is current with {} chunks", writer.getDocStats().numDocs);
+                return;
+            }
+            // Cleared before ingestion workers start adding chunks, so the rebuild only has to fill in
+            writer.deleteAll();
+            writer.setLiveCommitData(new HashMap<String, String>().entrySet());
+            writer.commit();
+        } catch (IOException e) {
+            log.error("Failed to open knowledge base lexical index, retrieval is vector-only: {}", e.getMessage());
+            return;
+        }
+        indexer.execute(this::rebuild);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+        try {
+            indexer.awaitTermination(10, TimeUnit.SECONDS);
+            if (searcherManager != null) searcherManager.close();
+            if (writer != null) writer.close();
+            if (directory != null) directory.close();
+        } catch (Exception e) {
+            log.warn("Failed to close knowledge base lexical index: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Adds one batch of a document's chunks; they become searchable on {@link #flush}. */
+    public void addChunks(Long kbId, com.promptgenie.entity.Document document, List<DocumentChunk> chunks) {
+        if (writer == null || chunks == null || chunks.isEmpty()) return;
+        try {
+            List<Document> docs = new ArrayList<>(chunks.size());
+            for (DocumentChunk chunk : chunks) {
+                docs.add(toDocument(kbId, document.getId(), document.getFilename(), chunk.getChunkIndex(),
+                        chunk.getContent(), chunk.getStartOffset(), chunk.getEndOffset()));
+            }
+            writer.addDocuments(docs);
+        } catch (IOException e) {
+            log.warn("Failed to add chunks of document {} to lexical index: {}", document.getId(), e.getMessage());
+        }
+    }
+
+    public void flush(Long kbId) {
+        commit();
+    }
+
+    public void removeDocument(Long kbId, Long documentId) {
+        if (writer == null) return;
+        try {
+            writer.deleteDocuments(new Term(F_DOC, String.valueOf(documentId)));
+        } catch (IOException e) {
+            log.warn("Failed to remove document {} from lexical index: {}", documentId, e.getMessage());
+        }
+        commit();
+    }
+
+    public void dropKnowledgeBase(Long kbId) {
+        if (writer == null) return;
+        try {
+            writer.deleteDocuments(new Term(F_KB, String.valueOf(kbId)));
+        } catch (IOException e) {
+            log.warn("Failed to drop kb {} from lexical index: {}", kbId, e.getMessage());
+        }
+        commit();
+    }
+
+    /** Top {@code k} chunks of the knowledge base by BM25 over the query's terms. */
+    public List<LexicalHit> search(Long kbId, String query, int k) throws IOException {
+        if (searcherManager == null || query == null || query.isBlank()) return List.of();
+        List<String> terms = analyzer.terms(query);
+        if (terms.isEmpty()) return List.of();
+        BooleanQuery.Builder text = new BooleanQuery.Builder();
+        for (String term : terms.subList(0, Math.min(terms.size(), MAX_QUERY_TERMS))) {
+            text.add(new TermQuery(new Term(F_CONTENT, term)), BooleanClause.Occur.SHOULD);
+        }
+        BooleanQuery full = new BooleanQuery.Builder()
+                .add(text.build(), BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(F_KB, String.valueOf(kbId))), BooleanClause.Occur.FILTER)
+                .build();
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = searcher.search(full, k);
+            List<LexicalHit> hits = new ArrayList<>(top.scoreDocs.length);
+            for (ScoreDoc scoreDoc : top.scoreDocs) {
+                hits.add(toHit(searcher.storedFields().document(scoreDoc.doc), scoreDoc.score));
+            }
+            return hits;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Stored chunks by {@code documentId:chunkIndex} key, used to attach offsets to hits that only the
+     * vector index returned.
+     */
+    public Map<String, LexicalHit> lookup(Collection<String> keys) throws IOException {
+        if (searcherManager == null || keys.isEmpty()) return Map.of();
+        List<BytesRef> terms = keys.stream().map(BytesRef::new).collect(Collectors.toList());
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = searcher.search(new TermInSetQuery(F_KEY, terms), keys.size());
+            Map<String, LexicalHit> found = new HashMap<>();
+            for (ScoreDoc scoreDoc : top.scoreDocs) {
+                LexicalHit hit = toHit(searcher.storedFields().document(scoreDoc.doc), 0f);
+                found.put(key(hit.documentId(), hit.chunkIndex()), hit);
+            }
+            return found;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    static String key(Long documentId, int chunkIndex) {
+        return documentId + ":" + chunkIndex;
+    }
+
+    private void rebuild() {
+        try {
+            QueryWrapper<com.promptgenie.entity.Document> query = new QueryWrapper<>();
+            query.select("id", "kb_id", "filename", "ingest_status");
+            List<com.promptgenie.entity.Document> documents = documentMapper.selectList(query);
+            Map<Long, com.promptgenie.entity.Document> readyDocuments = new HashMap<>();
+            int indexed = 0;
+            for (com.promptgenie.entity.Document document : documents) {
+                if (com.promptgenie.entity.Document.STATUS_READY.equals(document.getIngestStatus())) {
+                    readyDocuments.put(document.getId(), document);
+                } else if (document.getIngestStatus() == null) {
+                    indexed += indexLegacy(document);
+                }
+                // Documents still being ingested add their own chunks as they go
+            }
+            for (Long kbId : readyDocuments.values().stream().map(com.promptgenie.entity.Document::getKbId).distinct().toList()) {
+                Long afterDocument = Long.MIN_VALUE;
+                Integer afterIndex = Integer.MIN_VALUE;
+                while (true) {
+                    List<DocumentChunk> page = chunkMapper.selectPageByKbId(kbId, afterDocument, afterIndex, REBUILD_BATCH);
+                    if (page.isEmpty()) break;
+                    DocumentChunk last = page.get(page.size() - 1);
+                    afterDocument = last.getDocumentId();
+                    afterIndex = last.getChunkIndex();
+                    for (DocumentChunk chunk : page) {
+                        com.promptgenie.entity.Document document = readyDocuments.get(chunk.getDocumentId());
+                        if (document == null) continue;
+                        writer.updateDocument(new Term(F_KEY, key(chunk.getDocumentId(), chunk.getChunkIndex())),
+                                toDocument(kbId, chunk.getDocumentId(), document.getFilename(), chunk.getChunkIndex(),
+                                        chunk.getContent(), chunk.getStartOffset(), chunk.getEndOffset()));
+                        indexed++;
+                    }
+                }
+            }
+            Map<String, String> commitData = new HashMap<>();
+            commitData.put("schema", SCHEMA_VERSION);
+            writer.setLiveCommitData(commitData.entrySet());
+            commit();
+            ready = true;
+            log.info("Knowledge base lexical index rebuilt with {} chunks", indexed);
+        } catch (Exception e) {
+            log.error("Knowledge base lexical index rebuild failed, retrieval stays vector-only: {}", e.getMessage());
+        }
+    }
+
+    private int indexLegacy(com.promptgenie.entity.Document document) throws IOException {
+        QueryWrapper<com.promptgenie.entity.Document> legacy = new QueryWrapper<>();
+        legacy.select("content").eq("id", document.getId());
+        com.promptgenie.entity.Document withContent = documentMapper.selectOne(legacy);
+        List<String> chunks = VectorIndexService.splitLegacyContent(withContent != null ? withContent.getContent() : null);
+        for (int i = 0; i < chunks.size(); i++) {
+            writer.updateDocument(new Term(F_KEY, key(document.getId(), i)),
+                    toDocument(document.getKbId(), document.getId(), document.getFilename(), i, chunks.get(i), null, null));
+        }
+        return chunks.size();
+    }
+
+    private void commit() {
+        if (writer == null) return;
+        try {
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Failed to commit knowledge base lexical index: {}", e.getMessage());
+        }
+    }
+
+    private String schemaVersion() {
+        if (writer.getLiveCommitData() == null) return null;
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if ("schema".equals(entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+
+    private static Document toDocument(Long kbId, Long documentId, String filename, int chunkIndex, String text,
+                                       Integer startOffset, Integer endOffset) {
+        Document doc = new Document();
+        doc.add(new StringField(F_KEY, key(documentId, chunkIndex), Field.Store.NO));
+        doc.add(new StringField(F_KB, String.valueOf(kbId), Field.Store.NO));
+        doc.add(new StringField(F_DOC, String.valueOf(documentId), Field.Store.YES));
+        doc.add(new StoredField(F_FILENAME, filename != null ? filename : ""));
+        doc.add(new StoredField(F_CHUNK, chunkIndex));
+        // Legacy chunks have no offsets; -1 marks them
+        doc.add(new StoredField(F_START, startOffset != null ? startOffset : -1));
+        doc.add(new StoredField(F_END, endOffset != null ? endOffset : -1));
+        doc.add(new TextField(F_CONTENT, text != null ? text : "", Field.Store.YES));
+        return doc;
+    }
+
+    private static LexicalHit toHit(Document doc, float score) {
+        int start = doc.getField(F_START).numericValue().intValue();
+        int end = doc.getField(F_END).numericValue().intValue();
+        return new LexicalHit(Long.valueOf(doc.get(F_DOC)), doc.get(F_FILENAME),
+                doc.getField(F_CHUNK).numericValue().intValue(), doc.get(F_CONTENT),
+                start >= 0 ? start : null, end >= 0 ? end : null, score);
+    }
+
+    private GenieConfig.RetrievalConfig config() {
+        return genieConfig.getRetrieval() != null ? genieConfig.getRetrieval() : new GenieConfig.RetrievalConfig();
+    }
+}
@@ -0,0 +1,23 @@
+package com.promptgenie.service.retrieval;
+
+/**
+ * One chunk returned by {@link HybridRetrievalService}, with the evidence behind its position.
+ * Ranks are 1-based and null when that retriever did not return the chunk; offsets are character
+ * positions in the extracted document text and null for chunks stored before offsets were tracked.
+ * {@code score} is the value results are ordered by: the rerank score when the chunk was re-ranked,
+ * otherwise the fused score.
+ */
+public record RetrievalResult(Long documentId,
+                              String filename,
+                              int chunkIndex,
+                              String text,
+                              Integer startOffset,
+                              Integer endOffset,
+                              Integer lexicalRank,
+                              Float lexicalScore,
+                              Integer vectorRank,
+                              Float vectorScore,
+                              double fusedScore,
+                              Double rerankScore,
+                              double score) {
+}
@@ -0,0 +1,316 @@
+package com.promptgenie.service.retrieval;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.entity.Document;
+import com.promptgenie.entity.DocumentChunk;
+import com.promptgenie.mapper.DocumentChunkMapper;
+import com.promptgenie.mapper.DocumentMapper;
+import com.promptgenie.service.EmbeddingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Per knowledge base approximate nearest-neighbour index over chunk embeddings.
+ * Each KB owns one {@link HnswIndex} plus the chunk payloads it points at, persisted to
+ * {@code genie.embedding.index-dir/kb-<id>.idx}. Indexes are loaded lazily, rebuilt from the
+ * {@code document_chunks} table when missing or built with a different embedding model, and updated
+ * incrementally while documents are ingested or deleted. A KB is loaded outside the index map,
+ * so a long rebuild only holds up callers of that KB. Its HNSW graph takes its dimension from the
+ * first vector added, and an empty KB keeps no graph or file until then.
+ */
+@Slf4j
+@Service
+public class VectorIndexService {
+
+    // Documents uploaded before the chunk table kept all chunks in documents.content behind these markers
+    private static final Pattern LEGACY_CHUNK_MARKER = Pattern.compile("\\[Chunk \\d+\\]\\n");
+    private static final double COMPACT_THRESHOLD = 0.3;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    private DocumentChunkMapper chunkMapper;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private final Map<Long, CompletableFuture<KbIndex>> indexes = new ConcurrentHashMap<>();
+
+    public record ChunkHit(Long documentId, String filename, int chunkIndex, String text, float score) {
+    }
+
+    /**
+     * Adds one batch of a document's chunks with their embeddings. The index file is written by
+     * {@link #flush} once the whole document is in.
+     */
+    public void addChunks(Long kbId, Document document, List<DocumentChunk> chunks, List<float[]> vectors) {
+        if (chunks == null || chunks.isEmpty()) return;
+        KbIndex kb = load(kbId);
+        synchronized (kb) {
+            for (int i = 0; i < chunks.size(); i++) {
+                DocumentChunk chunk = chunks.get(i);
+                long label = kb.nextLabel++;
+                kb.chunks.put(label, new StoredChunk(document.getId(), document.getFilename(), chunk.getChunkIndex(), chunk.getContent()));
+                kb.add(label, vectors.get(i));
+            }
+        }
+    }
+
+    public void flush(Long kbId) {
+        KbIndex kb = load(kbId);
+        synchronized (kb) {
+            persist(kbId, kb);
+        }
+    }
+
+    public void removeDocument(Long kbId, Long documentId) {
+        KbIndex kb = load(kbId);
+        synchronized (kb) {
+            List<Long> labels = new ArrayList<>();
+            kb.chunks.forEach((label, chunk) -> {
+                if (documentId.equals(chunk.documentId())) labels.add(label);
+            });
+            if (labels.isEmpty() || kb.index == null) return;
+            labels.forEach(kb.chunks::remove);
+            kb.index.removeIf(label -> !kb.chunks.containsKey(label));
+            if (kb.index.deletedRatio() > COMPACT_THRESHOLD) {
+                kb.index = kb.index.compact();
+            }
+            persist(kbId, kb);
+        }
+    }
+
+    public void dropKnowledgeBase(Long kbId) {
+        indexes.remove(kbId);
+        try {
+            Files.deleteIfExists(indexPath(kbId));
+        } catch (IOException e) {
+            log.warn("Failed to delete vector index for kb {}: {}", kbId, e.getMessage());
+        }
+    }
+
+    public List<ChunkHit> search(Long kbId, String query, int k) {
+        KbIndex kb = load(kbId);
+        if (kb.index == null) return List.of();
+        float[] vector = embeddingService.embed(query);
+        List<ChunkHit> hits = new ArrayList<>(k);
+        for (HnswIndex.SearchHit hit : kb.index.search(vector, k)) {
+            StoredChunk chunk = kb.chunks.get(hit.label());
+            if (chunk != null) {
+                hits.add(new ChunkHit(chunk.documentId(), chunk.filename(), chunk.chunkIndex(), chunk.text(), hit.score()));
+            }
+        }
+        return hits;
+    }
+
+    static List<String> splitLegacyContent(String content) {
+        List<String> chunks = new ArrayList<>();
+        if (content == null || content.isBlank()) return chunks;
+        for (String part : LEGACY_CHUNK_MARKER.split(content)) {
+            String text = part.strip();
+            if (!text.isEmpty()) chunks.add(text);
+        }
+        return chunks;
+    }
+
+    private KbIndex load(Long kbId) {
+        CompletableFuture<KbIndex> loading = indexes.get(kbId);
+        if (loading == null) {
+            // Only the first caller loads; others for the same KB wait on its future, other KBs are not held up
+            CompletableFuture<KbIndex> created = new CompletableFuture<>();
+            loading = indexes.putIfAbsent(kbId, created);
+            if (loading == null) {
+                loading = created;
+                try {
+                    created.complete(readOrRebuild(kbId));
+                } catch (RuntimeException e) {
+                    indexes.remove(kbId, created);
+                    created.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private KbIndex readOrRebuild(Long kbId) {
+        String model = embeddingService.modelId();
+        Path path = indexPath(kbId);
+        if (Files.exists(path)) {
+            try {
+                KbIndex kb = read(path);
+                if (model.equals(kb.model)) {
+                    return kb;
+                }
+                log.info("Vector index for kb {} was built with {}, rebuilding for {}", kbId, kb.model, model);
+            } catch (IOException e) {
+                log.warn("Vector index for kb {} is unreadable, rebuilding: {}", kbId, e.getMessage());
+            }
+        }
+        return rebuild(kbId, model);
+    }
+
+    private KbIndex rebuild(Long kbId, String model) {
+        QueryWrapper<Document> query = new QueryWrapper<>();
+        query.select("id", "filename", "ingest_status").eq("kb_id", kbId);
+        Map<Long, Document> documents = documentMapper.selectList(query).stream()
+                .collect(Collectors.toMap(Document::getId, d -> d));
+        // Documents still being ingested add their own chunks as they go
+        Set<Long> ready = documents.values().stream()
+                .filter(d -> Document.STATUS_READY.equals(d.getIngestStatus()))
+                .map(Document::getId).collect(Collectors.toSet());
+        KbIndex kb = new KbIndex(model, null);
+        int batchSize = genieConfig.getIngest() != null ? genieConfig.getIngest().getEmbedBatchSize() : 32;
+
+        Long afterDocument = Long.MIN_VALUE;
+        Integer afterIndex = Integer.MIN_VALUE;
+        while (true) {
+            List<DocumentChunk> page = chunkMapper.selectPageByKbId(kbId, afterDocument, afterIndex, batchSize);
+            if (page.isEmpty()) break;
+            DocumentChunk last = page.get(page.size() - 1);
+            afterDocument = last.getDocumentId();
+            afterIndex = last.getChunkIndex();
+            List<DocumentChunk> chunks = page.stream().filter(c -> ready.contains(c.getDocumentId())).collect(Collectors.toList());
+            if (chunks.isEmpty()) continue;
+            List<float[]> vectors = embeddingService.embedAll(chunks.stream().map(DocumentChunk::getContent).collect(Collectors.toList()));
+            for (int i = 0; i < chunks.size(); i++) {
+                DocumentChunk chunk = chunks.get(i);
+                long label = kb.nextLabel++;
+                kb.chunks.put(label, new StoredChunk(chunk.getDocumentId(), documents.get(chunk.getDocumentId()).getFilename(),
+                        chunk.getChunkIndex(), chunk.getContent()));
+                kb.add(label, vectors.get(i));
+            }
+        }
+
+        for (Document document : documents.values()) {
+            if (document.getIngestStatus() != null) continue;
+            QueryWrapper<Document> legacy = new QueryWrapper<>();
+            legacy.select("content").eq("id", document.getId());
+            Document withContent = documentMapper.selectOne(legacy);
+            List<String> chunks = splitLegacyContent(withContent != null ? withContent.getContent() : null);
+            for (int start = 0; start < chunks.size(); start += batchSize) {
+                List<String> batch = chunks.subList(start, Math.min(chunks.size(), start + batchSize));
+                List<float[]> vectors = embeddingService.embedAll(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    long label = kb.nextLabel++;
+                    kb.chunks.put(label, new StoredChunk(document.getId(), document.getFilename(), start + i, batch.get(i)));
+                    kb.add(label, vectors.get(i));
+                }
+            }
+        }
+        persist(kbId, kb);
+        return kb;
+    }
+
+    private Path indexPath(Long kbId) {
+        String dir = genieConfig.getEmbedding() != null && genieConfig.getEmbedding().getIndexDir() != null
+                ? genieConfig.getEmbedding().getIndexDir() : "data/vector-index";
+        return Paths.get(dir, "kb-" + kbId + ".idx");
+    }
+
+    private void persist(Long kbId, KbIndex kb) {
+        Path path = indexPath(kbId);
+        try {
+            if (kb.index == null) {
+                // Nothing embedded yet; an empty KB is rebuilt from the database for free
+                Files.deleteIfExists(path);
+                return;
+            }
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(kb.model);
+                out.writeLong(kb.nextLabel);
+                out.writeInt(kb.chunks.size());
+                for (Map.Entry<Long, StoredChunk> entry : kb.chunks.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeLong(entry.getValue().documentId());
+                    out.writeUTF(entry.getValue().filename() != null ? entry.getValue().filename() : "");
+                    out.writeInt(entry.getValue().chunkIndex());
+                    byte[] text = entry.getValue().text().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(text.length);
+                    out.write(text);
+                }
+                kb.index.write(out);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The in-memory index stays authoritative; it will be rebuilt on next start if needed
+            log.warn("Failed to persist vector index for kb {}: {}", kbId, e.getMessage());
+        }
+    }
+
+    private KbIndex read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            String model = in.readUTF();
+            long nextLabel = in.readLong();
+            int count = in.readInt();
+            Map<Long, StoredChunk> chunks = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                long label = in.readLong();
+                long documentId = in.readLong();
+                String filename = in.readUTF();
+                int chunkIndex = in.readInt();
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                chunks.put(label, new StoredChunk(documentId, filename, chunkIndex, new String(text, StandardCharsets.UTF_8)));
+            }
+            KbIndex kb = new KbIndex(model, HnswIndex.read(in));
+            kb.nextLabel = nextLabel;
+            kb.chunks.putAll(chunks);
+            return kb;
+        }
+    }
+
+    private record StoredChunk(Long documentId, String filename, int chunkIndex, String text) {
+    }
+
+    private static final class KbIndex {
+        final String model;
+        final Map<Long, StoredChunk> chunks = new ConcurrentHashMap<>();
+        volatile HnswIndex index;
+        long nextLabel;
+
+        KbIndex(String model, HnswIndex index) {
+            this.model = model;
+            this.index = index;
+        }
+
+        void add(long label, float[] vector) {
+            if (index == null) {
+                index = new HnswIndex(vector.length);
+            }
+            index.add(label, vector);
+        }
+    }
+}
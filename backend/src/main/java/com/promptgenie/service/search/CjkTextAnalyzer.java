@@ -0,0 +1,74 @@
+package com.promptgenie.service.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.cjk.CJKBigramFilter;
+import org.apache.lucene.analysis.cjk.CJKWidthFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Analyzer for mixed Chinese/Japanese/Korean and Latin text. Latin words are split on Unicode word
+ * boundaries and lower-cased; CJK runs, which have no spaces, are indexed as single characters plus
+ * overlapping bigrams, so "提示词" matches both "提示" and "示词" and a one-character query still hits.
+ * Full-width forms are folded to their half-width equivalents first.
+ */
+public class CjkTextAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer source = new StandardTokenizer();
+        TokenStream stream = new CJKWidthFilter(source);
+        stream = new LowerCaseFilter(stream);
+        stream = new CJKBigramFilter(stream, CJKBigramFilter.HAN | CJKBigramFilter.HIRAGANA
+                | CJKBigramFilter.KATAKANA | CJKBigramFilter.HANGUL, true);
+        return new TokenStreamComponents(source, stream);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new LowerCaseFilter(new CJKWidthFilter(in));
+    }
+
+    /** Distinct terms of {@code text} in order of first occurrence. */
+    public List<String> terms(String text) {
+        return new ArrayList<>(new LinkedHashSet<>(termSequence(text)));
+    }
+
+    /** Every term of {@code text} in token order, repeats included, for position-aware scoring. */
+    public List<String> termSequence(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = tokenStream("", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    /** True if {@code term} contains no CJK characters, i.e. edit-distance matching is meaningful. */
+    public static boolean isLatinTerm(String term) {
+        for (int i = 0; i < term.length(); ) {
+            int cp = term.codePointAt(i);
+            Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+            if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                    || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+                return false;
+            }
+            i += Character.charCount(cp);
+        }
+        return true;
+    }
+}
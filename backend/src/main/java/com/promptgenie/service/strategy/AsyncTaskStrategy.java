@@ -0,0 +1,33 @@
+package com.promptgenie.service.strategy;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Strategies whose provider works asynchronously (submit, then poll a task id), such as DashScope
+ * video synthesis. {@code GenerationTaskService} submits through {@link #submitTask} and a single
+ * scheduled poller checks all outstanding tasks with {@link #checkTasks}; no thread waits on a task.
+ */
+public interface AsyncTaskStrategy {
+
+    /**
+     * Submits the task and returns the provider's task id without waiting for the result.
+     */
+    String submitTask(String prompt, String modelName, Map<String, Object> parameters) throws Exception;
+
+    /**
+     * Current status of each provider task id. Ids whose status could not be fetched are left out
+     * and checked again on the next poll.
+     */
+    Map<String, TaskStatus> checkTasks(Collection<String> taskIds);
+
+    record TaskStatus(String state, String resultUrl, String message) {
+        public boolean succeeded() {
+            return "SUCCEEDED".equals(state);
+        }
+
+        public boolean failed() {
+            return "FAILED".equals(state) || "CANCELED".equals(state) || "UNKNOWN".equals(state);
+        }
+    }
+}
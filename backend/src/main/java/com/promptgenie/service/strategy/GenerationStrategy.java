@@ -1,6 +1,8 @@
 package com.promptgenie.service.strategy;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface GenerationStrategy {
     /**
@@ -14,6 +16,43 @@ public interface GenerationStrategy {
      */
     GenerationOutput generate(String prompt, String modelName, Map<String, Object> parameters) throws Exception;
 
+    /**
+     * Executes the generation request without blocking the caller.
+     * The default runs {@link #generate} inline; strategies backed by a blocking SDK override it to
+     * run the call through {@link ProviderConcurrencyLimiter#submitBlocking}.
+     *
+     * @param prompt      The user prompt/input
+     * @param modelName   The specific model name
+     * @param parameters  Additional parameters
+     * @return A future completed with the generation output
+     */
+    default CompletableFuture<GenerationOutput> generateAsync(String prompt, String modelName, Map<String, Object> parameters) {
+        try {
+            return CompletableFuture.completedFuture(generate(prompt, modelName, parameters));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Executes the generation request, pushing content chunks to the consumer as they arrive.
+     * Strategies without native streaming emit the whole content as a single chunk.
+     *
+     * @param prompt      The user prompt/input
+     * @param modelName   The specific model name
+     * @param parameters  Additional parameters
+     * @param onChunk     Receives each content delta in order
+     * @return The aggregated generation output, including usage once the stream has ended
+     * @throws Exception If generation fails
+     */
+    default GenerationOutput generateStream(String prompt, String modelName, Map<String, Object> parameters, Consumer<String> onChunk) throws Exception {
+        GenerationOutput output = generate(prompt, modelName, parameters);
+        if (output.getContent() != null && !output.getContent().isEmpty()) {
+            onChunk.accept(output.getContent());
+        }
+        return output;
+    }
+
     /**
      * Checks if this strategy supports the given model type.
      *
@@ -33,4 +72,14 @@ public interface GenerationStrategy {
      * @return Estimated cost in CNY
      */
     double calculateCost(String modelName, int inputTokens, int outputTokens, Map<String, Object> parameters);
+
+    /**
+     * Names the provider serving the model, used to tag metrics.
+     *
+     * @param modelName The specific model name
+     * @return The provider key; the built-in strategies are served by DashScope
+     */
+    default String provider(String modelName) {
+        return "dashscope";
+    }
 }
@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
@@ -20,6 +21,7 @@ public class ImageGenerationStrategy implements GenerationStrategy {
     private String apiKey;
 
     private final GenieConfig genieConfig;
+    private final ProviderConcurrencyLimiter concurrencyLimiter;
 
     @Override
     public GenerationOutput generate(String prompt, String modelName, Map<String, Object> parameters) throws Exception {
@@ -58,6 +60,18 @@ public class ImageGenerationStrategy implements GenerationStrategy {
                 .build();
     }
 
+    /**
+     * Shares DashScope's bounded pool and in-flight limit with text generation.
+     */
+    @Override
+    public CompletableFuture<GenerationOutput> generateAsync(String prompt, String modelName, Map<String, Object> parameters) {
+        GenieConfig.DashScopeConfig dashscope = genieConfig.getDashscope();
+        return concurrencyLimiter.submitBlocking(provider(modelName),
+                dashscope != null ? dashscope.getMaxConcurrency() : null,
+                dashscope != null ? dashscope.getMaxQueue() : null,
+                () -> generate(prompt, modelName, parameters));
+    }
+
     @Override
     public boolean supports(String modelType, String modelName) {
         if (!"image".equalsIgnoreCase(modelType)) {
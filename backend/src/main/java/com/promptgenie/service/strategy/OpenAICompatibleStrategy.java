@@ -1,5 +1,6 @@
 package com.promptgenie.service.strategy;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -16,7 +17,15 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Component
@@ -27,15 +36,149 @@ public class OpenAICompatibleStrategy implements GenerationStrategy {
     private final ProvidersConfig providersConfig;
     private final GenieConfig genieConfig;
     private final ObjectMapper objectMapper;
+    private final ProviderConcurrencyLimiter concurrencyLimiter;
     private final HttpClient httpClient = HttpClient.newHttpClient();
 
     @Override
     public GenerationOutput generate(String prompt, String modelName, Map<String, Object> parameters) throws Exception {
-        ProvidersConfig.OpenAiConfig config = findProviderConfig(modelName);
-        if (config == null) {
+        return await(generateAsync(prompt, modelName, parameters));
+    }
+
+    @Override
+    public CompletableFuture<GenerationOutput> generateAsync(String prompt, String modelName, Map<String, Object> parameters) {
+        Map.Entry<String, ProvidersConfig.OpenAiConfig> provider = findProvider(modelName);
+        if (provider == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No provider configuration found for model: " + modelName));
+        }
+
+        HttpRequest request;
+        try {
+            request = buildRequest(provider.getValue(), prompt, modelName, parameters, false);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return submit(provider, () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::parseResponse));
+    }
+
+    @Override
+    public GenerationOutput generateStream(String prompt, String modelName, Map<String, Object> parameters, Consumer<String> onChunk) throws Exception {
+        Map.Entry<String, ProvidersConfig.OpenAiConfig> provider = findProvider(modelName);
+        if (provider == null) {
             throw new IllegalArgumentException("No provider configuration found for model: " + modelName);
         }
+        HttpRequest request = buildRequest(provider.getValue(), prompt, modelName, parameters, true);
+
+        // The provider slot stays taken until the last chunk has been consumed
+        return await(submit(provider, () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenApply(response -> readStream(response, onChunk))));
+    }
+
+    private <T> CompletableFuture<T> submit(Map.Entry<String, ProvidersConfig.OpenAiConfig> provider, Supplier<CompletableFuture<T>> call) {
+        ProvidersConfig.OpenAiConfig config = provider.getValue();
+        return concurrencyLimiter.submit(provider.getKey(), config.getMaxConcurrency(), config.getMaxQueue(), call);
+    }
+
+    private GenerationOutput parseResponse(HttpResponse<String> response) {
+        if (response.statusCode() >= 400) {
+            throw new RuntimeException("Provider returned error: " + response.statusCode() + " " + response.body());
+        }
+        return parseBody(response.body());
+    }
+
+    // Package-private for the JMH benchmarks in src/jmh
+    GenerationOutput parseBody(String body) {
+        JsonNode responseNode;
+        try {
+            responseNode = objectMapper.readTree(body);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+        
+        if (!responseNode.has("choices") || responseNode.get("choices").isEmpty()) {
+             throw new RuntimeException("Invalid response from provider: " + body);
+        }
+        
+        String content = responseNode.path("choices").get(0).path("message").path("content").asText();
+        
+        int inputTokens = responseNode.path("usage").path("prompt_tokens").asInt(0);
+        int outputTokens = responseNode.path("usage").path("completion_tokens").asInt(0);
+
+        return GenerationOutput.builder()
+                .content(content)
+                .inputTokens(inputTokens)
+                .outputTokens(outputTokens)
+                .build();
+    }
+
+    private GenerationOutput readStream(HttpResponse<Stream<String>> response, Consumer<String> onChunk) {
+        if (response.statusCode() >= 400) {
+            String body;
+            try (Stream<String> lines = response.body()) {
+                body = lines.collect(Collectors.joining("\n"));
+            }
+            throw new RuntimeException("Provider returned error: " + response.statusCode() + " " + body);
+        }
+
+        StringBuilder content = new StringBuilder();
+        int inputTokens = 0;
+        int outputTokens = 0;
+
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next();
+                // SSE frames: "data: {json}", blank separators, optional comments/keep-alives
+                if (!line.startsWith("data:")) continue;
+                String data = line.substring(5).trim();
+                if (data.isEmpty()) continue;
+                if ("[DONE]".equals(data)) break;
 
+                JsonNode chunk = objectMapper.readTree(data);
+                JsonNode choices = chunk.path("choices");
+                if (choices.isArray() && !choices.isEmpty()) {
+                    JsonNode delta = choices.get(0).path("delta").path("content");
+                    if (delta.isTextual() && !delta.asText().isEmpty()) {
+                        content.append(delta.asText());
+                        onChunk.accept(delta.asText());
+                    }
+                }
+                // Usage is only sent on the final chunk when stream_options.include_usage is honoured
+                JsonNode usage = chunk.path("usage");
+                if (usage.isObject()) {
+                    inputTokens = usage.path("prompt_tokens").asInt(inputTokens);
+                    outputTokens = usage.path("completion_tokens").asInt(outputTokens);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
+        }
+
+        return GenerationOutput.builder()
+                .content(content.toString())
+                .inputTokens(inputTokens)
+                .outputTokens(outputTokens)
+                .build();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Caller was cancelled: abort the in-flight request rather than leaving it running
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    HttpRequest buildRequest(ProvidersConfig.OpenAiConfig config, String prompt, String modelName, Map<String, Object> parameters, boolean stream) throws Exception {
         String url = config.getBaseUrl();
         if (url == null) throw new IllegalArgumentException("Base URL not configured for model: " + modelName);
         
@@ -50,6 +193,11 @@ public class OpenAICompatibleStrategy implements GenerationStrategy {
         userMessage.put("role", "user");
         userMessage.put("content", prompt);
 
+        if (stream) {
+            root.put("stream", true);
+            root.putObject("stream_options").put("include_usage", true);
+        }
+
         if (parameters != null) {
             if (parameters.containsKey("temperature")) {
                 try {
@@ -80,34 +228,15 @@ public class OpenAICompatibleStrategy implements GenerationStrategy {
                 .uri(URI.create(url))
                 .header("Content-Type", "application/json");
         
+        if (stream) {
+            reqBuilder.header("Accept", "text/event-stream");
+        }
+
         if (config.getApiKey() != null && !config.getApiKey().isEmpty()) {
             reqBuilder.header("Authorization", "Bearer " + config.getApiKey());
         }
                 
-        HttpRequest request = reqBuilder.POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .build();
-
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() >= 400) {
-            throw new RuntimeException("Provider returned error: " + response.statusCode() + " " + response.body());
-        }
-
-        JsonNode responseNode = objectMapper.readTree(response.body());
-        
-        if (!responseNode.has("choices") || responseNode.get("choices").isEmpty()) {
-             throw new RuntimeException("Invalid response from provider: " + response.body());
-        }
-        
-        String content = responseNode.path("choices").get(0).path("message").path("content").asText();
-        
-        int inputTokens = responseNode.path("usage").path("prompt_tokens").asInt(0);
-        int outputTokens = responseNode.path("usage").path("completion_tokens").asInt(0);
-
-        return GenerationOutput.builder()
-                .content(content)
-                .inputTokens(inputTokens)
-                .outputTokens(outputTokens)
+        return reqBuilder.POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
     }
 
@@ -115,7 +244,7 @@ public class OpenAICompatibleStrategy implements GenerationStrategy {
     public boolean supports(String modelType, String modelName) {
         if (!"text".equalsIgnoreCase(modelType)) return false;
         if (modelName == null || modelName.isEmpty()) return false;
-        return findProviderConfig(modelName) != null;
+        return findProvider(modelName) != null;
     }
 
     @Override
@@ -136,12 +265,19 @@ public class OpenAICompatibleStrategy implements GenerationStrategy {
         return 0.0;
     }
 
-    private ProvidersConfig.OpenAiConfig findProviderConfig(String modelName) {
+    @Override
+    public String provider(String modelName) {
+        Map.Entry<String, ProvidersConfig.OpenAiConfig> provider = findProvider(modelName);
+        return provider != null ? provider.getKey() : "openai";
+    }
+
+    private Map.Entry<String, ProvidersConfig.OpenAiConfig> findProvider(String modelName) {
         if (providersConfig.getOpenai() == null) return null;
         
-        for (ProvidersConfig.OpenAiConfig config : providersConfig.getOpenai().values()) {
-            if (config.getModels() != null && config.getModels().contains(modelName)) {
-                return config;
+        for (Map.Entry<String, ProvidersConfig.OpenAiConfig> entry : providersConfig.getOpenai().entrySet()) {
+            ProvidersConfig.OpenAiConfig config = entry.getValue();
+            if (config != null && config.getModels() != null && config.getModels().contains(modelName)) {
+                return entry;
             }
         }
         return null;
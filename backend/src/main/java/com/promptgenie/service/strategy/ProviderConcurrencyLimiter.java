@@ -0,0 +1,184 @@
+package com.promptgenie.service.strategy;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Per-provider bulkhead for asynchronous generation calls.
+ * Each provider gets a fixed number of in-flight requests plus a bounded wait queue; calls beyond
+ * that are rejected immediately so one slow provider cannot absorb every caller.
+ * No thread is held while a call waits for a permit. Cancelling the returned future cancels the
+ * underlying call (aborting the HTTP exchange) or drops it from the queue.
+ * Providers only reachable through a blocking SDK use {@link #submitBlocking}, which runs the call
+ * on a per-provider pool sized to the in-flight limit, so callers still never wait on it.
+ */
+@Slf4j
+@Component
+public class ProviderConcurrencyLimiter {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+    public static final int DEFAULT_MAX_QUEUE = 256;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> blockingPools = new ConcurrentHashMap<>();
+
+    /**
+     * Runs {@code call} once a permit for {@code provider} is available.
+     * The permit is released when the future returned by {@code call} completes.
+     */
+    public <T> CompletableFuture<T> submit(String provider, Integer maxConcurrency, Integer maxQueue, Supplier<CompletableFuture<T>> call) {
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(provider, name -> new Bulkhead(
+                name,
+                maxConcurrency != null && maxConcurrency > 0 ? maxConcurrency : DEFAULT_MAX_CONCURRENCY,
+                maxQueue != null && maxQueue >= 0 ? maxQueue : DEFAULT_MAX_QUEUE));
+        return bulkhead.submit(call);
+    }
+
+    /**
+     * Runs the blocking {@code call} once a permit for {@code provider} is available, on a pool of
+     * {@code maxConcurrency} threads owned by that provider. Cancelling the returned future
+     * interrupts the call.
+     */
+    public <T> CompletableFuture<T> submitBlocking(String provider, Integer maxConcurrency, Integer maxQueue, Callable<T> call) {
+        int threads = maxConcurrency != null && maxConcurrency > 0 ? maxConcurrency : DEFAULT_MAX_CONCURRENCY;
+        // The bulkhead never lets more than its in-flight limit reach the pool, so its queue stays short
+        ExecutorService pool = blockingPools.computeIfAbsent(provider, name -> Executors.newFixedThreadPool(threads, namedThreads(name)));
+        return submit(provider, maxConcurrency, maxQueue, () -> {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Future<?> task = pool.submit(() -> {
+                try {
+                    result.complete(call.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    task.cancel(true);
+                }
+            });
+            return result;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        blockingPools.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Current in-flight and queued counts per provider, for monitoring endpoints.
+     */
+    public Map<String, Map<String, Integer>> snapshot() {
+        Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+        bulkheads.forEach((name, bulkhead) -> result.put(name, bulkhead.stats()));
+        return result;
+    }
+
+    private static ThreadFactory namedThreads(String provider) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "provider-" + provider + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Bulkhead {
+        private final String name;
+        private final int maxInFlight;
+        private final int maxQueue;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        Bulkhead(String name, int maxInFlight, int maxQueue) {
+            this.name = name;
+            this.maxInFlight = maxInFlight;
+            this.maxQueue = maxQueue;
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Runnable start = () -> {
+                if (result.isDone()) {
+                    // Cancelled while queued: hand the permit on without calling the provider
+                    release();
+                    return;
+                }
+                CompletableFuture<T> future;
+                try {
+                    future = call.get();
+                } catch (Throwable t) {
+                    future = CompletableFuture.failedFuture(t);
+                }
+                CompletableFuture<T> inner = future;
+                result.whenComplete((value, error) -> {
+                    if (result.isCancelled()) {
+                        inner.cancel(true);
+                    }
+                });
+                future.whenComplete((value, error) -> {
+                    release();
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            };
+
+            synchronized (this) {
+                if (inFlight >= maxInFlight) {
+                    if (waiting.size() >= maxQueue) {
+                        log.warn("Provider {} saturated: {} in flight, {} queued", name, inFlight, waiting.size());
+                        return CompletableFuture.failedFuture(new RejectedExecutionException(
+                                "Provider " + name + " is saturated, please retry later"));
+                    }
+                    waiting.add(start);
+                    return result;
+                }
+                inFlight++;
+            }
+            start.run();
+            return result;
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                }
+            }
+            // The permit is handed straight to the next waiter
+            if (next != null) {
+                next.run();
+            }
+        }
+
+        synchronized Map<String, Integer> stats() {
+            Map<String, Integer> stats = new LinkedHashMap<>();
+            stats.put("inFlight", inFlight);
+            stats.put("queued", waiting.size());
+            stats.put("maxInFlight", maxInFlight);
+            stats.put("maxQueue", maxQueue);
+            return stats;
+        }
+    }
+}
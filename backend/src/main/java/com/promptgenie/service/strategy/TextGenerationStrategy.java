@@ -13,6 +13,8 @@ import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
@@ -23,6 +25,7 @@ public class TextGenerationStrategy implements GenerationStrategy {
     private String apiKey;
 
     private final GenieConfig genieConfig;
+    private final ProviderConcurrencyLimiter concurrencyLimiter;
 
     @Override
     public GenerationOutput generate(String prompt, String modelName, Map<String, Object> parameters) throws Exception {
@@ -35,6 +38,69 @@ public class TextGenerationStrategy implements GenerationStrategy {
         }
 
         Generation gen = new Generation();
+        GenerationResult result = gen.call(buildParam(prompt, modelName, parameters, false));
+        
+        String content = result.getOutput().getChoices().get(0).getMessage().getContent();
+        int inputTokens = 0;
+        int outputTokens = 0;
+        
+        if (result.getUsage() != null) {
+            inputTokens = result.getUsage().getInputTokens();
+            outputTokens = result.getUsage().getOutputTokens();
+        }
+        
+        return GenerationOutput.builder()
+                .content(content)
+                .inputTokens(inputTokens)
+                .outputTokens(outputTokens)
+                .build();
+    }
+
+    /**
+     * The SDK call blocks, so it runs on DashScope's own bounded pool and the caller is not held.
+     */
+    @Override
+    public CompletableFuture<GenerationOutput> generateAsync(String prompt, String modelName, Map<String, Object> parameters) {
+        GenieConfig.DashScopeConfig dashscope = genieConfig.getDashscope();
+        return concurrencyLimiter.submitBlocking(provider(modelName),
+                dashscope != null ? dashscope.getMaxConcurrency() : null,
+                dashscope != null ? dashscope.getMaxQueue() : null,
+                () -> generate(prompt, modelName, parameters));
+    }
+
+    @Override
+    public GenerationOutput generateStream(String prompt, String modelName, Map<String, Object> parameters, Consumer<String> onChunk) throws Exception {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return GenerationStrategy.super.generateStream(prompt, modelName, parameters, onChunk);
+        }
+
+        Generation gen = new Generation();
+        StringBuilder content = new StringBuilder();
+        int[] usage = new int[2];
+
+        // incrementalOutput=true makes each event carry only the new delta; usage is cumulative
+        gen.streamCall(buildParam(prompt, modelName, parameters, true)).blockingForEach(result -> {
+            if (result.getOutput() != null && result.getOutput().getChoices() != null && !result.getOutput().getChoices().isEmpty()) {
+                String delta = result.getOutput().getChoices().get(0).getMessage().getContent();
+                if (delta != null && !delta.isEmpty()) {
+                    content.append(delta);
+                    onChunk.accept(delta);
+                }
+            }
+            if (result.getUsage() != null) {
+                usage[0] = result.getUsage().getInputTokens();
+                usage[1] = result.getUsage().getOutputTokens();
+            }
+        });
+
+        return GenerationOutput.builder()
+                .content(content.toString())
+                .inputTokens(usage[0])
+                .outputTokens(usage[1])
+                .build();
+    }
+
+    private GenerationParam buildParam(String prompt, String modelName, Map<String, Object> parameters, boolean incremental) {
         Message userMsg = Message.builder().role(Role.USER.getValue()).content(prompt).build();
         
         float topP = 0.8f;
@@ -64,22 +130,11 @@ public class TextGenerationStrategy implements GenerationStrategy {
              paramBuilder.temperature(temperature);
         }
 
-        GenerationResult result = gen.call(paramBuilder.build());
-        
-        String content = result.getOutput().getChoices().get(0).getMessage().getContent();
-        int inputTokens = 0;
-        int outputTokens = 0;
-        
-        if (result.getUsage() != null) {
-            inputTokens = result.getUsage().getInputTokens();
-            outputTokens = result.getUsage().getOutputTokens();
+        if (incremental) {
+            paramBuilder.incrementalOutput(true);
         }
-        
-        return GenerationOutput.builder()
-                .content(content)
-                .inputTokens(inputTokens)
-                .outputTokens(outputTokens)
-                .build();
+
+        return paramBuilder.build();
     }
 
     @Override
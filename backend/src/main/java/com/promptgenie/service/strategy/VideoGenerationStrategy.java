@@ -13,12 +13,22 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class VideoGenerationStrategy implements GenerationStrategy {
+public class VideoGenerationStrategy implements GenerationStrategy, AsyncTaskStrategy {
+
+    private static final String MOCK_TASK_PREFIX = "mock-";
 
     @Value("${dashscope.api-key:}")
     private String apiKey;
@@ -27,14 +37,24 @@ public class VideoGenerationStrategy implements GenerationStrategy {
     private final ObjectMapper objectMapper;
     private final HttpClient httpClient = HttpClient.newHttpClient();
 
+    /**
+     * Submits the task and returns at once; the result is delivered by {@code GenerationTaskService},
+     * which PlaygroundService routes video requests through. Direct callers only get the task id.
+     */
     @Override
     public GenerationOutput generate(String prompt, String modelName, Map<String, Object> parameters) throws Exception {
+        String taskId = submitTask(prompt, modelName, parameters);
+        return GenerationOutput.builder()
+                .content("Video generation started. Task ID: " + taskId)
+                .inputTokens(0)
+                .outputTokens(0)
+                .build();
+    }
+
+    @Override
+    public String submitTask(String prompt, String modelName, Map<String, Object> parameters) throws Exception {
         if (apiKey == null || apiKey.isEmpty()) {
-            return GenerationOutput.builder()
-                    .content("[Mock Video URL]")
-                    .inputTokens(0)
-                    .outputTokens(0)
-                    .build();
+            return MOCK_TASK_PREFIX + UUID.randomUUID();
         }
 
         String model = (modelName != null && !modelName.isEmpty()) ? modelName : "wanx2.1-t2v-turbo";
@@ -100,47 +120,72 @@ public class VideoGenerationStrategy implements GenerationStrategy {
              throw new RuntimeException("Submission failed: No task_id returned. " + submitRes.body());
         }
 
-        String taskId = submitNode.get("output").get("task_id").asText();
-        
-        // 3. Poll Status
-        String videoUrl = pollStatus(taskId);
-        
-        return GenerationOutput.builder()
-                .content(videoUrl)
-                .inputTokens(0)
-                .outputTokens(0)
-                .build();
+        return submitNode.get("output").get("task_id").asText();
     }
 
-    private String pollStatus(String taskId) throws Exception {
-        int maxRetries = 60; // 15 minutes
+    /**
+     * DashScope has no batch status endpoint, so the ids are queried with concurrent non-blocking
+     * requests on the shared client and collected once all have answered or timed out.
+     */
+    @Override
+    public Map<String, TaskStatus> checkTasks(Collection<String> taskIds) {
+        Map<String, TaskStatus> statuses = new ConcurrentHashMap<>();
         String base = genieConfig.getDashscope() != null ? genieConfig.getDashscope().getTaskStatusUrl() : null;
-        if (base == null || base.isBlank()) {
-            throw new RuntimeException("Task status URL not configured");
-        }
-        String statusUrl = base + taskId;
+        Duration timeout = Duration.ofSeconds(genieConfig.getTasks() != null && genieConfig.getTasks().getStatusTimeoutSeconds() != null
+                ? genieConfig.getTasks().getStatusTimeoutSeconds() : 30);
 
-        for (int i = 0; i < maxRetries; i++) {
-            Thread.sleep(15000); // Wait 15 seconds
-            
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        for (String taskId : taskIds) {
+            if (taskId.startsWith(MOCK_TASK_PREFIX)) {
+                statuses.put(taskId, new TaskStatus("SUCCEEDED", "[Mock Video URL]", null));
+                continue;
+            }
+            if (base == null || base.isBlank() || apiKey == null || apiKey.isEmpty()) {
+                statuses.put(taskId, new TaskStatus("FAILED", null, "Task status URL not configured"));
+                continue;
+            }
             HttpRequest pollReq = HttpRequest.newBuilder()
-                    .uri(URI.create(statusUrl))
+                    .uri(URI.create(base + taskId))
                     .header("Authorization", "Bearer " + apiKey)
+                    .timeout(timeout)
                     .GET()
                     .build();
+            requests.add(httpClient.sendAsync(pollReq, HttpResponse.BodyHandlers.ofString())
+                    .thenAccept(res -> {
+                        TaskStatus status = parseStatus(res.body());
+                        if (status != null) statuses.put(taskId, status);
+                    })
+                    .exceptionally(e -> {
+                        log.warn("Video task {} status check failed: {}", taskId, e.getMessage());
+                        return null;
+                    }));
+        }
+        try {
+            CompletableFuture.allOf(requests.toArray(new CompletableFuture[0]))
+                    .get(timeout.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Timed out ones are retried on the next poll
+        }
+        return statuses;
+    }
 
-            HttpResponse<String> pollRes = httpClient.send(pollReq, HttpResponse.BodyHandlers.ofString());
-            JsonNode pollNode = objectMapper.readTree(pollRes.body());
-            
-            String status = pollNode.get("output").get("task_status").asText();
-            
-            if ("SUCCEEDED".equals(status)) {
-                return pollNode.get("output").get("video_url").asText();
-            } else if ("FAILED".equals(status) || "CANCELED".equals(status)) {
-                throw new RuntimeException("Video generation failed: " + (pollNode.get("output").has("message") ? pollNode.get("output").get("message").asText() : "Unknown error"));
+    private TaskStatus parseStatus(String body) {
+        try {
+            JsonNode output = objectMapper.readTree(body).get("output");
+            if (output == null || !output.has("task_status")) {
+                log.warn("Unexpected video task status response: {}", body);
+                return null;
             }
+            String status = output.get("task_status").asText();
+            String videoUrl = output.has("video_url") ? output.get("video_url").asText() : null;
+            String message = output.has("message") ? output.get("message").asText() : null;
+            return new TaskStatus(status, videoUrl, message);
+        } catch (Exception e) {
+            log.warn("Unreadable video task status response: {}", e.getMessage());
+            return null;
         }
-        return "Video generation is taking longer than expected. Task ID: " + taskId;
     }
 
     @Override
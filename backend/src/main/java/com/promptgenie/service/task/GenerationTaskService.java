@@ -0,0 +1,451 @@
+package com.promptgenie.service.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.entity.GenerationTask;
+import com.promptgenie.entity.PlaygroundHistory;
+import com.promptgenie.mapper.GenerationTaskMapper;
+import com.promptgenie.mapper.PlaygroundHistoryMapper;
+import com.promptgenie.service.PlaygroundService;
+import com.promptgenie.service.strategy.AsyncTaskStrategy;
+import com.promptgenie.service.strategy.GenerationStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Provider-side asynchronous generations (video synthesis) as persistent jobs. Submission stores a
+ * RUNNING row and returns at once; a single scheduled poller checks all running rows per strategy in
+ * one batch and delivers completions to in-process waiters, SSE subscribers and the task's webhook.
+ * Because state lives in {@code generation_tasks}, running tasks survive a restart, and the
+ * conditional status update lets only one instance complete a task when several poll.
+ */
+@Slf4j
+@Service
+public class GenerationTaskService {
+
+    @Autowired
+    private GenerationTaskMapper taskMapper;
+
+    @Autowired
+    private PlaygroundHistoryMapper historyMapper;
+
+    @Autowired
+    private List<GenerationStrategy> strategies;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    @Autowired
+    private GenieMetrics metrics;
+
+    private final HttpClient webhookClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private final Map<Long, CompletableFuture<GenerationTask>> waiters = new ConcurrentHashMap<>();
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Submits to the provider and persists the task. A rejected submission is stored as a FAILED task
+     * (and recorded in the history) rather than thrown, so callers always get a task id back.
+     */
+    public GenerationTask submit(AsyncTaskStrategy strategy, String finalPrompt, String promptTemplate, Map<String, Object> variables,
+                                 String modelType, String modelName, Map<String, Object> parameters, Long userId, String webhookUrl) {
+        if (webhookUrl != null && !webhookUrl.isBlank()) {
+            checkWebhookTarget(webhookUrl);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        GenerationTask task = new GenerationTask();
+        task.setUserId(userId);
+        task.setModelType(modelType);
+        task.setModelName(modelName);
+        task.setPrompt(promptTemplate);
+        task.setWebhookUrl(webhookUrl != null && !webhookUrl.isBlank() ? webhookUrl : null);
+        task.setCreatedAt(now);
+        task.setUpdatedAt(now);
+        try {
+            if (variables != null) task.setVariables(objectMapper.writeValueAsString(variables));
+            if (parameters != null) task.setParameters(objectMapper.writeValueAsString(parameters));
+        } catch (Exception e) {
+            log.warn("Failed to serialize task input: {}", e.getMessage());
+        }
+
+        try {
+            task.setProviderTaskId(strategy.submitTask(finalPrompt, modelName, parameters));
+            task.setStatus(GenerationTask.STATUS_RUNNING);
+            taskMapper.insert(task);
+            log.info("Generation task {} submitted, provider task {}", task.getId(), task.getProviderTaskId());
+        } catch (Exception e) {
+            log.error("Generation task submission failed: {}", e.getMessage());
+            task.setStatus(GenerationTask.STATUS_FAILED);
+            task.setErrorMessage(e.getMessage());
+            task.setCompletedAt(now);
+            taskMapper.insert(task);
+            recordHistory(task);
+            deliverWebhook(task);
+        }
+        return task;
+    }
+
+    public GenerationTask getTask(Long taskId) {
+        return taskMapper.selectById(taskId);
+    }
+
+    /**
+     * Completes when the poller finishes the task. Nothing waits on a thread in the meantime.
+     */
+    public CompletableFuture<GenerationTask> await(Long taskId) {
+        CompletableFuture<GenerationTask> future = waiters.computeIfAbsent(taskId, id -> new CompletableFuture<>());
+        // It may have finished before the waiter was registered
+        GenerationTask latest = taskMapper.selectById(taskId);
+        if (latest == null || latest.isFinished()) {
+            waiters.remove(taskId, future);
+            if (latest == null) {
+                future.completeExceptionally(new IllegalArgumentException("Task not found: " + taskId));
+            } else {
+                future.complete(latest);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Event stream for one task: a "status" event now, then a single "complete" event when it finishes.
+     */
+    public SseEmitter subscribe(GenerationTask task) {
+        SseEmitter emitter = new SseEmitter(Duration.ofMinutes(config().getMaxWaitMinutes() + 5L).toMillis());
+        if (task.isFinished()) {
+            sendCompletion(emitter, task);
+            return emitter;
+        }
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(task.getId(), id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        Runnable remove = () -> emitters.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        GenerationTask latest = taskMapper.selectById(task.getId());
+        if (latest != null && latest.isFinished()) {
+            if (emitters.remove(emitter)) {
+                sendCompletion(emitter, latest);
+            }
+            return emitter;
+        }
+        try {
+            emitter.send(SseEmitter.event().name("status").data(task));
+        } catch (Exception e) {
+            emitters.remove(emitter);
+        }
+        return emitter;
+    }
+
+    /**
+     * The one poller for every running task: oldest first, grouped by strategy so each provider gets
+     * one batched status check per interval.
+     */
+    @Scheduled(fixedDelayString = "${genie.tasks.poll-interval-ms:10000}")
+    public void poll() {
+        notifyFinishedElsewhere();
+        GenieConfig.TaskConfig config = config();
+        QueryWrapper<GenerationTask> query = new QueryWrapper<>();
+        query.eq("status", GenerationTask.STATUS_RUNNING).orderByAsc("created_at").last("LIMIT " + config.getPollBatchSize());
+        List<GenerationTask> running;
+        try {
+            running = taskMapper.selectList(query);
+        } catch (Exception e) {
+            log.error("Failed to load running generation tasks: {}", e.getMessage());
+            return;
+        }
+        if (running.isEmpty()) return;
+
+        Map<AsyncTaskStrategy, List<GenerationTask>> byStrategy = new LinkedHashMap<>();
+        for (GenerationTask task : running) {
+            AsyncTaskStrategy strategy = resolveStrategy(task.getModelType(), task.getModelName());
+            if (strategy == null) {
+                complete(task, GenerationTask.STATUS_FAILED, null, "Unsupported model type: " + task.getModelType() + " / model: " + task.getModelName());
+                continue;
+            }
+            byStrategy.computeIfAbsent(strategy, s -> new ArrayList<>()).add(task);
+        }
+
+        LocalDateTime deadline = LocalDateTime.now().minusMinutes(config.getMaxWaitMinutes());
+        for (Map.Entry<AsyncTaskStrategy, List<GenerationTask>> entry : byStrategy.entrySet()) {
+            List<GenerationTask> tasks = entry.getValue();
+            Map<String, AsyncTaskStrategy.TaskStatus> statuses;
+            try {
+                statuses = entry.getKey().checkTasks(tasks.stream().map(GenerationTask::getProviderTaskId).toList());
+            } catch (Exception e) {
+                log.error("Status check of {} generation tasks failed: {}", tasks.size(), e.getMessage());
+                statuses = Map.of();
+            }
+            for (GenerationTask task : tasks) {
+                AsyncTaskStrategy.TaskStatus status = statuses.get(task.getProviderTaskId());
+                if (status != null && status.succeeded()) {
+                    complete(task, GenerationTask.STATUS_SUCCEEDED, status.resultUrl(), null);
+                } else if (status != null && status.failed()) {
+                    complete(task, GenerationTask.STATUS_FAILED, null, status.message() != null ? status.message() : "Unknown error");
+                } else if (task.getCreatedAt() != null && task.getCreatedAt().isBefore(deadline)) {
+                    complete(task, GenerationTask.STATUS_TIMEOUT, null, "No result after " + config.getMaxWaitMinutes() + " minutes");
+                }
+            }
+        }
+    }
+
+    /**
+     * Tasks another instance completed leave the RUNNING query before this one sees them finish, so
+     * anything waiting here is re-checked against its row.
+     */
+    private void notifyFinishedElsewhere() {
+        Set<Long> watched = new HashSet<>(waiters.keySet());
+        watched.addAll(subscribers.keySet());
+        if (watched.isEmpty()) return;
+        List<GenerationTask> tasks;
+        try {
+            tasks = taskMapper.selectBatchIds(watched);
+        } catch (Exception e) {
+            log.error("Failed to reload awaited generation tasks: {}", e.getMessage());
+            return;
+        }
+        for (GenerationTask task : tasks) {
+            if (task.isFinished()) {
+                notifyLocal(task);
+            }
+        }
+    }
+
+    /**
+     * What the playground reports for a finished task: the result URL, or the error text.
+     */
+    public String resultText(GenerationTask task) {
+        if (GenerationTask.STATUS_SUCCEEDED.equals(task.getStatus())) {
+            return task.getResultUrl();
+        }
+        if (GenerationTask.STATUS_TIMEOUT.equals(task.getStatus())) {
+            return "Generation is taking longer than expected. Task ID: " + task.getId();
+        }
+        return PlaygroundService.ERROR_PREFIX + "Generation failed: " + task.getErrorMessage();
+    }
+
+    private void complete(GenerationTask task, String status, String resultUrl, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        UpdateWrapper<GenerationTask> update = new UpdateWrapper<>();
+        update.eq("id", task.getId())
+                .eq("status", GenerationTask.STATUS_RUNNING)
+                .set("status", status)
+                .set("result_url", resultUrl)
+                .set("error_message", errorMessage)
+                .set("updated_at", now)
+                .set("completed_at", now);
+        try {
+            if (taskMapper.update(null, update) == 0) {
+                // Completed by another instance's poller, which owns history and webhook; local
+                // waiters and subscribers still have to hear about it
+                GenerationTask latest = taskMapper.selectById(task.getId());
+                if (latest != null && latest.isFinished()) {
+                    notifyLocal(latest);
+                }
+                return;
+            }
+        } catch (Exception e) {
+            log.error("Failed to complete generation task {}: {}", task.getId(), e.getMessage());
+            return;
+        }
+        task.setStatus(status);
+        task.setResultUrl(resultUrl);
+        task.setErrorMessage(errorMessage);
+        task.setUpdatedAt(now);
+        task.setCompletedAt(now);
+        log.info("Generation task {} finished: {}", task.getId(), status);
+
+        recordMetrics(task);
+        recordHistory(task);
+        notifyLocal(task);
+        deliverWebhook(task);
+    }
+
+    private void notifyLocal(GenerationTask task) {
+        CompletableFuture<GenerationTask> waiter = waiters.remove(task.getId());
+        if (waiter != null) {
+            waiter.complete(task);
+        }
+        List<SseEmitter> emitters = subscribers.remove(task.getId());
+        if (emitters != null) {
+            for (SseEmitter emitter : emitters) {
+                sendCompletion(emitter, task);
+            }
+        }
+    }
+
+    /**
+     * Task latency runs from submission to the poll that saw the result, so it includes up to one
+     * poll interval of detection delay.
+     */
+    private void recordMetrics(GenerationTask task) {
+        try {
+            AsyncTaskStrategy strategy = resolveStrategy(task.getModelType(), task.getModelName());
+            String provider = strategy instanceof GenerationStrategy generationStrategy
+                    ? generationStrategy.provider(task.getModelName()) : GenieMetrics.UNKNOWN;
+            String status = GenerationTask.STATUS_SUCCEEDED.equals(task.getStatus()) ? GenieMetrics.SUCCESS
+                    : GenerationTask.STATUS_TIMEOUT.equals(task.getStatus()) ? GenieMetrics.TIMEOUT : GenieMetrics.ERROR;
+            long nanos = task.getCreatedAt() != null ? Duration.between(task.getCreatedAt(), task.getCompletedAt()).toNanos() : 0;
+            metrics.recordGeneration(provider, strategy != null ? task.getModelName() : GenieMetrics.UNKNOWN, status, nanos);
+        } catch (Exception e) {
+            log.warn("Failed to record metrics for generation task {}: {}", task.getId(), e.getMessage());
+        }
+    }
+
+    private void recordHistory(GenerationTask task) {
+        if (task.getUserId() == null) return;
+        try {
+            double cost = 0.0;
+            if (GenerationTask.STATUS_SUCCEEDED.equals(task.getStatus())) {
+                AsyncTaskStrategy strategy = resolveStrategy(task.getModelType(), task.getModelName());
+                if (strategy instanceof GenerationStrategy generationStrategy) {
+                    cost = generationStrategy.calculateCost(task.getModelName(), 0, 0, parameters(task));
+                }
+            }
+            PlaygroundHistory history = new PlaygroundHistory();
+            history.setUserId(task.getUserId());
+            history.setPrompt(task.getPrompt());
+            history.setModelType(task.getModelType());
+            history.setModelName(task.getModelName());
+            history.setResult(resultText(task));
+            history.setCreatedAt(LocalDateTime.now());
+            history.setInputTokens(0);
+            history.setOutputTokens(0);
+            history.setCost(cost);
+            history.setVariables(task.getVariables());
+            history.setParameters(task.getParameters());
+            historyMapper.insert(history);
+        } catch (Exception e) {
+            log.error("Failed to save history for generation task {}: {}", task.getId(), e.getMessage());
+        }
+    }
+
+    private void sendCompletion(SseEmitter emitter, GenerationTask task) {
+        try {
+            emitter.send(SseEmitter.event().name("complete").data(task));
+            emitter.complete();
+        } catch (Exception e) {
+            // Subscriber went away
+        }
+    }
+
+    private void deliverWebhook(GenerationTask task) {
+        if (task.getWebhookUrl() == null) return;
+        try {
+            // Checked again at delivery: the host may resolve differently than at submission
+            checkWebhookTarget(task.getWebhookUrl());
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("taskId", String.valueOf(task.getId()));
+            payload.put("status", task.getStatus());
+            payload.put("resultUrl", task.getResultUrl());
+            payload.put("error", task.getErrorMessage());
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(task.getWebhookUrl()))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
+                    .build();
+            webhookClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((res, e) -> {
+                        if (e != null) {
+                            log.warn("Webhook for generation task {} failed: {}", task.getId(), e.getMessage());
+                        } else if (res.statusCode() >= 300) {
+                            log.warn("Webhook for generation task {} returned {}", task.getId(), res.statusCode());
+                        }
+                    });
+        } catch (Exception e) {
+            log.warn("Webhook for generation task {} failed: {}", task.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Webhooks go to public http(s) hosts only, so a task cannot make this server call loopback,
+     * link-local (cloud metadata) or private-network addresses on the submitter's behalf.
+     */
+    static void checkWebhookTarget(String webhookUrl) {
+        URI uri;
+        try {
+            uri = URI.create(webhookUrl);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid webhook URL: " + webhookUrl);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Webhook URL must be http(s): " + webhookUrl);
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Webhook URL has no host: " + webhookUrl);
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Webhook host does not resolve: " + uri.getHost());
+        }
+        for (InetAddress address : addresses) {
+            if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                    || address.isAnyLocalAddress() || address.isMulticastAddress() || isUniqueLocal(address)) {
+                throw new IllegalArgumentException("Webhook host must be a public address: " + uri.getHost());
+            }
+        }
+    }
+
+    /** IPv6 unique local (fc00::/7), which isSiteLocalAddress does not cover. */
+    private static boolean isUniqueLocal(InetAddress address) {
+        return address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc;
+    }
+
+    private Map<String, Object> parameters(GenerationTask task) {
+        if (task.getParameters() == null) return null;
+        try {
+            return objectMapper.readValue(task.getParameters(), new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The strategy that handles this model if it works through provider tasks, else null.
+     */
+    public AsyncTaskStrategy resolveStrategy(String modelType, String modelName) {
+        GenerationStrategy strategy = strategies.stream()
+                .filter(s -> s.supports(modelType, modelName))
+                .findFirst()
+                .orElse(null);
+        return strategy instanceof AsyncTaskStrategy asyncStrategy ? asyncStrategy : null;
+    }
+
+    private GenieConfig.TaskConfig config() {
+        return genieConfig.getTasks() != null ? genieConfig.getTasks() : new GenieConfig.TaskConfig();
+    }
+}
@@ -0,0 +1,107 @@
+package com.promptgenie.service.template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A prompt template parsed once into literal and {@code {{variable}}} segments.
+ * Rendering is a single pass over the segments; values are inserted verbatim (no regex, so
+ * {@code $} and {@code \} need no escaping). Placeholders whose variable is missing or null are
+ * kept as written. Instances are immutable and safe to share between threads.
+ */
+public final class PromptTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final String source;
+    // Even positions are literals, odd positions are variable names
+    private final String[] segments;
+    private final String[] placeholders;
+    private final int literalLength;
+    private final Set<String> variableNames;
+
+    private PromptTemplate(String source, List<String> segments, List<String> placeholders) {
+        this.source = source;
+        this.segments = segments.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        int length = 0;
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < this.segments.length; i++) {
+            if (i % 2 == 0) {
+                length += this.segments[i].length();
+            } else {
+                names.add(this.segments[i]);
+            }
+        }
+        this.literalLength = length;
+        this.variableNames = Collections.unmodifiableSet(names);
+    }
+
+    public static PromptTemplate compile(String source) {
+        String text = source != null ? source : "";
+        List<String> segments = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < text.length()) {
+            int open = text.indexOf(OPEN, pos);
+            if (open < 0) break;
+            int close = text.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) break;
+            // "{{a {{b}}" binds to the innermost opening braces
+            int innerOpen = text.lastIndexOf(OPEN, close - 1);
+            if (innerOpen > open) {
+                literal.append(text, pos, innerOpen);
+                pos = innerOpen;
+                continue;
+            }
+            String name = text.substring(open + OPEN.length(), close).trim();
+            literal.append(text, pos, open);
+            if (name.isEmpty()) {
+                literal.append(text, open, close + CLOSE.length());
+            } else {
+                segments.add(literal.toString());
+                segments.add(name);
+                placeholders.add(text.substring(open, close + CLOSE.length()));
+                literal.setLength(0);
+            }
+            pos = close + CLOSE.length();
+        }
+        literal.append(text, pos, text.length());
+        segments.add(literal.toString());
+        return new PromptTemplate(text, segments, placeholders);
+    }
+
+    public String render(Map<String, ?> variables) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        StringBuilder out = new StringBuilder(literalLength + 16 * placeholders.length);
+        for (int i = 0; i < segments.length; i++) {
+            if (i % 2 == 0) {
+                out.append(segments[i]);
+                continue;
+            }
+            Object value = variables != null ? variables.get(segments[i]) : null;
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append(placeholders[i / 2]);
+            }
+        }
+        return out.toString();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Set<String> getVariableNames() {
+        return variableNames;
+    }
+}
@@ -0,0 +1,60 @@
+package com.promptgenie.service.template;
+
+import com.promptgenie.prompt.entity.Prompt;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compiled templates of saved prompts, cached so hot paths (batch rows, evaluation rows, chain steps)
+ * parse each template once. Entries are keyed by id and version stamp ({@code updatedAt}), so an edit
+ * simply misses and recompiles. Ad-hoc text (playground input, prompts assembled from upstream
+ * outputs, judge prompts) rarely repeats and is compiled with {@link PromptTemplate#compile} instead.
+ */
+@Component
+public class PromptTemplateCache {
+
+    private static final int MAX_PROMPTS = 2048;
+
+    private final Map<Long, VersionedTemplate> byPrompt = lru(MAX_PROMPTS);
+
+    public PromptTemplate forPrompt(Prompt prompt) {
+        if (prompt.getId() == null) {
+            return PromptTemplate.compile(prompt.getContent());
+        }
+        Object version = prompt.getUpdatedAt();
+        synchronized (byPrompt) {
+            VersionedTemplate cached = byPrompt.get(prompt.getId());
+            // The content check covers callers that changed the entity without bumping updatedAt
+            if (cached != null && Objects.equals(cached.version(), version)
+                    && cached.template().getSource().equals(Objects.toString(prompt.getContent(), ""))) {
+                return cached.template();
+            }
+        }
+        PromptTemplate template = PromptTemplate.compile(prompt.getContent());
+        synchronized (byPrompt) {
+            byPrompt.put(prompt.getId(), new VersionedTemplate(version, template));
+        }
+        return template;
+    }
+
+    public void evict(Long promptId) {
+        synchronized (byPrompt) {
+            byPrompt.remove(promptId);
+        }
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private record VersionedTemplate(Object version, PromptTemplate template) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.promptgenie.service.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Byte-level BPE token counter compatible with tiktoken rank files (one {@code base64-token rank}
+ * pair per line, e.g. {@code cl100k_base.tiktoken}). Text is split with the cl100k pre-tokenizer
+ * pattern, then each piece is merged pairwise by lowest rank until no known pair remains.
+ */
+public final class BpeTokenizer {
+
+    static final Pattern PRE_TOKENIZER = Pattern.compile(
+            "'(?i:[sdmt]|ll|ve|re)|[^\\r\\n\\p{L}\\p{N}]?+\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]++[\\r\\n]*|\\s*[\\r\\n]|\\s+(?!\\S)|\\s+");
+
+    private final Map<ByteKey, Integer> ranks;
+
+    public BpeTokenizer(Map<ByteKey, Integer> ranks) {
+        this.ranks = ranks;
+    }
+
+    public static BpeTokenizer load(InputStream rankFile) throws IOException {
+        Map<ByteKey, Integer> ranks = new HashMap<>(1 << 17);
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(rankFile, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) continue;
+                ranks.put(new ByteKey(decoder.decode(line.substring(0, space))), Integer.parseInt(line.substring(space + 1).trim()));
+            }
+        }
+        if (ranks.isEmpty()) {
+            throw new IOException("BPE rank file is empty");
+        }
+        return new BpeTokenizer(ranks);
+    }
+
+    public int vocabularySize() {
+        return ranks.size();
+    }
+
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int tokens = 0;
+        Matcher matcher = PRE_TOKENIZER.matcher(text);
+        while (matcher.find()) {
+            tokens += countPiece(matcher.group().getBytes(StandardCharsets.UTF_8));
+        }
+        return tokens;
+    }
+
+    /**
+     * Merges in the same order as tiktoken (lowest rank first, leftmost on ties), but keeps the
+     * candidate pairs in a priority queue over a linked list of parts, so a long piece such as a
+     * run of CJK text costs O(n log n) instead of a full rescan per merge. Parts are named by their
+     * start offset; a queued pair is stale once the version of its left part has moved on.
+     */
+    int countPiece(byte[] piece) {
+        int n = piece.length;
+        if (n <= 1 || ranks.containsKey(new ByteKey(piece))) {
+            return n == 0 ? 0 : 1;
+        }
+        int[] next = new int[n];
+        int[] prev = new int[n];
+        int[] version = new int[n];
+        for (int i = 0; i < n; i++) {
+            next[i] = i + 1;
+            prev[i] = i - 1;
+        }
+        // Entries are {rank, left part, version of the left part when queued}
+        PriorityQueue<int[]> pairs = new PriorityQueue<>(n, (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+        for (int i = 0; i + 1 < n; i++) {
+            queuePair(piece, next, version, pairs, i);
+        }
+        int parts = n;
+        while (!pairs.isEmpty()) {
+            int[] pair = pairs.poll();
+            int left = pair[1];
+            if (pair[2] != version[left]) continue;
+            // Merge the right neighbour into the left part
+            int right = next[left];
+            next[left] = next[right];
+            if (next[left] < n) {
+                prev[next[left]] = left;
+            }
+            parts--;
+            version[right]++;
+            version[left]++;
+            queuePair(piece, next, version, pairs, left);
+            if (prev[left] >= 0) {
+                version[prev[left]]++;
+                queuePair(piece, next, version, pairs, prev[left]);
+            }
+        }
+        return parts;
+    }
+
+    private void queuePair(byte[] piece, int[] next, int[] version, PriorityQueue<int[]> pairs, int left) {
+        int right = next[left];
+        if (right >= piece.length) return;
+        Integer rank = ranks.get(new ByteKey(Arrays.copyOfRange(piece, left, next[right])));
+        if (rank != null) {
+            pairs.add(new int[]{rank, left, version[left]});
+        }
+    }
+
+    /** Byte sequence usable as a hash key. */
+    public static final class ByteKey {
+        private final byte[] bytes;
+        private final int hash;
+
+        public ByteKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ByteKey other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.promptgenie.service.tokenizer;
+
+import com.promptgenie.core.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Local token counting and per-model context windows, used to budget prompts before they are sent.
+ * With {@code genie.tokenizer.vocab-path} pointing at a tiktoken rank file (file path or
+ * {@code classpath:}) counts are exact BPE counts; otherwise they are estimated per pre-token
+ * (one token per CJK character, roughly four UTF-8 bytes per token elsewhere).
+ */
+@Slf4j
+@Service
+public class TokenizerService {
+
+    private static final int MAX_CACHED_COUNTS = 10000;
+    // Only memoize texts long enough for counting to matter, e.g. knowledge chunks
+    private static final int MIN_CACHED_LENGTH = 256;
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private volatile BpeTokenizer bpe;
+
+    private final Map<String, Integer> countCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_CACHED_COUNTS;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        String vocabPath = config().getVocabPath();
+        if (vocabPath == null || vocabPath.isBlank()) {
+            log.info("No BPE vocabulary configured, token counts are estimated");
+            return;
+        }
+        Resource resource = new DefaultResourceLoader().getResource(vocabPath.contains(":") ? vocabPath : "file:" + vocabPath);
+        try (InputStream in = resource.getInputStream()) {
+            bpe = BpeTokenizer.load(in);
+            log.info("Loaded BPE vocabulary with {} tokens from {}", bpe.vocabularySize(), vocabPath);
+        } catch (Exception e) {
+            log.warn("Failed to load BPE vocabulary from {}, token counts are estimated: {}", vocabPath, e.getMessage());
+        }
+    }
+
+    public boolean isExact() {
+        return bpe != null;
+    }
+
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        if (text.length() < MIN_CACHED_LENGTH) {
+            return count(text);
+        }
+        synchronized (countCache) {
+            Integer cached = countCache.get(text);
+            if (cached != null) return cached;
+        }
+        int tokens = count(text);
+        synchronized (countCache) {
+            countCache.put(text, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * Context window of {@code model}: exact entry in {@code genie.tokenizer.context-windows}, else
+     * the longest configured prefix (so dated snapshots like "gpt-4o-2024-08-06" resolve), else the default.
+     */
+    public int contextWindow(String model) {
+        GenieConfig.TokenizerConfig config = config();
+        Map<String, Integer> windows = config.getContextWindows();
+        if (model != null && windows != null) {
+            Integer exact = windows.get(model);
+            if (exact != null) return exact;
+            String bestPrefix = null;
+            for (String name : windows.keySet()) {
+                if (model.startsWith(name) && (bestPrefix == null || name.length() > bestPrefix.length())) {
+                    bestPrefix = name;
+                }
+            }
+            if (bestPrefix != null) return windows.get(bestPrefix);
+        }
+        return config.getDefaultContextWindow() != null ? config.getDefaultContextWindow() : 8192;
+    }
+
+    /**
+     * Output tokens to keep free: the request's {@code max_tokens} if set, else the configured reserve.
+     */
+    public int reservedOutputTokens(Map<String, Object> parameters) {
+        if (parameters != null && parameters.get("max_tokens") != null) {
+            try {
+                return Integer.parseInt(String.valueOf(parameters.get("max_tokens")).trim());
+            } catch (NumberFormatException e) {
+                // fall through to the default reserve
+            }
+        }
+        Integer reserved = config().getReservedOutputTokens();
+        return reserved != null ? reserved : 1024;
+    }
+
+    private int count(String text) {
+        BpeTokenizer tokenizer = bpe;
+        if (tokenizer != null) {
+            return tokenizer.count(text);
+        }
+        int tokens = 0;
+        Matcher matcher = BpeTokenizer.PRE_TOKENIZER.matcher(text);
+        while (matcher.find()) {
+            tokens += estimatePiece(matcher.group());
+        }
+        return tokens;
+    }
+
+    private static int estimatePiece(String piece) {
+        int cjk = 0;
+        for (int i = 0; i < piece.length(); ) {
+            int cp = piece.codePointAt(i);
+            if (Character.isIdeographic(cp) || Character.UnicodeScript.of(cp) == Character.UnicodeScript.HANGUL
+                    || Character.UnicodeScript.of(cp) == Character.UnicodeScript.HIRAGANA
+                    || Character.UnicodeScript.of(cp) == Character.UnicodeScript.KATAKANA) {
+                cjk++;
+            }
+            i += Character.charCount(cp);
+        }
+        if (cjk > 0) {
+            return cjk + (piece.length() - cjk + 3) / 4;
+        }
+        return Math.max(1, (piece.getBytes(StandardCharsets.UTF_8).length + 3) / 4);
+    }
+
+    private GenieConfig.TokenizerConfig config() {
+        return genieConfig.getTokenizer() != null ? genieConfig.getTokenizer() : new GenieConfig.TokenizerConfig();
+    }
+}
@@ -0,0 +1,234 @@
+package com.promptgenie.service.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.promptgenie.service.LLMTracingService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Appends finished traces to a local file, one OTLP/JSON {@code ExportTraceServiceRequest} per line
+ * (the layout of the OpenTelemetry Collector's file exporter, so the collector's otlpjsonfile
+ * receiver can ship it on). Writing happens on one background thread behind a bounded queue; when
+ * the queue is full traces are dropped and counted rather than slowing down the request path.
+ */
+@Slf4j
+public class OtlpJsonTraceExporter implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]+");
+    private static final String SCOPE_NAME = "com.promptgenie.tracing";
+    // OTLP Span.SpanKind and Status.StatusCode values
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final Path file;
+    private final String serviceName;
+    private final long maxFileBytes;
+    private final BlockingQueue<LLMTracingService.Trace> queue;
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private BufferedWriter writer;
+    private long fileBytes;
+
+    public OtlpJsonTraceExporter(Path file, String serviceName, int queueCapacity, long maxFileBytes) {
+        this.file = file;
+        this.serviceName = serviceName;
+        this.maxFileBytes = maxFileBytes;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writerThread = new Thread(this::run, "trace-exporter");
+        this.writerThread.setDaemon(true);
+    }
+
+    public void start() {
+        writerThread.start();
+    }
+
+    /** Queues a finished trace; returns false (and counts it) when the exporter is behind. */
+    public boolean offer(LLMTracingService.Trace trace) {
+        if (closed || !queue.offer(trace)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public long getExported() {
+        return exported.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** Writes what is already queued, then stops the writer thread. */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<LLMTracingService.Trace> batch = new ArrayList<>();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                LLMTracingService.Trace first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeWriter();
+        }
+    }
+
+    private void write(List<LLMTracingService.Trace> batch) {
+        try {
+            for (LLMTracingService.Trace trace : batch) {
+                String line = MAPPER.writeValueAsString(toOtlp(trace, serviceName)) + "\n";
+                long bytes = line.getBytes(StandardCharsets.UTF_8).length;
+                if (writer == null) {
+                    open();
+                } else if (fileBytes + bytes > maxFileBytes) {
+                    rotate();
+                }
+                writer.write(line);
+                fileBytes += bytes;
+                exported.incrementAndGet();
+            }
+            writer.flush();
+        } catch (Exception e) {
+            // The file is reopened for the next batch; this one is lost
+            log.warn("Failed to export {} traces to {}: {}", batch.size(), file, e.getMessage());
+            dropped.addAndGet(batch.size());
+            closeWriter();
+        }
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        closeWriter();
+        Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close trace export file {}: {}", file, e.getMessage());
+        }
+        writer = null;
+    }
+
+    /** One trace as an OTLP/JSON {@code ExportTraceServiceRequest}. */
+    static ObjectNode toOtlp(LLMTracingService.Trace trace, String serviceName) {
+        ObjectNode request = MAPPER.createObjectNode();
+        ObjectNode resourceSpans = request.putArray("resourceSpans").addObject();
+        ArrayNode resourceAttributes = resourceSpans.putObject("resource").putArray("attributes");
+        addAttribute(resourceAttributes, "service.name", serviceName);
+        ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", SCOPE_NAME);
+        ArrayNode spans = scopeSpans.putArray("spans");
+
+        String traceId = hexId(trace.getTraceId(), 32);
+        for (LLMTracingService.TraceSpan span : trace.getSpans()) {
+            ObjectNode node = spans.addObject();
+            node.put("traceId", traceId);
+            node.put("spanId", hexId(span.getSpanId(), 16));
+            if (span.getParentSpanId() != null) {
+                node.put("parentSpanId", hexId(span.getParentSpanId(), 16));
+            }
+            node.put("name", span.getOperationName());
+            node.put("kind", SPAN_KIND_INTERNAL);
+            // int64 fields are strings in OTLP/JSON
+            node.put("startTimeUnixNano", String.valueOf(TimeUnit.MILLISECONDS.toNanos(span.getStartTime())));
+            long end = span.getEndTime() != null ? span.getEndTime() : span.getStartTime();
+            node.put("endTimeUnixNano", String.valueOf(TimeUnit.MILLISECONDS.toNanos(end)));
+            ArrayNode attributes = node.putArray("attributes");
+            span.getTags().forEach((key, value) -> addAttribute(attributes, key, value));
+            ArrayNode events = node.putArray("events");
+            for (LLMTracingService.TraceEvent event : span.getEvents()) {
+                ObjectNode eventNode = events.addObject();
+                eventNode.put("timeUnixNano", String.valueOf(TimeUnit.MILLISECONDS.toNanos(event.getTimestamp())));
+                eventNode.put("name", event.getName());
+                ArrayNode eventAttributes = eventNode.putArray("attributes");
+                if (event.getAttributes() != null) {
+                    event.getAttributes().forEach((key, value) -> addAttribute(eventAttributes, key, value));
+                }
+            }
+            ObjectNode status = node.putObject("status");
+            if (Boolean.TRUE.equals(span.getTags().get("error"))) {
+                status.put("code", STATUS_CODE_ERROR);
+            }
+        }
+        return request;
+    }
+
+    private static void addAttribute(ArrayNode attributes, String key, Object value) {
+        if (value == null) return;
+        ObjectNode attribute = attributes.addObject();
+        attribute.put("key", key);
+        ObjectNode anyValue = attribute.putObject("value");
+        if (value instanceof Boolean b) {
+            anyValue.put("boolValue", b);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            anyValue.put("intValue", String.valueOf(value));
+        } else if (value instanceof Number number) {
+            anyValue.put("doubleValue", number.doubleValue());
+        } else if (value instanceof Map<?, ?> || value instanceof Iterable<?>) {
+            anyValue.put("stringValue", MAPPER.valueToTree(value).toString());
+        } else {
+            anyValue.put("stringValue", String.valueOf(value));
+        }
+    }
+
+    /**
+     * OTLP ids are fixed-length hex. Ids generated by {@link LLMTracingService} already are; any other
+     * id is mapped to a stable hex digest so parent links survive the conversion.
+     */
+    static String hexId(String id, int length) {
+        if (id != null && id.length() == length && HEX.matcher(id).matches()) {
+            return id.toLowerCase(Locale.ROOT);
+        }
+        String digest = UUID.nameUUIDFromBytes(String.valueOf(id).getBytes(StandardCharsets.UTF_8)).toString().replace("-", "");
+        return digest.substring(0, length);
+    }
+}
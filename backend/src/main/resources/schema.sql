@@ -70,6 +70,9 @@ CREATE INDEX IF NOT EXISTS idx_prompts_category ON prompts(category);
 CREATE INDEX IF NOT EXISTS idx_prompts_scene ON prompts(scene);
 CREATE INDEX IF NOT EXISTS idx_prompts_asset_type ON prompts(asset_type);
 CREATE INDEX IF NOT EXISTS idx_prompts_featured ON prompts(is_featured, featured_rank);
+-- Keyset pagination of the public catalog ("new" and "featured" sort orders)
+CREATE INDEX IF NOT EXISTS idx_prompts_catalog_new ON prompts((COALESCE(published_at, created_at)) DESC, id DESC) WHERE is_public = true AND status = 'PUBLISHED';
+CREATE INDEX IF NOT EXISTS idx_prompts_catalog_featured ON prompts((CASE WHEN is_featured THEN 1 ELSE 0 END) DESC, (-COALESCE(featured_rank, 2147483647)) DESC, (COALESCE(published_at, created_at)) DESC, id DESC) WHERE is_public = true AND status = 'PUBLISHED';
 
 -- Prompt Versions Table
 CREATE TABLE IF NOT EXISTS prompt_versions (
@@ -163,6 +166,28 @@ CREATE TABLE IF NOT EXISTS playground_history (
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- Generation Tasks Table (provider-side async jobs, e.g. video synthesis)
+CREATE TABLE IF NOT EXISTS generation_tasks (
+    id BIGINT PRIMARY KEY,
+    user_id BIGINT,
+    provider_task_id VARCHAR(128),
+    model_type VARCHAR(20) NOT NULL,
+    model_name VARCHAR(50),
+    prompt TEXT,
+    variables JSON,
+    parameters JSON,
+    status VARCHAR(20) NOT NULL,
+    result_url TEXT,
+    error_message TEXT,
+    webhook_url TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_generation_tasks_status ON generation_tasks(status, created_at);
+CREATE INDEX IF NOT EXISTS idx_generation_tasks_user_id ON generation_tasks(user_id);
+
 -- Knowledge Bases Table
 CREATE TABLE IF NOT EXISTS knowledge_bases (
     id BIGINT PRIMARY KEY,
@@ -187,6 +212,27 @@ CREATE TABLE IF NOT EXISTS documents (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (kb_id) REFERENCES knowledge_bases(id) ON DELETE CASCADE
 );
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS ingest_status VARCHAR(20);
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS chunk_count INT;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS error_message TEXT;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_documents_kb_id ON documents(kb_id);
+CREATE INDEX IF NOT EXISTS idx_documents_ingest_status ON documents(ingest_status) WHERE ingest_status IN ('PENDING', 'PROCESSING');
+
+-- Document Chunks Table (one row per retrieval chunk, with offsets into the extracted text)
+CREATE TABLE IF NOT EXISTS document_chunks (
+    id BIGINT PRIMARY KEY,
+    document_id BIGINT NOT NULL,
+    kb_id BIGINT NOT NULL,
+    chunk_index INT NOT NULL,
+    content TEXT NOT NULL,
+    start_offset INT NOT NULL,
+    end_offset INT NOT NULL,
+    token_count INT,
+    FOREIGN KEY (document_id) REFERENCES documents(id) ON DELETE CASCADE
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_document_chunks_document ON document_chunks(document_id, chunk_index);
+CREATE INDEX IF NOT EXISTS idx_document_chunks_kb ON document_chunks(kb_id, document_id, chunk_index);
 
 -- Comments Table
 CREATE TABLE IF NOT EXISTS comments (
@@ -239,6 +285,11 @@ CREATE TABLE IF NOT EXISTS evaluation_jobs (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 CREATE INDEX IF NOT EXISTS idx_eval_user_id ON evaluation_jobs(user_id);
+ALTER TABLE evaluation_jobs ADD COLUMN IF NOT EXISTS total_rows INT;
+ALTER TABLE evaluation_jobs ADD COLUMN IF NOT EXISTS processed_rows INT DEFAULT 0;
+ALTER TABLE evaluation_jobs ADD COLUMN IF NOT EXISTS failed_rows INT DEFAULT 0;
+ALTER TABLE evaluation_jobs ADD COLUMN IF NOT EXISTS latency_p50_ms BIGINT;
+ALTER TABLE evaluation_jobs ADD COLUMN IF NOT EXISTS latency_p95_ms BIGINT;
 
 -- Evaluation Results Table
 CREATE TABLE IF NOT EXISTS evaluation_results (
@@ -539,3 +590,25 @@ CREATE TABLE IF NOT EXISTS agent_configs (
 );
 CREATE INDEX IF NOT EXISTS idx_agent_configs_agent_id ON agent_configs(agent_id);
 CREATE INDEX IF NOT EXISTS idx_agent_configs_version ON agent_configs(agent_id, version);
+
+-- Counter WAL segments already applied to prompts (makes replay after a crash idempotent)
+CREATE TABLE IF NOT EXISTS counter_flushes (
+    segment_id VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_counter_flushes_applied_at ON counter_flushes(applied_at);
+
+-- Agent run snapshots, rewritten after every node so paused and interrupted runs can be resumed
+CREATE TABLE IF NOT EXISTS agent_runs (
+    id VARCHAR(36) PRIMARY KEY,
+    agent_id BIGINT NOT NULL,
+    user_id BIGINT,
+    status VARCHAR(20) NOT NULL,
+    current_node_id VARCHAR(255),
+    snapshot TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (agent_id) REFERENCES agents(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_agent_runs_expires_at ON agent_runs(expires_at);
@@ -0,0 +1,111 @@
+package com.promptgenie.core.security;
+
+import com.promptgenie.auth.entity.User;
+import com.promptgenie.auth.service.UserService;
+import com.promptgenie.core.config.GenieConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JwtAuthenticationFilterTest {
+
+    @Spy
+    private JwtUtil jwtUtil = new JwtUtil();
+
+    @Mock
+    private UserService userService;
+
+    @Spy
+    private AuthenticatedPrincipalCache principalCache = new AuthenticatedPrincipalCache();
+
+    @InjectMocks
+    private JwtAuthenticationFilter filter;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtUtil, "secret", "cGFyYW1ldHJhZ2luZ3Jlc3BvbnNlX2FwcGxpY2F0aW9uX3NlY3JldA==");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(principalCache, "genieConfig", new GenieConfig());
+        principalCache.init();
+
+        user = new User();
+        user.setId(42L);
+        user.setEmail("ada@example.com");
+        user.setPasswordHash("hash");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void verifiedTokenIsReusedAcrossRequests() throws Exception {
+        when(userService.findByEmail("ada@example.com")).thenReturn(user);
+        String token = jwtUtil.generateToken(new org.springframework.security.core.userdetails.User("ada@example.com", "hash", new ArrayList<>()));
+
+        User first = authenticate(token);
+        User second = authenticate(token);
+
+        assertEquals(42L, first.getId());
+        assertEquals(42L, second.getId());
+        // Each request gets its own copy of the cached user
+        assertNotSame(first, second);
+        verify(userService, times(1)).findByEmail("ada@example.com");
+        verify(jwtUtil, times(1)).parseVerified(token);
+    }
+
+    @Test
+    void evictedUserIsReloaded() throws Exception {
+        when(userService.findByEmail("ada@example.com")).thenReturn(user);
+        String token = jwtUtil.generateToken(new org.springframework.security.core.userdetails.User("ada@example.com", "hash", new ArrayList<>()));
+
+        authenticate(token);
+        principalCache.evictUser(42L);
+        authenticate(token);
+
+        verify(userService, times(2)).findByEmail("ada@example.com");
+    }
+
+    @Test
+    void forgedTokenIsIgnored() throws Exception {
+        assertNull(authenticate("not.a.jwt"));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userService);
+    }
+
+    private User authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            assertEquals("ada@example.com", principal.getUsername());
+        }
+        return CurrentUser.get();
+    }
+}
@@ -0,0 +1,130 @@
+package com.promptgenie.evaluation.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluationSchedulerTest {
+
+    private EvaluationScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void smallJobStartedAfterALargeOneGetsTheNextFreeSlot() throws Exception {
+        scheduler = scheduler(2, 2, 100);
+        Semaphore gate = new Semaphore(0);
+        EvaluationScheduler.JobLane large = scheduler.openJob(1L);
+        AtomicInteger largeStarted = new AtomicInteger();
+        CountDownLatch largeRunning = new CountDownLatch(2);
+        for (int i = 0; i < 10; i++) {
+            large.submit(() -> {
+                largeStarted.incrementAndGet();
+                largeRunning.countDown();
+                gate.acquireUninterruptibly();
+            });
+        }
+        // Both workers are busy with large rows before the small job arrives
+        assertTrue(largeRunning.await(2, TimeUnit.SECONDS));
+        EvaluationScheduler.JobLane small = scheduler.openJob(2L);
+        CountDownLatch smallStarted = new CountDownLatch(1);
+        CountDownLatch smallRelease = new CountDownLatch(1);
+        small.submit(() -> {
+            smallStarted.countDown();
+            await(smallRelease);
+        });
+
+        // One large row finishes: its slot goes to the waiting small job, not to the next large row
+        gate.release();
+
+        assertTrue(smallStarted.await(2, TimeUnit.SECONDS));
+        assertEquals(2, largeStarted.get());
+        smallRelease.countDown();
+        gate.release(100);
+        large.awaitIdle();
+        assertEquals(10, largeStarted.get());
+    }
+
+    @Test
+    void perJobParallelismIsNeverExceeded() throws Exception {
+        scheduler = scheduler(6, 2, 100);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        EvaluationScheduler.JobLane lane = scheduler.openJob(1L);
+        for (int i = 0; i < 30; i++) {
+            lane.submit(() -> {
+                peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                sleep(5);
+                concurrent.decrementAndGet();
+            });
+        }
+        lane.awaitIdle();
+
+        assertEquals(2, peak.get());
+    }
+
+    @Test
+    void closeReleasesASubmitBlockedOnAFullLane() throws Exception {
+        scheduler = scheduler(1, 1, 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicBoolean blockedRowRan = new AtomicBoolean();
+        EvaluationScheduler.JobLane lane = scheduler.openJob(1L);
+        lane.submit(() -> await(gate));
+        lane.submit(() -> { });
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                lane.submit(() -> blockedRowRan.set(true));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        lane.close();
+
+        Exception thrown = assertThrows(Exception.class, () -> blocked.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, thrown.getCause());
+        gate.countDown();
+        lane.awaitIdle();
+        assertFalse(blockedRowRan.get());
+    }
+
+    private static EvaluationScheduler scheduler(int workers, int perJob, int chunkSize) {
+        GenieConfig config = new GenieConfig();
+        config.getEvaluation().setWorkerThreads(workers);
+        config.getEvaluation().setPerJobParallelism(perJob);
+        config.getEvaluation().setChunkSize(chunkSize);
+        return new EvaluationScheduler(config);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
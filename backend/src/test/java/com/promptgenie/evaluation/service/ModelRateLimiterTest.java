@@ -0,0 +1,46 @@
+package com.promptgenie.evaluation.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelRateLimiterTest {
+
+    @Test
+    void allowsOneSecondBurstThenHoldsTheConfiguredRate() throws Exception {
+        GenieConfig config = new GenieConfig();
+        config.getEvaluation().setModelRateLimits(Map.of("qwen-turbo", 20.0));
+        ModelRateLimiter limiter = new ModelRateLimiter(config);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire("qwen-turbo");
+        }
+        long burstMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(burstMillis < 200, "burst took " + burstMillis + " ms");
+
+        // Past the burst, 10 more requests at 20/s need about half a second
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("qwen-turbo");
+        }
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(totalMillis >= 400 && totalMillis < 1500, "steady phase ended after " + totalMillis + " ms");
+    }
+
+    @Test
+    void modelsWithoutARateAreNotLimited() throws Exception {
+        GenieConfig config = new GenieConfig();
+        config.getEvaluation().setModelRateLimits(Map.of("qwen-turbo", 1.0));
+        ModelRateLimiter limiter = new ModelRateLimiter(config);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("qwen-max");
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+    }
+}
@@ -0,0 +1,53 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.service.PlaygroundService;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChainNodeMemoTest {
+
+    private final ChainNodeMemo memo = new ChainNodeMemo(new GenieConfig());
+
+    @Test
+    void key_ShouldChangeOnlyWhenDefinitionInputsOrChainChange() {
+        ChainPlan.Node llm = node("{\"modelName\": \"qwen-turbo\", \"temperature\": 0.7}");
+        Map<String, Object> inputs = new LinkedHashMap<>();
+        inputs.put("topic", "cats");
+        inputs.put("prompt_text", "Summarize cats");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("prompt_text", "Summarize cats");
+        reordered.put("topic", "cats");
+
+        String key = memo.key(1L, llm, inputs);
+
+        assertEquals(key, memo.key(1L, node("{\"temperature\": 0.7, \"modelName\": \"qwen-turbo\"}"), reordered));
+        assertNotEquals(key, memo.key(2L, llm, inputs));
+        assertNotEquals(key, memo.key(1L, node("{\"modelName\": \"qwen-max\", \"temperature\": 0.7}"), inputs));
+        assertNotEquals(key, memo.key(1L, llm, Map.of("topic", "dogs", "prompt_text", "Summarize dogs")));
+    }
+
+    @Test
+    void put_ShouldKeepResultsButNotErrors() {
+        memo.put("ok", "Cats are great");
+        memo.put("failed", Map.of("error", "Tool execution failed"));
+        // Providers report failures as text rather than throwing
+        memo.put("providerFailed", PlaygroundService.ERROR_PREFIX + "Provider returned error: 503 busy");
+
+        assertEquals("Cats are great", memo.get("ok"));
+        assertNull(memo.get("failed"));
+        assertNull(memo.get("providerFailed"));
+        assertEquals(1L, memo.snapshot().get("hits"));
+        assertEquals(1L, memo.snapshot().get("stores"));
+    }
+
+    private static ChainPlan.Node node(String data) {
+        String nodes = "[{\"id\": \"llm\", \"type\": \"llmNode\", \"data\": " + data + "}]";
+        return ChainPlan.compile(nodes, "[]", new ObjectMapper()).node(0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.promptgenie.prompt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.prompt.entity.PromptChain;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChainPlanTest {
+
+    // Declared out of order: the output node comes first and depends on everything else
+    private static final String NODES = """
+            [{"id": "out", "type": "outputNode", "data": {"label": "Result"}},
+             {"id": "llm", "type": "llmNode", "data": {"modelName": "qwen-turbo"}},
+             {"id": "prompt", "type": "promptNode", "data": {"content": "Summarize {{topic}}"}},
+             {"id": "check", "type": "conditionNode", "data": {"condition": "{{score}} > 3"}}]
+            """;
+    private static final String EDGES = """
+            [{"source": "prompt", "target": "llm"},
+             {"source": "llm", "target": "out"},
+             {"source": "check", "target": "out"}]
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compile_ShouldOrderNodesTopologicallyWithPredecessorIndexes() {
+        ChainPlan plan = ChainPlan.compile(NODES, EDGES, objectMapper);
+
+        List<String> order = plan.nodes().stream().map(ChainPlan.Node::id).toList();
+        assertEquals(List.of("prompt", "check", "llm", "out"), order);
+
+        ChainPlan.Node out = plan.node(3);
+        assertArrayEquals(new int[]{2, 1}, out.predecessors());
+        assertArrayEquals(new int[]{3}, plan.outputNodes());
+        assertEquals("Result", out.label());
+        assertEquals("llmNode_llm", plan.node(2).outputKey());
+        assertEquals("Summarize cats", plan.node(0).template().render(Map.of("topic", "cats")));
+        assertEquals("5 > 3", plan.node(1).condition().render(Map.of("score", 5)));
+    }
+
+    @Test
+    void compile_ShouldRejectCyclesDanglingEdgesAndDuplicateIds() {
+        String nodes = """
+                [{"id": "a", "type": "llmNode"}, {"id": "b", "type": "llmNode"}]
+                """;
+
+        IllegalArgumentException cycle = assertThrows(IllegalArgumentException.class, () -> ChainPlan.compile(nodes,
+                "[{\"source\": \"a\", \"target\": \"b\"}, {\"source\": \"b\", \"target\": \"a\"}]", objectMapper));
+        assertTrue(cycle.getMessage().contains("cycle"));
+
+        IllegalArgumentException dangling = assertThrows(IllegalArgumentException.class, () -> ChainPlan.compile(nodes,
+                "[{\"source\": \"a\", \"target\": \"missing\"}]", objectMapper));
+        assertTrue(dangling.getMessage().contains("unknown node"));
+
+        assertThrows(IllegalArgumentException.class, () -> ChainPlan.compile(
+                "[{\"id\": \"a\"}, {\"id\": \"a\"}]", "[]", objectMapper));
+        assertThrows(IllegalArgumentException.class, () -> ChainPlan.compile("not json", "[]", objectMapper));
+    }
+
+    @Test
+    void compile_ShouldRejectNonNumericNodeSettings() {
+        IllegalArgumentException loop = assertThrows(IllegalArgumentException.class, () -> ChainPlan.compile(
+                "[{\"id\": \"loop\", \"type\": \"loopNode\", \"data\": {\"maxIterations\": \"five\"}}]", "[]", objectMapper));
+        assertTrue(loop.getMessage().contains("maxIterations"));
+        assertThrows(IllegalArgumentException.class, () -> ChainPlan.compile(
+                "[{\"id\": \"map\", \"type\": \"mapNode\", \"data\": {\"temperature\": \"hot\"}}]", "[]", objectMapper));
+
+        // Numbers given as text, and empty form fields, are fine
+        ChainPlan plan = ChainPlan.compile(
+                "[{\"id\": \"map\", \"type\": \"mapNode\", \"data\": {\"maxItems\": \"20\", \"temperature\": \"\"}}]", "[]", objectMapper);
+        assertEquals(20, ChainPlan.intValue(plan.node(0).data().get("maxItems"), 50));
+        assertEquals(0.7, ChainPlan.doubleValue(plan.node(0).data().get("temperature"), 0.7));
+    }
+
+    @Test
+    void planCache_ShouldReusePlanUntilChainVersionChanges() {
+        ChainPlanCache cache = new ChainPlanCache();
+        PromptChain chain = new PromptChain();
+        chain.setId(9L);
+        chain.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        chain.setReactFlowNodes(NODES);
+        chain.setReactFlowEdges(EDGES);
+
+        ChainPlan first = cache.forChain(chain);
+        assertSame(first, cache.forChain(chain));
+
+        chain.setUpdatedAt(chain.getUpdatedAt().plusSeconds(1));
+        assertNotSame(first, cache.forChain(chain));
+        assertEquals(2L, cache.snapshot().get("compiles"));
+        assertEquals(1L, cache.snapshot().get("hits"));
+    }
+}
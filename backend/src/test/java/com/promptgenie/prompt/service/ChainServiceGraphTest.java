@@ -0,0 +1,211 @@
+package com.promptgenie.prompt.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.prompt.entity.PromptChain;
+import com.promptgenie.service.LLMTracingService;
+import com.promptgenie.service.PlaygroundService;
+import com.promptgenie.service.template.PromptTemplate;
+import com.promptgenie.service.template.PromptTemplateCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ChainServiceGraphTest {
+
+    private GenieConfig config;
+    private PlaygroundService playgroundService;
+    private ChainExecutor chainExecutor;
+    private ChainService chainService;
+
+    @BeforeEach
+    void setUp() {
+        config = new GenieConfig();
+        config.getChain().setNodeRetryBaseDelayMs(1L);
+        playgroundService = mock(PlaygroundService.class);
+        chainExecutor = new ChainExecutor(config);
+
+        chainService = new ChainService();
+        ReflectionTestUtils.setField(chainService, "playgroundService", playgroundService);
+        ReflectionTestUtils.setField(chainService, "chainExecutor", chainExecutor);
+        ReflectionTestUtils.setField(chainService, "templateCache", new PromptTemplateCache());
+        ReflectionTestUtils.setField(chainService, "planCache", new ChainPlanCache());
+        ReflectionTestUtils.setField(chainService, "nodeMemo", new ChainNodeMemo(config));
+        ReflectionTestUtils.setField(chainService, "metrics", new GenieMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(chainService, "tracingService", new LLMTracingService(config));
+    }
+
+    @AfterEach
+    void tearDown() {
+        chainExecutor.shutdown();
+    }
+
+    @Test
+    void executeChainGraph_ShouldSkipBranchNotTakenByCondition() {
+        when(playgroundService.runPrompt(anyString(), anyMap(), eq("text"), anyString(), anyMap())).thenReturn("answer");
+        PromptChain chain = chain("""
+                [{"id": "check", "type": "conditionNode", "data": {"condition": "{{score}} > 3"}},
+                 {"id": "yes", "type": "llmNode", "data": {}},
+                 {"id": "no", "type": "llmNode", "data": {}},
+                 {"id": "outYes", "type": "outputNode", "data": {}},
+                 {"id": "outNo", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "check", "target": "yes", "sourceHandle": "true"},
+                 {"source": "check", "target": "no", "sourceHandle": "false"},
+                 {"source": "yes", "target": "outYes"},
+                 {"source": "no", "target": "outNo"}]
+                """);
+
+        List<Map<String, Object>> results = run(chain, Map.of("score", 5));
+
+        assertEquals(1, results.size());
+        assertEquals("outYes", results.get(0).get("nodeId"));
+        assertEquals(List.of("no", "outNo"), results.get(0).get("skippedNodes"));
+        verify(playgroundService, times(1)).runPrompt(anyString(), anyMap(), eq("text"), anyString(), anyMap());
+    }
+
+    @Test
+    void executeChainGraph_ShouldRunLoopBodyUpToMaxIterations() {
+        when(playgroundService.runPrompt(anyString(), anyMap(), eq("text"), anyString(), anyMap())).thenReturn("draft");
+        PromptChain chain = chain("""
+                [{"id": "loop", "type": "loopNode", "data": {"maxIterations": 3}},
+                 {"id": "write", "type": "llmNode", "data": {}},
+                 {"id": "out", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "loop", "target": "write", "sourceHandle": "continue"},
+                 {"source": "write", "target": "loop"},
+                 {"source": "loop", "target": "out", "sourceHandle": "break"}]
+                """);
+
+        List<Map<String, Object>> results = run(chain, Map.of());
+
+        assertEquals("draft", results.get(0).get("output"));
+        verify(playgroundService, times(3)).runPrompt(anyString(), anyMap(), eq("text"), anyString(), anyMap());
+    }
+
+    @Test
+    void executeChainGraph_ShouldRetryTransientErrorsThenTakeFailureBranch() {
+        when(playgroundService.runPrompt(anyString(), anyMap(), eq("text"), anyString(), anyMap()))
+                .thenReturn(PlaygroundService.ERROR_PREFIX + "Provider returned error: 503 busy");
+        PromptChain chain = chain("""
+                [{"id": "llm", "type": "llmNode", "data": {}},
+                 {"id": "retry", "type": "errorRetryNode", "data": {"maxRetries": 2, "retryDelay": 0}},
+                 {"id": "ok", "type": "outputNode", "data": {}},
+                 {"id": "fallback", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "llm", "target": "retry"},
+                 {"source": "retry", "target": "ok", "sourceHandle": "success"},
+                 {"source": "retry", "target": "fallback", "sourceHandle": "failure"}]
+                """);
+
+        List<Map<String, Object>> results = run(chain, Map.of());
+
+        assertEquals(1, results.size());
+        assertEquals("fallback", results.get(0).get("nodeId"));
+        verify(playgroundService, times(3)).runPrompt(anyString(), anyMap(), eq("text"), anyString(), anyMap());
+        assertEquals(2L, chainExecutor.snapshot().get("retriedNodes"));
+    }
+
+    @Test
+    void executeChainGraph_ShouldFanOutMapNodeOverItems() {
+        when(playgroundService.runPromptAsync(any(PromptTemplate.class), anyMap(), eq("text"), anyString(), anyMap(), isNull()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                        "about " + ((Map<?, ?>) invocation.getArgument(1)).get("item")));
+        PromptChain chain = chain("""
+                [{"id": "map", "type": "mapNode", "data": {"content": "Describe {{item}}"}},
+                 {"id": "out", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "map", "target": "out"}]
+                """);
+
+        List<Map<String, Object>> results = run(chain, Map.of("items", List.of("a", "b", "c")));
+
+        assertEquals("about a\n\nabout b\n\nabout c", results.get(0).get("output"));
+    }
+
+    @Test
+    void executeChainGraph_ShouldKeepMapItemsWithinTheRunConcurrencyLimit() {
+        config.getChain().setMaxConcurrencyPerChain(2);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(playgroundService.runPromptAsync(any(PromptTemplate.class), anyMap(), eq("text"), anyString(), anyMap(), isNull()))
+                .thenAnswer(invocation -> {
+                    peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    Object item = ((Map<?, ?>) invocation.getArgument(1)).get("item");
+                    return CompletableFuture.supplyAsync(() -> {
+                        active.decrementAndGet();
+                        return "about " + item;
+                    }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+                });
+        PromptChain chain = chain("""
+                [{"id": "map", "type": "mapNode", "data": {"content": "Describe {{item}}"}},
+                 {"id": "out", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "map", "target": "out"}]
+                """);
+
+        List<Map<String, Object>> results = run(chain, Map.of("items", List.of("a", "b", "c", "d", "e", "f")));
+
+        assertEquals("about a\n\nabout b\n\nabout c\n\nabout d\n\nabout e\n\nabout f", results.get(0).get("output"));
+        assertTrue(peak.get() <= 2, "at most 2 items in flight, saw " + peak.get());
+    }
+
+    @Test
+    void executeChainGraph_ShouldTimeOutAndCancelStuckMapItems() {
+        config.getChain().setNodeTimeoutSeconds(1L);
+        config.getChain().setNodeMaxRetries(0);
+        CompletableFuture<String> stuck = new CompletableFuture<>();
+        when(playgroundService.runPromptAsync(any(PromptTemplate.class), anyMap(), eq("text"), anyString(), anyMap(), isNull()))
+                .thenReturn(stuck);
+        PromptChain chain = chain("""
+                [{"id": "map", "type": "mapNode", "data": {"content": "Describe {{item}}"}},
+                 {"id": "out", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "map", "target": "out"}]
+                """);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(RuntimeException.class, () -> run(chain, Map.of("items", List.of("a")))));
+        assertTrue(stuck.isCancelled());
+    }
+
+    @Test
+    void executeChainGraph_ShouldFailInsteadOfHangingWhenANodeThrowsOnStart() {
+        // A non-text itemsKey fails while the map node is being set up, before any future exists
+        PromptChain chain = chain("""
+                [{"id": "map", "type": "mapNode", "data": {"itemsKey": 5}},
+                 {"id": "out", "type": "outputNode", "data": {}}]
+                """, """
+                [{"source": "map", "target": "out"}]
+                """);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(RuntimeException.class, () -> run(chain, Map.of("items", List.of("a")))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> run(PromptChain chain, Map<String, Object> variables) {
+        return (List<Map<String, Object>>) chainService.executeChainGraph(chain, new HashMap<>(variables));
+    }
+
+    private static PromptChain chain(String nodes, String edges) {
+        PromptChain chain = new PromptChain();
+        chain.setReactFlowNodes(nodes);
+        chain.setReactFlowEdges(edges);
+        return chain;
+    }
+}
@@ -0,0 +1,112 @@
+package com.promptgenie.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.config.GenieConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LLMTracingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void startSpan_ShouldNestUnderActiveSpanAndCompleteWithRoot() {
+        LLMTracingService tracing = new LLMTracingService(new GenieConfig());
+
+        LLMTracingService.TraceSpan root = tracing.startSpan("llm.generate", Map.of("gen_ai.request.model", "qwen-turbo"));
+        LLMTracingService.TraceSpan child;
+        try (LLMTracingService.Scope ignored = tracing.activate(root)) {
+            child = tracing.startSpan("kb.context", Map.of());
+            tracing.endSpan(child);
+        }
+        assertNull(tracing.currentSpan());
+        assertEquals(root.getTraceId(), child.getTraceId());
+        assertEquals(root.getSpanId(), child.getParentSpanId());
+        assertEquals(1, tracing.snapshot().get("activeTraces"));
+
+        tracing.endSpan(root);
+
+        assertEquals(0, tracing.snapshot().get("activeTraces"));
+        LLMTracingService.Trace trace = tracing.getTrace(root.getTraceId());
+        assertNotNull(trace);
+        assertEquals(2, trace.getSpans().size());
+        assertSame(child, tracing.getSpan(child.getSpanId()));
+    }
+
+    @Test
+    void retain_ShouldEvictOldestTracesBeyondCapacity() {
+        GenieConfig config = new GenieConfig();
+        config.getTracing().setCapacity(3);
+        LLMTracingService tracing = new LLMTracingService(config);
+
+        LLMTracingService.TraceSpan[] roots = new LLMTracingService.TraceSpan[5];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = tracing.startSpan("op-" + i, Map.of());
+            tracing.endSpan(roots[i]);
+        }
+
+        assertNull(tracing.getTrace(roots[0].getTraceId()));
+        assertNull(tracing.getSpan(roots[1].getSpanId()));
+        List<LLMTracingService.Trace> recent = tracing.recentTraces(10);
+        assertEquals(3, recent.size());
+        assertEquals(roots[4].getTraceId(), recent.get(0).getTraceId());
+        assertEquals(roots[2].getTraceId(), recent.get(2).getTraceId());
+        assertEquals(3, tracing.snapshot().get("indexedSpans"));
+    }
+
+    @Test
+    void complete_ShouldKeepOnlyErrorTracesWhenHeadSamplingDropsEverything() {
+        GenieConfig config = new GenieConfig();
+        config.getTracing().setHeadSampleRate(0.0);
+        config.getTracing().setSlowThresholdMs(0L);
+        LLMTracingService tracing = new LLMTracingService(config);
+
+        LLMTracingService.TraceSpan ok = tracing.startSpan("chain.execute", Map.of());
+        tracing.endSpan(ok);
+        LLMTracingService.TraceSpan failed = tracing.startSpan("chain.execute", Map.of());
+        tracing.recordError(failed, "provider timed out", new IllegalStateException("timeout"));
+        tracing.endSpan(failed);
+
+        assertNull(tracing.getTrace(ok.getTraceId()));
+        assertNotNull(tracing.getTrace(failed.getTraceId()));
+        assertEquals(1L, tracing.snapshot().get("sampledOutTraces"));
+    }
+
+    @Test
+    void exporter_ShouldAppendOtlpJsonLinePerTrace() throws Exception {
+        Path file = tempDir.resolve("traces.jsonl");
+        GenieConfig config = new GenieConfig();
+        config.getTracing().setExportFile(file.toString());
+        LLMTracingService tracing = new LLMTracingService(config);
+        ReflectionTestUtils.setField(tracing, "serviceName", "prompt-genie-test");
+        tracing.init();
+
+        LLMTracingService.TraceSpan root = tracing.startSpan("chain.graph", Map.of("genie.chain.id", 7L));
+        LLMTracingService.TraceSpan node = tracing.startSpan("chain.node", Map.of("genie.node.type", "llm"), root);
+        tracing.endSpan(node);
+        tracing.endSpan(root);
+        tracing.shutdown();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        JsonNode spans = new ObjectMapper().readTree(lines.get(0))
+                .at("/resourceSpans/0/scopeSpans/0/spans");
+        assertEquals(2, spans.size());
+        assertTrue(spans.get(0).get("traceId").asText().matches("[0-9a-f]{32}"));
+        JsonNode child = spans.get(0).has("parentSpanId") ? spans.get(0) : spans.get(1);
+        JsonNode parent = child == spans.get(0) ? spans.get(1) : spans.get(0);
+        assertEquals(parent.get("spanId").asText(), child.get("parentSpanId").asText());
+        assertEquals(1L, tracing.snapshot().get("exportedTraces"));
+    }
+}
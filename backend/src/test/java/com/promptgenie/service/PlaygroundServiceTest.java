@@ -1,26 +1,42 @@
 package com.promptgenie.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.entity.GenerationTask;
 import com.promptgenie.entity.PlaygroundHistory;
 import com.promptgenie.mapper.PlaygroundHistoryMapper;
+import com.promptgenie.service.cache.GenerationCache;
+import com.promptgenie.service.strategy.AsyncTaskStrategy;
 import com.promptgenie.service.strategy.GenerationOutput;
 import com.promptgenie.service.strategy.GenerationStrategy;
+import com.promptgenie.service.task.GenerationTaskService;
+import com.promptgenie.service.template.PromptTemplateCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -43,9 +59,26 @@ public class PlaygroundServiceTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private GenerationTaskService generationTaskService;
+
     @Spy
     private List<GenerationStrategy> strategies = new ArrayList<>();
 
+    @Spy
+    private PromptTemplateCache templateCache = new PromptTemplateCache();
+
+    @Spy
+    private GenerationCache generationCache = new GenerationCache(new GenieConfig());
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private GenieMetrics metrics = new GenieMetrics(meterRegistry);
+
+    @Spy
+    private LLMTracingService tracingService = new LLMTracingService(new GenieConfig());
+
     @InjectMocks
     private PlaygroundService playgroundService;
 
@@ -84,6 +117,44 @@ public class PlaygroundServiceTest {
         verify(historyMapper, times(1)).insert(any(PlaygroundHistory.class));
     }
 
+    @Test
+    void runPrompt_ShouldRecordLatencyUsageAndCost() throws Exception {
+        GenerationOutput mockOutput = GenerationOutput.builder()
+                .content("AI Response")
+                .inputTokens(10)
+                .outputTokens(5)
+                .build();
+        when(textStrategy.generate(anyString(), anyString(), any())).thenReturn(mockOutput);
+        when(textStrategy.calculateCost(anyString(), anyInt(), anyInt(), any())).thenReturn(0.001);
+        when(textStrategy.provider("qwen-turbo")).thenReturn("dashscope");
+
+        playgroundService.runPrompt("Hello AI", new HashMap<>(), "text", "qwen-turbo", null, null);
+        playgroundService.runPrompt("Hello AI", new HashMap<>(), "audio", "whisper", null, null);
+
+        assertEquals(1, meterRegistry.get(GenieMetrics.GENERATION)
+                .tags("provider", "dashscope", "model", "qwen-turbo", "status", GenieMetrics.SUCCESS).timer().count());
+        assertEquals(10.0, meterRegistry.get(GenieMetrics.GENERATION_TOKENS)
+                .tags("model", "qwen-turbo", "direction", "input").summary().totalAmount());
+        assertEquals(0.001, meterRegistry.get(GenieMetrics.GENERATION_COST).counter().count(), 1e-9);
+        // Unsupported models are not tagged by their requested name
+        assertEquals(1, meterRegistry.get(GenieMetrics.GENERATION)
+                .tags("model", GenieMetrics.UNKNOWN, "status", GenieMetrics.ERROR).timer().count());
+    }
+
+    @Test
+    void runPrompt_ShouldTagUnlistedModelsAsOther() throws Exception {
+        GenerationOutput mockOutput = GenerationOutput.builder().content("AI Response").inputTokens(10).outputTokens(5).build();
+        when(textStrategy.generate(anyString(), anyString(), any())).thenReturn(mockOutput);
+        when(textStrategy.provider(anyString())).thenReturn("dashscope");
+
+        playgroundService.runPrompt("Hello AI", new HashMap<>(), "text", "qwen-made-up-1", null, null);
+        playgroundService.runPrompt("Hello AI", new HashMap<>(), "text", "qwen-made-up-2", null, null);
+
+        assertEquals(2, meterRegistry.get(GenieMetrics.GENERATION)
+                .tags("model", GenieMetrics.OTHER, "status", GenieMetrics.SUCCESS).timer().count());
+        assertEquals(1, meterRegistry.find(GenieMetrics.GENERATION).timers().size());
+    }
+
     @Test
     void runPrompt_ShouldSubstituteVariables() throws Exception {
         // Arrange
@@ -100,4 +171,116 @@ public class PlaygroundServiceTest {
         // Assert
         verify(textStrategy).generate(eq("Hello World"), anyString(), any());
     }
+
+    @Test
+    void runPromptStream_ShouldForwardChunksAndSaveHistory() throws Exception {
+        // Arrange
+        GenerationOutput mockOutput = GenerationOutput.builder()
+                .content("AI Response")
+                .inputTokens(10)
+                .outputTokens(2)
+                .build();
+        when(textStrategy.generateStream(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> onChunk = invocation.getArgument(3);
+            onChunk.accept("AI ");
+            onChunk.accept("Response");
+            return mockOutput;
+        });
+        List<String> chunks = new ArrayList<>();
+
+        // Act
+        String result = playgroundService.runPromptStream("Hello AI", new HashMap<>(), "text", "qwen-turbo", null, 1L, chunks::add);
+
+        // Assert
+        assertEquals("AI Response", result);
+        assertEquals(List.of("AI ", "Response"), chunks);
+        verify(textStrategy, never()).generate(anyString(), anyString(), any());
+        verify(historyMapper, times(1)).insert(any(PlaygroundHistory.class));
+    }
+
+    @Test
+    void streamPrompt_ShouldSendErrorEvent_WhenProviderFails() throws Exception {
+        // Arrange
+        when(textStrategy.generateStream(anyString(), anyString(), any(), any()))
+                .thenThrow(new RuntimeException("Provider returned error: 500 boom"));
+        SseEmitter emitter = mock(SseEmitter.class);
+        ArgumentCaptor<SseEmitter.SseEventBuilder> events = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+
+        // Act
+        playgroundService.streamPrompt("Hello AI", new HashMap<>(), "text", "qwen-turbo", null, 1L, emitter);
+
+        // Assert
+        verify(emitter).send(events.capture());
+        String sent = events.getValue().build().stream().map(part -> String.valueOf(part.getData())).collect(Collectors.joining());
+        assertTrue(sent.contains("event:error"));
+        assertTrue(sent.contains("Provider returned error: 500 boom"));
+        verify(emitter).complete();
+    }
+
+    @Test
+    void streamPrompt_ShouldRecordCancellation_WhenClientDisconnects() throws Exception {
+        // Arrange
+        when(textStrategy.generateStream(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> onChunk = invocation.getArgument(3);
+            onChunk.accept("AI ");
+            return GenerationOutput.builder().content("AI Response").build();
+        });
+        SseEmitter emitter = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+
+        // Act
+        playgroundService.streamPrompt("Hello AI", new HashMap<>(), "text", "qwen-turbo", null, 1L, emitter);
+
+        // Assert
+        verify(historyMapper, never()).insert(any(PlaygroundHistory.class));
+        verify(emitter).complete();
+        verify(emitter, never()).completeWithError(any());
+        assertEquals(1L, meterRegistry.get(GenieMetrics.GENERATION).tag("status", GenieMetrics.CANCELLED).timer().count());
+    }
+
+    @Test
+    void runPrompt_ShouldServeDeterministicRepeatFromCacheAtZeroCost() throws Exception {
+        // Arrange
+        Map<String, Object> params = Map.of("temperature", 0);
+        GenerationOutput mockOutput = GenerationOutput.builder()
+                .content("AI Response")
+                .inputTokens(10)
+                .outputTokens(2)
+                .build();
+        when(textStrategy.generate(anyString(), anyString(), any())).thenReturn(mockOutput);
+        when(textStrategy.calculateCost(anyString(), anyInt(), anyInt(), any())).thenReturn(0.5);
+
+        // Act
+        String first = playgroundService.runPrompt("Hello AI", new HashMap<>(), "text", "qwen-turbo", params, 1L);
+        String second = playgroundService.runPrompt("Hello AI", new HashMap<>(), "text", "qwen-turbo", Map.of("temperature", "0.0"), 1L);
+
+        // Assert
+        assertEquals("AI Response", first);
+        assertEquals("AI Response", second);
+        verify(textStrategy, times(1)).generate(anyString(), anyString(), any());
+        verify(textStrategy, times(1)).calculateCost(anyString(), anyInt(), anyInt(), any());
+        verify(historyMapper, times(2)).insert(any(PlaygroundHistory.class));
+        assertEquals(1L, generationCache.snapshot().get("hits"));
+    }
+
+    @Test
+    void runPrompt_ShouldReturnTaskIdWithoutWaiting_WhenModelRunsAsProviderTask() throws Exception {
+        // Arrange
+        AsyncTaskStrategy videoStrategy = mock(AsyncTaskStrategy.class);
+        GenerationTask task = new GenerationTask();
+        task.setId(42L);
+        task.setStatus(GenerationTask.STATUS_RUNNING);
+        when(generationTaskService.resolveStrategy("video", "wan2.6-t2v")).thenReturn(videoStrategy);
+        when(generationTaskService.submit(eq(videoStrategy), eq("A cat surfing"), eq("A cat surfing"), any(), eq("video"), eq("wan2.6-t2v"), any(), eq(1L), isNull()))
+                .thenReturn(task);
+
+        // Act
+        String result = playgroundService.runPrompt("A cat surfing", new HashMap<>(), "video", "wan2.6-t2v", null, 1L);
+
+        // Assert
+        assertEquals("Generation started. Task ID: 42", result);
+        verify(videoStrategy, never()).checkTasks(any());
+        // History is written by the task poller once the video is ready
+        verify(historyMapper, never()).insert(any(PlaygroundHistory.class));
+    }
 }
@@ -0,0 +1,119 @@
+package com.promptgenie.service;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.prompt.entity.Prompt;
+import com.promptgenie.prompt.mapper.PromptCounterMapper;
+import com.promptgenie.prompt.service.PromptCounterService;
+import com.promptgenie.prompt.service.PromptCounterService.CounterDelta;
+import com.promptgenie.prompt.service.PublicCatalogChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PromptCounterServiceTest {
+
+    @Mock
+    private PromptCounterMapper counterMapper;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private GenieConfig genieConfig = new GenieConfig();
+
+    @InjectMocks
+    private PromptCounterService counterService;
+
+    @TempDir
+    Path walDir;
+
+    @BeforeEach
+    void setUp() {
+        genieConfig.getCounters().setWalDir(walDir.toString());
+        ReflectionTestUtils.setField(counterService, "self", counterService);
+    }
+
+    @Test
+    void deltasAreAggregatedAndFlushedInOneBatch() throws Exception {
+        counterService.init();
+        when(counterMapper.insertApplied(anyString())).thenReturn(1);
+        for (int i = 0; i < 1000; i++) {
+            counterService.add(1L, PromptCounterService.Counter.USAGE, 1);
+        }
+        counterService.add(2L, PromptCounterService.Counter.LIKES, 1);
+        counterService.add(2L, PromptCounterService.Counter.LIKES, -1);
+        counterService.add(2L, PromptCounterService.Counter.FORKS, 1);
+
+        Prompt prompt = new Prompt();
+        prompt.setId(1L);
+        prompt.setUsageCount(5);
+        counterService.applyPending(prompt);
+        assertEquals(1005, prompt.getUsageCount());
+
+        counterService.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CounterDelta>> rows = ArgumentCaptor.forClass(List.class);
+        verify(counterMapper, times(1)).applyDeltas(rows.capture());
+        assertEquals(List.of(new CounterDelta(1L, 0, 1000, 0), new CounterDelta(2L, 0, 0, 1)), rows.getValue());
+        verify(eventPublisher, times(1)).publishEvent(PublicCatalogChangedEvent.rankingChanged());
+        // Applied segments are removed; only the fresh, empty current segment remains
+        try (var files = Files.list(walDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void usageOnlyFlushLeavesTheCatalogCacheAlone() throws Exception {
+        counterService.init();
+        when(counterMapper.insertApplied(anyString())).thenReturn(1);
+        counterService.add(1L, PromptCounterService.Counter.USAGE, 3);
+
+        counterService.flush();
+
+        verify(counterMapper, times(1)).applyDeltas(List.of(new CounterDelta(1L, 0, 3, 0)));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void leftoverSegmentsAreReplayedOnceAfterACrash() throws Exception {
+        // The last record was torn by the crash
+        Files.writeString(walDir.resolve("crashed-1-000001.wal"), "7 U 1\n7 U 1\n7 L 1\n7 U");
+        Files.writeString(walDir.resolve("crashed-1-000002.wal"), "8 F 1\n");
+        // The second segment's transaction committed before the crash; the first did not
+        when(counterMapper.insertApplied("crashed-1-000001")).thenReturn(1);
+        when(counterMapper.insertApplied("crashed-1-000002")).thenReturn(0);
+
+        counterService.init();
+        Prompt prompt = new Prompt();
+        prompt.setId(7L);
+        counterService.applyPending(prompt);
+        assertEquals(2, prompt.getUsageCount());
+        assertEquals(1, prompt.getLikesCount());
+
+        counterService.flush();
+
+        verify(counterMapper, times(1)).applyDeltas(List.of(new CounterDelta(7L, 1, 2, 0)));
+        verify(counterMapper, times(1)).applyDeltas(anyList());
+        assertFalse(Files.exists(walDir.resolve("crashed-1-000001.wal")));
+        assertFalse(Files.exists(walDir.resolve("crashed-1-000002.wal")));
+    }
+}
@@ -1,15 +1,31 @@
 package com.promptgenie.service;
 
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.dto.CatalogPage;
+import com.promptgenie.dto.PromptSearchPage;
 import com.promptgenie.prompt.entity.Prompt;
 import com.promptgenie.prompt.mapper.PromptLikeMapper;
 import com.promptgenie.prompt.mapper.PromptMapper;
 import com.promptgenie.prompt.mapper.TagMapper;
+import com.promptgenie.prompt.service.CatalogCursor;
+import com.promptgenie.prompt.service.PromptCounterService;
+import com.promptgenie.prompt.service.PromptSearchService;
 import com.promptgenie.prompt.service.PromptService;
+import com.promptgenie.prompt.service.PublicCatalogCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -24,6 +40,21 @@ public class PromptServiceTest {
     
     @Mock
     private PromptLikeMapper promptLikeMapper;
+
+    @Mock
+    private PublicCatalogCache catalogCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PromptSearchService searchService;
+
+    @Mock
+    private PromptCounterService counterService;
+
+    @Spy
+    private GenieConfig genieConfig = new GenieConfig();
     
     @InjectMocks
     private PromptService promptService;
@@ -33,6 +64,8 @@ public class PromptServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // @InjectMocks does not reach ServiceImpl's inherited mapper field
+        ReflectionTestUtils.setField(promptService, "baseMapper", promptMapper);
         
         prompt = new Prompt();
         prompt.setId(1L);
@@ -95,4 +128,93 @@ public class PromptServiceTest {
         assertFalse(deleted);
         verify(promptMapper, never()).deleteById(1L);
     }
+
+    @Test
+    void testPublicCatalogPageOverlaysLikesOnCopies() {
+        List<Prompt> rows = new ArrayList<>();
+        for (long id = 3; id >= 1; id--) {
+            Prompt row = new Prompt();
+            row.setId(id);
+            row.setPublishedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(id));
+            rows.add(row);
+        }
+        List<CatalogPage> cached = new ArrayList<>();
+        when(catalogCache.get(anyString(), any(), any())).thenAnswer(inv -> {
+            CatalogPage page = (CatalogPage) ((Supplier<?>) inv.getArgument(2)).get();
+            cached.add(page);
+            return page;
+        });
+        when(promptMapper.selectPublicPage(isNull(), isNull(), isNull(), isNull(), eq("new"), isNull(), eq(3))).thenReturn(rows);
+        when(promptLikeMapper.selectLikedPromptIds(eq(7L), anyList())).thenReturn(List.of(3L));
+
+        CatalogPage page = promptService.getPublicCatalogPage(null, null, null, null, "new", null, 2, 7L);
+
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.getItems().get(0).getIsLiked());
+        assertFalse(page.getItems().get(1).getIsLiked());
+        // The cached page itself stays user-neutral
+        assertFalse(cached.get(0).getItems().get(0).getIsLiked());
+        CatalogCursor next = CatalogCursor.decode(page.getNextCursor(), "new");
+        assertEquals(2L, next.getId());
+        assertEquals(rows.get(1).getPublishedAt(), next.getTime());
+        assertThrows(IllegalArgumentException.class, () -> CatalogCursor.decode(page.getNextCursor(), "trending"));
+    }
+
+    @Test
+    void testPublicSearchIsRankedByIndexWithOffsetCursor() throws Exception {
+        Prompt first = published(5L);
+        Prompt second = published(9L);
+        // Unpublished after the index last saw it
+        Prompt withdrawn = published(7L);
+        withdrawn.setStatus("DRAFT");
+        when(searchService.isReady()).thenReturn(true);
+        when(searchService.search(eq("提示词"), any(), eq(0), eq(2))).thenReturn(new PromptSearchService.Result(List.of(
+                new PromptSearchService.Hit(9L, 3.5f, Map.of("title", "<em>提示</em>词")),
+                new PromptSearchService.Hit(7L, 2.0f, Map.of()),
+                new PromptSearchService.Hit(5L, 1.2f, Map.of())), 3));
+        // The database returns rows in its own order; the page must keep the ranking
+        when(promptMapper.selectBatchIds(anyCollection())).thenReturn(List.of(first, withdrawn, second));
+
+        CatalogPage page = promptService.getPublicCatalogPage("提示词", null, null, null, "new", null, 2, null);
+
+        assertEquals(List.of(9L, 5L), page.getItems().stream().map(Prompt::getId).toList());
+        assertEquals(2, CatalogCursor.decode(page.getNextCursor(), "relevance").getOffset());
+        verify(catalogCache, never()).get(anyString(), any(), any());
+        verify(promptMapper, never()).selectPublicPage(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testOwnSearchDropsHitsOfOtherUsers() throws Exception {
+        Prompt own = published(5L);
+        own.setUserId(1L);
+        // Re-owned (or the id reused) since it was indexed
+        Prompt foreign = published(6L);
+        foreign.setUserId(2L);
+        when(searchService.isReady()).thenReturn(true);
+        when(searchService.search(eq("cats"), any(), eq(0), eq(10))).thenReturn(new PromptSearchService.Result(List.of(
+                new PromptSearchService.Hit(6L, 2.0f, Map.of()),
+                new PromptSearchService.Hit(5L, 1.0f, Map.of())), 2));
+        when(promptMapper.selectBatchIds(anyCollection())).thenReturn(List.of(own, foreign));
+
+        PromptSearchPage page = promptService.search("cats", new PromptSearchService.SearchFilter(1L, null, null, null, null), 0, 10);
+
+        assertEquals(List.of(5L), page.getHits().stream().map(hit -> hit.getPrompt().getId()).toList());
+    }
+
+    @Test
+    void testIncrementUsageDoesNotTouchThePromptRow() {
+        promptService.incrementUsage(1L);
+
+        verify(counterService).add(1L, PromptCounterService.Counter.USAGE, 1);
+        verify(promptMapper, never()).selectById(any());
+        verify(promptMapper, never()).updateById(any(Prompt.class));
+    }
+
+    private static Prompt published(Long id) {
+        Prompt prompt = new Prompt();
+        prompt.setId(id);
+        prompt.setIsPublic(true);
+        prompt.setStatus("PUBLISHED");
+        return prompt;
+    }
 }
@@ -0,0 +1,23 @@
+package com.promptgenie.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuotaServiceTest {
+
+    private final QuotaService quotaService = new QuotaService();
+
+    @Test
+    void batchRowSlotsAreSharedByAllBatchesOfAUser() {
+        // Two batches of user 1 together get the plan's two slots, not two each
+        assertTrue(quotaService.tryAcquireBatchRow(1L, 2));
+        assertTrue(quotaService.tryAcquireBatchRow(1L, 2));
+        assertFalse(quotaService.tryAcquireBatchRow(1L, 2));
+        assertTrue(quotaService.tryAcquireBatchRow(2L, 2));
+
+        quotaService.releaseBatchRow(1L);
+        assertTrue(quotaService.tryAcquireBatchRow(1L, 2));
+        assertFalse(quotaService.tryAcquireBatchRow(1L, 2));
+    }
+}
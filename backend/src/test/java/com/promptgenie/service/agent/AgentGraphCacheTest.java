@@ -0,0 +1,93 @@
+package com.promptgenie.service.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.enums.AgentNodeType;
+import com.promptgenie.entity.AgentConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentGraphCacheTest {
+
+    private static final String CONFIG_JSON = """
+            {"nodes": [
+               {"id": "start", "type": "llm", "data": {"model": "Qwen Turbo", "temperature": 0.2}},
+               {"id": "condition", "type": "condition"},
+               {"id": "custom", "type": "notAType"}
+             ],
+             "edges": [
+               {"source": "start", "target": "condition"},
+               {"source": "condition", "target": "done", "condition": "true"},
+               {"source": "condition", "target": "start", "condition": "false"}
+             ]}
+            """;
+
+    private final AgentGraphCache cache = new AgentGraphCache(new ObjectMapper());
+
+    @Test
+    void get_ShouldCompileEachConfigVersionOnce() {
+        AgentConfig config = config(1, CONFIG_JSON);
+
+        AgentGraph first = cache.get(config);
+        AgentGraph second = cache.get(config);
+
+        assertSame(first, second);
+        assertEquals(1L, cache.snapshot().get("compiles"));
+        assertEquals(1L, cache.snapshot().get("hits"));
+        assertNotSame(first, cache.get(config(2, CONFIG_JSON)));
+    }
+
+    @Test
+    void get_ShouldRecompileAfterInvalidationOrInPlaceEdit() {
+        AgentConfig config = config(1, CONFIG_JSON);
+        AgentGraph original = cache.get(config);
+
+        cache.invalidate(config.getAgentId());
+        AgentGraph afterInvalidate = cache.get(config);
+        assertNotSame(original, afterInvalidate);
+
+        config.setConfigJson("{\"nodes\": [{\"id\": \"start\", \"type\": \"tool\"}]}");
+        config.setUpdatedAt(config.getUpdatedAt().plusSeconds(1));
+        assertEquals(AgentNodeType.TOOL_NODE, cache.get(config).nodeType("start"));
+    }
+
+    @Test
+    void compile_ShouldIndexNodesAndChooseConditionalEdges() {
+        AgentGraph graph = cache.get(config(1, CONFIG_JSON));
+
+        assertTrue(graph.isValid());
+        assertEquals(AgentNodeType.LLM_NODE, graph.nodeType("start"));
+        assertNull(graph.nodeType("custom"));
+        assertEquals("Qwen Turbo", graph.nodeData("start").get("model"));
+        assertTrue(graph.nodeData("missing").isEmpty());
+        assertEquals("condition", graph.nextNodeId("start", new HashMap<>()));
+        assertEquals("done", graph.nextNodeId("condition", Map.of("conditionResult", true)));
+        assertEquals("start", graph.nextNodeId("condition", Map.of("conditionResult", false)));
+        assertNull(graph.nextNodeId("custom", new HashMap<>()));
+    }
+
+    @Test
+    void compile_ShouldCacheMalformedConfigAsInvalidGraph() {
+        AgentConfig config = config(1, "{not json");
+
+        AgentGraph graph = cache.get(config);
+
+        assertFalse(graph.isValid());
+        assertNull(graph.nodeType("start"));
+        assertSame(graph, cache.get(config));
+    }
+
+    private static AgentConfig config(int version, String json) {
+        AgentConfig config = new AgentConfig();
+        config.setId((long) version);
+        config.setAgentId(42L);
+        config.setVersion(version);
+        config.setConfigJson(json);
+        config.setUpdatedAt(LocalDateTime.of(2026, 1, 1, 0, 0));
+        return config;
+    }
+}
@@ -0,0 +1,87 @@
+package com.promptgenie.service.edge;
+
+import com.promptgenie.core.exception.PendingApprovalException;
+import com.promptgenie.dto.AgentState;
+import com.promptgenie.entity.AgentConfig;
+import com.promptgenie.service.AgentConfigService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EdgeAgentExecutorImplTest {
+
+    private static final long AGENT_ID = 7L;
+
+    private EdgeAgentExecutorImpl executor;
+
+    @BeforeEach
+    void setUp() {
+        AgentConfig config = new AgentConfig();
+        config.setId(1L);
+        config.setAgentId(AGENT_ID);
+        config.setVersion(1);
+        config.setUpdatedAt(LocalDateTime.now());
+        config.setConfigJson("""
+                {"nodes": [{"id": "start", "type": "llm"}, {"id": "human", "type": "human_approval"}],
+                 "edges": [{"source": "start", "target": "human"}, {"source": "human", "target": "end"}]}
+                """);
+        AgentConfigService configService = mock(AgentConfigService.class);
+        when(configService.getLatestConfig(AGENT_ID)).thenReturn(config);
+
+        executor = new EdgeAgentExecutorImpl(2048, 4);
+        executor.setAgentConfigService(configService);
+    }
+
+    @Test
+    void resumeAgent_ShouldContinueAfterApprovalNodeWithoutRerunningEarlierSteps() {
+        Map<String, Object> variables = new HashMap<>(Map.of("topic", "rollout"));
+        PendingApprovalException pending = assertThrows(PendingApprovalException.class,
+                () -> executor.runAgent(AGENT_ID, 1L, variables));
+        String stateId = pending.getAgentState().getId();
+
+        AgentState paused = executor.loadState(stateId);
+        assertEquals("PAUSED", paused.getStatus());
+        assertEquals("human", paused.getCurrentNodeId());
+        assertEquals(1, paused.getMessages().size());
+
+        AgentState resumed = executor.resumeAgent(stateId, Map.of("approved", true));
+
+        assertEquals("COMPLETED", resumed.getStatus());
+        assertEquals(1, resumed.getMessages().size());
+        assertEquals("rollout", resumed.getVariables().get("topic"));
+        assertEquals(true, resumed.getVariables().get("approved"));
+        assertEquals("COMPLETED", executor.loadState(stateId).getStatus());
+    }
+
+    @Test
+    void resumeAgent_ShouldRejectRunsThatAreNotPaused() {
+        PendingApprovalException pending = assertThrows(PendingApprovalException.class,
+                () -> executor.runAgent(AGENT_ID, 1L, new HashMap<>()));
+        String stateId = pending.getAgentState().getId();
+        executor.resumeAgent(stateId, Map.of());
+
+        assertThrows(RuntimeException.class, () -> executor.resumeAgent(stateId, Map.of()));
+        assertThrows(RuntimeException.class, () -> executor.resumeAgent("missing", Map.of()));
+    }
+
+    @Test
+    void loadState_ShouldReturnIndependentCopies() {
+        AgentState state = new AgentState();
+        state.setId("state-1");
+        state.setAgentId(AGENT_ID);
+        state.setStatus("RUNNING");
+        state.setVariables(new HashMap<>(Map.of("k", "v")));
+        executor.saveState(state);
+
+        executor.loadState("state-1").getVariables().put("k", "changed");
+
+        assertEquals("v", executor.loadState("state-1").getVariables().get("k"));
+    }
+}
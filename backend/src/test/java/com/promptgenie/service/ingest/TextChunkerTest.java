@@ -0,0 +1,64 @@
+package com.promptgenie.service.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextChunkerTest {
+
+    // 每个字符计为一个 token，便于断言
+    private static final ToIntFunction<String> CHARS = String::length;
+
+    @Test
+    void chunksRespectLimitAndOffsetsPointIntoSource() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            source.append("第").append(i).append("句话说明一些内容。");
+        }
+        String text = source.toString();
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(80, 20, CHARS, chunks::add);
+        // 模拟逐页追加，边界落在句子中间
+        for (int i = 0; i < text.length(); i += 333) {
+            chunker.append(text.substring(i, Math.min(text.length(), i + 333)));
+        }
+        chunker.finish();
+
+        assertFalse(chunks.isEmpty());
+        assertEquals(chunks.size(), chunker.chunkCount());
+        int covered = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            TextChunker.Chunk chunk = chunks.get(i);
+            assertEquals(i, chunk.index());
+            assertTrue(chunk.tokens() <= 80, "chunk " + i + " exceeds limit");
+            assertEquals(text.substring(chunk.startOffset(), chunk.endOffset()), chunk.text());
+            assertTrue(chunk.startOffset() <= covered, "gap before chunk " + i);
+            covered = Math.max(covered, chunk.endOffset());
+        }
+        assertEquals(text.length(), covered);
+        // 相邻块有重叠
+        assertTrue(chunks.get(1).startOffset() < chunks.get(0).endOffset());
+    }
+
+    @Test
+    void splitsOverlongSentenceWithoutBreakingSurrogatePairs() {
+        String text = "😀".repeat(150);
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(50, 10, CHARS, chunks::add);
+        chunker.append(text);
+        chunker.finish();
+
+        assertTrue(chunks.size() > 1);
+        StringBuilder joined = new StringBuilder();
+        for (TextChunker.Chunk chunk : chunks) {
+            assertTrue(chunk.tokens() <= 50);
+            assertFalse(Character.isLowSurrogate(chunk.text().charAt(0)));
+            joined.append(chunk.text());
+        }
+        assertEquals(text, joined.toString());
+    }
+}
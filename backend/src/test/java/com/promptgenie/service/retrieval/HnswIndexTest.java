@@ -0,0 +1,107 @@
+package com.promptgenie.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswIndexTest {
+
+    private static final int DIM = 32;
+
+    @Test
+    void search_ShouldMatchBruteForceTopK() {
+        Random random = new Random(7);
+        List<float[]> vectors = new ArrayList<>();
+        HnswIndex index = new HnswIndex(DIM);
+        for (int i = 0; i < 2000; i++) {
+            float[] v = randomUnitVector(random);
+            vectors.add(v);
+            index.add(i, v);
+        }
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Long> exact = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -HnswIndex.dot(query, vectors.get(i))))
+                    .limit(10)
+                    .map(Integer::longValue)
+                    .collect(Collectors.toSet());
+            Set<Long> approx = index.search(query, 10).stream()
+                    .map(HnswIndex.SearchHit::label)
+                    .collect(Collectors.toSet());
+            expected += exact.size();
+            approx.retainAll(exact);
+            found += approx.size();
+        }
+
+        assertTrue((double) found / expected > 0.9, "recall@10 too low: " + found + "/" + expected);
+    }
+
+    @Test
+    void removeIf_ShouldHideTombstonedVectors() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(DIM);
+        float[] target = randomUnitVector(random);
+        index.add(1L, target);
+        for (int i = 2; i < 200; i++) {
+            index.add(i, randomUnitVector(random));
+        }
+
+        assertEquals(1L, index.search(target, 1).get(0).label());
+
+        index.removeIf(label -> label == 1L);
+
+        assertEquals(198, index.size());
+        assertNotEquals(1L, index.search(target, 1).get(0).label());
+        assertEquals(198, index.compact().size());
+    }
+
+    @Test
+    void writeAndRead_ShouldRoundTrip() throws Exception {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(DIM);
+        for (int i = 0; i < 300; i++) {
+            index.add(i, randomUnitVector(random));
+        }
+        index.removeIf(label -> label % 10 == 0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+        HnswIndex restored = HnswIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        float[] query = randomUnitVector(random);
+        assertEquals(index.size(), restored.size());
+        assertEquals(index.search(query, 5), restored.search(query, 5));
+        Set<Long> labels = new HashSet<>();
+        restored.search(query, 50).forEach(hit -> labels.add(hit.label()));
+        assertTrue(labels.stream().noneMatch(label -> label % 10 == 0));
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] v = new float[DIM];
+        double norm = 0;
+        for (int i = 0; i < DIM; i++) {
+            v[i] = (float) random.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        for (int i = 0; i < DIM; i++) {
+            v[i] /= (float) Math.sqrt(norm);
+        }
+        return v;
+    }
+}
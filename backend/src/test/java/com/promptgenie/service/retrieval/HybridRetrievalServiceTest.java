@@ -0,0 +1,212 @@
+package com.promptgenie.service.retrieval;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.entity.Document;
+import com.promptgenie.entity.DocumentChunk;
+import com.promptgenie.mapper.DocumentChunkMapper;
+import com.promptgenie.mapper.DocumentMapper;
+import com.promptgenie.service.EmbeddingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class HybridRetrievalServiceTest {
+
+    private static final long KB_ID = 1L;
+    private static final long OTHER_KB_ID = 2L;
+
+    @TempDir
+    Path tempDir;
+
+    private LexicalIndexService lexicalIndexService;
+    private VectorIndexService vectorIndexService;
+    private HybridRetrievalService retrievalService;
+    private EmbeddingService embeddingService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        GenieConfig config = new GenieConfig();
+        config.getEmbedding().setIndexDir(tempDir.resolve("vector").toString());
+        config.getRetrieval().setLexicalIndexDir(tempDir.resolve("lexical").toString());
+        // Mapper mocks return no rows, so both indexes start empty
+        DocumentMapper documentMapper = mock(DocumentMapper.class);
+        DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+
+        embeddingService = new EmbeddingService();
+        ReflectionTestUtils.setField(embeddingService, "genieConfig", config);
+        ReflectionTestUtils.setField(embeddingService, "embeddingClientProvider", mock(ObjectProvider.class));
+
+        vectorIndexService = new VectorIndexService();
+        ReflectionTestUtils.setField(vectorIndexService, "embeddingService", embeddingService);
+        ReflectionTestUtils.setField(vectorIndexService, "documentMapper", documentMapper);
+        ReflectionTestUtils.setField(vectorIndexService, "chunkMapper", chunkMapper);
+        ReflectionTestUtils.setField(vectorIndexService, "genieConfig", config);
+
+        lexicalIndexService = new LexicalIndexService();
+        ReflectionTestUtils.setField(lexicalIndexService, "documentMapper", documentMapper);
+        ReflectionTestUtils.setField(lexicalIndexService, "chunkMapper", chunkMapper);
+        ReflectionTestUtils.setField(lexicalIndexService, "genieConfig", config);
+        lexicalIndexService.init();
+        for (int i = 0; i < 100 && !lexicalIndexService.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(lexicalIndexService.isReady());
+
+        retrievalService = new HybridRetrievalService();
+        ReflectionTestUtils.setField(retrievalService, "lexicalIndexService", lexicalIndexService);
+        ReflectionTestUtils.setField(retrievalService, "vectorIndexService", vectorIndexService);
+        ReflectionTestUtils.setField(retrievalService, "reranker", new ChunkReranker());
+        ReflectionTestUtils.setField(retrievalService, "genieConfig", config);
+        ReflectionTestUtils.setField(retrievalService, "metrics", new GenieMetrics(new SimpleMeterRegistry()));
+        retrievalService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        retrievalService.shutdown();
+        lexicalIndexService.shutdown();
+    }
+
+    @Test
+    void fuse_ShouldRankChunksFoundByBothRetrieversFirst() {
+        List<LexicalIndexService.LexicalHit> lexical = List.of(
+                new LexicalIndexService.LexicalHit(1L, "a", 0, "a0", 0, 10, 9f),
+                new LexicalIndexService.LexicalHit(2L, "b", 3, "b3", 40, 80, 5f));
+        List<VectorIndexService.ChunkHit> vector = List.of(
+                new VectorIndexService.ChunkHit(3L, "c", 1, "c1", 0.9f),
+                new VectorIndexService.ChunkHit(2L, "b", 3, "b3", 0.8f));
+
+        List<HybridRetrievalService.Candidate> fused = HybridRetrievalService.fuse(lexical, vector, 60);
+
+        assertEquals(3, fused.size());
+        RetrievalResult first = fused.get(0).toResult();
+        assertEquals(2L, first.documentId());
+        assertEquals(2, first.lexicalRank());
+        assertEquals(2, first.vectorRank());
+        assertEquals(40, first.startOffset());
+        assertEquals(2.0 / 62, first.fusedScore(), 1e-9);
+    }
+
+    @Test
+    void minimumWindow_ShouldFindTightestSpan() {
+        List<String> tokens = Arrays.asList("a", "x", "b", "x", "x", "a", "b");
+        assertEquals(2, ChunkReranker.minimumWindow(tokens, Set.of("a", "b")));
+        assertEquals(1, ChunkReranker.minimumWindow(tokens, Set.of("x")));
+    }
+
+    @Test
+    void retrieve_ShouldStayWithinKnowledgeBaseAndCarryOffsets() {
+        index(KB_ID, document(10L, "kb1.md"), List.of("Rolling upgrades drain one instance at a time."));
+        index(OTHER_KB_ID, document(20L, "kb2.md"), List.of("Rolling upgrades are not supported here."));
+
+        List<RetrievalResult> results = retrievalService.retrieve(KB_ID, "rolling upgrades", 5);
+
+        assertEquals(1, results.size());
+        assertEquals(10L, results.get(0).documentId());
+        assertNotNull(results.get(0).lexicalRank());
+        assertNotNull(results.get(0).vectorRank());
+        assertEquals(0, results.get(0).startOffset());
+        assertNotNull(results.get(0).rerankScore());
+    }
+
+    /**
+     * Relevance and latency of each retrieval mode over the bundled corpus. Prints a table; the
+     * assertions only guard against gross regressions of the hybrid path.
+     */
+    @Test
+    void benchmarkCorpus_ShouldReportRelevanceAndLatencyPerMode() throws Exception {
+        JsonNode corpus;
+        try (InputStream in = getClass().getResourceAsStream("/retrieval/benchmark-corpus.json")) {
+            corpus = new ObjectMapper().readTree(in);
+        }
+        long documentId = 100;
+        for (JsonNode doc : corpus.get("documents")) {
+            List<String> chunks = new ArrayList<>();
+            doc.get("chunks").forEach(chunk -> chunks.add(chunk.asText()));
+            index(KB_ID, document(documentId++, doc.get("filename").asText()), chunks);
+        }
+
+        System.out.printf("%-16s %10s %8s %10s %10s%n", "mode", "recall@5", "MRR@10", "p50 (us)", "p95 (us)");
+        double hybridRecall = 0;
+        for (HybridRetrievalService.Mode mode : HybridRetrievalService.Mode.values()) {
+            for (boolean rerank : new boolean[]{false, true}) {
+                if (mode != HybridRetrievalService.Mode.HYBRID && rerank) continue;
+                // Warm-up pass so the first queries do not pay for class loading
+                for (JsonNode q : corpus.get("queries")) {
+                    retrievalService.retrieve(KB_ID, q.get("query").asText(), 10, mode, rerank);
+                }
+                double recall = 0;
+                double mrr = 0;
+                List<Long> latencies = new ArrayList<>();
+                for (JsonNode q : corpus.get("queries")) {
+                    long start = System.nanoTime();
+                    List<RetrievalResult> results = retrievalService.retrieve(KB_ID, q.get("query").asText(), 10, mode, rerank);
+                    latencies.add((System.nanoTime() - start) / 1000);
+                    Set<String> relevant = new HashSet<>();
+                    q.get("relevant").forEach(r -> relevant.add(r.asText()));
+                    for (int rank = 0; rank < results.size(); rank++) {
+                        if (relevant.contains(results.get(rank).filename() + "#" + results.get(rank).chunkIndex())) {
+                            if (rank < 5) recall += 1;
+                            mrr += 1.0 / (rank + 1);
+                            break;
+                        }
+                    }
+                }
+                int queries = corpus.get("queries").size();
+                latencies.sort(Long::compare);
+                System.out.printf("%-16s %10.3f %8.3f %10d %10d%n", mode + (rerank ? "+rerank" : ""),
+                        recall / queries, mrr / queries,
+                        latencies.get(latencies.size() / 2), latencies.get((int) (latencies.size() * 0.95)));
+                if (mode == HybridRetrievalService.Mode.HYBRID && rerank) hybridRecall = recall / queries;
+            }
+        }
+        assertTrue(hybridRecall >= 0.6, "hybrid recall@5 was " + hybridRecall);
+    }
+
+    private void index(long kbId, Document document, List<String> texts) {
+        document.setKbId(kbId);
+        List<DocumentChunk> chunks = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setDocumentId(document.getId());
+            chunk.setKbId(kbId);
+            chunk.setChunkIndex(i);
+            chunk.setContent(texts.get(i));
+            chunk.setStartOffset(offset);
+            chunk.setEndOffset(offset + texts.get(i).length());
+            offset += texts.get(i).length() + 1;
+            chunks.add(chunk);
+        }
+        vectorIndexService.addChunks(kbId, document, chunks, embeddingService.embedAll(texts));
+        lexicalIndexService.addChunks(kbId, document, chunks);
+        vectorIndexService.flush(kbId);
+        lexicalIndexService.flush(kbId);
+    }
+
+    private static Document document(long id, String filename) {
+        Document document = new Document();
+        document.setId(id);
+        document.setFilename(filename);
+        document.setIngestStatus(Document.STATUS_READY);
+        return document;
+    }
+}
@@ -0,0 +1,90 @@
+package com.promptgenie.service.task;
+
+import com.promptgenie.core.config.GenieConfig;
+import com.promptgenie.core.metrics.GenieMetrics;
+import com.promptgenie.entity.GenerationTask;
+import com.promptgenie.mapper.GenerationTaskMapper;
+import com.promptgenie.mapper.PlaygroundHistoryMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class GenerationTaskServiceTest {
+
+    private GenerationTaskMapper taskMapper;
+    private PlaygroundHistoryMapper historyMapper;
+    private GenerationTaskService taskService;
+
+    @BeforeEach
+    void setUp() {
+        taskMapper = mock(GenerationTaskMapper.class);
+        historyMapper = mock(PlaygroundHistoryMapper.class);
+        taskService = new GenerationTaskService();
+        ReflectionTestUtils.setField(taskService, "taskMapper", taskMapper);
+        ReflectionTestUtils.setField(taskService, "historyMapper", historyMapper);
+        ReflectionTestUtils.setField(taskService, "strategies", List.of());
+        ReflectionTestUtils.setField(taskService, "genieConfig", new GenieConfig());
+        ReflectionTestUtils.setField(taskService, "metrics", new GenieMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void poll_ShouldNotifyLocalWaiters_WhenAnotherInstanceCompletedTheTask() {
+        GenerationTask running = task(GenerationTask.STATUS_RUNNING);
+        GenerationTask finished = task(GenerationTask.STATUS_FAILED);
+        when(taskMapper.selectById(1L)).thenReturn(running, finished);
+        when(taskMapper.selectList(any())).thenReturn(List.of(running));
+        when(taskMapper.update(isNull(), any())).thenReturn(0);
+
+        CompletableFuture<GenerationTask> waiter = taskService.await(1L);
+        assertFalse(waiter.isDone());
+
+        taskService.poll();
+
+        assertSame(finished, waiter.getNow(null));
+        verifyNoInteractions(historyMapper);
+    }
+
+    @Test
+    void poll_ShouldNotifyLocalWaiters_WhenTheTaskAlreadyLeftTheRunningSet() {
+        GenerationTask finished = task(GenerationTask.STATUS_SUCCEEDED);
+        when(taskMapper.selectById(1L)).thenReturn(task(GenerationTask.STATUS_RUNNING));
+        when(taskMapper.selectBatchIds(any())).thenReturn(List.of(finished));
+        when(taskMapper.selectList(any())).thenReturn(List.of());
+
+        CompletableFuture<GenerationTask> waiter = taskService.await(1L);
+        taskService.poll();
+
+        assertSame(finished, waiter.getNow(null));
+        verify(taskMapper, never()).update(any(), any());
+    }
+
+    @Test
+    void checkWebhookTarget_ShouldRejectInternalAddresses() {
+        for (String url : List.of("http://127.0.0.1/hook", "http://169.254.169.254/latest/meta-data",
+                "https://10.0.0.5/hook", "http://192.168.1.1/hook", "http://[::1]/hook", "http://[fd00::1]/hook",
+                "http://0.0.0.0/hook", "ftp://93.184.216.34/hook")) {
+            assertThrows(IllegalArgumentException.class, () -> GenerationTaskService.checkWebhookTarget(url), url);
+        }
+        assertDoesNotThrow(() -> GenerationTaskService.checkWebhookTarget("https://93.184.216.34/hook"));
+    }
+
+    private static GenerationTask task(String status) {
+        GenerationTask task = new GenerationTask();
+        task.setId(1L);
+        task.setModelType("video");
+        task.setModelName("wanx");
+        task.setStatus(status);
+        task.setCreatedAt(LocalDateTime.now());
+        return task;
+    }
+}
@@ -0,0 +1,58 @@
+package com.promptgenie.service.template;
+
+import com.promptgenie.prompt.entity.Prompt;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptTemplateTest {
+
+    @Test
+    void render_ShouldSubstituteInOnePass() {
+        PromptTemplate template = PromptTemplate.compile("Hello {{name}}, you owe {{ amount }}. Bye {{name}}!");
+
+        String result = template.render(Map.of("name", "Ann", "amount", "$5 \\ each"));
+
+        assertEquals("Hello Ann, you owe $5 \\ each. Bye Ann!", result);
+        assertEquals(Set.of("name", "amount"), template.getVariableNames());
+    }
+
+    @Test
+    void render_ShouldKeepUnresolvedPlaceholders() {
+        PromptTemplate template = PromptTemplate.compile("{{a}} {{ b }} {{}} {{c");
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("b", null);
+
+        assertEquals("{{a}} {{ b }} {{}} {{c", template.render(variables));
+        assertEquals("x {{ b }} {{}} {{c", template.render(Map.of("a", "x")));
+    }
+
+    @Test
+    void render_ShouldBindInnermostBraces() {
+        PromptTemplate template = PromptTemplate.compile("{{x {{y}} and {{{z}}}");
+
+        assertEquals("{{x 1 and {2}", template.render(Map.of("y", 1, "z", 2)));
+    }
+
+    @Test
+    void forPrompt_ShouldRecompileWhenVersionChanges() {
+        PromptTemplateCache cache = new PromptTemplateCache();
+        Prompt prompt = new Prompt();
+        prompt.setId(1L);
+        prompt.setContent("Hi {{name}}");
+        prompt.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+
+        PromptTemplate first = cache.forPrompt(prompt);
+        assertSame(first, cache.forPrompt(prompt));
+
+        prompt.setContent("Bye {{name}}");
+        prompt.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 0, 0));
+
+        assertEquals("Bye Ann", cache.forPrompt(prompt).render(Map.of("name", "Ann")));
+    }
+}
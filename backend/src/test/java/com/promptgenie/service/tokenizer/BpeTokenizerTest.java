@@ -0,0 +1,49 @@
+package com.promptgenie.service.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class BpeTokenizerTest {
+
+    @Test
+    void count_ShouldMergeByLowestRankWithinPreTokens() throws Exception {
+        BpeTokenizer tokenizer = load("a", "b", "c", " ", "ab", "abc", " ab");
+
+        assertEquals(1, tokenizer.count("abc"));
+        // ab + c + ab -> abc + ab
+        assertEquals(2, tokenizer.count("abcab"));
+        // "abc" and " ab" are separate pre-tokens
+        assertEquals(2, tokenizer.count("abc ab"));
+        // Unknown bytes fall back to one token each
+        assertEquals(3, tokenizer.count("xyz"));
+        assertEquals(0, tokenizer.count(""));
+    }
+
+    @Test
+    void count_ShouldMergeLeftmostFirstAndHandleLongPieces() throws Exception {
+        BpeTokenizer tokenizer = load("a", "aa", "aaaa");
+
+        // Equal ranks merge leftmost first: aa + a
+        assertEquals(2, tokenizer.count("aaa"));
+        assertEquals(1, tokenizer.count("aaaa"));
+        // A single long pre-token (like a run of CJK text) must not take a rescan per merge
+        String longPiece = "a".repeat(40_000);
+        assertEquals(10_000, assertTimeout(Duration.ofSeconds(2), () -> tokenizer.count(longPiece)));
+    }
+
+    private static BpeTokenizer load(String... tokens) throws Exception {
+        StringBuilder rankFile = new StringBuilder();
+        for (int rank = 0; rank < tokens.length; rank++) {
+            rankFile.append(Base64.getEncoder().encodeToString(tokens[rank].getBytes(StandardCharsets.UTF_8)))
+                    .append(' ').append(rank).append('\n');
+        }
+        return BpeTokenizer.load(new ByteArrayInputStream(rankFile.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
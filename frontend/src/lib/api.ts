@@ -113,9 +113,9 @@ export const promptService = {
     return response.data;
   },
 
-  getPublic: async (params?: { search?: string; category?: string; scene?: string; assetType?: string; sort?: string }) => {
+  getPublic: async (params?: { search?: string; category?: string; scene?: string; assetType?: string; sort?: string; cursor?: string; limit?: number }) => {
     const response = await api.get<Prompt[]>('/prompts/public', { params });
-    return response.data;
+    return { items: response.data, nextCursor: (response.headers['x-next-cursor'] as string | undefined) || null };
   },
 
   getPublicCatalog: async (params?: { category?: string; scene?: string }) => {
@@ -35,6 +35,15 @@ export default function KnowledgeBase() {
     }
   }, [user?.id, currentWorkspace]);
 
+  // Poll while documents are still being imported in the background
+  useEffect(() => {
+    if (!selectedKb) return;
+    const importing = documents.some(doc => doc.ingestStatus === 'PENDING' || doc.ingestStatus === 'PROCESSING');
+    if (!importing) return;
+    const timer = setTimeout(() => loadDocuments(selectedKb.id), 3000);
+    return () => clearTimeout(timer);
+  }, [documents, selectedKb]);
+
   const loadKbs = async () => {
     setLoading(true);
     try {
@@ -213,7 +222,7 @@ export default function KnowledgeBase() {
                         className="hidden" 
                         onChange={handleUpload} 
                         disabled={uploading}
-                        accept=".txt,.md,.json,.csv,.log" 
+                        accept=".txt,.md,.json,.csv,.log,.pdf,.docx" 
                       />
                     </label>
                     <p className="text-xs text-gray-400 mt-1 text-right">{t('knowledge.supported_formats')}</p>
@@ -236,7 +245,18 @@ export default function KnowledgeBase() {
                               <div className="font-medium text-gray-700">{doc.filename}</div>
                               <div className="text-xs text-gray-400">
                                 {doc.fileType} • {(doc.fileSize / 1024).toFixed(1)} KB • {new Date(doc.createdAt).toLocaleDateString()}
+                                {doc.ingestStatus === 'READY' && ` • ${t('knowledge.chunk_count', { count: doc.chunkCount })}`}
                               </div>
+                              {(doc.ingestStatus === 'PENDING' || doc.ingestStatus === 'PROCESSING') && (
+                                <div className="text-xs text-blue-500">
+                                  {t('knowledge.ingesting', { count: doc.chunkCount || 0 })}
+                                </div>
+                              )}
+                              {doc.ingestStatus === 'FAILED' && (
+                                <div className="text-xs text-red-500" title={doc.errorMessage}>
+                                  {t('knowledge.ingest_failed')}{doc.errorMessage ? `: ${doc.errorMessage}` : ''}
+                                </div>
+                              )}
                             </div>
                           </div>
                           <button 
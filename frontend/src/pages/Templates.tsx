@@ -13,6 +13,8 @@ export default function Templates() {
   const { t } = useTranslation();
   const [prompts, setPrompts] = useState<Prompt[]>([]);
   const [loading, setLoading] = useState(true);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [search, setSearch] = useState('');
   const [category, setCategory] = useState<string>('');
   const [sort, setSort] = useState<'featured' | 'trending' | 'new'>('featured');
@@ -41,7 +43,8 @@ export default function Templates() {
         category: category || undefined,
         sort,
       });
-      setPrompts(data);
+      setPrompts(data.items);
+      setNextCursor(data.nextCursor);
     } catch (err) {
       console.error('Failed to fetch public prompts', err);
       toast.error(t('templates.fetch_error') || 'Failed to load templates');
@@ -50,6 +53,26 @@ export default function Templates() {
     }
   };
 
+  const loadMore = async () => {
+    if (!nextCursor) return;
+    setLoadingMore(true);
+    try {
+      const data = await promptService.getPublic({
+        search,
+        category: category || undefined,
+        sort,
+        cursor: nextCursor,
+      });
+      setPrompts(prev => [...prev, ...data.items]);
+      setNextCursor(data.nextCursor);
+    } catch (err) {
+      console.error('Failed to fetch public prompts', err);
+      toast.error(t('templates.fetch_error') || 'Failed to load templates');
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   const handleLike = async (promptId: string) => {
     if (!user?.id) {
         track('auth_gate_shown', { action: 'like', templateId: promptId, source: 'templates' });
@@ -290,6 +313,18 @@ export default function Templates() {
             ))}
           </div>
         )}
+
+        {!loading && nextCursor && (
+          <div className="flex justify-center mt-8">
+            <button
+              onClick={loadMore}
+              disabled={loadingMore}
+              className="rounded-xl border border-gray-600 bg-gray-800/60 px-6 py-2.5 text-sm font-semibold text-gray-200 hover:bg-gray-700 disabled:opacity-50 transition"
+            >
+              {loadingMore ? '⏳' : (t('templates.load_more') || 'Load more')}
+            </button>
+          </div>
+        )}
       </div>
     </div>
   );